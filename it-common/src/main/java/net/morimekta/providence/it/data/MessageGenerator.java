@@ -9,6 +9,10 @@ import net.morimekta.test.providence.OptionalFields;
 import net.morimekta.test.providence.RequiredFields;
 import net.morimekta.test.providence.UnionFields;
 import net.morimekta.test.providence.Value;
+import net.morimekta.util.Binary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Generate messages with random content for testing.
@@ -416,67 +420,89 @@ public class MessageGenerator {
         }
 
         // --- MAPS ---
+        // Random keys may repeat, and the immutable map builders reject
+        // duplicate keys, so the entries are collected in a map first.
 
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Boolean, Boolean> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInBooleanMap(randomGenerator.nextBoolean(), randomGenerator.nextBoolean());
+                map.put(randomGenerator.nextBoolean(), randomGenerator.nextBoolean());
             }
+            containers.setBooleanMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Byte, Byte> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInByteMap(randomGenerator.nextByte(), randomGenerator.nextByte());
+                map.put(randomGenerator.nextByte(), randomGenerator.nextByte());
             }
+            containers.setByteMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Short, Short> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInShortMap(randomGenerator.nextShort(), randomGenerator.nextShort());
+                map.put(randomGenerator.nextShort(), randomGenerator.nextShort());
             }
+            containers.setShortMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Integer, Integer> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInIntegerMap(randomGenerator.nextInt(), randomGenerator.nextInt());
+                map.put(randomGenerator.nextInt(), randomGenerator.nextInt());
             }
+            containers.setIntegerMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Long, Long> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInLongMap(randomGenerator.nextLong(), randomGenerator.nextLong());
+                map.put(randomGenerator.nextLong(), randomGenerator.nextLong());
             }
+            containers.setLongMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Double, Double> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInDoubleMap(randomGenerator.nextDistributedDouble(),
+                map.put(randomGenerator.nextDistributedDouble(),
                                           randomGenerator.nextDistributedDouble());
             }
+            containers.setDoubleMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Binary, Binary> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInBinaryMap(randomGenerator.nextBinary(keyLen), randomGenerator.nextBinary(dataLen));
+                map.put(randomGenerator.nextBinary(keyLen), randomGenerator.nextBinary(dataLen));
             }
+            containers.setBinaryMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<String, String> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInStringMap(randomGenerator.nextString(keyLen), randomGenerator.nextString(dataLen));
+                map.put(randomGenerator.nextString(keyLen), randomGenerator.nextString(dataLen));
             }
+            containers.setStringMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<Value, Value> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInEnumMap(nextValue(), nextValue());
+                map.put(nextValue(), nextValue());
             }
+            containers.setEnumMap(map);
         }
         if (doFill()) {
             final int items = randomItemCount();
+            Map<String, DefaultFields> map = new LinkedHashMap<>();
             for (int i = 0; i < items; ++i) {
-                containers.putInMessageMap(randomGenerator.nextString(keyLen), nextDefaultFields());
+                map.put(randomGenerator.nextString(keyLen), nextDefaultFields());
             }
+            containers.setMessageMap(map);
         }
 
         // Direct fields.
@@ -164,3 +164,6 @@ struct Containers {
     56: optional DefaultValues defaultValues;
 }
 
+service ContainerService {
+    Containers load(1: Containers containers) throws (1: ExceptionFields ef);
+}
@@ -0,0 +1,203 @@
+package net.morimekta.providence.it.serialization;
+
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.it.data.MessageGenerator;
+import net.morimekta.providence.it.data.RandomGenerator;
+import net.morimekta.providence.it.serialization.binary.OldOptionalFields;
+import net.morimekta.providence.it.serialization.binary.OldUnionFields;
+import net.morimekta.providence.it.serialization.binary.OldValue;
+import net.morimekta.providence.serializer.BinaryReadable;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.BinaryWritable;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.CompactFields;
+import net.morimekta.test.providence.Containers;
+import net.morimekta.test.providence.OptionalFields;
+import net.morimekta.test.providence.UnionFields;
+import net.morimekta.test.providence.Value;
+import net.morimekta.util.Binary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the generated binary serializer methods against the generic
+ * binary serializer. The 'net.morimekta.test.providence' model from it-common
+ * is generated without the binary serializer methods, and the 'binary' model
+ * here is generated from the same thrift definitions with them.
+ */
+public class BinarySerializationTest {
+    private static final long SEED = 0x5eed;
+
+    private MessageGenerator generator;
+
+    @Before
+    public void setUp() {
+        generator = new MessageGenerator(new RandomGenerator(new Random(SEED)));
+    }
+
+    @Test
+    public void testGeneratedModel() {
+        assertTrue(net.morimekta.providence.it.serialization.binary.Containers.builder()
+                                                                            .build() instanceof BinaryWritable);
+        assertTrue(net.morimekta.providence.it.serialization.binary.Containers.builder() instanceof BinaryReadable);
+        assertFalse(Containers.builder().build() instanceof BinaryWritable);
+        assertFalse(Containers.builder() instanceof BinaryReadable);
+    }
+
+    @Test
+    public void testContainers() throws IOException, SerializerException {
+        for (int i = 0; i < 20; ++i) {
+            assertSameBytes(new BinarySerializer(),
+                            generator.nextContainers(),
+                            net.morimekta.providence.it.serialization.binary.Containers.kDescriptor);
+        }
+    }
+
+    @Test
+    public void testFields() throws IOException, SerializerException {
+        generator.setFillRatio(0.5);
+        for (int i = 0; i < 20; ++i) {
+            assertSameBytes(new BinarySerializer(),
+                            generator.nextDefaultFields(),
+                            net.morimekta.providence.it.serialization.binary.DefaultFields.kDescriptor);
+            assertSameBytes(new BinarySerializer(),
+                            generator.nextRequiredFields(),
+                            net.morimekta.providence.it.serialization.binary.RequiredFields.kDescriptor);
+        }
+    }
+
+    @Test
+    public void testUnionFields() throws IOException, SerializerException {
+        for (int i = 0; i < 50; ++i) {
+            assertSameBytes(new BinarySerializer(),
+                            generator.nextUnionFields(),
+                            net.morimekta.providence.it.serialization.binary.UnionFields.kDescriptor);
+        }
+        // And the union without any field set.
+        assertSameBytes(new BinarySerializer(),
+                        UnionFields.builder().build(),
+                        net.morimekta.providence.it.serialization.binary.UnionFields.kDescriptor);
+    }
+
+    @Test
+    public void testUnknownFieldsAndValues() throws IOException, SerializerException {
+        Serializer serializer = new BinarySerializer(false);
+        OptionalFields original = OptionalFields.builder()
+                                                .setBooleanValue(true)
+                                                .setByteValue((byte) 12)
+                                                .setShortValue((short) 1234)
+                                                .setIntegerValue(123456)
+                                                .setLongValue(1234567890123L)
+                                                .setDoubleValue(12.34)
+                                                .setStringValue("test")
+                                                .setBinaryValue(Binary.wrap(new byte[]{1, 2, 3}))
+                                                .setEnumValue(Value.THIRD)
+                                                .setCompactValue(new CompactFields("name", 42, null))
+                                                .build();
+
+        // The generated reader consumes the unknown fields, the mismatched
+        // short value and the unknown enum value the same way as the generic
+        // reader would.
+        OldOptionalFields old = deserialize(serializer, serialize(serializer, original), OldOptionalFields.kDescriptor);
+        assertTrue(old instanceof BinaryWritable);
+        assertFalse(old.hasShortValue());
+        assertEquals(123456, old.getIntegerValue());
+        assertFalse(old.hasEnumValue());
+        assertNotNull(old.unknownFields());
+
+        // And the generated writer writes the unknown fields back, so only the
+        // mismatched and unknown enum values are lost.
+        OptionalFields copy = deserialize(serializer, serialize(serializer, old), OptionalFields.kDescriptor);
+        assertEquals(original.mutate()
+                             .clearShortValue()
+                             .clearEnumValue()
+                             .build(), copy);
+
+        // Going the other way the generic reader handles the mismatched type.
+        old = OldOptionalFields.builder()
+                               .setShortValue("not a short")
+                               .setIntegerValue(4321)
+                               .setEnumValue(OldValue.SECOND)
+                               .build();
+        copy = deserialize(serializer, serialize(serializer, old), OptionalFields.kDescriptor);
+        assertEquals(OptionalFields.builder()
+                                   .setIntegerValue(4321)
+                                   .setEnumValue(Value.SECOND)
+                                   .build(), copy);
+    }
+
+    @Test
+    public void testUnknownUnionFields() throws IOException, SerializerException {
+        Serializer serializer = new BinarySerializer(false);
+
+        OldUnionFields old = deserialize(serializer,
+                                         serialize(serializer, UnionFields.withIntegerValue(42)),
+                                         OldUnionFields.kDescriptor);
+        assertEquals(OldUnionFields.withIntegerValue(42), old);
+
+        old = deserialize(serializer,
+                          serialize(serializer, UnionFields.withEnumValue(Value.SECOND)),
+                          OldUnionFields.kDescriptor);
+        assertEquals(OldUnionFields.withEnumValue(OldValue.SECOND), old);
+
+        old = deserialize(serializer,
+                          serialize(serializer, UnionFields.withEnumValue(Value.THIRD)),
+                          OldUnionFields.kDescriptor);
+        assertNull(old.unionField());
+
+        UnionFields original = UnionFields.withStringValue("test");
+        old = deserialize(serializer, serialize(serializer, original), OldUnionFields.kDescriptor);
+        assertNull(old.unionField());
+        assertNotNull(old.unknownFields());
+        assertEquals(original, deserialize(serializer, serialize(serializer, old), UnionFields.kDescriptor));
+    }
+
+    /**
+     * Check that the generic and generated serialization of the message
+     * gives the same bytes, and that the message survives the round trip
+     * through the generated model.
+     */
+    private <Message extends PMessage<Message, Field>, Field extends PField,
+            Generated extends PMessage<Generated, GeneratedField>, GeneratedField extends PField>
+    void assertSameBytes(Serializer serializer,
+                         Message message,
+                         PStructDescriptor<Generated, GeneratedField> generated)
+            throws IOException, SerializerException {
+        byte[] expected = serialize(serializer, message);
+        Generated copy = deserialize(serializer, expected, generated);
+        assertTrue(copy instanceof BinaryWritable);
+
+        byte[] actual = serialize(serializer, copy);
+        assertArrayEquals(expected, actual);
+        assertEquals(message, deserialize(serializer, actual, message.descriptor()));
+    }
+
+    private static <Message extends PMessage<Message, Field>, Field extends PField>
+    byte[] serialize(Serializer serializer, Message message) throws IOException, SerializerException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(out, message);
+        return out.toByteArray();
+    }
+
+    private static <Message extends PMessage<Message, Field>, Field extends PField>
+    Message deserialize(Serializer serializer, byte[] bytes, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
+        return serializer.deserialize(new ByteArrayInputStream(bytes), descriptor);
+    }
+}
@@ -0,0 +1,164 @@
+package net.morimekta.providence.it.serialization;
+
+import net.morimekta.providence.it.serialization.boxed.NumericContainers;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.FastBinarySerializer;
+import net.morimekta.providence.serializer.JsonSerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
+import net.morimekta.providence.util.collect.PrimitiveMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the primitive collections in serialization against the boxed
+ * containers. The 'boxed' model is generated with the default containers,
+ * and the 'primitive' model from the same thrift definitions with the
+ * primitive collections.
+ */
+public class PrimitiveSerializationTest {
+    @Test
+    public void testGeneratedModel() {
+        net.morimekta.providence.it.serialization.primitive.NumericContainers primitive =
+                net.morimekta.providence.it.serialization.primitive.NumericContainers.builder()
+                        .setIntList(ImmutableList.of(1))
+                        .setIntMap(ImmutableMap.of(1, 2))
+                        .setIntSet(ImmutableSet.of(1))
+                        .build();
+        assertTrue(primitive.getIntList() instanceof IntList);
+        assertTrue(primitive.getIntMap() instanceof PrimitiveMap);
+        assertFalse(primitive.getIntSet() instanceof IntList);
+
+        NumericContainers boxed = NumericContainers.builder()
+                                                   .setIntList(ImmutableList.of(1))
+                                                   .setIntMap(ImmutableMap.of(1, 2))
+                                                   .build();
+        assertFalse(boxed.getIntList() instanceof IntList);
+        assertFalse(boxed.getIntMap() instanceof PrimitiveMap);
+    }
+
+    @Test
+    public void testBinary() throws IOException, SerializerException {
+        assertSameBytes(new BinarySerializer(), edgeValues(), true);
+        assertSameBytes(new BinarySerializer(), NumericContainers.builder().build(), true);
+    }
+
+    @Test
+    public void testFastBinary() throws IOException, SerializerException {
+        assertSameBytes(new FastBinarySerializer(), edgeValues(), true);
+        assertSameBytes(new FastBinarySerializer(), NumericContainers.builder().build(), true);
+    }
+
+    @Test
+    public void testJson() throws IOException, SerializerException {
+        // JSON has no NaN or infinity, and may not keep the sign of zero,
+        // so here the boxed and primitive models just have to agree.
+        for (JsonSerializer.IdType idType : JsonSerializer.IdType.values()) {
+            assertSameBytes(new JsonSerializer(idType), finiteValues(), false);
+            assertSameBytes(new JsonSerializer(idType), NumericContainers.builder().build(), false);
+        }
+    }
+
+    private static NumericContainers edgeValues() {
+        return NumericContainers.builder()
+                                .setIntList(ImmutableList.of(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE))
+                                .setLongList(ImmutableList.of(Long.MIN_VALUE,
+                                                              Integer.MIN_VALUE - 1L,
+                                                              0L,
+                                                              Integer.MAX_VALUE + 1L,
+                                                              Long.MAX_VALUE))
+                                .setDoubleList(ImmutableList.of(Double.NaN,
+                                                                -0.0,
+                                                                0.0,
+                                                                Double.MIN_VALUE,
+                                                                -Double.MAX_VALUE,
+                                                                Double.MAX_VALUE,
+                                                                Double.NEGATIVE_INFINITY,
+                                                                Double.POSITIVE_INFINITY))
+                                .setIntMap(ImmutableMap.of(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                                                           0, -1,
+                                                           Integer.MAX_VALUE, Integer.MIN_VALUE))
+                                .setLongDoubleMap(ImmutableMap.of(Long.MIN_VALUE, Double.NaN,
+                                                                  0L, -0.0,
+                                                                  Long.MAX_VALUE, Double.MAX_VALUE))
+                                .setDoubleLongMap(ImmutableMap.of(Double.NaN, Long.MIN_VALUE,
+                                                                  -0.0, 1L,
+                                                                  0.0, 2L,
+                                                                  Double.MIN_VALUE, Long.MAX_VALUE))
+                                .setIntSet(ImmutableSet.of(Integer.MIN_VALUE, 0, Integer.MAX_VALUE))
+                                .build();
+    }
+
+    private static NumericContainers finiteValues() {
+        return NumericContainers.builder()
+                                .setIntList(ImmutableList.of(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE))
+                                .setLongList(ImmutableList.of(Long.MIN_VALUE, 0L, Long.MAX_VALUE))
+                                .setDoubleList(ImmutableList.of(-0.0, 0.0, 1.5, -Double.MAX_VALUE, Double.MAX_VALUE))
+                                .setIntMap(ImmutableMap.of(Integer.MIN_VALUE, Integer.MAX_VALUE,
+                                                           Integer.MAX_VALUE, Integer.MIN_VALUE))
+                                .setLongDoubleMap(ImmutableMap.of(Long.MIN_VALUE, -0.0,
+                                                                  Long.MAX_VALUE, Double.MAX_VALUE))
+                                .setDoubleLongMap(ImmutableMap.of(-1.5, Long.MIN_VALUE,
+                                                                  Double.MAX_VALUE, Long.MAX_VALUE))
+                                .setIntSet(ImmutableSet.of(Integer.MIN_VALUE, 0, Integer.MAX_VALUE))
+                                .build();
+    }
+
+    /**
+     * Check that the boxed and primitive models serialize to the same bytes,
+     * and read back the same message.
+     *
+     * @param serializer The serializer to test.
+     * @param message The boxed message.
+     * @param exact If the message itself should survive the round trip.
+     */
+    private static void assertSameBytes(Serializer serializer, NumericContainers message, boolean exact)
+            throws IOException, SerializerException {
+        byte[] expected = serialize(serializer, message);
+        net.morimekta.providence.it.serialization.primitive.NumericContainers copy =
+                serializer.deserialize(new ByteArrayInputStream(expected),
+                                       net.morimekta.providence.it.serialization.primitive.NumericContainers.kDescriptor);
+        if (copy.hasIntList()) {
+            assertTrue(copy.getIntList() instanceof IntList);
+            assertTrue(copy.getLongList() instanceof LongList);
+            assertTrue(copy.getDoubleList() instanceof DoubleList);
+            assertTrue(copy.getIntMap() instanceof PrimitiveMap);
+            assertTrue(copy.getLongDoubleMap() instanceof PrimitiveMap);
+            assertTrue(copy.getDoubleLongMap() instanceof PrimitiveMap);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(out, copy);
+        byte[] actual = out.toByteArray();
+        assertArrayEquals(expected, actual);
+
+        NumericContainers boxed = serializer.deserialize(new ByteArrayInputStream(actual), NumericContainers.kDescriptor);
+        if (exact) {
+            assertEquals(message, boxed);
+        } else {
+            assertArrayEquals(expected, serialize(serializer, boxed));
+        }
+    }
+
+    private static byte[] serialize(Serializer serializer, NumericContainers message)
+            throws IOException, SerializerException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(out, message);
+        return out.toByteArray();
+    }
+}
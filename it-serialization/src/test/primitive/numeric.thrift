@@ -0,0 +1,14 @@
+namespace java net.morimekta.providence.it.serialization.primitive
+
+// Same types as "src/test/providence/numeric.thrift", generated with the
+// primitive collections, so they can be compared with the boxed containers.
+struct NumericContainers {
+    1: optional list<i32> intList;
+    2: optional list<i64> longList;
+    3: optional list<double> doubleList;
+    4: optional map<i32,i32> intMap;
+    5: optional map<i64,double> longDoubleMap;
+    6: optional map<double,i64> doubleLongMap;
+    // Sets are never stored as primitive collections.
+    7: optional set<i32> intSet;
+}
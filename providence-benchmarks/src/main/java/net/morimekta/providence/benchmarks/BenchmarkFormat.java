@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks;
+
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.FastBinarySerializer;
+import net.morimekta.providence.serializer.FastJsonSerializer;
+import net.morimekta.providence.serializer.JsonSerializer;
+import net.morimekta.providence.serializer.PrettySerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.thrift.TBinaryProtocolSerializer;
+import net.morimekta.providence.thrift.TCompactProtocolSerializer;
+import net.morimekta.providence.thrift.TJsonProtocolSerializer;
+import net.morimekta.providence.thrift.TSimpleJsonProtocolSerializer;
+import net.morimekta.providence.thrift.TTupleProtocolSerializer;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TJSONProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TSimpleJSONProtocol;
+import org.apache.thrift.protocol.TTupleProtocol;
+
+/**
+ * The serialization formats covered by the benchmarks. The enum names are
+ * used as the JMH <code>format</code> parameter values.
+ */
+public enum BenchmarkFormat {
+    // Native providence serializers.
+    binary,
+    fast_binary,
+    json,
+    json_named_enums,
+    json_named,
+    json_pretty,
+    fast_json,
+    fast_json_named_enums,
+    fast_json_named,
+    pretty,
+
+    // Thrift protocol wrappers.
+    binary_protocol,
+    compact_protocol,
+    json_protocol,
+    simple_json_protocol,
+    tuple_protocol;
+
+    /**
+     * Create a new serializer instance for the format. All serializers are
+     * non-strict, so the benchmarks measure the serialization itself, not
+     * the message validation.
+     *
+     * @return The serializer.
+     */
+    public Serializer createSerializer() {
+        switch (this) {
+            case binary:
+                return new BinarySerializer(false);
+            case fast_binary:
+                return new FastBinarySerializer(false);
+            case json:
+                return new JsonSerializer(false, JsonSerializer.IdType.ID);
+            case json_named_enums:
+                return new JsonSerializer(false, JsonSerializer.IdType.ID, JsonSerializer.IdType.NAME, false);
+            case json_named:
+                return new JsonSerializer(false, JsonSerializer.IdType.NAME);
+            case json_pretty:
+                return new JsonSerializer(false, JsonSerializer.IdType.NAME, JsonSerializer.IdType.NAME, true);
+            case fast_json:
+                return new FastJsonSerializer(false, JsonSerializer.IdType.ID);
+            case fast_json_named_enums:
+                return new FastJsonSerializer(false, JsonSerializer.IdType.ID, JsonSerializer.IdType.NAME);
+            case fast_json_named:
+                return new FastJsonSerializer(false, JsonSerializer.IdType.NAME);
+            case pretty:
+                return new PrettySerializer();
+            case binary_protocol:
+                return new TBinaryProtocolSerializer(false);
+            case compact_protocol:
+                return new TCompactProtocolSerializer(false);
+            case json_protocol:
+                return new TJsonProtocolSerializer(false);
+            case simple_json_protocol:
+                return new TSimpleJsonProtocolSerializer();
+            case tuple_protocol:
+                return new TTupleProtocolSerializer(false);
+            default:
+                throw new IllegalStateException("Unhandled format " + name());
+        }
+    }
+
+    /**
+     * Create the native libthrift protocol factory matching the thrift
+     * protocol formats, used as the baseline for the providence protocol
+     * serializers.
+     *
+     * @return The protocol factory, or null if not a thrift protocol format.
+     */
+    public TProtocolFactory createThriftProtocolFactory() {
+        switch (this) {
+            case binary_protocol:
+                return new TBinaryProtocol.Factory(false, false);
+            case compact_protocol:
+                return new TCompactProtocol.Factory();
+            case json_protocol:
+                return new TJSONProtocol.Factory();
+            case simple_json_protocol:
+                return new TSimpleJSONProtocol.Factory();
+            case tuple_protocol:
+                return new TTupleProtocol.Factory();
+            default:
+                return null;
+        }
+    }
+}
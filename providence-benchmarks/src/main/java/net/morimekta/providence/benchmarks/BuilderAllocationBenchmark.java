@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks;
+
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.Containers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark building and deserializing sparse {@link Containers} messages,
+ * where only one of the many container fields is set. The interesting
+ * number is <code>gc.alloc.rate.norm</code>, which shows the cost of the
+ * builder itself, as the message content is tiny.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BuilderAllocationBenchmark {
+    @Param({"binary",
+            "fast_binary",
+            "json"})
+    public BenchmarkFormat format;
+
+    private Serializer serializer;
+    private byte[]     serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SerializerException {
+        serializer = format.createSerializer();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(out, sparse());
+        serialized = out.toByteArray();
+    }
+
+    @Benchmark
+    public Containers._Builder emptyBuilder() {
+        return Containers.builder();
+    }
+
+    @Benchmark
+    public Containers build() {
+        return sparse();
+    }
+
+    @Benchmark
+    public Containers deserialize() throws IOException, SerializerException {
+        return serializer.deserialize(new ByteArrayInputStream(serialized), Containers.kDescriptor);
+    }
+
+    private static Containers sparse() {
+        return Containers.builder()
+                         .addToIntegerList(1, 2, 3)
+                         .build();
+    }
+}
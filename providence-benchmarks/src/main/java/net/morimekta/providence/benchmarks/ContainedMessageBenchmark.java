@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package net.morimekta.providence.benchmarks;
+
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.benchmarks.util.Payloads;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.reflect.TypeLoader;
+import net.morimekta.providence.reflect.parser.ParseException;
+import net.morimekta.providence.reflect.parser.ThriftDocumentParser;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.Containers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark comparing the binary serialization of the generated
+ * {@link Containers} message with the same message type loaded from the
+ * thrift definition at runtime, as used by the converter and RPC tools.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ContainedMessageBenchmark {
+    public enum Model {
+        generated,
+        contained,
+    }
+
+    @Param
+    public Model model;
+
+    private Serializer              serializer;
+    private PStructDescriptor       descriptor;
+    private List<PMessage>          messages;
+    private byte[][]                serialized;
+    private ByteArrayOutputStream   out;
+    private int                     next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException, SerializerException, ParseException {
+        serializer = new BinarySerializer(false);
+        serialized = Payloads.serializeMessages(serializer, Payloads.messages());
+
+        if (model == Model.generated) {
+            descriptor = Containers.kDescriptor;
+        } else {
+            descriptor = loadContainersType();
+        }
+
+        int maxSize = 0;
+        messages = new ArrayList<>(serialized.length);
+        for (byte[] bytes : serialized) {
+            messages.add(serializer.deserialize(new ByteArrayInputStream(bytes), descriptor));
+            maxSize = Math.max(maxSize, bytes.length);
+        }
+        out = new ByteArrayOutputStream(maxSize);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public int serialize() throws IOException, SerializerException {
+        out.reset();
+        return serializer.serialize(out, messages.get(nextIndex()));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public PMessage deserialize() throws IOException, SerializerException {
+        return serializer.deserialize(new ByteArrayInputStream(serialized[nextIndex()]), descriptor);
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) % Payloads.NUM_MESSAGES;
+        return i;
+    }
+
+    /**
+     * Load the containers type from the thrift definition the generated
+     * class was generated from.
+     */
+    private static PStructDescriptor loadContainersType() throws IOException, ParseException {
+        File tmp = Files.createTempDirectory("providence-bench").toFile();
+        File file = new File(tmp, "test.thrift");
+        try (InputStream in = ContainedMessageBenchmark.class.getResourceAsStream("/tests/test.thrift")) {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        TypeLoader loader = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        loader.load(file);
+        PStructDescriptor descriptor = (PStructDescriptor) loader.getRegistry().getDeclaredType("test.Containers");
+
+        file.delete();
+        tmp.delete();
+        return descriptor;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks;
+
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.benchmarks.util.NonMarkableInputStream;
+import net.morimekta.providence.benchmarks.util.Payloads;
+import net.morimekta.providence.benchmarks.util.SerializedSizeProfiler;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.ContainerService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark deserializing a single <code>ContainerService.load</code>
+ * request call per operation. The simple JSON protocol is left out, as it
+ * cannot be read back.
+ * <p>
+ * Each format is read both from a stream that supports mark and reset,
+ * and from one that does not, since some deserializers read them differently.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DeserializeServiceCallBenchmark {
+    @Param({"binary",
+            "fast_binary",
+            "json",
+            "json_named_enums",
+            "json_named",
+            "json_pretty",
+            "fast_json",
+            "fast_json_named_enums",
+            "fast_json_named",
+            "pretty",
+            "binary_protocol",
+            "compact_protocol",
+            "json_protocol",
+            "tuple_protocol"})
+    public BenchmarkFormat format;
+
+    private Serializer serializer;
+    private byte[][]   serialized;
+    private int        next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SerializerException {
+        serializer = format.createSerializer();
+        serialized = Payloads.serializeCalls(serializer, Payloads.serviceCalls());
+        SerializedSizeProfiler.record(Payloads.averageSize(serialized));
+    }
+
+    @Benchmark
+    public PServiceCall deserialize() throws IOException, SerializerException {
+        return serializer.deserialize(new ByteArrayInputStream(serialized[nextIndex()]), ContainerService.kDescriptor);
+    }
+
+    @Benchmark
+    public PServiceCall deserialize_nonMarkable() throws IOException, SerializerException {
+        return serializer.deserialize(new NonMarkableInputStream(serialized[nextIndex()]), ContainerService.kDescriptor);
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) % Payloads.NUM_MESSAGES;
+        return i;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks;
+
+import net.morimekta.providence.benchmarks.util.Payloads;
+import net.morimekta.providence.benchmarks.util.SerializedSizeProfiler;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.Containers;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline benchmark serializing and deserializing the libthrift generated
+ * <code>Containers</code> struct with the native libthrift protocols. The
+ * payloads are the same as for {@link SerializeMessageBenchmark} and
+ * {@link DeserializeMessageBenchmark}, so the results for the thrift
+ * protocol formats can be compared directly.
+ * <p>
+ * On setup the native output is read back with the providence serializer
+ * of the same format, and checked against the providence message, so both
+ * sides are known to handle the same content.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NativeThriftBenchmark {
+    @Param({"binary_protocol",
+            "compact_protocol",
+            "json_protocol",
+            "tuple_protocol"})
+    public BenchmarkFormat format;
+
+    private List<net.morimekta.test.thrift.Containers> messages;
+    private byte[][]                                   serialized;
+    private ByteArrayOutputStream                      out;
+    private TProtocol                                  writeProtocol;
+    private TMemoryInputTransport                      readTransport;
+    private TProtocol                                  readProtocol;
+    private int                                        next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SerializerException, TException {
+        TProtocolFactory factory = format.createThriftProtocolFactory();
+        List<Containers> providence = Payloads.messages();
+        messages = Payloads.thriftMessages(providence);
+
+        out = new ByteArrayOutputStream();
+        writeProtocol = factory.getProtocol(new TIOStreamTransport(out));
+        readTransport = new TMemoryInputTransport();
+        readProtocol = factory.getProtocol(readTransport);
+
+        Serializer serializer = format.createSerializer();
+        serialized = new byte[messages.size()][];
+        for (int i = 0; i < serialized.length; ++i) {
+            out.reset();
+            messages.get(i).write(writeProtocol);
+            serialized[i] = out.toByteArray();
+
+            Containers actual = serializer.deserialize(new ByteArrayInputStream(serialized[i]), Containers.kDescriptor);
+            if (!providence.get(i).equals(actual)) {
+                throw new IllegalStateException("Native " + format + " content of message " + i +
+                                                " does not match the providence message");
+            }
+        }
+        SerializedSizeProfiler.record(Payloads.averageSize(serialized));
+    }
+
+    @Benchmark
+    public int serialize() throws TException {
+        out.reset();
+        writeProtocol.reset();
+        messages.get(nextIndex()).write(writeProtocol);
+        return out.size();
+    }
+
+    @Benchmark
+    public net.morimekta.test.thrift.Containers deserialize() throws TException {
+        readTransport.reset(serialized[nextIndex()]);
+        readProtocol.reset();
+        net.morimekta.test.thrift.Containers containers = new net.morimekta.test.thrift.Containers();
+        containers.read(readProtocol);
+        return containers;
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) % Payloads.NUM_MESSAGES;
+        return i;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks;
+
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.benchmarks.util.Payloads;
+import net.morimekta.providence.benchmarks.util.SerializedSizeProfiler;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark serializing a single <code>ContainerService.load</code> request
+ * call per operation. The output buffer is reused between operations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerializeServiceCallBenchmark {
+    @Param
+    public BenchmarkFormat format;
+
+    private Serializer            serializer;
+    private List<PServiceCall>    calls;
+    private ByteArrayOutputStream out;
+    private int                   next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SerializerException {
+        serializer = format.createSerializer();
+        calls = Payloads.serviceCalls();
+
+        byte[][] serialized = Payloads.serializeCalls(serializer, calls);
+        SerializedSizeProfiler.record(Payloads.averageSize(serialized));
+
+        int maxSize = 0;
+        for (byte[] bytes : serialized) {
+            maxSize = Math.max(maxSize, bytes.length);
+        }
+        out = new ByteArrayOutputStream(maxSize);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public int serialize() throws IOException, SerializerException {
+        out.reset();
+        return serializer.serialize(out, calls.get(nextIndex()));
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) % Payloads.NUM_MESSAGES;
+        return i;
+    }
+}
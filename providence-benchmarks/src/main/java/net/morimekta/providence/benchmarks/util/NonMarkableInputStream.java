@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks.util;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Input stream over a byte array that does not support mark and reset,
+ * like most socket and decompressing streams. Used to benchmark the
+ * deserializers on streams they cannot put unread content back into.
+ */
+public class NonMarkableInputStream extends ByteArrayInputStream {
+    public NonMarkableInputStream(byte[] buf) {
+        super(buf);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
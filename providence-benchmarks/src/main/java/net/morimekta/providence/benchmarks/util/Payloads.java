@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks.util;
+
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.descriptor.PServiceMethod;
+import net.morimekta.providence.it.data.MessageGenerator;
+import net.morimekta.providence.it.data.RandomGenerator;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.thrift.TBinaryProtocolSerializer;
+import net.morimekta.test.providence.ContainerService;
+import net.morimekta.test.providence.Containers;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the benchmark payloads. The payloads are generated from a fixed
+ * seed, so all benchmark runs (and all formats) see the exact same content.
+ */
+public class Payloads {
+    /**
+     * Number of distinct messages each benchmark cycles through.
+     */
+    public static final int NUM_MESSAGES = 32;
+
+    private static final long SEED = 0x70726f76L;
+
+    /**
+     * Generate the message payloads.
+     *
+     * @return List of containers messages.
+     */
+    public static List<Containers> messages() {
+        MessageGenerator generator = new MessageGenerator(new RandomGenerator(new Random(SEED)));
+        List<Containers> out = new ArrayList<>(NUM_MESSAGES);
+        for (int i = 0; i < NUM_MESSAGES; ++i) {
+            out.add(generator.nextContainers());
+        }
+        return out;
+    }
+
+    /**
+     * Convert the messages to the libthrift generated structs with the same
+     * content, for the native thrift baseline.
+     *
+     * @param messages The messages to convert.
+     * @return List of thrift containers structs.
+     * @throws IOException If unable to convert the messages.
+     * @throws SerializerException If unable to serialize the messages.
+     * @throws TException If unable to read the thrift structs.
+     */
+    public static List<net.morimekta.test.thrift.Containers> thriftMessages(List<Containers> messages)
+            throws IOException, SerializerException, TException {
+        byte[][] serialized = serializeMessages(new TBinaryProtocolSerializer(false), messages);
+        List<net.morimekta.test.thrift.Containers> out = new ArrayList<>(serialized.length);
+        for (byte[] bytes : serialized) {
+            net.morimekta.test.thrift.Containers containers = new net.morimekta.test.thrift.Containers();
+            containers.read(new TBinaryProtocol(new TMemoryInputTransport(bytes), false, false));
+            out.add(containers);
+        }
+        return out;
+    }
+
+    /**
+     * Generate the service call payloads. Each call is a
+     * <code>ContainerService.load</code> request wrapping the message
+     * with the same index from {@link #messages()}.
+     *
+     * @return List of service calls.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<PServiceCall> serviceCalls() {
+        PServiceMethod method = ContainerService.kDescriptor.getMethod("load");
+        List<PServiceCall> out = new ArrayList<>(NUM_MESSAGES);
+        int sequence = 0;
+        for (Containers containers : messages()) {
+            PMessageBuilder builder = method.getRequestType().builder();
+            builder.set(1, containers);
+            PMessage request = (PMessage) builder.build();
+            out.add(new PServiceCall(method.getName(), PServiceCallType.CALL, ++sequence, request));
+        }
+        return out;
+    }
+
+    /**
+     * Serialize each of the messages to separate byte arrays.
+     *
+     * @param serializer The serializer to use.
+     * @param messages   The messages to serialize.
+     * @return The serialized messages.
+     * @throws IOException If unable to write the messages.
+     * @throws SerializerException If unable to serialize the messages.
+     */
+    public static byte[][] serializeMessages(Serializer serializer, List<Containers> messages)
+            throws IOException, SerializerException {
+        byte[][] out = new byte[messages.size()][];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < out.length; ++i) {
+            baos.reset();
+            serializer.serialize(baos, messages.get(i));
+            out[i] = baos.toByteArray();
+        }
+        return out;
+    }
+
+    /**
+     * Serialize each of the service calls to separate byte arrays.
+     *
+     * @param serializer The serializer to use.
+     * @param calls      The service calls to serialize.
+     * @return The serialized service calls.
+     * @throws IOException If unable to write the calls.
+     * @throws SerializerException If unable to serialize the calls.
+     */
+    @SuppressWarnings("unchecked")
+    public static byte[][] serializeCalls(Serializer serializer, List<PServiceCall> calls)
+            throws IOException, SerializerException {
+        byte[][] out = new byte[calls.size()][];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < out.length; ++i) {
+            baos.reset();
+            serializer.serialize(baos, calls.get(i));
+            out[i] = baos.toByteArray();
+        }
+        return out;
+    }
+
+    /**
+     * Get the average size of the serialized payloads.
+     *
+     * @param serialized The serialized payloads.
+     * @return The average number of bytes per payload.
+     */
+    public static double averageSize(byte[][] serialized) {
+        long total = 0;
+        for (byte[] bytes : serialized) {
+            total += bytes.length;
+        }
+        return (double) total / serialized.length;
+    }
+
+    private Payloads() {}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016, Providence Authors
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.benchmarks.util;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Profiler reporting the average serialized payload size per benchmark
+ * operation as <code>·serialized.size</code> in bytes/op. The benchmark
+ * states must {@link #record(double)} the size while setting up the trial.
+ * <p>
+ * Since internal profilers run in the same VM as the benchmark, this can
+ * be a simple static value.
+ */
+public class SerializedSizeProfiler implements InternalProfiler {
+    private static volatile double bytesPerOp = Double.NaN;
+
+    /**
+     * Record the payload size for the current benchmark trial.
+     *
+     * @param size The average number of bytes serialized or deserialized
+     *             per operation.
+     */
+    public static void record(double size) {
+        bytesPerOp = size;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Average serialized payload size per operation";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {}
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+                                                       IterationParams iterationParams,
+                                                       IterationResult result) {
+        double size = bytesPerOp;
+        if (Double.isNaN(size)) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new ScalarResult("·serialized.size", size, "B/op", AggregationPolicy.AVG));
+    }
+}
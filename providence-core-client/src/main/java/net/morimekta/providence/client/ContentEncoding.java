@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content encodings supported by the providence HTTP client and
+ * servlet. The encodings are in order of preference when negotiating from
+ * an <code>Accept-Encoding</code> header. Snappy is only available when the
+ * <code>org.iq80.snappy</code> library is on the class path.
+ */
+public enum ContentEncoding {
+    SNAPPY("x-snappy-framed"),
+    GZIP("gzip"),
+    DEFLATE("deflate"),
+    ;
+
+    /**
+     * Content smaller than this is not worth compressing.
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String name;
+
+    ContentEncoding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name of the encoding as used in HTTP headers.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return True if the encoding can be used.
+     */
+    public boolean isAvailable() {
+        return this != SNAPPY || SnappyHolder.AVAILABLE;
+    }
+
+    /**
+     * Wrap the output stream so content written to it is encoded. Closing
+     * the returned stream finishes the encoding and closes the wrapped
+     * stream.
+     *
+     * @param out The stream to write encoded content to.
+     * @return The encoding stream.
+     * @throws IOException If unable to create the stream.
+     */
+    public OutputStream encode(OutputStream out) throws IOException {
+        switch (this) {
+            case SNAPPY:
+                return SnappyStreams.encode(out);
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            default:
+                return new DeflaterOutputStream(out);
+        }
+    }
+
+    /**
+     * Wrap the input stream so encoded content is decoded when read.
+     *
+     * @param in The stream to read encoded content from.
+     * @return The decoding stream.
+     * @throws IOException If unable to create the stream.
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        switch (this) {
+            case SNAPPY:
+                return SnappyStreams.decode(in);
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            default:
+                return new InflaterInputStream(in);
+        }
+    }
+
+    /**
+     * @return The value for an Accept-Encoding header with all the
+     *         available encodings.
+     */
+    public static String acceptEncoding() {
+        StringBuilder builder = new StringBuilder();
+        for (ContentEncoding encoding : values()) {
+            if (encoding.isAvailable()) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(encoding.name);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Get available encoding by name.
+     *
+     * @param name The encoding name, e.g. from a Content-Encoding header.
+     * @return The encoding, or null if not known or not available.
+     */
+    public static ContentEncoding forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String lower = name.trim().toLowerCase(Locale.US);
+        for (ContentEncoding encoding : values()) {
+            if (encoding.name.equals(lower) && encoding.isAvailable()) {
+                return encoding;
+            }
+        }
+        // Old alias of gzip from the HTTP spec.
+        if (lower.equals("x-gzip")) {
+            return GZIP;
+        }
+        return null;
+    }
+
+    /**
+     * Find the best encoding from an Accept-Encoding header. The encoding
+     * with the highest quality value is chosen, and the order of preference
+     * decides between encodings with the same quality.
+     *
+     * @param acceptEncoding The Accept-Encoding header value.
+     * @return The encoding to use, or null if no content encoding should be
+     *         used.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        ContentEncoding best = null;
+        double bestQuality = 0.0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            ContentEncoding encoding = forName(parts[0]);
+            if (encoding == null) {
+                continue;
+            }
+            double quality = quality(parts);
+            if (quality > bestQuality ||
+                (quality > 0.0 && quality == bestQuality && encoding.ordinal() < best.ordinal())) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; ++i) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0.0;
+                }
+            }
+        }
+        return 1.0;
+    }
+
+    /**
+     * Checks if snappy is available, without loading any snappy classes.
+     */
+    private static class SnappyHolder {
+        private static final boolean AVAILABLE = isSnappyAvailable();
+
+        private static boolean isSnappyAvailable() {
+            try {
+                Class.forName("org.iq80.snappy.SnappyFramedOutputStream");
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Creates the snappy streams, so the snappy library is only loaded when
+     * actually used.
+     */
+    private static class SnappyStreams {
+        private static OutputStream encode(OutputStream out) throws IOException {
+            return new org.iq80.snappy.SnappyFramedOutputStream(out);
+        }
+
+        private static InputStream decode(InputStream in) throws IOException {
+            return new org.iq80.snappy.SnappyFramedInputStream(in, true);
+        }
+    }
+}
@@ -18,43 +18,152 @@
  */
 package net.morimekta.providence.client;
 
+import net.morimekta.providence.PAsyncClientHandler;
 import net.morimekta.providence.PClientHandler;
 import net.morimekta.providence.PMessage;
 import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.mio.IOMessageWriter;
+import net.morimekta.providence.mio.MessageWriter;
 import net.morimekta.providence.serializer.Serializer;
 import net.morimekta.providence.serializer.SerializerException;
 import net.morimekta.providence.serializer.SerializerProvider;
+import net.morimekta.providence.streams.MessageStreams;
+import net.morimekta.util.io.IOUtils;
 
 import com.google.api.client.http.ByteArrayContent;
 import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpEncoding;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
 import com.google.api.client.http.HttpResponse;
+import com.google.api.client.util.StreamingContent;
 
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 /**
  * HTTP client handler using the google HTTP client interface.
+ * <p>
+ * The handler can optionally batch calls. In batch mode calls made within
+ * the batch window, or until {@link #flush()} is called, are sent together
+ * as one HTTP request. The request has the {@link #BATCH_HEADER} header with
+ * the number of calls, and the body holds the calls one after another. The
+ * replies are matched to the calls by sequence number, so calls from clients
+ * sharing the handler can be batched together. Batches with only one call
+ * are sent as normal requests.
+ * <p>
+ * The handler asks for compressed responses with all the available content
+ * encodings, see {@link ContentEncoding}. Requests are only compressed if a
+ * request encoding is given, and the request is not too small to be worth
+ * compressing.
  */
-public class HttpClientHandler implements PClientHandler {
+public class HttpClientHandler implements PClientHandler, PAsyncClientHandler, Closeable {
+    /**
+     * Header with the number of calls in a batch request.
+     */
+    public static final String BATCH_HEADER = "X-Providence-Batch";
+
     private final HttpRequestFactory   factory;
     private final SerializerProvider   serializerProvider;
     private final Serializer           requestSerializer;
     private final Supplier<GenericUrl> urlSupplier;
+    private final long                 batchWindow;
+    private final int                  maxBatchSize;
+    private final ExecutorService      sender;
+    private final ContentEncoding      requestEncoding;
+
+    private List<PendingCall> batch;
+    private boolean           closed;
 
     public HttpClientHandler(Supplier<GenericUrl> urlSupplier, HttpRequestFactory factory, SerializerProvider serializerProvider) {
+        this(urlSupplier, factory, serializerProvider, -1L, 1);
+    }
+
+    /**
+     * Create a HTTP client handler that batches calls.
+     *
+     * @param urlSupplier The URL supplier.
+     * @param factory The HTTP request factory.
+     * @param serializerProvider Provider of serializers.
+     * @param batchWindow Time in milliseconds to wait for more calls before
+     *                    a batch is sent. If 0, async calls are only sent
+     *                    when {@link #flush()} is called or the batch is
+     *                    full, and synchronous calls are sent directly. If
+     *                    negative, calls are not batched.
+     * @param maxBatchSize The max number of calls in a batch.
+     */
+    public HttpClientHandler(Supplier<GenericUrl> urlSupplier,
+                             HttpRequestFactory factory,
+                             SerializerProvider serializerProvider,
+                             long batchWindow,
+                             int maxBatchSize) {
+        this(urlSupplier, factory, serializerProvider, batchWindow, maxBatchSize, null);
+    }
+
+    /**
+     * Create a HTTP client handler that batches calls, and compresses the
+     * requests. The server must support the request encoding.
+     *
+     * @param urlSupplier The URL supplier.
+     * @param factory The HTTP request factory.
+     * @param serializerProvider Provider of serializers.
+     * @param batchWindow Time in milliseconds to wait for more calls before
+     *                    a batch is sent, see above.
+     * @param maxBatchSize The max number of calls in a batch.
+     * @param requestEncoding The encoding to compress requests with, or null
+     *                        to not compress requests.
+     */
+    public HttpClientHandler(Supplier<GenericUrl> urlSupplier,
+                             HttpRequestFactory factory,
+                             SerializerProvider serializerProvider,
+                             long batchWindow,
+                             int maxBatchSize,
+                             ContentEncoding requestEncoding) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid max batch size: " + maxBatchSize);
+        }
+
         this.urlSupplier = urlSupplier;
         this.factory = factory;
         this.serializerProvider = serializerProvider;
         this.requestSerializer = serializerProvider.getDefault();
+        this.batchWindow = batchWindow;
+        this.maxBatchSize = maxBatchSize;
+        this.requestEncoding = requestEncoding;
+        this.batch = new ArrayList<>();
 
         if (requestSerializer == null) {
             throw new IllegalStateException("Serializer provider has no default serializer");
         }
+        if (requestEncoding != null && !requestEncoding.isAvailable()) {
+            throw new IllegalArgumentException("Request encoding " + requestEncoding.getName() + " not available");
+        }
+
+        if (batchWindow >= 0) {
+            this.sender = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "providence-http-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.sender = null;
+        }
     }
 
     @Override
@@ -65,14 +174,254 @@ public class HttpClientHandler implements PClientHandler {
     PServiceCall<Response, ResponseField> handleCall(PServiceCall<Request, RequestField> pServiceCall,
                                                      PService service)
             throws IOException, SerializerException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        requestSerializer.serialize(baos, pServiceCall);
+        if (batchWindow <= 0) {
+            return sendCall(pServiceCall, service);
+        }
 
-        ByteArrayContent content = new ByteArrayContent(requestSerializer.mimeType(), baos.toByteArray());
+        try {
+            return this.<Request, Response, RequestField, ResponseField>handleCallAsync(pServiceCall, service).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for reply");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof SerializerException) {
+                throw (SerializerException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
 
-        HttpRequest request = factory.buildPostRequest(urlSupplier.get(), content);
+    /**
+     * Handle a call asynchronously. If the handler does not batch calls, the
+     * call is made synchronously, and the returned future is already
+     * completed.
+     *
+     * @param call The call to make.
+     * @param service The service of the call.
+     * @return Future for the reply.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField>
+    CompletableFuture<PServiceCall<Response, ResponseField>> handleCallAsync(PServiceCall<Request, RequestField> call,
+                                                                             PService service) {
+        CompletableFuture future = new CompletableFuture<>();
+        if (sender == null) {
+            try {
+                future.complete(sendCall(call, service));
+            } catch (IOException | SerializerException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        List<PendingCall> full = null;
+        List<PendingCall> other = null;
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(new IOException("Client handler is closed"));
+                return future;
+            }
+            if (!batch.isEmpty() && batch.get(0).service != service) {
+                // Replies are read with the service of the batch, so calls
+                // to other services go in a separate batch.
+                other = takeBatch();
+            }
+            batch.add(new PendingCall(call, service, future));
+            if (batch.size() >= maxBatchSize) {
+                full = takeBatch();
+            } else if (batch.size() == 1 && batchWindow > 0) {
+                List<PendingCall> current = batch;
+                sender.execute(() -> sendAfterWindow(current));
+            }
+        }
+        if (other != null) {
+            sendLater(other);
+        }
+        if (full != null) {
+            sendLater(full);
+        }
+        return future;
+    }
+
+    /**
+     * Send the current batch of calls, and wait for the replies.
+     */
+    public void flush() {
+        List<PendingCall> calls;
+        synchronized (this) {
+            calls = takeBatch();
+        }
+        send(calls);
+    }
+
+    /**
+     * Send any pending calls, and stop accepting new calls.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        if (sender != null) {
+            flush();
+            sender.shutdown();
+        }
+    }
+
+    private List<PendingCall> takeBatch() {
+        List<PendingCall> calls = batch;
+        batch = new ArrayList<>();
+        return calls;
+    }
+
+    private void sendLater(List<PendingCall> calls) {
+        sender.execute(() -> send(calls));
+    }
+
+    private void sendAfterWindow(List<PendingCall> calls) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(batchWindow);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (batch != calls) {
+                // Already sent.
+                return;
+            }
+            takeBatch();
+        }
+        send(calls);
+    }
+
+    /**
+     * Send the calls and complete the futures with the replies.
+     */
+    @SuppressWarnings("unchecked")
+    private void send(List<PendingCall> calls) {
+        if (calls.isEmpty()) {
+            return;
+        }
+        try {
+            if (calls.size() == 1) {
+                PendingCall pending = calls.get(0);
+                pending.future.complete(sendCall(pending.call, pending.service));
+                return;
+            }
+
+            PService service = calls.get(0).service;
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            MessageWriter writer = new IOMessageWriter(baos, requestSerializer);
+            int expected = 0;
+            for (int i = 0; i < calls.size(); ++i) {
+                // The call index is used as sequence number, so calls from
+                // different clients can not collide.
+                PServiceCall call = calls.get(i).call;
+                writer.write(new PServiceCall<>(call.getMethod(), call.getType(), i, call.getMessage()));
+                if (call.getType() != PServiceCallType.ONEWAY) {
+                    ++expected;
+                }
+            }
+
+            HttpContent content = new ByteArrayContent(requestSerializer.mimeType(), baos.toByteArray());
+            HttpRequest request = buildRequest(content);
+            request.getHeaders().set(BATCH_HEADER, String.valueOf(calls.size()));
+            HttpResponse response = request.execute();
+
+            Serializer responseSerializer = responseSerializer(response);
+            InputStream in = responseContent(response);
+            for (int i = 0; i < expected; ++i) {
+                if (i > 0 && !responseSerializer.binaryProtocol() &&
+                    !IOUtils.skipUntil(in, MessageStreams.READABLE_ENTRY_SEP)) {
+                    break;
+                }
+                PServiceCall reply = responseSerializer.deserialize(in, service);
+                if (reply.getSequence() < 0 || reply.getSequence() >= calls.size()) {
+                    throw new IOException("Unknown sequence " + reply.getSequence() + " in batch reply");
+                }
+                PendingCall pending = calls.get(reply.getSequence());
+                pending.future.complete(new PServiceCall<>(reply.getMethod(),
+                                                           reply.getType(),
+                                                           pending.call.getSequence(),
+                                                           reply.getMessage()));
+            }
+
+            for (PendingCall pending : calls) {
+                if (pending.call.getType() == PServiceCallType.ONEWAY) {
+                    pending.future.complete(null);
+                } else {
+                    pending.future.completeExceptionally(new IOException(
+                            "No reply for " + pending.call.getMethod() + " in batch"));
+                }
+            }
+        } catch (IOException | SerializerException | RuntimeException e) {
+            for (PendingCall pending : calls) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private <Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField>
+    PServiceCall<Response, ResponseField> sendCall(PServiceCall<Request, RequestField> pServiceCall,
+                                                   PService service)
+            throws IOException, SerializerException {
+        HttpContent content;
+        int size = requestSerializer.serializedSize(pServiceCall);
+        if (size >= 0) {
+            content = new ServiceCallContent<>(requestSerializer, pServiceCall, size);
+        } else {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            requestSerializer.serialize(baos, pServiceCall);
+
+            content = new ByteArrayContent(requestSerializer.mimeType(), baos.toByteArray());
+        }
+
+        HttpRequest request = buildRequest(content);
         HttpResponse response = request.execute();
 
+        return responseSerializer(response).deserialize(responseContent(response), service);
+    }
+
+    private HttpRequest buildRequest(HttpContent content) throws IOException {
+        HttpRequest request = factory.buildPostRequest(urlSupplier.get(), content);
+        request.getHeaders().setAccept(requestSerializer.mimeType());
+        request.getHeaders().setAcceptEncoding(ContentEncoding.acceptEncoding());
+        if (requestEncoding != null && content.getLength() >= ContentEncoding.DEFAULT_THRESHOLD) {
+            request.setEncoding(new RequestEncoding(requestEncoding));
+        }
+        return request;
+    }
+
+    private InputStream responseContent(HttpResponse response) throws IOException {
+        InputStream in = response.getContent();
+        String encoding = response.getContentEncoding();
+        // The google HTTP client decodes gzip content by itself.
+        if (encoding != null && !encoding.contains("gzip")) {
+            ContentEncoding decoder = ContentEncoding.forName(encoding);
+            if (decoder == null) {
+                throw new IOException("Unknown content encoding in response: " + encoding);
+            }
+            in = decoder.decode(in);
+        }
+        return in;
+    }
+
+    private Serializer responseSerializer(HttpResponse response) throws IOException {
         Serializer responseSerializer = requestSerializer;
         if (response.getContentType() != null) {
             responseSerializer = serializerProvider.getSerializer(response.getContentType());
@@ -80,7 +429,102 @@ public class HttpClientHandler implements PClientHandler {
                 throw new IOException("Unknown mime type in response: " + response.getContentType());
             }
         }
+        return responseSerializer;
+    }
+
+    /**
+     * Compresses the request content while it is written.
+     */
+    private static class RequestEncoding implements HttpEncoding {
+        private final ContentEncoding encoding;
+
+        private RequestEncoding(ContentEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String getName() {
+            return encoding.getName();
+        }
+
+        @Override
+        public void encode(StreamingContent content, OutputStream out) throws IOException {
+            // The request stream is closed by the HTTP client, so only the
+            // encoder is finished here.
+            OutputStream encoded = encoding.encode(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int off, int len) throws IOException {
+                    out.write(bytes, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    out.flush();
+                }
+            });
+            content.writeTo(encoded);
+            encoded.close();
+        }
+    }
+
+    /**
+     * A call waiting to be sent in a batch.
+     */
+    private static class PendingCall {
+        private final PServiceCall      call;
+        private final PService          service;
+        private final CompletableFuture future;
+
+        private PendingCall(PServiceCall call, PService service, CompletableFuture future) {
+            this.call = call;
+            this.service = service;
+            this.future = future;
+        }
+    }
+
+    /**
+     * HTTP content with known length that serializes the service call
+     * directly to the request stream.
+     */
+    private static class ServiceCallContent<Message extends PMessage<Message, Field>, Field extends PField>
+            implements HttpContent {
+        private final Serializer                  serializer;
+        private final PServiceCall<Message, Field> call;
+        private final long                        length;
+
+        private ServiceCallContent(Serializer serializer, PServiceCall<Message, Field> call, long length) {
+            this.serializer = serializer;
+            this.call = call;
+            this.length = length;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
 
-        return responseSerializer.deserialize(response.getContent(), service);
+        @Override
+        public String getType() {
+            return serializer.mimeType();
+        }
+
+        @Override
+        public boolean retrySupported() {
+            return true;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                serializer.serialize(out, call);
+            } catch (SerializerException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
     }
 }
@@ -18,9 +18,15 @@
  */
 package net.morimekta.providence.server;
 
+import net.morimekta.providence.PMessage;
 import net.morimekta.providence.PProcessor;
 import net.morimekta.providence.PServiceCall;
 import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.client.ContentEncoding;
+import net.morimekta.providence.client.HttpClientHandler;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.descriptor.PStructDescriptor;
 import net.morimekta.providence.mio.IOMessageReader;
 import net.morimekta.providence.mio.IOMessageWriter;
 import net.morimekta.providence.mio.MessageReader;
@@ -30,32 +36,137 @@ import net.morimekta.providence.serializer.ApplicationExceptionType;
 import net.morimekta.providence.serializer.Serializer;
 import net.morimekta.providence.serializer.SerializerException;
 import net.morimekta.providence.serializer.SerializerProvider;
+import net.morimekta.providence.streams.MessageStreams;
+import net.morimekta.util.io.IOUtils;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A javax.servlet implementation for providence. Transfers data like the
  * Thrift's <code>org.apache.thrift.server.TServlet</code> server.
+ * <p>
+ * By default the request is read and the response is written directly on
+ * the container thread. The response is serialized straight into the
+ * response stream, so it is only held in the container response buffer,
+ * where it can still be replaced with an error response if serialization
+ * fails.
+ * <p>
+ * If created with an executor, and the servlet is registered with async
+ * support, the servlet uses the Servlet 3.1 non-blocking I/O. The request
+ * body is read with a {@link ReadListener}, the processor runs on the
+ * executor, and the response is written with a {@link WriteListener}. This
+ * way no container thread is held while waiting for slow clients or slow
+ * handlers. The response is serialized on the executor into a few chunks
+ * at a time, which are handed to the write listener as the client is ready
+ * for them, so large responses are never held in memory in full. The
+ * request body is limited to the max request size, and larger requests are
+ * rejected with <code>413 Request Entity Too Large</code>.
+ * <p>
+ * If the request has the {@link HttpClientHandler#BATCH_HEADER} header, the
+ * request body holds the given number of calls, and the replies are written
+ * to the response in the order they complete. Clients must match the replies
+ * to the calls by sequence number. If the servlet has an executor and the
+ * processor knows its service descriptor, the calls are processed in
+ * parallel, otherwise one by one in order.
+ * <p>
+ * The response serializer is chosen from the <code>Accept</code> header,
+ * and defaults to the serializer of the request. Request content with a
+ * supported <code>Content-Encoding</code> is decoded, and the response is
+ * compressed with the best encoding from <code>Accept-Encoding</code>, unless
+ * it is smaller than {@link ContentEncoding#DEFAULT_THRESHOLD}. The response
+ * is compressed while it is serialized.
  */
 public class ProvidenceServlet extends HttpServlet {
+    public static final int DEFAULT_MAX_REQUEST_SIZE = 16384000;  // 16M.
+
+    private static final int CHUNK_SIZE = 1 << 13;  // 8 kB
+    // Max number of response chunks waiting for the client.
+    private static final int MAX_QUEUED_CHUNKS = 8;
+
     private final PProcessor         processor;
     private final SerializerProvider serializerProvider;
+    private final Executor           executor;
+    private final int                maxRequestSize;
 
     public ProvidenceServlet(PProcessor processor, SerializerProvider serializerProvider) {
+        this(processor, serializerProvider, null);
+    }
+
+    /**
+     * Create a servlet that handles requests asynchronously when the servlet
+     * is registered with async support.
+     *
+     * @param processor The processor to handle requests.
+     * @param serializerProvider Provider of serializers.
+     * @param executor Executor to run the processor on, or null to always
+     *                 handle requests on the container thread.
+     */
+    public ProvidenceServlet(PProcessor processor, SerializerProvider serializerProvider, Executor executor) {
+        this(processor, serializerProvider, executor, DEFAULT_MAX_REQUEST_SIZE);
+    }
+
+    /**
+     * Create a servlet that handles requests asynchronously when the servlet
+     * is registered with async support.
+     *
+     * @param processor The processor to handle requests.
+     * @param serializerProvider Provider of serializers.
+     * @param executor Executor to run the processor on, or null to always
+     *                 handle requests on the container thread.
+     * @param maxRequestSize Max size of the request body in bytes, as sent
+     *                       by the client.
+     */
+    public ProvidenceServlet(PProcessor processor,
+                             SerializerProvider serializerProvider,
+                             Executor executor,
+                             int maxRequestSize) {
+        if (maxRequestSize < 1) {
+            throw new IllegalArgumentException("Invalid max request size: " + maxRequestSize);
+        }
         this.processor = processor;
         this.serializerProvider = serializerProvider;
+        this.executor = executor;
+        this.maxRequestSize = maxRequestSize;
     }
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (req.getContentLengthLong() > maxRequestSize) {
+            resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                           "Request too large: " + req.getContentLengthLong() + " > " + maxRequestSize);
+            return;
+        }
+
         Serializer requestSerializer = serializerProvider.getDefault();
         if (req.getContentType() != null) {
-            requestSerializer = serializerProvider.getSerializer(req.getContentType());
+            requestSerializer = serializerProvider.getSerializer(mediaType(req.getContentType()));
 
             if (requestSerializer == null) {
                 resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown content-type: " + req.getContentType());
@@ -64,37 +175,713 @@ public class ProvidenceServlet extends HttpServlet {
         }
 
         Serializer responseSerializer = requestSerializer;
-        String accept = resp.getHeader("Accept");
+        String accept = req.getHeader("Accept");
         if (accept != null) {
-            responseSerializer = serializerProvider.getSerializer(accept);
+            responseSerializer = acceptedSerializer(accept, requestSerializer);
             if (responseSerializer == null) {
-                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown accept content-type: " + accept);
+                resp.sendError(HttpServletResponse.SC_NOT_ACCEPTABLE, "Unknown accept content-type: " + accept);
                 return;
             }
-        } else {
-            accept = responseSerializer.mimeType();
         }
+        accept = responseSerializer.mimeType();
 
-        try {
-            MessageReader reader = new IOMessageReader(req.getInputStream(), requestSerializer);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            MessageWriter writer = new IOMessageWriter(baos, responseSerializer);
+        ContentEncoding requestEncoding = null;
+        String contentEncoding = req.getHeader("Content-Encoding");
+        if (contentEncoding != null && !contentEncoding.trim().equalsIgnoreCase("identity")) {
+            requestEncoding = ContentEncoding.forName(contentEncoding);
+            if (requestEncoding == null) {
+                resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Unknown content-encoding: " + contentEncoding);
+                return;
+            }
+        }
+        ContentEncoding responseEncoding = ContentEncoding.negotiate(req.getHeader("Accept-Encoding"));
 
+        int batchSize = 0;
+        String batch = req.getHeader(HttpClientHandler.BATCH_HEADER);
+        if (batch != null) {
             try {
-                processor.process(reader, writer);
-            } catch (IOException ie) {
-                writer.write(new PServiceCall<>(
-                        "", PServiceCallType.EXCEPTION, 0,
-                        new ApplicationException(ie.getMessage(),
-                                                 ApplicationExceptionType.INTERNAL_ERROR)));
+                batchSize = Integer.parseInt(batch.trim());
+            } catch (NumberFormatException e) {
+                batchSize = -1;
+            }
+            if (batchSize < 1) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid batch size: " + batch);
                 return;
             }
+        }
+
+        if (executor != null && req.isAsyncSupported()) {
+            new AsyncCall(req.startAsync(),
+                          requestSerializer,
+                          responseSerializer,
+                          accept,
+                          batchSize,
+                          requestEncoding,
+                          responseEncoding).start();
+            return;
+        }
+
+        try {
+            InputStream in = req.getInputStream();
+            if (requestEncoding != null) {
+                in = requestEncoding.decode(in);
+            }
+
             resp.setStatus(HttpServletResponse.SC_OK);
             resp.setContentType(accept);
-            resp.getOutputStream().write(baos.toByteArray());
+            if (batchSize > 0) {
+                resp.setHeader(HttpClientHandler.BATCH_HEADER, String.valueOf(batchSize));
+                ResponseStream out = new ResponseStream(resp, resp.getOutputStream(), responseEncoding);
+                processBatch(in, requestSerializer, out, responseSerializer, batchSize);
+                out.finish();
+            } else {
+                MessageReader reader = new IOMessageReader(in, requestSerializer);
+                MessageWriter writer = new ResponseWriter(resp, responseSerializer, responseEncoding);
+                process(reader, writer);
+            }
         } catch (IOException|SerializerException e) {
+            if (resp.isCommitted()) {
+                // Part of the response is already sent, so the error cannot
+                // be reported. Let the container abort the response.
+                throw new IOException("Failed after response was committed: " + e.getMessage(), e);
+            }
+            // Also clears the content encoding header.
+            resp.reset();
             resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error: " + e.getMessage());
         }
     }
+
+    /**
+     * Find the response serializer from the Accept header. The supported
+     * media type with the highest quality value is used, and the request
+     * serializer is used for any wildcard type.
+     *
+     * @return The serializer, or null if no accepted type is supported.
+     */
+    private Serializer acceptedSerializer(String accept, Serializer requestSerializer) {
+        Serializer best = null;
+        double bestQuality = 0.0;
+        for (String entry : accept.split(",")) {
+            String[] parts = entry.split(";");
+            String type = parts[0].trim();
+            Serializer serializer = type.endsWith("/*") ? requestSerializer : serializerProvider.getSerializer(type);
+            double quality = quality(parts);
+            if (serializer != null && quality > bestQuality) {
+                best = serializer;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; ++i) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0.0;
+                }
+            }
+        }
+        return 1.0;
+    }
+
+    /**
+     * @return The media type without parameters like charset.
+     */
+    private static String mediaType(String contentType) {
+        int semi = contentType.indexOf(';');
+        return (semi < 0 ? contentType : contentType.substring(0, semi)).trim();
+    }
+
+    private void process(MessageReader reader, MessageWriter writer) throws IOException, SerializerException {
+        try {
+            processor.process(reader, writer);
+        } catch (IOException ie) {
+            writer.write(new PServiceCall<>(
+                    "", PServiceCallType.EXCEPTION, 0,
+                    new ApplicationException(ie.getMessage(),
+                                             ApplicationExceptionType.INTERNAL_ERROR)));
+        }
+    }
+
+    /**
+     * Process a batch of calls, and write the replies to the output stream
+     * as they are ready.
+     */
+    private void processBatch(InputStream in, Serializer requestSerializer,
+                              OutputStream out, Serializer responseSerializer,
+                              int batchSize) throws IOException, SerializerException {
+        PService service = processor.getDescriptor();
+        if (executor == null || service == null) {
+            MessageWriter writer = new IOMessageWriter(out, responseSerializer);
+            for (int i = 0; i < batchSize; ++i) {
+                processor.process(new BatchReader(in, requestSerializer, i), writer);
+            }
+            return;
+        }
+
+        CompletionService<Buffer> replies = new ExecutorCompletionService<>(executor);
+        for (PServiceCall call : readBatch(in, requestSerializer, service, batchSize)) {
+            replies.submit(() -> processCall(call, responseSerializer));
+        }
+        try {
+            for (int i = 0; i < batchSize; ++i) {
+                replies.take().get().writeTo(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing batch");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Process a single call that has already been read.
+     *
+     * @return Buffer with the serialized reply, empty for oneway calls.
+     */
+    private Buffer processCall(PServiceCall call, Serializer serializer) throws IOException, SerializerException {
+        Buffer buffer = new Buffer();
+        MessageWriter writer = new IOMessageWriter(buffer, serializer);
+        try {
+            processor.process(new CallReader(call), writer);
+        } catch (IOException ie) {
+            buffer.reset();
+            writer.write(new PServiceCall<>(
+                    call.getMethod(), PServiceCallType.EXCEPTION, call.getSequence(),
+                    new ApplicationException(ie.getMessage(),
+                                             ApplicationExceptionType.INTERNAL_ERROR)));
+        }
+        return buffer;
+    }
+
+    private static List<PServiceCall> readBatch(InputStream in, Serializer serializer, PService service, int batchSize)
+            throws IOException, SerializerException {
+        List<PServiceCall> calls = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; ++i) {
+            calls.add(new BatchReader(in, serializer, i).read(service));
+        }
+        return calls;
+    }
+
+    /**
+     * Reader for a single call in a batch request. Calls after the first are
+     * preceded by an entry separator for non-binary serializers. Closing the
+     * reader does not close the request stream.
+     */
+    private static class BatchReader implements MessageReader {
+        private final InputStream in;
+        private final Serializer  serializer;
+        private final int         index;
+
+        private BatchReader(InputStream in, Serializer serializer, int index) {
+            this.in = in;
+            this.serializer = serializer;
+            this.index = index;
+        }
+
+        @Override
+        public <Message extends PMessage<Message, Field>, Field extends PField>
+        Message read(PStructDescriptor<Message, Field> descriptor) throws IOException, SerializerException {
+            skipSeparator();
+            return serializer.deserialize(in, descriptor);
+        }
+
+        @Override
+        public <Message extends PMessage<Message, Field>, Field extends PField>
+        PServiceCall<Message, Field> read(PService service) throws IOException, SerializerException {
+            skipSeparator();
+            return serializer.deserialize(in, service);
+        }
+
+        @Override
+        public void close() {}
+
+        private void skipSeparator() throws IOException {
+            if (index > 0 && !serializer.binaryProtocol() && !IOUtils.skipUntil(in, MessageStreams.READABLE_ENTRY_SEP)) {
+                throw new IOException("Missing call " + (index + 1) + " in batch");
+            }
+        }
+    }
+
+    /**
+     * Reader handing a call that has already been read to the processor.
+     */
+    private static class CallReader implements MessageReader {
+        private final PServiceCall call;
+
+        private CallReader(PServiceCall call) {
+            this.call = call;
+        }
+
+        @Override
+        public <Message extends PMessage<Message, Field>, Field extends PField>
+        Message read(PStructDescriptor<Message, Field> descriptor) throws SerializerException {
+            throw new SerializerException("Unable to read message from service call reader");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <Message extends PMessage<Message, Field>, Field extends PField>
+        PServiceCall<Message, Field> read(PService service) {
+            return call;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Message writer writing to the servlet response. If the serializer can
+     * calculate the serialized size, and the response is not compressed, the
+     * content length is set. Either way the message is written directly to
+     * the response stream.
+     */
+    private static class ResponseWriter implements MessageWriter {
+        private final HttpServletResponse response;
+        private final Serializer          serializer;
+        private final ContentEncoding     encoding;
+
+        private ResponseWriter(HttpServletResponse response, Serializer serializer, ContentEncoding encoding) {
+            this.response = response;
+            this.serializer = serializer;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public <Message extends PMessage<Message, Field>, Field extends PField>
+        int write(Message message) throws IOException, SerializerException {
+            int size = serializer.serializedSize(message);
+            if (size >= 0 && (encoding == null || size < ContentEncoding.DEFAULT_THRESHOLD)) {
+                response.setContentLength(size);
+                return serializer.serialize(response.getOutputStream(), message);
+            }
+            ResponseStream out = new ResponseStream(response, response.getOutputStream(), encoding);
+            int ret = new IOMessageWriter(out, serializer).write(message);
+            out.finish();
+            return ret;
+        }
+
+        @Override
+        public <Message extends PMessage<Message, Field>, Field extends PField>
+        int write(PServiceCall<Message, Field> call) throws IOException, SerializerException {
+            int size = serializer.serializedSize(call);
+            if (size >= 0 && (encoding == null || size < ContentEncoding.DEFAULT_THRESHOLD)) {
+                response.setContentLength(size);
+                return serializer.serialize(response.getOutputStream(), call);
+            }
+            ResponseStream out = new ResponseStream(response, response.getOutputStream(), encoding);
+            int ret = new IOMessageWriter(out, serializer).write(call);
+            out.finish();
+            return ret;
+        }
+
+        @Override
+        public void close() throws IOException {
+            response.getOutputStream().close();
+        }
+    }
+
+    /**
+     * Stream writing the servlet response content, compressing the content
+     * if it is large enough. Content is buffered until it reaches the
+     * compress threshold, so small responses are sent uncompressed with known
+     * content length. Larger responses are compressed while written. The
+     * response headers are set before any content is written to the target.
+     */
+    private static class ResponseStream extends OutputStream {
+        private final HttpServletResponse response;
+        private final OutputStream        target;
+        private final ContentEncoding     encoding;
+
+        private Buffer       buffer;
+        private OutputStream out;
+
+        private ResponseStream(HttpServletResponse response, OutputStream target, ContentEncoding encoding) {
+            this.response = response;
+            this.target = target;
+            this.encoding = encoding;
+            if (encoding == null) {
+                out = target;
+            } else {
+                buffer = new Buffer();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (buffer != null) {
+                buffer.write(b);
+                if (buffer.size() >= ContentEncoding.DEFAULT_THRESHOLD) {
+                    startEncoding();
+                }
+            } else {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (buffer != null) {
+                buffer.write(bytes, off, len);
+                if (buffer.size() >= ContentEncoding.DEFAULT_THRESHOLD) {
+                    startEncoding();
+                }
+            } else {
+                out.write(bytes, off, len);
+            }
+        }
+
+        /**
+         * Write any buffered content, and finish the compression. The
+         * stream can not be written to after it is finished.
+         *
+         * @throws IOException If unable to write the content.
+         */
+        private void finish() throws IOException {
+            if (buffer != null) {
+                response.setContentLength(buffer.size());
+                buffer.writeTo(target);
+                buffer = null;
+            } else if (encoding != null) {
+                // Closing the encoder finishes the compressed content.
+                out.close();
+            }
+        }
+
+        private void startEncoding() throws IOException {
+            response.setHeader("Content-Encoding", encoding.getName());
+            out = encoding.encode(target);
+            buffer.writeTo(out);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Byte array output stream giving access to the content without copying.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        private ByteArrayInputStream getInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * A single call handled with non-blocking I/O. The request body is read
+     * as it becomes available, and processed on the executor. The response is
+     * serialized on the executor into a queue of chunks, which are written as
+     * the client is ready to receive them. Serialization waits while the queue
+     * is full, so a slow client only holds a few chunks of the response.
+     */
+    private class AsyncCall implements ReadListener, WriteListener {
+        private final AsyncContext      context;
+        private final Serializer        requestSerializer;
+        private final Serializer        responseSerializer;
+        private final String            contentType;
+        private final int               batchSize;
+        private final ContentEncoding   requestEncoding;
+        private final ContentEncoding   responseEncoding;
+        private final Buffer            request;
+        private final byte[]            chunk;
+        private final Queue<ByteBuffer> chunks;
+
+        // The fields below are guarded by this.
+        private ServletInputStream  in;
+        private ServletOutputStream out;
+        private boolean             finished;
+        private boolean             done;
+
+        private AsyncCall(AsyncContext context,
+                          Serializer requestSerializer,
+                          Serializer responseSerializer,
+                          String contentType,
+                          int batchSize,
+                          ContentEncoding requestEncoding,
+                          ContentEncoding responseEncoding) {
+            this.context = context;
+            this.requestSerializer = requestSerializer;
+            this.responseSerializer = responseSerializer;
+            this.contentType = contentType;
+            this.batchSize = batchSize;
+            this.requestEncoding = requestEncoding;
+            this.responseEncoding = responseEncoding;
+            this.request = new Buffer();
+            this.chunk = new byte[CHUNK_SIZE];
+            this.chunks = new ArrayDeque<>();
+        }
+
+        private synchronized void start() throws IOException {
+            in = context.getRequest().getInputStream();
+            in.setReadListener(this);
+        }
+
+        @Override
+        public synchronized void onDataAvailable() throws IOException {
+            while (!done && in.isReady() && !in.isFinished()) {
+                int len = in.read(chunk);
+                if (len > 0) {
+                    if (request.size() + len > maxRequestSize) {
+                        fail(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                             "Request too large: more than " + maxRequestSize + " bytes");
+                        return;
+                    }
+                    request.write(chunk, 0, len);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void onAllDataRead() throws IOException {
+            if (done) {
+                return;
+            }
+            try {
+                executor.execute(this::process);
+            } catch (RejectedExecutionException e) {
+                fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Rejected: " + e.getMessage());
+            }
+        }
+
+        private void process() {
+            ChunkStream content = new ChunkStream();
+            ResponseStream response = new ResponseStream((HttpServletResponse) context.getResponse(),
+                                                         content,
+                                                         responseEncoding);
+            try {
+                if (batchSize == 0) {
+                    ProvidenceServlet.this.process(new IOMessageReader(requestStream(), requestSerializer),
+                                                   new IOMessageWriter(response, responseSerializer));
+                } else if (processor.getDescriptor() == null) {
+                    InputStream in = requestStream();
+                    MessageWriter writer = new IOMessageWriter(response, responseSerializer);
+                    for (int i = 0; i < batchSize; ++i) {
+                        processor.process(new BatchReader(in, requestSerializer, i), writer);
+                    }
+                } else {
+                    processBatch(response, content);
+                    return;
+                }
+                response.finish();
+                content.close();
+            } catch (IOException | SerializerException | RuntimeException e) {
+                fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Process the calls of the batch in parallel on the executor, and
+         * write each reply as soon as it is ready.
+         */
+        private void processBatch(ResponseStream response, ChunkStream content)
+                throws IOException, SerializerException {
+            List<PServiceCall> calls = readBatch(requestStream(), requestSerializer,
+                                                 processor.getDescriptor(), batchSize);
+            AtomicInteger remaining = new AtomicInteger(calls.size());
+            for (PServiceCall call : calls) {
+                CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return processCall(call, responseSerializer);
+                    } catch (IOException | SerializerException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor).whenComplete((reply, failure) -> writeReply(response, content, reply, failure, remaining));
+            }
+        }
+
+        /**
+         * Write a single reply of the batch, and finish the response after
+         * the last reply.
+         */
+        private void writeReply(ResponseStream response, ChunkStream content,
+                                Buffer reply, Throwable failure, AtomicInteger remaining) {
+            try {
+                if (failure != null) {
+                    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                    throw new IOException(cause.getMessage(), cause);
+                }
+                // Replies complete on different threads, but are written to
+                // the response one at a time.
+                synchronized (response) {
+                    reply.writeTo(response);
+                    if (remaining.decrementAndGet() == 0) {
+                        response.finish();
+                        content.close();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error: " + e.getMessage());
+            }
+        }
+
+        private InputStream requestStream() throws IOException {
+            if (requestEncoding != null) {
+                return requestEncoding.decode(request.getInputStream());
+            }
+            return request.getInputStream();
+        }
+
+        /**
+         * Queue a chunk of the response, and wait while the queue is full.
+         *
+         * @param content The response chunk.
+         * @throws IOException If the call has failed or been interrupted.
+         */
+        private synchronized void offer(ByteBuffer content) throws IOException {
+            while (!done && chunks.size() >= MAX_QUEUED_CHUNKS) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while writing response");
+                }
+            }
+            if (done) {
+                throw new IOException("Response aborted");
+            }
+            chunks.add(content);
+            drain();
+        }
+
+        private synchronized void finish() throws IOException {
+            finished = true;
+            drain();
+        }
+
+        /**
+         * Write queued chunks while the client is ready. Writing is started
+         * with the first chunk, so errors before that can still be sent as
+         * an error response.
+         */
+        private synchronized void drain() throws IOException {
+            if (done) {
+                return;
+            }
+            if (out == null) {
+                if (!chunks.isEmpty() || finished) {
+                    // Calls onWritePossible when ready.
+                    startWriting();
+                }
+                return;
+            }
+            while (out.isReady()) {
+                ByteBuffer content = chunks.poll();
+                if (content == null) {
+                    if (finished) {
+                        done = true;
+                        context.complete();
+                    }
+                    return;
+                }
+                out.write(content.array(), content.position(), content.remaining());
+                notifyAll();
+            }
+        }
+
+        private void startWriting() throws IOException {
+            HttpServletResponse resp = (HttpServletResponse) context.getResponse();
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentType(contentType);
+            if (batchSize > 0) {
+                resp.setHeader(HttpClientHandler.BATCH_HEADER, String.valueOf(batchSize));
+            }
+            out = resp.getOutputStream();
+            out.setWriteListener(this);
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error: " + throwable.getMessage());
+        }
+
+        /**
+         * Fail the call, and stop any ongoing serialization of the response.
+         * If writing the response has started, nothing more can be done, and
+         * the client gets an incomplete response.
+         */
+        private synchronized void fail(int status, String message) {
+            if (done) {
+                return;
+            }
+            done = true;
+            chunks.clear();
+            notifyAll();
+            try {
+                HttpServletResponse resp = (HttpServletResponse) context.getResponse();
+                if (out == null && !resp.isCommitted()) {
+                    // Also clears the content encoding header.
+                    resp.reset();
+                    resp.sendError(status, message);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Ignore, the response can not be sent.
+            } finally {
+                context.complete();
+            }
+        }
+
+        /**
+         * Stream collecting the response content in chunks. If the content
+         * is finished before the first chunk is full, the content length is
+         * set.
+         */
+        private class ChunkStream extends OutputStream {
+            private byte[]  current = new byte[CHUNK_SIZE];
+            private int     pos;
+            private boolean sent;
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (pos == current.length) {
+                    sendCurrent();
+                }
+                current[pos++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                while (len > 0) {
+                    if (pos == current.length) {
+                        sendCurrent();
+                    }
+                    int n = Math.min(len, current.length - pos);
+                    System.arraycopy(bytes, off, current, pos, n);
+                    pos += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (!sent) {
+                    context.getResponse().setContentLength(pos);
+                }
+                if (pos > 0) {
+                    offer(ByteBuffer.wrap(current, 0, pos));
+                }
+                finish();
+            }
+
+            private void sendCurrent() throws IOException {
+                offer(ByteBuffer.wrap(current));
+                current = new byte[CHUNK_SIZE];
+                pos = 0;
+                sent = true;
+            }
+        }
+    }
 }
@@ -0,0 +1,76 @@
+package net.morimekta.providence.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for content encoding negotiation and the encoding streams.
+ */
+public class ContentEncodingTest {
+    @Test
+    public void testNegotiate() {
+        assertNull(ContentEncoding.negotiate(null));
+        assertNull(ContentEncoding.negotiate(""));
+        assertNull(ContentEncoding.negotiate("identity, br"));
+        assertNull(ContentEncoding.negotiate("gzip;q=0"));
+
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("x-gzip"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.negotiate("gzip;q=0, deflate;q=0.1"));
+        assertEquals(ContentEncoding.SNAPPY, ContentEncoding.negotiate("gzip, deflate, x-snappy-framed"));
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("gzip, x-snappy-framed;q=0.9"));
+    }
+
+    @Test
+    public void testForName() {
+        assertEquals(ContentEncoding.GZIP, ContentEncoding.forName(" GZip "));
+        assertEquals(ContentEncoding.DEFLATE, ContentEncoding.forName("deflate"));
+        assertEquals(ContentEncoding.SNAPPY, ContentEncoding.forName("x-snappy-framed"));
+        assertNull(ContentEncoding.forName("br"));
+        assertNull(ContentEncoding.forName(null));
+    }
+
+    @Test
+    public void testAcceptEncoding() {
+        assertEquals("x-snappy-framed, gzip, deflate", ContentEncoding.acceptEncoding());
+    }
+
+    @Test
+    public void testEncodeDecode() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            builder.append("{\"text\":\"text ").append(i).append("\"}\n");
+        }
+        byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            try (OutputStream out = encoding.encode(encoded)) {
+                out.write(content);
+            }
+            assertTrue(encoding.getName(), encoded.size() < content.length / 2);
+
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            try (InputStream in = encoding.decode(new ByteArrayInputStream(encoded.toByteArray()))) {
+                byte[] buffer = new byte[1024];
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    decoded.write(buffer, 0, len);
+                }
+            }
+            assertEquals(encoding.getName(), builder.toString(), new String(decoded.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+}
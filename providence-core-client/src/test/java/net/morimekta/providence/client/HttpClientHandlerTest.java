@@ -1,7 +1,14 @@
 package net.morimekta.providence.client;
 
 import net.morimekta.providence.client.util.NoLogging;
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.serializer.BinarySerializer;
 import net.morimekta.providence.serializer.DefaultSerializerProvider;
+import net.morimekta.providence.serializer.JsonSerializer;
+import net.morimekta.providence.serializer.SerializerException;
 import net.morimekta.providence.serializer.SerializerProvider;
 import net.morimekta.providence.server.ProvidenceServlet;
 import net.morimekta.test.providence.srv.Failure;
@@ -9,8 +16,12 @@ import net.morimekta.test.providence.srv.MyService;
 import net.morimekta.test.providence.srv.Request;
 import net.morimekta.test.providence.srv.Response;
 
+import com.google.api.client.http.ByteArrayContent;
 import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.InputStreamContent;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -22,16 +33,34 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static net.morimekta.providence.testing.util.TestNetUtil.factory;
 import static net.morimekta.providence.testing.util.TestNetUtil.findFreePort;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -45,13 +74,29 @@ public class HttpClientHandlerTest {
     private static MyService.Iface impl;
     private static Server          server;
     private static SerializerProvider provider;
+    private static ExecutorService executor;
 
     private static final String ENDPOINT = "test";
+    private static final String ASYNC_ENDPOINT = "async";
+    private static final String PARALLEL_ENDPOINT = "parallel";
+    private static final String LIMITED_ENDPOINT = "limited";
 
     private static GenericUrl endpoint() {
         return new GenericUrl("http://localhost:" + port + "/" + ENDPOINT);
     }
 
+    private static GenericUrl asyncEndpoint() {
+        return new GenericUrl("http://localhost:" + port + "/" + ASYNC_ENDPOINT);
+    }
+
+    private static GenericUrl limitedEndpoint() {
+        return new GenericUrl("http://localhost:" + port + "/" + LIMITED_ENDPOINT);
+    }
+
+    private static GenericUrl parallelEndpoint() {
+        return new GenericUrl("http://localhost:" + port + "/" + PARALLEL_ENDPOINT);
+    }
+
     @BeforeClass
     public static void setUpServer() throws Exception {
         Log.setLog(new NoLogging());
@@ -66,6 +111,16 @@ public class HttpClientHandlerTest {
         handler.addServlet(new ServletHolder(new ProvidenceServlet(new MyService.Processor(impl), provider)),
                            "/" + ENDPOINT);
 
+        executor = Executors.newFixedThreadPool(2);
+        ServletHolder async = new ServletHolder(new ProvidenceServlet(new MyService.Processor(impl), provider, executor));
+        async.setAsyncSupported(true);
+        handler.addServlet(async, "/" + ASYNC_ENDPOINT);
+        ServletHolder limited = new ServletHolder(new ProvidenceServlet(new MyService.Processor(impl), provider, executor, 1024));
+        limited.setAsyncSupported(true);
+        handler.addServlet(limited, "/" + LIMITED_ENDPOINT);
+        handler.addServlet(new ServletHolder(new ProvidenceServlet(new MyService.Processor(impl), provider, executor)),
+                           "/" + PARALLEL_ENDPOINT);
+
         server.setHandler(handler);
         server.start();
     }
@@ -82,6 +137,7 @@ public class HttpClientHandlerTest {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        executor.shutdown();
     }
 
     @Test
@@ -135,4 +191,282 @@ public class HttpClientHandlerTest {
             assertEquals("HTTP method POST is not supported by this URL", ex.getStatusMessage());
         }
     }
+
+    @Test
+    public void testAsyncRequest() throws IOException, Failure {
+        when(impl.test(any(Request.class))).thenReturn(new Response("response"));
+
+        MyService.Iface client = new MyService.Client(new HttpClientHandler(
+                HttpClientHandlerTest::asyncEndpoint, factory(), provider));
+
+        Response response = client.test(new Request("request"));
+
+        assertNotNull(response);
+        assertEquals("{text:\"response\"}", response.asString());
+    }
+
+    @Test
+    public void testAsyncRequest_large() throws IOException, Failure {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; ++i) {
+            builder.append("text ").append(i).append('\n');
+        }
+        String text = builder.toString();
+        when(impl.test(any(Request.class))).thenAnswer(i -> new Response(i.getArgumentAt(0, Request.class).getText()));
+
+        MyService.Iface client = new MyService.Client(new HttpClientHandler(
+                HttpClientHandlerTest::asyncEndpoint, factory(), provider));
+
+        Response response = client.test(new Request(text));
+
+        assertEquals(text, response.getText());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAsyncRequest_tooLarge() throws IOException, SerializerException, Failure {
+        when(impl.test(any(Request.class))).thenAnswer(i -> new Response(i.getArgumentAt(0, Request.class).getText()));
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; ++i) {
+            builder.append("text ").append(i).append('\n');
+        }
+        PMessageBuilder request = MyService.kDescriptor.getMethod("test").getRequestType().builder();
+        request.set(1, new Request(builder.toString()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinarySerializer().serialize(out, new PServiceCall("test", PServiceCallType.CALL, 1, (PMessage) request.build()));
+        byte[] content = out.toByteArray();
+
+        // With content length.
+        HttpRequest post = factory().buildPostRequest(limitedEndpoint(), new ByteArrayContent(BinarySerializer.MIME_TYPE, content));
+        post.setThrowExceptionOnExecuteError(false);
+        assertEquals(413, post.execute().getStatusCode());
+
+        // Chunked, without content length.
+        post = factory().buildPostRequest(limitedEndpoint(), new InputStreamContent(BinarySerializer.MIME_TYPE, new ByteArrayInputStream(content)));
+        post.setThrowExceptionOnExecuteError(false);
+        assertEquals(413, post.execute().getStatusCode());
+
+        // Small requests are still handled.
+        MyService.Iface client = new MyService.Client(new HttpClientHandler(
+                HttpClientHandlerTest::limitedEndpoint, factory(), provider));
+        assertEquals("short", client.test(new Request("short")).getText());
+    }
+
+    @Test
+    public void testAsyncRequest_exception() throws IOException, Failure {
+        when(impl.test(any(Request.class)))
+                .thenThrow(Failure.builder()
+                                  .setText("failure")
+                                  .build());
+
+        MyService.Iface client = new MyService.Client(new HttpClientHandler(
+                HttpClientHandlerTest::asyncEndpoint, factory(), provider));
+
+        try {
+            client.test(new Request("request"));
+            fail("No exception");
+        } catch (Failure ex) {
+            assertEquals("failure", ex.getText());
+        }
+    }
+
+    @Test
+    public void testBatch_explicit() throws IOException, Failure {
+        when(impl.test(any(Request.class))).thenAnswer(i -> new Response(i.getArgumentAt(0, Request.class).getText()));
+
+        HttpClientHandler handler = new HttpClientHandler(HttpClientHandlerTest::endpoint, factory(), provider, 0, 100);
+        MyService.AsyncIface client = new MyService.AsyncClient(handler);
+
+        CompletableFuture<Response> first = client.test(new Request("first"));
+        CompletableFuture<Void> ping = client.ping();
+        CompletableFuture<Response> second = client.test(new Request("second"));
+
+        verify(impl, times(0)).test(any(Request.class));
+
+        handler.flush();
+
+        assertEquals("first", first.join().getText());
+        assertEquals("second", second.join().getText());
+        ping.join();
+
+        verify(impl).test(new Request("first"));
+        verify(impl).test(new Request("second"));
+        verify(impl).ping();
+        handler.close();
+    }
+
+    @Test
+    public void testBatch_window() throws IOException, Failure {
+        testBatch(HttpClientHandlerTest::parallelEndpoint, provider);
+        testBatch(HttpClientHandlerTest::asyncEndpoint, provider);
+        testBatch(HttpClientHandlerTest::endpoint, new DefaultSerializerProvider(JsonSerializer.MIME_TYPE));
+        testBatch(HttpClientHandlerTest::asyncEndpoint, new DefaultSerializerProvider(JsonSerializer.MIME_TYPE));
+    }
+
+    @Test
+    public void testBatch_exception() throws IOException, Failure {
+        when(impl.test(any(Request.class))).thenAnswer(i -> {
+            Request request = i.getArgumentAt(0, Request.class);
+            if (request.getText().equals("fail")) {
+                throw new Failure("failure");
+            }
+            return new Response(request.getText());
+        });
+
+        try (HttpClientHandler handler = new HttpClientHandler(HttpClientHandlerTest::parallelEndpoint, factory(), provider, 0, 100)) {
+            MyService.AsyncIface client = new MyService.AsyncClient(handler);
+
+            CompletableFuture<Response> failure = client.test(new Request("fail"));
+            CompletableFuture<Response> success = client.test(new Request("success"));
+            handler.flush();
+
+            assertEquals("success", success.join().getText());
+            try {
+                failure.join();
+                fail("No exception");
+            } catch (CompletionException e) {
+                assertThat(e.getCause(), instanceOf(Failure.class));
+                assertEquals("failure", ((Failure) e.getCause()).getText());
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatch_completionOrder() throws Exception {
+        for (GenericUrl url : new GenericUrl[]{parallelEndpoint(), asyncEndpoint()}) {
+            // The first call is not done until after the second is.
+            CountDownLatch second = new CountDownLatch(1);
+            reset(impl);
+            when(impl.test(any(Request.class))).thenAnswer(i -> {
+                Request request = i.getArgumentAt(0, Request.class);
+                if (request.getText().equals("first")) {
+                    assertTrue(second.await(10, TimeUnit.SECONDS));
+                    Thread.sleep(100);
+                } else {
+                    second.countDown();
+                }
+                return new Response(request.getText());
+            });
+
+            BinarySerializer serializer = new BinarySerializer();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String[] texts = {"first", "second"};
+            for (int i = 0; i < texts.length; ++i) {
+                PMessageBuilder builder = MyService.kDescriptor.getMethod("test").getRequestType().builder();
+                builder.set(1, new Request(texts[i]));
+                serializer.serialize(out, new PServiceCall("test", PServiceCallType.CALL, i, (PMessage) builder.build()));
+            }
+
+            HttpRequest request = factory().buildPostRequest(url, new ByteArrayContent(BinarySerializer.MIME_TYPE, out.toByteArray()));
+            request.getHeaders().set(HttpClientHandler.BATCH_HEADER, "2");
+            InputStream in = request.execute().getContent();
+
+            // The replies are written in the order the calls complete.
+            PServiceCall reply = serializer.deserialize(in, MyService.kDescriptor);
+            assertEquals(1, reply.getSequence());
+            assertEquals("second", ((Response) reply.getMessage().get(0)).getText());
+            reply = serializer.deserialize(in, MyService.kDescriptor);
+            assertEquals(0, reply.getSequence());
+            assertEquals("first", ((Response) reply.getMessage().get(0)).getText());
+        }
+    }
+
+    private void testBatch(Supplier<GenericUrl> url, SerializerProvider serializerProvider) throws IOException, Failure {
+        reset(impl);
+        when(impl.test(any(Request.class))).thenAnswer(i -> new Response(i.getArgumentAt(0, Request.class).getText()));
+
+        try (HttpClientHandler handler = new HttpClientHandler(url, factory(), serializerProvider, 20, 8)) {
+            MyService.AsyncIface client = new MyService.AsyncClient(handler);
+
+            List<CompletableFuture<Response>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; ++i) {
+                responses.add(client.test(new Request("text " + i)));
+            }
+            for (int i = 0; i < 20; ++i) {
+                assertEquals("text " + i, responses.get(i).join().getText());
+            }
+
+            // And synchronous calls wait for the batch window.
+            assertEquals("sync", new MyService.Client(handler).test(new Request("sync")).getText());
+        }
+
+        verify(impl, times(21)).test(any(Request.class));
+    }
+
+    @Test
+    public void testCompression() throws IOException, Failure {
+        when(impl.test(any(Request.class))).thenAnswer(i -> new Response(i.getArgumentAt(0, Request.class).getText()));
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            builder.append("text ").append(i).append('\n');
+        }
+        String text = builder.toString();
+
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            for (Supplier<GenericUrl> url : new Supplier[]{(Supplier<GenericUrl>) HttpClientHandlerTest::endpoint,
+                                                           (Supplier<GenericUrl>) HttpClientHandlerTest::asyncEndpoint}) {
+                MyService.Iface client = new MyService.Client(new HttpClientHandler(
+                        url, factory(), provider, -1, 1, encoding));
+
+                assertEquals(text, client.test(new Request(text)).getText());
+                assertEquals("short", client.test(new Request("short")).getText());
+            }
+        }
+    }
+
+    @Test
+    public void testNegotiation() throws IOException, SerializerException, Failure {
+        when(impl.test(any(Request.class))).thenAnswer(i -> new Response(i.getArgumentAt(0, Request.class).getText()));
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            builder.append("text ").append(i).append('\n');
+        }
+        String text = builder.toString();
+
+        for (GenericUrl url : new GenericUrl[]{endpoint(), asyncEndpoint()}) {
+            // Large response is compressed.
+            HttpResponse response = post(url, text, "deflate");
+            assertEquals(JsonSerializer.MIME_TYPE, response.getContentType());
+            assertEquals("deflate", response.getContentEncoding());
+            assertEquals(text, readResponse(ContentEncoding.DEFLATE.decode(response.getContent()), new JsonSerializer()));
+
+            // Small response is not.
+            response = post(url, "short", "deflate");
+            assertNull(response.getContentEncoding());
+            assertEquals("short", readResponse(response.getContent(), new JsonSerializer()));
+
+            // Unknown encoding is not used.
+            response = post(url, text, "br");
+            assertNull(response.getContentEncoding());
+            assertEquals(text, readResponse(response.getContent(), new JsonSerializer()));
+        }
+
+        HttpRequest request = factory().buildPostRequest(endpoint(), new ByteArrayContent(BinarySerializer.MIME_TYPE, new byte[]{0}));
+        request.getHeaders().setAccept("text/html");
+        request.setThrowExceptionOnExecuteError(false);
+        assertEquals(406, request.execute().getStatusCode());
+    }
+
+    @SuppressWarnings("unchecked")
+    private HttpResponse post(GenericUrl url, String text, String acceptEncoding) throws IOException, SerializerException {
+        PMessageBuilder builder = MyService.kDescriptor.getMethod("test").getRequestType().builder();
+        builder.set(1, new Request(text));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinarySerializer().serialize(out, new PServiceCall("test", PServiceCallType.CALL, 1, (PMessage) builder.build()));
+
+        HttpRequest request = factory().buildPostRequest(url, new ByteArrayContent(BinarySerializer.MIME_TYPE, out.toByteArray()));
+        request.getHeaders().setAccept("text/html;q=0.5, application/json");
+        request.getHeaders().setAcceptEncoding(acceptEncoding);
+        return request.execute();
+    }
+
+    private String readResponse(InputStream in, JsonSerializer serializer) throws IOException, SerializerException {
+        PServiceCall reply = serializer.deserialize(in, MyService.kDescriptor);
+        assertEquals(PServiceCallType.REPLY, reply.getType());
+        return ((Response) reply.getMessage().get(0)).getText();
+    }
 }
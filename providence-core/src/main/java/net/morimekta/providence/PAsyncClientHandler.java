@@ -0,0 +1,33 @@
+package net.morimekta.providence;
+
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PService;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interface for handling a call request from an asynchronous client.
+ */
+@FunctionalInterface
+public interface PAsyncClientHandler {
+    /**
+     * Handle a service call without waiting for the response. Failures to
+     * send the call or read the response, including IOException and
+     * SerializerException, will complete the returned future exceptionally.
+     *
+     * @param call The request call.
+     * @param service The service to be handled.
+     * @param <Request> Request type.
+     * @param <Response> Response type.
+     * @param <RequestField> Request type.
+     * @param <ResponseField> Response type.
+     * @return Future for the response service call object. Completes with
+     *         null if there is no response (e.g. oneway).
+     */
+    <       Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField>
+    CompletableFuture<PServiceCall<Response, ResponseField>> handleCallAsync(PServiceCall<Request, RequestField> call,
+                                                                            PService service);
+}
@@ -66,6 +66,17 @@ public interface PMessage<Message extends PMessage<Message, Field>, Field extend
         return mutate().merge(other).build();
     }
 
+    /**
+     * Fields read from serialized content that are not known by the message
+     * descriptor. These are written back when the message is serialized
+     * with the same format as it was read from.
+     *
+     * @return The unknown fields, or null if none.
+     */
+    default PUnknownFields unknownFields() {
+        return null;
+    }
+
     /**
      * @return If the message is compact.
      */
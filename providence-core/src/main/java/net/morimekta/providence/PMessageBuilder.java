@@ -26,6 +26,8 @@ import net.morimekta.providence.descriptor.PStructDescriptor;
  * Base class for message builders.
  */
 public abstract class PMessageBuilder<T extends PMessage<T, F>, F extends PField> implements PBuilder<T> {
+    private PUnknownFields unknownFields;
+
     /**
      * Checks if the current set data is enough to make a valid struct. It
      * will check for all required fields, and if any are missing it will
@@ -92,6 +94,25 @@ public abstract class PMessageBuilder<T extends PMessage<T, F>, F extends PField
      */
     public abstract PMessageBuilder mutator(int key);
 
+    /**
+     * Set the fields not known by the message descriptor, to be kept on the
+     * built message. See {@link PMessage#unknownFields()}.
+     *
+     * @param unknownFields The unknown fields, or null to clear.
+     * @return The message builder.
+     */
+    public PMessageBuilder<T, F> setUnknownFields(PUnknownFields unknownFields) {
+        this.unknownFields = unknownFields;
+        return this;
+    }
+
+    /**
+     * @return The unknown fields, or null if none.
+     */
+    public PUnknownFields getUnknownFields() {
+        return unknownFields;
+    }
+
     /**
      * Get the descriptor for the message being built.
      *
@@ -1,5 +1,6 @@
 package net.morimekta.providence;
 
+import net.morimekta.providence.descriptor.PService;
 import net.morimekta.providence.mio.MessageReader;
 import net.morimekta.providence.mio.MessageWriter;
 
@@ -10,6 +11,17 @@ import java.io.IOException;
  */
 @FunctionalInterface
 public interface PProcessor {
+    /**
+     * Get the service handled by the processor. This makes it possible to
+     * read calls for the processor ahead of processing, e.g. for handling
+     * multiple calls in parallel.
+     *
+     * @return The service descriptor, or null if not known.
+     */
+    default PService getDescriptor() {
+        return null;
+    }
+
     /**
      * Process message read from reader, and write response to writer.
      *
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence;
+
+import net.morimekta.util.Binary;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Fields read from serialized content that are not known by the message
+ * descriptor. The fields are kept as serialized, and are only written back
+ * by serializers of the same format as the one that read them.
+ */
+public final class PUnknownFields implements Serializable {
+    private final String format;
+    private final Binary content;
+
+    /**
+     * Create unknown fields container.
+     *
+     * @param format The mime type of the format the fields are serialized with.
+     * @param content The serialized fields.
+     */
+    public PUnknownFields(String format, Binary content) {
+        this.format = format;
+        this.content = content;
+    }
+
+    /**
+     * The format of the serialized fields, given as the mime type of the
+     * serializer that read them.
+     *
+     * @return The format mime type.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * The serialized fields, including field headers, in the order they
+     * were read.
+     *
+     * @return The serialized fields.
+     */
+    public Binary getContent() {
+        return content;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o == null || !(o instanceof PUnknownFields)) return false;
+        PUnknownFields other = (PUnknownFields) o;
+        return Objects.equals(format, other.format) &&
+               Objects.equals(content, other.content);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(PUnknownFields.class, format, content);
+    }
+
+    @Override
+    public String toString() {
+        return "PUnknownFields{format=" + format + ", length=" + content.length() + "}";
+    }
+}
@@ -22,6 +22,9 @@ package net.morimekta.providence.descriptor;
 import net.morimekta.providence.PBuilder;
 import net.morimekta.providence.PBuilderFactory;
 import net.morimekta.providence.PType;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
 
 import com.google.common.collect.ImmutableList;
 
@@ -124,6 +127,33 @@ public class PList<Item> extends PContainer<List<Item>> {
         return provider(itemDesc, ImmutableListBuilder::new);
     }
 
+    /**
+     * Provider for lists that are stored unboxed if the item type is i32, i64
+     * or double, see {@link IntList}, {@link LongList} and {@link DoubleList}.
+     * Lists of other item types are built as normal immutable lists.
+     *
+     * @param itemDesc The item descriptor provider.
+     * @param <I> The item type.
+     * @return The list descriptor provider.
+     */
+    public static <I> PContainerProvider<List<I>, PList<I>> primitiveProvider(PDescriptorProvider itemDesc) {
+        return provider(itemDesc, () -> primitiveBuilder(itemDesc.descriptor()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <I> Builder<I> primitiveBuilder(PDescriptor itemType) {
+        switch (itemType.getType()) {
+            case I32:
+                return (Builder<I>) new IntList.Builder();
+            case I64:
+                return (Builder<I>) new LongList.Builder();
+            case DOUBLE:
+                return (Builder<I>) new DoubleList.Builder();
+            default:
+                return new ImmutableListBuilder<>();
+        }
+    }
+
     public static <I> PContainerProvider<List<I>, PList<I>> provider(PDescriptorProvider itemDesc,
                                                                      BuilderFactory<I> builderFactory) {
         return new PContainerProvider<>(new PList<>(itemDesc, builderFactory));
@@ -22,6 +22,8 @@ package net.morimekta.providence.descriptor;
 import net.morimekta.providence.PBuilder;
 import net.morimekta.providence.PBuilderFactory;
 import net.morimekta.providence.PType;
+import net.morimekta.providence.util.collect.PrimitiveKind;
+import net.morimekta.providence.util.collect.PrimitiveMap;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
@@ -209,6 +211,31 @@ public class PMap<Key, Value> extends PContainer<Map<Key, Value>> {
         return provider(keyDesc, itemDesc, LinkedHashMapBuilder::new);
     }
 
+    /**
+     * Provider for maps that are stored unboxed if both the key and value
+     * types are i32, i64 or double, see {@link PrimitiveMap}. Other maps are
+     * built as normal immutable maps.
+     *
+     * @param keyDesc The key descriptor provider.
+     * @param itemDesc The value descriptor provider.
+     * @param <K> The key type.
+     * @param <V> The value type.
+     * @return The map descriptor provider.
+     */
+    public static <K, V> PContainerProvider<Map<K, V>, PMap<K, V>> primitiveProvider(PDescriptorProvider keyDesc,
+                                                                                     PDescriptorProvider itemDesc) {
+        return provider(keyDesc, itemDesc, () -> primitiveBuilder(keyDesc.descriptor(), itemDesc.descriptor()));
+    }
+
+    private static <K, V> Builder<K, V> primitiveBuilder(PDescriptor keyType, PDescriptor itemType) {
+        PrimitiveKind keyKind = PrimitiveKind.forType(keyType.getType());
+        PrimitiveKind valueKind = PrimitiveKind.forType(itemType.getType());
+        if (keyKind == null || valueKind == null) {
+            return new ImmutableMapBuilder<>();
+        }
+        return new PrimitiveMap.Builder<>(keyKind, valueKind);
+    }
+
     private static <K, V> PContainerProvider<Map<K, V>, PMap<K, V>> provider(PDescriptorProvider keyDesc,
                                                                              PDescriptorProvider itemDesc,
                                                                              BuilderFactory<K, V> builderFactory) {
@@ -15,6 +15,7 @@ public class ApplicationException
     private final String mMessage;
     private final net.morimekta.providence.serializer.ApplicationExceptionType mId;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private ApplicationException(_Builder builder) {
@@ -23,6 +24,8 @@ public class ApplicationException
 
         mMessage = builder.mMessage;
         mId = builder.mId;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public ApplicationException(String pMessage,
@@ -32,6 +35,8 @@ public class ApplicationException
 
         mMessage = pMessage;
         mId = pId;
+
+        tUnknownFields = null;
     }
 
     private static String createMessage(String pMessage,
@@ -77,6 +82,11 @@ public class ApplicationException
         return hasId() ? mId : kDefaultId;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -121,10 +131,14 @@ public class ApplicationException
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    ApplicationException.class,
-                    _Field.MESSAGE, mMessage,
-                    _Field.ID, mId);
+            int _hash = 0x2d892298;
+            if (mMessage != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mMessage.hashCode());
+            }
+            if (mId != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mId.getValue());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -333,6 +347,8 @@ public class ApplicationException
                 optionals.set(1);
                 mId = base.mId;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
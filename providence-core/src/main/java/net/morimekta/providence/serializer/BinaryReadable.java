@@ -0,0 +1,30 @@
+package net.morimekta.providence.serializer;
+
+import net.morimekta.util.io.BinaryReader;
+
+import java.io.IOException;
+
+/**
+ * Message builder with generated binary deserialization of its fields.
+ * When the builder of a message implements this, the {@link BinarySerializer}
+ * reads known fields with {@link #readBinaryField(BinarySerializer, BinaryReader, int, byte)}
+ * instead of reading a boxed value and calling
+ * {@link net.morimekta.providence.PMessageBuilder#set(int, Object)}.
+ */
+public interface BinaryReadable {
+    /**
+     * Read a single field value into the builder. If the field is not known
+     * or the field type does not match the declared type, nothing is read,
+     * and the serializer handles the field as it would without this method.
+     *
+     * @param serializer The serializer used for nested messages and containers.
+     * @param reader The reader to read the field value from.
+     * @param key The field key.
+     * @param type The serialized type ID of the field.
+     * @return True if the field value was read.
+     * @throws IOException If unable to read the field value.
+     * @throws SerializerException If unable to deserialize the field value.
+     */
+    boolean readBinaryField(BinarySerializer serializer, BinaryReader reader, int key, byte type)
+            throws IOException, SerializerException;
+}
@@ -27,6 +27,7 @@ import net.morimekta.providence.PServiceCall;
 import net.morimekta.providence.PServiceCallType;
 import net.morimekta.providence.PType;
 import net.morimekta.providence.PUnion;
+import net.morimekta.providence.PUnknownFields;
 import net.morimekta.providence.descriptor.PContainer;
 import net.morimekta.providence.descriptor.PDescriptor;
 import net.morimekta.providence.descriptor.PEnumDescriptor;
@@ -37,17 +38,24 @@ import net.morimekta.providence.descriptor.PService;
 import net.morimekta.providence.descriptor.PServiceMethod;
 import net.morimekta.providence.descriptor.PSet;
 import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
+import net.morimekta.providence.util.collect.PrimitiveKind;
+import net.morimekta.providence.util.collect.PrimitiveMap;
 import net.morimekta.util.Binary;
 import net.morimekta.util.io.BigEndianBinaryReader;
-import net.morimekta.util.io.BigEndianBinaryWriter;
 import net.morimekta.util.io.BinaryReader;
-import net.morimekta.util.io.BinaryWriter;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -108,30 +116,55 @@ public class BinarySerializer extends Serializer {
     @Override
     public <Message extends PMessage<Message, Field>, Field extends PField>
     int serialize(OutputStream os, Message message) throws IOException, SerializerException {
-        BinaryWriter writer = new BigEndianBinaryWriter(os);
-        return writeMessage(writer, message);
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer.bigEndianWriter(), message);
+            return buffer.writeTo(os);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, Message message) throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer.bigEndianWriter(), message);
+            return buffer.writeTo(output);
+        }
     }
 
     @Override
     public <Message extends PMessage<Message, Field>, Field extends PField>
     int serialize(OutputStream os, PServiceCall<Message, Field> call)
             throws IOException, SerializerException {
-        BinaryWriter out = new BigEndianBinaryWriter(os);
-        byte[] method = call.getMethod().getBytes(UTF_8);
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer.bigEndianWriter(), call);
+            return buffer.writeTo(os);
+        }
+    }
 
-        int len = method.length;
-        if (versioned) {
-            len += out.writeInt(VERSION_1 | (byte) call.getType().key);
-            len += out.writeInt(method.length);
-            out.write(method);
-        } else {
-            len += out.writeInt(method.length);
-            out.write(method);
-            len += out.writeByte((byte) call.getType().key);
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer.bigEndianWriter(), call);
+            return buffer.writeTo(output);
         }
-        len += out.writeInt(call.getSequence());
-        len += writeMessage(out, call.getMessage());
-        return len;
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serializedSize(Message message) throws SerializerException {
+        return messageSize(message, new IdentityHashMap<>());
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serializedSize(PServiceCall<Message, Field> call) throws SerializerException {
+        // method name length + method name + sequence, and either version
+        // or call type.
+        int len = 8 + WriteBuffer.utf8Length(call.getMethod());
+        len += versioned ? 4 : 1;
+        return len + messageSize(call.getMessage(), new IdentityHashMap<>());
     }
 
     @Override
@@ -143,13 +176,54 @@ public class BinarySerializer extends Serializer {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    Message deserialize(ByteBuffer input, PStructDescriptor<Message, Field> descriptor)
+            throws SerializerException, IOException {
+        try (ByteBufferReader reader = new ByteBufferReader(input, ByteOrder.BIG_ENDIAN)) {
+            return readMessage(reader, descriptor, true);
+        }
+    }
+
+    @Override
     public <Message extends PMessage<Message, Field>, Field extends PField>
     PServiceCall<Message, Field> deserialize(InputStream is, PService service)
             throws SerializerException {
-        BinaryReader in = new BigEndianBinaryReader(is);
+        return readServiceCall(new BigEndianBinaryReader(is), service);
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(ByteBuffer input, PService service)
+            throws SerializerException {
+        try (ByteBufferReader in = new ByteBufferReader(input, ByteOrder.BIG_ENDIAN)) {
+            return readServiceCall(in, service);
+        }
+    }
+
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void writeServiceCall(WriteBuffer.BigEndianWriter out, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        String method = call.getMethod();
+        if (versioned) {
+            out.writeInt(VERSION_1 | (byte) call.getType().key);
+            out.writeInt(WriteBuffer.utf8Length(method));
+            out.writeUtf8(method);
+        } else {
+            out.writeInt(WriteBuffer.utf8Length(method));
+            out.writeUtf8(method);
+            out.writeByte((byte) call.getType().key);
+        }
+        out.writeInt(call.getSequence());
+        writeMessage(out, call.getMessage());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> readServiceCall(BinaryReader in, PService service)
+            throws SerializerException {
         String methodName = null;
         int sequence = 0;
+        boolean hasSequence = false;
         PServiceCallType type = null;
         try {
             int methodNameLen = in.expectInt();
@@ -174,6 +248,7 @@ public class BinarySerializer extends Serializer {
                 typeKey = in.expectByte();
             }
             sequence = in.expectInt();
+            hasSequence = true;
 
             type = PServiceCallType.findByKey(typeKey);
             PServiceMethod method = service.getMethod(methodName);
@@ -207,19 +282,37 @@ public class BinarySerializer extends Serializer {
                         .setSequenceNo(sequence);
             }
         } catch (IOException e) {
-            throw new SerializerException(e, e.getMessage())
+            SerializerException se = new SerializerException(e, e.getMessage())
                     .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
                     .setMethodName(methodName)
-                    .setCallType(type)
-                    .setSequenceNo(sequence);
+                    .setCallType(type);
+            if (hasSequence) {
+                se.setSequenceNo(sequence);
+            }
+            throw se;
         }
     }
 
-    private <Message extends PMessage<Message, Field>, Field extends PField>
-    int writeMessage(BinaryWriter writer, Message message)
+    /**
+     * Write a message to the writer, including the trailing stop byte. This
+     * is also used by generated {@link BinaryWritable} messages to write
+     * nested messages.
+     *
+     * @param writer The writer to write to.
+     * @param message The message to write.
+     * @param <Message> The message type.
+     * @param <Field> The field type.
+     * @return The number of bytes written.
+     * @throws IOException If unable to write the message.
+     * @throws SerializerException If unable to serialize the message.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int writeMessage(WriteBuffer.BigEndianWriter writer, Message message)
             throws IOException, SerializerException {
         int len = 0;
-        if (message instanceof PUnion) {
+        if (message instanceof BinaryWritable) {
+            len += ((BinaryWritable) message).writeBinaryFields(this, writer);
+        } else if (message instanceof PUnion) {
             PField field = ((PUnion) message).unionField();
             if (field != null) {
                 len += writeFieldSpec(writer, field.getDescriptor().getType().id, field.getKey());
@@ -238,10 +331,33 @@ public class BinarySerializer extends Serializer {
                 }
             }
         }
+        PUnknownFields unknown = message.unknownFields();
+        if (unknown != null && MIME_TYPE.equals(unknown.getFormat())) {
+            len += unknown.getContent().write(writer);
+        }
         len += writer.writeUInt8(PType.STOP.id);
         return len;
     }
 
+    /**
+     * Read a message from the reader, including the trailing stop byte. This
+     * is also used by generated {@link BinaryReadable} builders to read
+     * nested messages.
+     *
+     * @param input The reader to read from.
+     * @param descriptor The descriptor of the message to read.
+     * @param <Message> The message type.
+     * @param <Field> The field type.
+     * @return The read message.
+     * @throws IOException If unable to read the message.
+     * @throws SerializerException If unable to deserialize the message.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    Message readMessage(BinaryReader input, PStructDescriptor<Message, Field> descriptor)
+            throws SerializerException, IOException {
+        return readMessage(input, descriptor, false);
+    }
+
     private <Message extends PMessage<Message, Field>, Field extends PField>
     Message readMessage(BinaryReader input,
                         PStructDescriptor<Message, Field> descriptor,
@@ -251,20 +367,42 @@ public class BinarySerializer extends Serializer {
             return null;
         }
         PMessageBuilder<Message, Field> builder = descriptor.builder();
-        while (fieldInfo != null) {
-            PField field = descriptor.getField(fieldInfo.getId());
-            if (field != null) {
-                Object value = readFieldValue(input, fieldInfo, field.getDescriptor());
-                builder.set(field.getKey(), value);
-            } else {
-                if (readStrict) {
-                    throw new SerializerException(
-                            "Unknown field " + fieldInfo.getId() + " for type" + descriptor.getQualifiedName(null));
+        BinaryReadable readable = builder instanceof BinaryReadable ? (BinaryReadable) builder : null;
+        WriteBuffer unknown = null;
+        try {
+            while (fieldInfo != null) {
+                if (readable != null &&
+                    readable.readBinaryField(this, input, fieldInfo.getId(), fieldInfo.getType())) {
+                    fieldInfo = readFieldInfo(input);
+                    continue;
+                }
+
+                PField field = descriptor.getField(fieldInfo.getId());
+                if (field != null) {
+                    Object value = readFieldValue(input, fieldInfo, field.getDescriptor());
+                    builder.set(field.getKey(), value);
+                } else {
+                    if (readStrict) {
+                        throw new SerializerException(
+                                "Unknown field " + fieldInfo.getId() + " for type" + descriptor.getQualifiedName(null));
+                    }
+                    // Keep the unknown field as is, so it can be written back.
+                    if (unknown == null) {
+                        unknown = WriteBuffer.acquire();
+                    }
+                    writeFieldSpec(unknown.bigEndianWriter(), fieldInfo.getType(), fieldInfo.getId());
+                    copyFieldValue(input, unknown.bigEndianWriter(), fieldInfo.getType());
                 }
-                readFieldValue(input, fieldInfo, null);
-            }
 
-            fieldInfo = readFieldInfo(input);
+                fieldInfo = readFieldInfo(input);
+            }
+            if (unknown != null) {
+                builder.setUnknownFields(new PUnknownFields(MIME_TYPE, Binary.wrap(unknown.toByteArray())));
+            }
+        } finally {
+            if (unknown != null) {
+                unknown.close();
+            }
         }
 
         if (readStrict) {
@@ -292,6 +430,82 @@ public class BinarySerializer extends Serializer {
         }
     }
 
+    /**
+     * Copy a field value from stream without parsing it.
+     *
+     * @param in   The stream to consume.
+     * @param out  The writer to copy the value to.
+     * @param type The field type ID.
+     */
+    private void copyFieldValue(BinaryReader in, WriteBuffer.BigEndianWriter out, byte type)
+            throws IOException, SerializerException {
+        PType ptype = PType.findById(type);
+        if (ptype == null) {
+            throw new SerializerException("unknown data type: " + type);
+        }
+        switch (ptype) {
+            case VOID:
+                break;
+            case BOOL:
+            case BYTE:
+                out.writeByte(in.expectByte());
+                break;
+            case I16:
+                out.writeShort(in.expectShort());
+                break;
+            case ENUM:
+            case I32:
+                out.writeInt(in.expectInt());
+                break;
+            case I64:
+            case DOUBLE:
+                out.writeLong(in.expectLong());
+                break;
+            case STRING:
+            case BINARY: {
+                int len = in.expectUInt32();
+                out.writeUInt32(len);
+                out.write(in.expectBytes(len));
+                break;
+            }
+            case MESSAGE: {
+                FieldInfo fieldInfo;
+                while ((fieldInfo = readFieldInfo(in)) != null) {
+                    writeFieldSpec(out, fieldInfo.getType(), fieldInfo.getId());
+                    copyFieldValue(in, out, fieldInfo.getType());
+                }
+                out.writeUInt8(PType.STOP.id);
+                break;
+            }
+            case MAP: {
+                final byte keyT = in.expectByte();
+                final byte itemT = in.expectByte();
+                final int size = in.expectUInt32();
+                out.writeByte(keyT);
+                out.writeByte(itemT);
+                out.writeUInt32(size);
+                for (int i = 0; i < size; ++i) {
+                    copyFieldValue(in, out, keyT);
+                    copyFieldValue(in, out, itemT);
+                }
+                break;
+            }
+            case SET:
+            case LIST: {
+                final byte itemT = in.expectByte();
+                final int size = in.expectUInt32();
+                out.writeByte(itemT);
+                out.writeUInt32(size);
+                for (int i = 0; i < size; ++i) {
+                    copyFieldValue(in, out, itemT);
+                }
+                break;
+            }
+            default:
+                throw new SerializerException("unknown data type: " + type);
+        }
+    }
+
     /**
      * Read field info from stream. If this is the last field (field ID 0)
      * return null.
@@ -307,6 +521,22 @@ public class BinarySerializer extends Serializer {
         return new FieldInfo(in.expectUInt16(), type);
     }
 
+    /**
+     * Read a field value from stream. This is used by generated
+     * {@link BinaryReadable} builders to read container field values.
+     *
+     * @param in   The stream to consume.
+     * @param type The serialized type ID of the value.
+     * @param descriptor The type to generate content for.
+     * @return The field value, or null if the type does not match.
+     * @throws IOException If unable to read from stream.
+     * @throws SerializerException If unable to deserialize the value.
+     */
+    public Object readFieldValue(BinaryReader in, byte type, PDescriptor descriptor)
+            throws IOException, SerializerException {
+        return readFieldValue(in, new FieldInfo(0, type), descriptor);
+    }
+
     /**
      * Read a field value from stream.
      *
@@ -398,6 +628,11 @@ public class BinarySerializer extends Serializer {
                     out = new PMap.ImmutableMapBuilder<>();
                 }
 
+                Map<?, ?> primitive = readPrimitiveMap(in, out, keyT, itemT, size);
+                if (primitive != null) {
+                    return primitive;
+                }
+
                 FieldInfo keyInfo = new FieldInfo(1, keyT);
                 FieldInfo itemInfo = new FieldInfo(2, itemT);
                 for (int i = 0; i < size; ++i) {
@@ -453,6 +688,11 @@ public class BinarySerializer extends Serializer {
                     out = new PList.ImmutableListBuilder<>();
                 }
 
+                List<?> primitive = readPrimitiveList(in, out, itemT, size);
+                if (primitive != null) {
+                    return primitive;
+                }
+
                 FieldInfo itemInfo = new FieldInfo(0, itemT);
                 for (int i = 0; i < size; ++i) {
                     Object key = readFieldValue(in, itemInfo, entryType);
@@ -472,21 +712,111 @@ public class BinarySerializer extends Serializer {
 
     // --- WRITE METHODS ---
 
-    private int writeFieldSpec(BinaryWriter out, byte type, int key) throws IOException {
+    private int writeFieldSpec(WriteBuffer.BigEndianWriter out, byte type, int key) throws IOException {
         out.writeByte(type);
         out.writeUInt16(key);
         return 3;
     }
 
+    /**
+     * Read list items directly into a primitive list builder, without
+     * boxing the values.
+     *
+     * @param in The stream to consume.
+     * @param out The list builder.
+     * @param itemT The item type ID.
+     * @param size The number of items.
+     * @return The list, or null if not a primitive list builder for the
+     *         item type.
+     */
+    private static List<?> readPrimitiveList(BinaryReader in, PList.Builder<?> out, byte itemT, int size)
+            throws IOException {
+        if (out instanceof LongList.Builder && itemT == PType.I64.id) {
+            LongList.Builder longs = ((LongList.Builder) out).ensureCapacity(size);
+            for (int i = 0; i < size; ++i) {
+                longs.add(in.expectLong());
+            }
+            return longs.build();
+        } else if (out instanceof IntList.Builder && itemT == PType.I32.id) {
+            IntList.Builder ints = ((IntList.Builder) out).ensureCapacity(size);
+            for (int i = 0; i < size; ++i) {
+                ints.add(in.expectInt());
+            }
+            return ints.build();
+        } else if (out instanceof DoubleList.Builder && itemT == PType.DOUBLE.id) {
+            DoubleList.Builder doubles = ((DoubleList.Builder) out).ensureCapacity(size);
+            for (int i = 0; i < size; ++i) {
+                doubles.add(in.expectDouble());
+            }
+            return doubles.build();
+        }
+        return null;
+    }
+
+    /**
+     * Read map entries directly into a primitive map builder, without boxing
+     * the keys and values.
+     *
+     * @param in The stream to consume.
+     * @param out The map builder.
+     * @param keyT The key type ID.
+     * @param itemT The value type ID.
+     * @param size The number of entries.
+     * @return The map, or null if not a primitive map builder for the key
+     *         and value types.
+     */
+    private static Map<?, ?> readPrimitiveMap(BinaryReader in, PMap.Builder<?, ?> out, byte keyT, byte itemT, int size)
+            throws IOException {
+        if (!(out instanceof PrimitiveMap.Builder)) {
+            return null;
+        }
+        PrimitiveMap.Builder<?, ?> map = (PrimitiveMap.Builder<?, ?>) out;
+        if (map.getKeyKind().getType().id != keyT || map.getValueKind().getType().id != itemT) {
+            return null;
+        }
+        map.ensureCapacity(size);
+        for (int i = 0; i < size; ++i) {
+            long key = readPrimitiveBits(in, map.getKeyKind());
+            map.putBits(key, readPrimitiveBits(in, map.getValueKind()));
+        }
+        return map.build();
+    }
+
+    private static long readPrimitiveBits(BinaryReader in, PrimitiveKind kind) throws IOException {
+        switch (kind) {
+            case INT:
+                return in.expectInt();
+            case LONG:
+                return in.expectLong();
+            default:
+                return Double.doubleToLongBits(in.expectDouble());
+        }
+    }
+
+    private static int writePrimitiveBits(WriteBuffer.BigEndianWriter out, PrimitiveKind kind, long bits)
+            throws IOException {
+        switch (kind) {
+            case INT:
+                return out.writeInt((int) bits);
+            case LONG:
+                return out.writeLong(bits);
+            default:
+                return out.writeDouble(Double.longBitsToDouble(bits));
+        }
+    }
+
     /**
      * Write a field value to stream.
      *
      * @param out   The stream to write to.
      * @param value The value to write.
+     * @param descriptor The type of the value.
      * @return The number of bytes written.
+     * @throws IOException If unable to write to stream.
+     * @throws SerializerException If unable to serialize the value.
      */
-    private int writeFieldValue(BinaryWriter out, Object value, PDescriptor descriptor) throws IOException,
-                                                                                               SerializerException {
+    public int writeFieldValue(WriteBuffer.BigEndianWriter out, Object value, PDescriptor descriptor)
+            throws IOException, SerializerException {
         switch (descriptor.getType()) {
             case BOOL:
                 return out.writeByte(((Boolean) value) ? (byte) 1 : (byte) 0);
@@ -506,9 +836,9 @@ public class BinarySerializer extends Serializer {
                 return len + out.writeBinary(binary);
             }
             case STRING: {
-                Binary binary = Binary.wrap(value.toString().getBytes(StandardCharsets.UTF_8));
-                int len = out.writeUInt32(binary.length());
-                return len + out.writeBinary(binary);
+                CharSequence str = (CharSequence) value;
+                int len = out.writeUInt32(WriteBuffer.utf8Length(str));
+                return len + out.writeUtf8(str);
             }
             case ENUM:
                 return out.writeInt(((PEnumValue<?>) value).getValue());
@@ -519,6 +849,17 @@ public class BinarySerializer extends Serializer {
                 int len = out.writeByte(pMap.keyDescriptor().getType().id);
                 len += out.writeByte(pMap.itemDescriptor().getType().id);
                 len += out.writeUInt32(map.size());
+                if (value instanceof PrimitiveMap) {
+                    PrimitiveMap<?, ?> primitive = (PrimitiveMap<?, ?>) value;
+                    if (primitive.getKeyKind().getType() == pMap.keyDescriptor().getType() &&
+                        primitive.getValueKind().getType() == pMap.itemDescriptor().getType()) {
+                        for (int i = 0; i < primitive.size(); ++i) {
+                            len += writePrimitiveBits(out, primitive.getKeyKind(), primitive.keyBits(i));
+                            len += writePrimitiveBits(out, primitive.getValueKind(), primitive.valueBits(i));
+                        }
+                        return len;
+                    }
+                }
                 for (Map.Entry<Object, Object> entry : map.entrySet()) {
                     len += writeFieldValue(out, entry.getKey(), pMap.keyDescriptor());
                     len += writeFieldValue(out, entry.getValue(), pMap.itemDescriptor());
@@ -534,6 +875,26 @@ public class BinarySerializer extends Serializer {
                 int len = out.writeByte(pSet.itemDescriptor().getType().id);
                 len += out.writeUInt32(coll.size());
 
+                if (value instanceof LongList && pSet.itemDescriptor().getType() == PType.I64) {
+                    LongList longs = (LongList) value;
+                    for (int i = 0; i < longs.size(); ++i) {
+                        len += out.writeLong(longs.getLong(i));
+                    }
+                    return len;
+                } else if (value instanceof IntList && pSet.itemDescriptor().getType() == PType.I32) {
+                    IntList ints = (IntList) value;
+                    for (int i = 0; i < ints.size(); ++i) {
+                        len += out.writeInt(ints.getInt(i));
+                    }
+                    return len;
+                } else if (value instanceof DoubleList && pSet.itemDescriptor().getType() == PType.DOUBLE) {
+                    DoubleList doubles = (DoubleList) value;
+                    for (int i = 0; i < doubles.size(); ++i) {
+                        len += out.writeDouble(doubles.getDouble(i));
+                    }
+                    return len;
+                }
+
                 for (Object item : coll) {
                     len += writeFieldValue(out, item, pSet.itemDescriptor());
                 }
@@ -549,6 +910,127 @@ public class BinarySerializer extends Serializer {
         }
     }
 
+    // --- SIZE METHODS ---
+
+    /**
+     * Calculate the serialized size of a message. Sizes of nested messages
+     * are memoized, so shared message instances are only calculated once.
+     *
+     * @param message The message to calculate size of.
+     * @param sizes   Size of already calculated messages.
+     * @return The serialized size in bytes.
+     */
+    private int messageSize(PMessage<?, ?> message, Map<PMessage<?, ?>, Integer> sizes)
+            throws SerializerException {
+        Integer cached = sizes.get(message);
+        if (cached != null) {
+            return cached;
+        }
+
+        // The STOP field.
+        int len = 1;
+        if (message instanceof PUnion) {
+            PField field = ((PUnion<?, ?>) message).unionField();
+            if (field != null) {
+                len += 3 + valueSize(message.get(field.getKey()), field.getDescriptor(), sizes);
+            }
+        } else {
+            for (PField field : message.descriptor()
+                                       .getFields()) {
+                if (message.has(field.getKey())) {
+                    len += 3 + valueSize(message.get(field.getKey()), field.getDescriptor(), sizes);
+                }
+            }
+        }
+        PUnknownFields unknown = message.unknownFields();
+        if (unknown != null && MIME_TYPE.equals(unknown.getFormat())) {
+            len += unknown.getContent().length();
+        }
+        sizes.put(message, len);
+        return len;
+    }
+
+    /**
+     * Calculate the serialized size of a field value.
+     *
+     * @param value      The value to calculate size of.
+     * @param descriptor The value type descriptor.
+     * @param sizes      Size of already calculated messages.
+     * @return The serialized size in bytes.
+     */
+    private int valueSize(Object value, PDescriptor descriptor, Map<PMessage<?, ?>, Integer> sizes)
+            throws SerializerException {
+        switch (descriptor.getType()) {
+            case BOOL:
+            case BYTE:
+            case I16:
+            case I32:
+            case I64:
+            case DOUBLE:
+            case ENUM:
+                return fixedSize(descriptor.getType());
+            case BINARY:
+                return 4 + ((Binary) value).length();
+            case STRING:
+                return 4 + WriteBuffer.utf8Length((CharSequence) value);
+            case MAP: {
+                Map<?, ?> map = (Map<?, ?>) value;
+                PMap<?, ?> pMap = (PMap<?, ?>) descriptor;
+                int len = 6;
+                int keySize = fixedSize(pMap.keyDescriptor().getType());
+                int itemSize = fixedSize(pMap.itemDescriptor().getType());
+                if (keySize > 0 && itemSize > 0) {
+                    return len + map.size() * (keySize + itemSize);
+                }
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    len += keySize > 0 ? keySize : valueSize(entry.getKey(), pMap.keyDescriptor(), sizes);
+                    len += itemSize > 0 ? itemSize : valueSize(entry.getValue(), pMap.itemDescriptor(), sizes);
+                }
+                return len;
+            }
+            case SET:
+            case LIST: {
+                Collection<?> coll = (Collection<?>) value;
+                PContainer<?> pSet = (PContainer<?>) descriptor;
+                int len = 5;
+                int itemSize = fixedSize(pSet.itemDescriptor().getType());
+                if (itemSize > 0) {
+                    return len + coll.size() * itemSize;
+                }
+                for (Object item : coll) {
+                    len += valueSize(item, pSet.itemDescriptor(), sizes);
+                }
+                return len;
+            }
+            case MESSAGE:
+                return messageSize((PMessage<?, ?>) value, sizes);
+            default:
+                throw new SerializerException("Unhandled field type: " + descriptor.getType());
+        }
+    }
+
+    /**
+     * @param type The value type.
+     * @return The serialized size of fixed size types, or 0 if variable.
+     */
+    private static int fixedSize(PType type) {
+        switch (type) {
+            case BOOL:
+            case BYTE:
+                return 1;
+            case I16:
+                return 2;
+            case I32:
+            case ENUM:
+                return 4;
+            case I64:
+            case DOUBLE:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Field info data holder with convenience methods.
      */
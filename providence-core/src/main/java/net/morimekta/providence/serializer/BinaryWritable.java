@@ -0,0 +1,25 @@
+package net.morimekta.providence.serializer;
+
+import java.io.IOException;
+
+/**
+ * Message with generated binary serialization of its fields. When a
+ * message implements this, the {@link BinarySerializer} writes the fields
+ * with {@link #writeBinaryFields(BinarySerializer, WriteBuffer.BigEndianWriter)}
+ * instead of going through {@link net.morimekta.providence.PMessage#has(int)}
+ * and {@link net.morimekta.providence.PMessage#get(int)} for each field.
+ */
+public interface BinaryWritable {
+    /**
+     * Write the set fields of the message, including the field spec of each
+     * field. Unknown fields and the stop byte are written by the serializer.
+     *
+     * @param serializer The serializer used for nested messages and containers.
+     * @param writer The writer to write to.
+     * @return The number of bytes written.
+     * @throws IOException If unable to write the fields.
+     * @throws SerializerException If unable to serialize a field value.
+     */
+    int writeBinaryFields(BinarySerializer serializer, WriteBuffer.BigEndianWriter writer)
+            throws IOException, SerializerException;
+}
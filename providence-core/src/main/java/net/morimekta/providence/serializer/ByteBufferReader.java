@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import net.morimekta.util.io.BinaryReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary reader reading directly from a byte buffer. Works the same for
+ * heap, direct and memory mapped buffers, and reads fixed size values
+ * with the buffer accessors instead of one byte at a time.
+ * <p>
+ * The reader reads from a view of the buffer, so the byte order of the
+ * source buffer is not touched. The position of the source buffer is
+ * updated to after the consumed content when the reader is closed.
+ */
+final class ByteBufferReader extends BinaryReader {
+    private final ByteBuffer source;
+    private final ByteBuffer buffer;
+
+    /**
+     * Create a reader that reads from the buffer's position.
+     *
+     * @param source The buffer to read from.
+     * @param order  The byte order of the serialized content.
+     */
+    ByteBufferReader(ByteBuffer source, ByteOrder order) {
+        this(source, source.duplicate().order(order));
+    }
+
+    private ByteBufferReader(ByteBuffer source, ByteBuffer buffer) {
+        super(new Input(buffer));
+        this.source = source;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        len = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, len);
+        return len;
+    }
+
+    @Override
+    public void expect(byte[] bytes) throws IOException {
+        require(bytes.length);
+        buffer.get(bytes);
+    }
+
+    @Override
+    public byte expectByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public short expectShort() throws IOException {
+        require(2);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int expectInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long expectLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public double expectDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public byte[] expectBytes(int len) throws IOException {
+        byte[] bytes = new byte[len];
+        expect(bytes);
+        return bytes;
+    }
+
+    @Override
+    public int expectUInt8() throws IOException {
+        require(1);
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int expectUInt16() throws IOException {
+        require(2);
+        return buffer.getShort() & 0xffff;
+    }
+
+    @Override
+    public int expectUInt32() throws IOException {
+        return expectInt();
+    }
+
+    @Override
+    public int readIntVarint() throws IOException {
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        int b = buffer.get();
+        int out = b & 0x7f;
+        int shift = 0;
+        while ((b & 0x80) != 0) {
+            require(1);
+            b = buffer.get();
+            shift += 7;
+            out |= (b & 0x7f) << shift;
+        }
+        return out;
+    }
+
+    @Override
+    public long readLongVarint() throws IOException {
+        if (!buffer.hasRemaining()) {
+            return 0L;
+        }
+        int b = buffer.get();
+        long out = b & 0x7f;
+        int shift = 0;
+        while ((b & 0x80) != 0) {
+            require(1);
+            b = buffer.get();
+            shift += 7;
+            out |= (b & 0x7fL) << shift;
+        }
+        return out;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skip = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skip);
+        return skip;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        buffer.mark();
+    }
+
+    @Override
+    public void reset() {
+        buffer.reset();
+    }
+
+    /**
+     * @return The current read position in the buffer.
+     */
+    int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Update the source buffer position to after the content read.
+     */
+    @Override
+    public void close() {
+        source.position(buffer.position());
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            throw new IOException("Not enough data available in buffer: " + buffer.remaining() + " < " + bytes);
+        }
+    }
+
+    /**
+     * Stream view of the buffer, used by the reader methods not
+     * overridden here.
+     */
+    private static class Input extends InputStream {
+        private final ByteBuffer buffer;
+
+        private Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, len);
+            return len;
+        }
+    }
+}
@@ -27,25 +27,36 @@ import net.morimekta.providence.PServiceCall;
 import net.morimekta.providence.PServiceCallType;
 import net.morimekta.providence.PType;
 import net.morimekta.providence.PUnion;
+import net.morimekta.providence.PUnknownFields;
 import net.morimekta.providence.descriptor.PContainer;
 import net.morimekta.providence.descriptor.PDescriptor;
 import net.morimekta.providence.descriptor.PEnumDescriptor;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PList;
 import net.morimekta.providence.descriptor.PMap;
+import net.morimekta.providence.descriptor.PRequirement;
 import net.morimekta.providence.descriptor.PService;
 import net.morimekta.providence.descriptor.PServiceMethod;
 import net.morimekta.providence.descriptor.PSet;
 import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
+import net.morimekta.providence.util.collect.PrimitiveKind;
+import net.morimekta.providence.util.collect.PrimitiveMap;
 import net.morimekta.util.Binary;
 import net.morimekta.util.io.BinaryReader;
-import net.morimekta.util.io.BinaryWriter;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -80,22 +91,54 @@ public class FastBinarySerializer extends Serializer {
     @Override
     public <Message extends PMessage<Message, Field>, Field extends PField>
     int serialize(OutputStream os, Message message) throws IOException, SerializerException {
-        BinaryWriter out = new BinaryWriter(os);
-        return writeMessage(out, message);
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer.writer(), message);
+            return buffer.writeTo(os);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, Message message) throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer.writer(), message);
+            return buffer.writeTo(output);
+        }
     }
 
     @Override
     public <Message extends PMessage<Message, Field>, Field extends PField>
     int serialize(OutputStream os, PServiceCall<Message, Field> call)
             throws IOException, SerializerException {
-        BinaryWriter out = new BinaryWriter(os);
-        byte[] method = call.getMethod().getBytes(UTF_8);
-        int len = out.writeVarint(method.length << 3 | call.getType().key);
-        len += method.length;
-        out.write(method);
-        len += out.writeInt(call.getSequence());
-        len += writeMessage(out, call.getMessage());
-        return len;
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer.writer(), call);
+            return buffer.writeTo(os);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer.writer(), call);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serializedSize(Message message) throws SerializerException {
+        return messageSize(message, new IdentityHashMap<>());
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serializedSize(PServiceCall<Message, Field> call) throws SerializerException {
+        int method = WriteBuffer.utf8Length(call.getMethod());
+        int len = varintSize(method << 3 | call.getType().key) + method;
+        len += varintSize(call.getSequence());
+        return len + messageSize(call.getMessage(), new IdentityHashMap<>());
     }
 
     @Override
@@ -107,15 +150,221 @@ public class FastBinarySerializer extends Serializer {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    Message deserialize(ByteBuffer input, PStructDescriptor<Message, Field> descriptor)
+            throws SerializerException, IOException {
+        try (ByteBufferReader in = new ByteBufferReader(input, ByteOrder.LITTLE_ENDIAN)) {
+            return readMessage(in, descriptor);
+        }
+    }
+
+    /**
+     * Serialize a lazy read message. The original serialized bytes are
+     * written as is. Lazy messages are also written as is when passed as
+     * any other message, e.g. as part of a service call.
+     *
+     * @param os The output stream to write to.
+     * @param message The lazy message to write.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The number of bytes written.
+     * @throws IOException If unable to write to the stream.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(OutputStream os, LazyMessage<Message, Field> message) throws IOException {
+        byte[] bytes = message.bytes();
+        os.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Serialize a lazy read message into the byte buffer. See
+     * {@link #serialize(OutputStream, LazyMessage)}.
+     *
+     * @param output The buffer to write to.
+     * @param message The lazy message to write.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The number of bytes written.
+     * @throws IOException If not enough space in the buffer.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, LazyMessage<Message, Field> message) throws IOException {
+        byte[] bytes = message.bytes();
+        if (output.remaining() < bytes.length) {
+            throw new IOException("Not enough space in buffer: " + output.remaining() + " < " + bytes.length);
+        }
+        output.put(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Read a message lazily. Only primitive fields are decoded while
+     * reading, message and collection fields are decoded on first access.
+     * See {@link LazyMessage}.
+     *
+     * @param is The input stream to read from.
+     * @param descriptor The descriptor of the message to read.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The lazy message.
+     * @throws IOException If unable to read from the stream.
+     * @throws SerializerException If the content is not a valid message.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    LazyMessage<Message, Field> deserializeLazy(InputStream is, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
+        byte[] bytes;
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            skipMessage(new BinaryReader(new RecordingInputStream(is, buffer)));
+            bytes = buffer.toByteArray();
+        }
+        // The recorded bytes are not shared, so they are kept as is.
+        return readLazy(ByteBuffer.wrap(bytes), descriptor, bytes);
+    }
+
+    /**
+     * Read a message lazily from the byte buffer. The serialized message
+     * is copied out of the buffer, so the buffer may be reused after the
+     * call. See {@link #deserializeLazy(InputStream, PStructDescriptor)}.
+     *
+     * @param input The buffer to read from.
+     * @param descriptor The descriptor of the message to read.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The lazy message.
+     * @throws IOException If unable to read from the buffer.
+     * @throws SerializerException If the content is not a valid message.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    LazyMessage<Message, Field> deserializeLazy(ByteBuffer input, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
+        return readLazy(input, descriptor, null);
+    }
+
+    /**
+     * Read a message lazily from the byte buffer.
+     *
+     * @param input The buffer to read from.
+     * @param descriptor The descriptor of the message to read.
+     * @param owned The array backing the input if it is owned by the
+     *              message, or null if the content must be copied.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The lazy message.
+     * @throws IOException If unable to read from the buffer.
+     * @throws SerializerException If the content is not a valid message.
+     */
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    LazyMessage<Message, Field> readLazy(ByteBuffer input, PStructDescriptor<Message, Field> descriptor, byte[] owned)
+            throws IOException, SerializerException {
+        final int start = input.position();
+        final int end;
+        final boolean stopped;
+        PUnknownFields unknownFields = null;
+        Map<Integer, LazyMessage.Slot> slots = new HashMap<>();
+        WriteBuffer unknown = null;
+        try (ByteBufferReader in = new ByteBufferReader(input, ByteOrder.LITTLE_ENDIAN)) {
+            int tag;
+            int pos = in.position();
+            while ((tag = in.readIntVarint()) > STOP) {
+                int id = tag >>> 3;
+                int type = tag & 0x07;
+                Field field = descriptor.getField(id);
+                if (field == null) {
+                    if (readStrict) {
+                        throw new SerializerException(
+                                "Unknown field ID %d in type %s", id, descriptor.getQualifiedName(null));
+                    }
+                    if (unknown == null) {
+                        unknown = WriteBuffer.acquire();
+                    }
+                    unknown.writer().writeVarint(tag);
+                    copyValue(in, unknown.writer(), type);
+                } else if (type == MESSAGE || type == COLLECTION) {
+                    int offset = in.position() - start;
+                    skipValue(in, type);
+                    slots.put(id, new LazyMessage.Slot(type, offset, in.position() - start - offset));
+                } else {
+                    slots.put(id, new LazyMessage.Slot(readFieldValue(in, type, field.getDescriptor())));
+                }
+                pos = in.position();
+            }
+            // The reader returns STOP at the end of the buffer without
+            // consuming anything.
+            end = in.position();
+            stopped = end > pos;
+        } finally {
+            if (unknown != null) {
+                unknownFields = unknownFields(unknown);
+                unknown.close();
+            }
+        }
+
+        if (readStrict) {
+            StringBuilder missing = new StringBuilder();
+            for (Field field : descriptor.getFields()) {
+                if (field.getRequirement() == PRequirement.REQUIRED && !slots.containsKey(field.getKey())) {
+                    if (missing.length() > 0) {
+                        missing.append(",");
+                    }
+                    missing.append(field.getName());
+                }
+            }
+            if (missing.length() > 0) {
+                throw new SerializerException("Missing required fields %s in message %s",
+                                              missing, descriptor.getQualifiedName(null));
+            }
+        }
+
+        // Always keep a terminated message, so it can be written as is.
+        byte[] bytes;
+        if (owned != null && stopped && start == 0 && end == owned.length) {
+            bytes = owned;
+        } else {
+            bytes = new byte[end - start + (stopped ? 0 : 1)];
+            ByteBuffer content = input.duplicate();
+            content.position(start);
+            content.get(bytes, 0, end - start);
+        }
+        return new LazyMessage<>(this, descriptor, bytes, slots, unknownFields);
+    }
+
+    @Override
     public <Message extends PMessage<Message, Field>, Field extends PField>
     PServiceCall<Message, Field> deserialize(InputStream is, PService service)
             throws SerializerException {
+        return readServiceCall(new BinaryReader(is), service);
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(ByteBuffer input, PService service)
+            throws SerializerException {
+        try (ByteBufferReader in = new ByteBufferReader(input, ByteOrder.LITTLE_ENDIAN)) {
+            return readServiceCall(in, service);
+        }
+    }
+
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void writeServiceCall(WriteBuffer.Writer out, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        String method = call.getMethod();
+        out.writeVarint(WriteBuffer.utf8Length(method) << 3 | call.getType().key);
+        out.writeUtf8(method);
+        out.writeVarint(call.getSequence());
+        writeMessage(out, call.getMessage());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> readServiceCall(BinaryReader in, PService service)
+            throws SerializerException {
         String methodName = null;
         int sequence = 0;
+        boolean hasSequence = false;
         PServiceCallType type = null;
         try {
-            BinaryReader in = new BinaryReader(is);
             // Max method name length: 255 chars.
             int tag = in.readIntVarint();
             int len = tag >>> 3;
@@ -123,6 +372,7 @@ public class FastBinarySerializer extends Serializer {
 
             methodName = new String(in.expectBytes(len), UTF_8);
             sequence = in.readIntVarint();
+            hasSequence = true;
             type = PServiceCallType.findByKey(typeKey);
 
             if (type == null) {
@@ -147,17 +397,23 @@ public class FastBinarySerializer extends Serializer {
             Message message = readMessage(in, descriptor);
             return new PServiceCall<>(methodName, type, sequence, message);
         } catch (IOException e) {
-            throw new SerializerException(e, e.getMessage())
+            SerializerException se = new SerializerException(e, e.getMessage())
                     .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
                     .setCallType(type)
-                    .setMethodName(methodName)
-                    .setSequenceNo(sequence);
+                    .setMethodName(methodName);
+            if (hasSequence) {
+                se.setSequenceNo(sequence);
+            }
+            throw se;
         } catch (SerializerException e) {
-            throw new SerializerException(e, e.getMessage())
+            SerializerException se = new SerializerException(e, e.getMessage())
                     .setExceptionType(e.getExceptionType())
                     .setCallType(type)
-                    .setMethodName(methodName)
-                    .setSequenceNo(sequence);
+                    .setMethodName(methodName);
+            if (hasSequence) {
+                se.setSequenceNo(sequence);
+            }
+            throw se;
         }
     }
 
@@ -174,8 +430,15 @@ public class FastBinarySerializer extends Serializer {
     // --- MESSAGE ---
 
     private <Message extends PMessage<Message, Field>, Field extends PField>
-    int writeMessage(BinaryWriter out, Message message)
+    int writeMessage(WriteBuffer.Writer out, Message message)
             throws IOException, SerializerException {
+        if (message instanceof LazyMessage) {
+            // Lazy messages are immutable, so the original bytes are always
+            // the serialized message.
+            byte[] bytes = ((LazyMessage<?, ?>) message).bytes();
+            out.write(bytes);
+            return bytes.length;
+        }
         int len = 0;
         if (message instanceof PUnion) {
             PField field = ((PUnion) message).unionField();
@@ -190,6 +453,10 @@ public class FastBinarySerializer extends Serializer {
                 }
             }
         }
+        PUnknownFields unknown = message.unknownFields();
+        if (unknown != null && MIME_TYPE.equals(unknown.getFormat())) {
+            len += unknown.getContent().write(out);
+        }
         // write STOP field.
         return len + out.writeVarint(STOP);
     }
@@ -198,20 +465,35 @@ public class FastBinarySerializer extends Serializer {
     Message readMessage(BinaryReader in, PStructDescriptor<Message, Field> descriptor)
             throws SerializerException, IOException {
         PMessageBuilder<Message, Field> builder = descriptor.builder();
-        int tag;
-        while ((tag = in.readIntVarint()) > STOP) {
-            int id = tag >>> 3;
-            int type = tag & 0x07;
-            Field field = descriptor.getField(id);
-            if (field != null) {
-                Object value = readFieldValue(in, type, field.getDescriptor());
-                builder.set(field.getKey(), value);
-            } else {
-                if (readStrict) {
-                    throw new SerializerException(
-                            "Unknown field ID %d in type %s", id, descriptor.getQualifiedName(null));
+        WriteBuffer unknown = null;
+        try {
+            int tag;
+            while ((tag = in.readIntVarint()) > STOP) {
+                int id = tag >>> 3;
+                int type = tag & 0x07;
+                Field field = descriptor.getField(id);
+                if (field != null) {
+                    Object value = readFieldValue(in, type, field.getDescriptor());
+                    builder.set(field.getKey(), value);
+                } else {
+                    if (readStrict) {
+                        throw new SerializerException(
+                                "Unknown field ID %d in type %s", id, descriptor.getQualifiedName(null));
+                    }
+                    // Keep the unknown field as is, so it can be written back.
+                    if (unknown == null) {
+                        unknown = WriteBuffer.acquire();
+                    }
+                    unknown.writer().writeVarint(tag);
+                    copyValue(in, unknown.writer(), type);
                 }
-                readFieldValue(in, tag, null);
+            }
+            if (unknown != null) {
+                builder.setUnknownFields(unknownFields(unknown));
+            }
+        } finally {
+            if (unknown != null) {
+                unknown.close();
             }
         }
 
@@ -229,7 +511,7 @@ public class FastBinarySerializer extends Serializer {
     // --- FIELD VALUE ---
 
     @SuppressWarnings("unchecked")
-    private int writeFieldValue(BinaryWriter out, int key, PDescriptor descriptor, Object value)
+    private int writeFieldValue(WriteBuffer.Writer out, int key, PDescriptor descriptor, Object value)
             throws IOException, SerializerException {
         switch (descriptor.getType()) {
             case VOID: {
@@ -259,11 +541,10 @@ public class FastBinarySerializer extends Serializer {
                 return len + out.writeDouble((Double) value);
             }
             case STRING: {
-                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                CharSequence str = (CharSequence) value;
                 int len = out.writeVarint(key << 3 | BINARY);
-                len += out.writeVarint(bytes.length);
-                out.write(bytes);
-                return len + bytes.length;
+                len += out.writeVarint(WriteBuffer.utf8Length(str));
+                return len + out.writeUtf8(str);
             }
             case BINARY: {
                 Binary bytes = (Binary) value;
@@ -293,7 +574,7 @@ public class FastBinarySerializer extends Serializer {
 
 
     @SuppressWarnings("unchecked")
-    private int writeContainerEntry(BinaryWriter out, int typeid, PDescriptor descriptor, Object value)
+    private int writeContainerEntry(WriteBuffer.Writer out, int typeid, PDescriptor descriptor, Object value)
             throws IOException, SerializerException {
         switch (typeid) {
             case VARINT: {
@@ -312,10 +593,9 @@ public class FastBinarySerializer extends Serializer {
             }
             case BINARY: {
                 if (value instanceof CharSequence) {
-                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
-                    int len = out.writeVarint(bytes.length);
-                    out.write(bytes);
-                    return len + bytes.length;
+                    CharSequence str = (CharSequence) value;
+                    int len = out.writeVarint(WriteBuffer.utf8Length(str));
+                    return len + out.writeUtf8(str);
                 } else if (value instanceof Binary) {
                     Binary bytes = (Binary) value;
                     int len = out.writeVarint(bytes.length());
@@ -338,6 +618,14 @@ public class FastBinarySerializer extends Serializer {
 
                     int len = out.writeVarint(map.size() * 2);
                     len += out.writeVarint(ktype << 3 | vtype);
+                    if (isPrimitive(value, desc)) {
+                        PrimitiveMap<?, ?> primitive = (PrimitiveMap<?, ?>) value;
+                        for (int i = 0; i < primitive.size(); ++i) {
+                            len += writePrimitiveBits(out, primitive.getKeyKind(), primitive.keyBits(i));
+                            len += writePrimitiveBits(out, primitive.getValueKind(), primitive.valueBits(i));
+                        }
+                        return len;
+                    }
                     for (Map.Entry<Object, Object> entry : map.entrySet()) {
                         len += writeContainerEntry(out, ktype, desc.keyDescriptor(), entry.getKey());
                         len += writeContainerEntry(out, vtype, desc.itemDescriptor(), entry.getValue());
@@ -350,6 +638,25 @@ public class FastBinarySerializer extends Serializer {
 
                     int len = out.writeVarint(coll.size());
                     len    += out.writeVarint(vtype);
+                    if (value instanceof LongList && desc.itemDescriptor().getType() == PType.I64) {
+                        LongList longs = (LongList) value;
+                        for (int i = 0; i < longs.size(); ++i) {
+                            len += out.writeZigzag(longs.getLong(i));
+                        }
+                        return len;
+                    } else if (value instanceof IntList && desc.itemDescriptor().getType() == PType.I32) {
+                        IntList ints = (IntList) value;
+                        for (int i = 0; i < ints.size(); ++i) {
+                            len += out.writeZigzag(ints.getInt(i));
+                        }
+                        return len;
+                    } else if (value instanceof DoubleList && desc.itemDescriptor().getType() == PType.DOUBLE) {
+                        DoubleList doubles = (DoubleList) value;
+                        for (int i = 0; i < doubles.size(); ++i) {
+                            len += out.writeDouble(doubles.getDouble(i));
+                        }
+                        return len;
+                    }
                     for (Object item : coll) {
                         len += writeContainerEntry(out, vtype, desc.itemDescriptor(), item);
                     }
@@ -450,6 +757,12 @@ public class FastBinarySerializer extends Serializer {
                     final int tag = in.readIntVarint();
                     final int vtype = tag & 0x07;
                     final int ktype = tag > 0x07 ? tag >>> 3 : vtype;
+                    if (out instanceof PrimitiveMap.Builder) {
+                        Map<?, ?> primitive = readPrimitiveMap(in, (PrimitiveMap.Builder<?, ?>) out, ktype, vtype, len / 2);
+                        if (primitive != null) {
+                            return primitive;
+                        }
+                    }
                     for (int i = 0; i < len; ++i, ++i) {
                         Object key = readFieldValue(in, ktype, kt);
                         Object value = readFieldValue(in, vtype, vt);
@@ -462,6 +775,10 @@ public class FastBinarySerializer extends Serializer {
                     PList.Builder<Object> out = ct.builder();
                     final int len = in.readIntVarint();
                     final int vtype = in.readIntVarint() & 0x07;
+                    List<?> primitive = readPrimitiveList(in, out, vtype, len);
+                    if (primitive != null) {
+                        return primitive;
+                    }
                     for (int i = 0; i < len; ++i) {
                         out.add(readFieldValue(in, vtype, it));
                     }
@@ -485,6 +802,447 @@ public class FastBinarySerializer extends Serializer {
         }
     }
 
+    /**
+     * Decode a lazy message field value.
+     *
+     * @param bytes The serialized message.
+     * @param slot The field value slot.
+     * @param descriptor The field value descriptor.
+     * @return The field value.
+     */
+    Object readSlot(byte[] bytes, LazyMessage.Slot slot, PDescriptor descriptor)
+            throws IOException, SerializerException {
+        ByteBuffer content = ByteBuffer.wrap(bytes, slot.offset, slot.length);
+        try (ByteBufferReader in = new ByteBufferReader(content, ByteOrder.LITTLE_ENDIAN)) {
+            return readFieldValue(in, slot.type, descriptor);
+        }
+    }
+
+    private static PUnknownFields unknownFields(WriteBuffer buffer) {
+        return new PUnknownFields(MIME_TYPE, Binary.wrap(buffer.toByteArray()));
+    }
+
+    private void skipMessage(BinaryReader in) throws IOException, SerializerException {
+        copyMessage(in, null);
+    }
+
+    private void skipValue(BinaryReader in, int type) throws IOException, SerializerException {
+        copyValue(in, null, type);
+    }
+
+    /**
+     * Copy a message from the reader without parsing it.
+     *
+     * @param in The reader to read from.
+     * @param out The writer to copy to, or null to skip the message.
+     */
+    private void copyMessage(BinaryReader in, WriteBuffer.Writer out) throws IOException, SerializerException {
+        int tag;
+        while ((tag = in.readIntVarint()) > STOP) {
+            if (out != null) {
+                out.writeVarint(tag);
+            }
+            copyValue(in, out, tag & 0x07);
+        }
+        if (out != null) {
+            out.writeVarint(STOP);
+        }
+    }
+
+    /**
+     * Copy a field value from the reader without parsing it.
+     *
+     * @param in The reader to read from.
+     * @param out The writer to copy to, or null to skip the value.
+     * @param type The field value type.
+     */
+    private void copyValue(BinaryReader in, WriteBuffer.Writer out, int type) throws IOException, SerializerException {
+        switch (type) {
+            case NONE:
+            case TRUE:
+                break;
+            case VARINT: {
+                long value = in.readLongVarint();
+                if (out != null) {
+                    out.writeVarint(value);
+                }
+                break;
+            }
+            case FIXED_64:
+                copyBytes(in, out, 8);
+                break;
+            case BINARY: {
+                int len = in.readIntVarint();
+                if (out != null) {
+                    out.writeVarint(len);
+                }
+                copyBytes(in, out, len);
+                break;
+            }
+            case MESSAGE:
+                copyMessage(in, out);
+                break;
+            case COLLECTION: {
+                final int len = in.readIntVarint();
+                final int tag = in.readIntVarint();
+                if (out != null) {
+                    out.writeVarint(len);
+                    out.writeVarint(tag);
+                }
+                final int vtype = tag & 0x07;
+                final int ktype = tag > 0x07 ? tag >>> 3 : vtype;
+                for (int i = 0; i < len; ++i) {
+                    copyValue(in, out, i % 2 == 0 ? ktype : vtype);
+                }
+                break;
+            }
+            default:
+                throw new SerializerException("Unknown field type: " + type);
+        }
+    }
+
+    private static void copyBytes(BinaryReader in, WriteBuffer.Writer out, int len) throws IOException {
+        if (out != null) {
+            out.write(in.expectBytes(len));
+            return;
+        }
+        while (len > 0) {
+            long skipped = in.skip(len);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of stream, " + len + " bytes missing");
+            }
+            len -= skipped;
+        }
+    }
+
+    /**
+     * Input stream that keeps a copy of all the content read.
+     */
+    private static class RecordingInputStream extends InputStream {
+        private final InputStream in;
+        private final WriteBuffer record;
+
+        private RecordingInputStream(InputStream in, WriteBuffer record) {
+            this.in = in;
+            this.record = record;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                record.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            int r = in.read(bytes, off, len);
+            if (r > 0) {
+                record.write(bytes, off, r);
+            }
+            return r;
+        }
+    }
+
+    // --- SIZE ---
+
+    /**
+     * Calculate the serialized size of a message. Sizes of nested messages
+     * are memoized, so shared message instances are only calculated once.
+     *
+     * @param message The message to calculate size of.
+     * @param sizes   Size of already calculated messages.
+     * @return The serialized size in bytes.
+     */
+    private int messageSize(PMessage<?, ?> message, Map<PMessage<?, ?>, Integer> sizes)
+            throws SerializerException {
+        if (message instanceof LazyMessage) {
+            return ((LazyMessage<?, ?>) message).serializedSize();
+        }
+        Integer cached = sizes.get(message);
+        if (cached != null) {
+            return cached;
+        }
+
+        // The STOP field.
+        int len = 1;
+        if (message instanceof PUnion) {
+            PField field = ((PUnion<?, ?>) message).unionField();
+            if (field != null) {
+                len += fieldSize(field.getKey(), field.getDescriptor(), message.get(field.getKey()), sizes);
+            }
+        } else {
+            for (PField field : message.descriptor()
+                                       .getFields()) {
+                if (message.has(field.getKey())) {
+                    len += fieldSize(field.getKey(), field.getDescriptor(), message.get(field.getKey()), sizes);
+                }
+            }
+        }
+        PUnknownFields unknown = message.unknownFields();
+        if (unknown != null && MIME_TYPE.equals(unknown.getFormat())) {
+            len += unknown.getContent().length();
+        }
+        sizes.put(message, len);
+        return len;
+    }
+
+    private int fieldSize(int key, PDescriptor descriptor, Object value, Map<PMessage<?, ?>, Integer> sizes)
+            throws SerializerException {
+        // All type IDs are less than 8, so the tag size is independent of it.
+        int len = varintSize(key << 3);
+        switch (descriptor.getType()) {
+            case VOID:
+            case BOOL:
+                return len;
+            case BYTE:
+            case I16:
+            case I32:
+                return len + zigzagSize(((Number) value).intValue());
+            case I64:
+                return len + zigzagSize((long) value);
+            case DOUBLE:
+                return len + 8;
+            case STRING:
+            case BINARY:
+                return len + entrySize(BINARY, descriptor, value, sizes);
+            case ENUM:
+                return len + zigzagSize(((PEnumValue) value).getValue());
+            case MESSAGE:
+                return len + messageSize((PMessage<?, ?>) value, sizes);
+            case MAP:
+            case SET:
+            case LIST:
+                return len + entrySize(COLLECTION, descriptor, value, sizes);
+            default:
+                throw new Error("Unreachable code reached");
+        }
+    }
+
+    private int entrySize(int typeid, PDescriptor descriptor, Object value, Map<PMessage<?, ?>, Integer> sizes)
+            throws SerializerException {
+        switch (typeid) {
+            case VARINT: {
+                if (value instanceof Boolean) {
+                    return 1;
+                } else if (value instanceof Number) {
+                    return zigzagSize(((Number) value).longValue());
+                } else if (value instanceof PEnumValue) {
+                    return zigzagSize(((PEnumValue) value).getValue());
+                } else {
+                    throw new SerializerException("");
+                }
+            }
+            case FIXED_64: {
+                return 8;
+            }
+            case BINARY: {
+                int len;
+                if (value instanceof CharSequence) {
+                    len = WriteBuffer.utf8Length((CharSequence) value);
+                } else if (value instanceof Binary) {
+                    len = ((Binary) value).length();
+                } else {
+                    throw new SerializerException("");
+                }
+                return varintSize(len) + len;
+            }
+            case MESSAGE: {
+                return messageSize((PMessage<?, ?>) value, sizes);
+            }
+            case COLLECTION: {
+                if (value instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) value;
+                    PMap<?, ?> desc = (PMap<?, ?>) descriptor;
+
+                    int ktype = itemType(desc.keyDescriptor());
+                    int vtype = itemType(desc.itemDescriptor());
+
+                    int len = varintSize(map.size() * 2);
+                    len += varintSize(ktype << 3 | vtype);
+                    if (isPrimitive(value, desc)) {
+                        PrimitiveMap<?, ?> primitive = (PrimitiveMap<?, ?>) value;
+                        for (int i = 0; i < primitive.size(); ++i) {
+                            len += primitiveSize(primitive.getKeyKind(), primitive.keyBits(i));
+                            len += primitiveSize(primitive.getValueKind(), primitive.valueBits(i));
+                        }
+                        return len;
+                    }
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        len += entrySize(ktype, desc.keyDescriptor(), entry.getKey(), sizes);
+                        len += entrySize(vtype, desc.itemDescriptor(), entry.getValue(), sizes);
+                    }
+                    return len;
+                } else if (value instanceof Collection) {
+                    Collection<?> coll = (Collection<?>) value;
+                    PContainer<?> desc = (PContainer<?>) descriptor;
+                    int vtype = itemType(desc.itemDescriptor());
+
+                    int len = varintSize(coll.size());
+                    len    += varintSize(vtype);
+                    if (vtype == FIXED_64) {
+                        return len + 8 * coll.size();
+                    }
+                    if (value instanceof LongList && desc.itemDescriptor().getType() == PType.I64) {
+                        LongList longs = (LongList) value;
+                        for (int i = 0; i < longs.size(); ++i) {
+                            len += zigzagSize(longs.getLong(i));
+                        }
+                        return len;
+                    } else if (value instanceof IntList && desc.itemDescriptor().getType() == PType.I32) {
+                        IntList ints = (IntList) value;
+                        for (int i = 0; i < ints.size(); ++i) {
+                            len += zigzagSize(ints.getInt(i));
+                        }
+                        return len;
+                    }
+                    for (Object item : coll) {
+                        len += entrySize(vtype, desc.itemDescriptor(), item, sizes);
+                    }
+                    return len;
+                } else {
+                    throw new SerializerException("");
+                }
+            }
+            default:
+                throw new SerializerException("");
+        }
+    }
+
+    /**
+     * Read list items directly into a primitive list builder, without
+     * boxing the values.
+     *
+     * @param in The stream to consume.
+     * @param out The list builder.
+     * @param vtype The item type ID.
+     * @param len The number of items.
+     * @return The list, or null if not a primitive list builder for the
+     *         item type.
+     */
+    private static List<?> readPrimitiveList(BinaryReader in, PList.Builder<?> out, int vtype, int len)
+            throws IOException {
+        if (out instanceof LongList.Builder && vtype == VARINT) {
+            LongList.Builder longs = ((LongList.Builder) out).ensureCapacity(len);
+            for (int i = 0; i < len; ++i) {
+                longs.add(in.readLongZigzag());
+            }
+            return longs.build();
+        } else if (out instanceof IntList.Builder && vtype == VARINT) {
+            IntList.Builder ints = ((IntList.Builder) out).ensureCapacity(len);
+            for (int i = 0; i < len; ++i) {
+                ints.add(in.readIntZigzag());
+            }
+            return ints.build();
+        } else if (out instanceof DoubleList.Builder && vtype == FIXED_64) {
+            DoubleList.Builder doubles = ((DoubleList.Builder) out).ensureCapacity(len);
+            for (int i = 0; i < len; ++i) {
+                doubles.add(in.expectDouble());
+            }
+            return doubles.build();
+        }
+        return null;
+    }
+
+    /**
+     * Read map entries directly into a primitive map builder, without boxing
+     * the keys and values.
+     *
+     * @param in The stream to consume.
+     * @param out The map builder.
+     * @param ktype The key type ID.
+     * @param vtype The value type ID.
+     * @param size The number of entries.
+     * @return The map, or null if the key or value types do not match the
+     *         builder.
+     */
+    private static Map<?, ?> readPrimitiveMap(BinaryReader in, PrimitiveMap.Builder<?, ?> out, int ktype, int vtype, int size)
+            throws IOException {
+        if (primitiveType(out.getKeyKind()) != ktype || primitiveType(out.getValueKind()) != vtype) {
+            return null;
+        }
+        out.ensureCapacity(size);
+        for (int i = 0; i < size; ++i) {
+            long key = readPrimitiveBits(in, out.getKeyKind());
+            out.putBits(key, readPrimitiveBits(in, out.getValueKind()));
+        }
+        return out.build();
+    }
+
+    private static long readPrimitiveBits(BinaryReader in, PrimitiveKind kind) throws IOException {
+        switch (kind) {
+            case INT:
+                return in.readIntZigzag();
+            case LONG:
+                return in.readLongZigzag();
+            default:
+                return Double.doubleToLongBits(in.expectDouble());
+        }
+    }
+
+    private static int writePrimitiveBits(WriteBuffer.Writer out, PrimitiveKind kind, long bits) throws IOException {
+        switch (kind) {
+            case INT:
+                return out.writeZigzag((int) bits);
+            case LONG:
+                return out.writeZigzag(bits);
+            default:
+                return out.writeDouble(Double.longBitsToDouble(bits));
+        }
+    }
+
+    private static int primitiveSize(PrimitiveKind kind, long bits) {
+        switch (kind) {
+            case INT:
+                return zigzagSize((int) bits);
+            case LONG:
+                return zigzagSize(bits);
+            default:
+                return 8;
+        }
+    }
+
+    private static int primitiveType(PrimitiveKind kind) {
+        return kind == PrimitiveKind.DOUBLE ? FIXED_64 : VARINT;
+    }
+
+    private static boolean isPrimitive(Object value, PMap<?, ?> descriptor) {
+        if (value instanceof PrimitiveMap) {
+            PrimitiveMap<?, ?> map = (PrimitiveMap<?, ?>) value;
+            return map.getKeyKind().getType() == descriptor.keyDescriptor().getType() &&
+                   map.getValueKind().getType() == descriptor.itemDescriptor().getType();
+        }
+        return false;
+    }
+
+    private static int zigzagSize(int value) {
+        return varintSize((value << 1) ^ (value >> 31));
+    }
+
+    private static int zigzagSize(long value) {
+        return varintSize((value << 1) ^ (value >> 63));
+    }
+
+    private static int varintSize(int value) {
+        int len = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            ++len;
+        }
+        return len;
+    }
+
+    private static int varintSize(long value) {
+        int len = 1;
+        while ((value & ~0x7fL) != 0) {
+            value >>>= 7;
+            ++len;
+        }
+        return len;
+    }
+
     private static int itemType(PDescriptor descriptor) {
         switch (descriptor.getType()) {
             case BOOL:
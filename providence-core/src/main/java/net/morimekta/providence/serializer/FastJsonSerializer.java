@@ -0,0 +1,818 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import net.morimekta.providence.PEnumBuilder;
+import net.morimekta.providence.PEnumValue;
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.PType;
+import net.morimekta.providence.PUnion;
+import net.morimekta.providence.PUnknownFields;
+import net.morimekta.providence.descriptor.PContainer;
+import net.morimekta.providence.descriptor.PDescriptor;
+import net.morimekta.providence.descriptor.PEnumDescriptor;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PList;
+import net.morimekta.providence.descriptor.PMap;
+import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.descriptor.PServiceMethod;
+import net.morimekta.providence.descriptor.PSet;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
+import net.morimekta.providence.util.collect.PrimitiveKind;
+import net.morimekta.providence.util.collect.PrimitiveMap;
+import net.morimekta.util.Binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Compact JSON serializer reading and writing JSON at the byte level. The
+ * format is the same as the compact (non-pretty) {@link JsonSerializer}
+ * with the same options, and content written by either can be read by the
+ * other, including unknown fields.
+ * <p>
+ * Message keys are matched against per message type tables of the UTF-8
+ * field names without making strings of them, numbers are parsed directly
+ * from the input bytes, and the quoted field keys are written as
+ * precomputed bytes.
+ */
+public class FastJsonSerializer extends Serializer {
+    public static final String MIME_TYPE = JsonSerializer.MIME_TYPE;
+
+    private final boolean                readStrict;
+    private final JsonSerializer.IdType idType;
+    private final JsonSerializer.IdType enumType;
+
+    // Copy on write, so lookups does not need locking.
+    private volatile Map<PStructDescriptor<?, ?>, JsonFieldTable> tables;
+
+    public FastJsonSerializer() {
+        this(true, JsonSerializer.IdType.ID, JsonSerializer.IdType.ID);
+    }
+
+    public FastJsonSerializer(boolean readStrict) {
+        this(readStrict, JsonSerializer.IdType.ID, JsonSerializer.IdType.ID);
+    }
+
+    public FastJsonSerializer(JsonSerializer.IdType idType) {
+        this(true, idType, idType);
+    }
+
+    public FastJsonSerializer(boolean readStrict, JsonSerializer.IdType idType) {
+        this(readStrict, idType, idType);
+    }
+
+    public FastJsonSerializer(boolean readStrict, JsonSerializer.IdType idType, JsonSerializer.IdType enumType) {
+        this.readStrict = readStrict;
+        this.idType = idType;
+        this.enumType = enumType;
+        this.tables = new IdentityHashMap<>();
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(OutputStream output, Message message) throws SerializerException {
+        JsonByteWriter writer = new JsonByteWriter(output);
+        try {
+            writeMessage(writer, message);
+            writer.flush();
+            return writer.getByteCount();
+        } catch (IOException e) {
+            throw new SerializerException(e, "Unable to write to stream");
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(OutputStream output, PServiceCall<Message, Field> call) throws SerializerException {
+        JsonByteWriter writer = new JsonByteWriter(output);
+        try {
+            writer.writeByte('[');
+            writer.writeString(call.getMethod());
+            writer.writeByte(',');
+            if (enumType == JsonSerializer.IdType.ID) {
+                writer.writeLong(call.getType().key);
+            } else {
+                writer.writeString(call.getType().toString());
+            }
+            writer.writeByte(',');
+            writer.writeLong(call.getSequence());
+            writer.writeByte(',');
+            writeMessage(writer, call.getMessage());
+            writer.writeByte(']');
+            writer.flush();
+            return writer.getByteCount();
+        } catch (IOException e) {
+            throw new SerializerException(e, "Unable to write to stream");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    Message deserialize(InputStream input, PStructDescriptor<Message, Field> descriptor) throws SerializerException {
+        JsonByteReader reader = new JsonByteReader(input);
+        try {
+            if (reader.peek() < 0) {
+                return null;
+            }
+            Message message = (Message) readValue(reader, descriptor);
+            reader.finish();
+            return message;
+        } catch (IOException e) {
+            throw new SerializerException(e, "Unable to read stream");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(InputStream input, PService service) throws SerializerException {
+        JsonByteReader reader = new JsonByteReader(input);
+        PServiceCallType type = null;
+        String methodName = null;
+        int sequence = 0;
+        boolean hasSequence = false;
+        try {
+            reader.expect('[', "service call start");
+            methodName = reader.readString();
+            reader.expect(',', "service call sep");
+
+            if (reader.peek() == '\"') {
+                String typeName = reader.readString();
+                type = PServiceCallType.findByName(typeName);
+                if (type == null) {
+                    throw new SerializerException("Service call type " + typeName + " is not valid.")
+                            .setExceptionType(ApplicationExceptionType.INVALID_MESSAGE_TYPE);
+                }
+            } else {
+                int typeKey = (int) inRange(reader.readLong("service call type"), Integer.MIN_VALUE, Integer.MAX_VALUE, "service call type");
+                type = PServiceCallType.findByKey(typeKey);
+                if (type == null) {
+                    throw new SerializerException("Service call type " + typeKey + " is not valid.")
+                            .setExceptionType(ApplicationExceptionType.INVALID_MESSAGE_TYPE);
+                }
+            }
+            reader.expect(',', "service call sep");
+            sequence = (int) inRange(reader.readLong("service call sequence"), Integer.MIN_VALUE, Integer.MAX_VALUE, "service call sequence");
+            hasSequence = true;
+            reader.expect(',', "service call sep");
+
+            Message message;
+            if (type == PServiceCallType.EXCEPTION) {
+                message = (Message) readValue(reader, ApplicationException.kDescriptor);
+            } else {
+                PServiceMethod method = service.getMethod(methodName);
+                if (method == null) {
+                    throw new SerializerException("No such method " + methodName + " on " + service.getQualifiedName(null))
+                            .setExceptionType(ApplicationExceptionType.UNKNOWN_METHOD);
+                }
+                PStructDescriptor<?, ?> descriptor = type.request ? method.getRequestType() : method.getResponseType();
+                message = (Message) readValue(reader, descriptor);
+            }
+
+            reader.expect(']', "service call end");
+            reader.finish();
+            return new PServiceCall<>(methodName, type, sequence, message);
+        } catch (IOException e) {
+            SerializerException ex = new SerializerException(e, e.getMessage())
+                    .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
+                    .setMethodName(methodName)
+                    .setCallType(type);
+            if (hasSequence) {
+                ex.setSequenceNo(sequence);
+            }
+            throw ex;
+        } catch (SerializerException se) {
+            SerializerException ex = new SerializerException(se, se.getMessage())
+                    .setExceptionType(se.getExceptionType())
+                    .setMethodName(methodName)
+                    .setCallType(type);
+            if (hasSequence) {
+                ex.setSequenceNo(sequence);
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean binaryProtocol() {
+        return false;
+    }
+
+    @Override
+    public String mimeType() {
+        return MIME_TYPE;
+    }
+
+    /**
+     * Get the field table for the message type, creating it if needed.
+     *
+     * @param descriptor The message type.
+     * @return The field table.
+     */
+    private JsonFieldTable table(PStructDescriptor<?, ?> descriptor) {
+        JsonFieldTable table = tables.get(descriptor);
+        if (table == null) {
+            synchronized (this) {
+                table = tables.get(descriptor);
+                if (table == null) {
+                    table = new JsonFieldTable(descriptor);
+                    Map<PStructDescriptor<?, ?>, JsonFieldTable> copy = new IdentityHashMap<>(tables);
+                    copy.put(descriptor, table);
+                    tables = copy;
+                }
+            }
+        }
+        return table;
+    }
+
+    private <T extends PMessage<T, F>, F extends PField> T readMessage(JsonByteReader reader, PStructDescriptor<T, F> type)
+            throws IOException, SerializerException {
+        PMessageBuilder<T, F> builder = type.builder();
+        JsonFieldTable table = table(type);
+        ByteArrayOutputStream unknown = null;
+
+        if (reader.peek() == '}') {
+            reader.expect('}', "message end");
+        } else {
+            char sep = '{';
+            while (sep != '}') {
+                PField field = reader.readKey(table, type);
+                reader.expect(':', "message field key sep");
+
+                if (field != null) {
+                    builder.set(field.getKey(), readValue(reader, field.getDescriptor()));
+                } else if (readStrict) {
+                    String key = new String(reader.unknownKey(), StandardCharsets.UTF_8);
+                    throw new SerializerException("Unknown field " + key.substring(1, key.length() - 1) +
+                                                  " for type " + type.getQualifiedName(null));
+                } else {
+                    // Keep the unknown field as is, so it can be written back.
+                    if (unknown == null) {
+                        unknown = new ByteArrayOutputStream();
+                        unknown.write('{');
+                    } else {
+                        unknown.write(',');
+                    }
+                    unknown.write(reader.unknownKey());
+                    unknown.write(':');
+                    reader.skipValue(unknown);
+                }
+
+                sep = reader.expectAny("message entry sep", '}', ',');
+            }
+        }
+
+        if (unknown != null) {
+            unknown.write('}');
+            builder.setUnknownFields(new PUnknownFields(MIME_TYPE, Binary.wrap(unknown.toByteArray())));
+        }
+
+        if (readStrict) {
+            try {
+                builder.validate();
+            } catch (IllegalStateException e) {
+                throw new SerializerException(e, e.getMessage());
+            }
+        }
+
+        return builder.build();
+    }
+
+    private <T extends PMessage<T, F>, F extends PField> T readCompactMessage(JsonByteReader reader, PStructDescriptor<T, F> type)
+            throws IOException, SerializerException {
+        PMessageBuilder<T, F> builder = type.builder();
+        // compact message are not allowed to be empty.
+
+        int i = 0;
+        char sep = '[';
+        while (sep != ']') {
+            PField field = type.getField(++i);
+
+            if (field != null) {
+                builder.set(i, readValue(reader, field.getDescriptor()));
+            } else if (readStrict) {
+                throw new SerializerException("Compact Field ID " + (i) + " outside field spectrum for type " +
+                                              type.getQualifiedName(null));
+            } else {
+                reader.skipValue(null);
+            }
+
+            sep = reader.expectAny("compact message entry sep", ']', ',');
+        }
+
+        if (readStrict) {
+            try {
+                builder.validate();
+            } catch (IllegalStateException e) {
+                throw new SerializerException(e, e.getMessage());
+            }
+        }
+
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readValue(JsonByteReader reader, PDescriptor t) throws IOException, SerializerException {
+        if (reader.skipNull()) {
+            if (t.getType() == PType.VOID) {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+
+        try {
+            switch (t.getType()) {
+                case BOOL:
+                    return reader.readBoolean();
+                case BYTE:
+                    return (byte) inRange(reader.readLong("byte"), Byte.MIN_VALUE, Byte.MAX_VALUE, "byte");
+                case I16:
+                    return (short) inRange(reader.readLong("short"), Short.MIN_VALUE, Short.MAX_VALUE, "short");
+                case I32:
+                    return (int) inRange(reader.readLong("int"), Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+                case I64:
+                    return reader.readLong("long");
+                case DOUBLE:
+                    return reader.readDouble();
+                case STRING:
+                    return reader.readString();
+                case BINARY:
+                    return reader.readBinary();
+                case ENUM: {
+                    PEnumBuilder<?> eb = ((PEnumDescriptor<?>) t).builder();
+                    String name = null;
+                    int value = 0;
+                    if (reader.peek() == '\"') {
+                        name = reader.readString();
+                        eb.setByName(name);
+                    } else {
+                        value = (int) inRange(reader.readLong("enum"), Integer.MIN_VALUE, Integer.MAX_VALUE, "enum");
+                        eb.setByValue(value);
+                    }
+                    if (readStrict && !eb.isValid()) {
+                        throw new SerializerException("%s is not a enum value", name != null ? name : String.valueOf(value));
+                    }
+                    return eb.build();
+                }
+                case MESSAGE: {
+                    PStructDescriptor<?, ?> st = (PStructDescriptor<?, ?>) t;
+                    char start = reader.expectAny("message start", '{', '[');
+                    if (start == '{') {
+                        return readMessage(reader, st);
+                    } else if (st.isCompactible()) {
+                        return readCompactMessage(reader, st);
+                    }
+                    throw new SerializerException(st.getName() + " is not compatible for compact struct notation.");
+                }
+                case MAP: {
+                    PMap<Object, Object> mapType = (PMap<Object, Object>) t;
+                    PDescriptor itemType = mapType.itemDescriptor();
+                    PDescriptor keyType = mapType.keyDescriptor();
+                    reader.expect('{', "map start");
+
+                    PMap.Builder<Object, Object> map = mapType.builder();
+                    PrimitiveMap.Builder<?, ?> primitive = map instanceof PrimitiveMap.Builder ?
+                                                           (PrimitiveMap.Builder<?, ?>) map : null;
+                    if (reader.peek() == '}') {
+                        reader.expect('}', "map end");
+                    } else {
+                        char sep = '{';
+                        while (sep != '}') {
+                            if (primitive != null) {
+                                long key = readPrimitiveKeyBits(reader, keyType, primitive.getKeyKind());
+                                reader.expect(':', "map K/V sep");
+                                primitive.putBits(key, readPrimitiveBits(reader, primitive.getValueKind()));
+                            } else {
+                                Object key = readMapKey(reader, keyType);
+                                reader.expect(':', "map K/V sep");
+                                map.put(key, readValue(reader, itemType));
+                            }
+                            sep = reader.expectAny("map entry sep", '}', ',');
+                        }
+                    }
+                    return map.build();
+                }
+                case SET: {
+                    PDescriptor itemType = ((PSet<?>) t).itemDescriptor();
+                    reader.expect('[', "set start");
+                    PSet.Builder<Object> set = ((PSet<Object>) t).builder();
+                    if (reader.peek() == ']') {
+                        reader.expect(']', "set end");
+                    } else {
+                        char sep = '[';
+                        while (sep != ']') {
+                            set.add(readValue(reader, itemType));
+                            sep = reader.expectAny("set entry sep", ']', ',');
+                        }
+                    }
+                    return set.build();
+                }
+                case LIST: {
+                    PDescriptor itemType = ((PList<?>) t).itemDescriptor();
+                    reader.expect('[', "list start");
+                    PList.Builder<Object> list = ((PList<Object>) t).builder();
+                    if (reader.peek() == ']') {
+                        reader.expect(']', "list end");
+                    } else {
+                        char sep = '[';
+                        while (sep != ']') {
+                            if (!readPrimitive(reader, list)) {
+                                list.add(readValue(reader, itemType));
+                            }
+                            sep = reader.expectAny("list entry sep", ']', ',');
+                        }
+                    }
+                    return list.build();
+                }
+            }
+        } catch (ClassCastException ce) {
+            throw new SerializerException(ce, "Serialized type not compatible with " + t.getQualifiedName(null));
+        }
+
+        throw new SerializerException("Unhandled item type " + t.getQualifiedName(null));
+    }
+
+    /**
+     * Check that a value read as long fits in the narrower type, as the
+     * JsonSerializer parse methods do.
+     *
+     * @param value The value read.
+     * @param min The minimum value of the type.
+     * @param max The maximum value of the type.
+     * @param what The name of the type.
+     * @return The value.
+     * @throws SerializerException If the value is out of range.
+     */
+    private static long inRange(long value, long min, long max, String what) throws SerializerException {
+        if (value < min || value > max) {
+            throw new SerializerException("Value %d out of range for %s", value, what);
+        }
+        return value;
+    }
+
+    /**
+     * Read a list item into a primitive list builder without boxing it.
+     *
+     * @param reader The JSON reader.
+     * @param list The list builder.
+     * @return True if the item was read, false if not a primitive list.
+     */
+    private static boolean readPrimitive(JsonByteReader reader, PList.Builder<?> list) throws IOException, SerializerException {
+        if (list instanceof LongList.Builder) {
+            ((LongList.Builder) list).add(reader.readLong("long"));
+            return true;
+        } else if (list instanceof IntList.Builder) {
+            ((IntList.Builder) list).add((int) inRange(reader.readLong("int"), Integer.MIN_VALUE, Integer.MAX_VALUE, "int"));
+            return true;
+        } else if (list instanceof DoubleList.Builder) {
+            ((DoubleList.Builder) list).add(reader.readDouble());
+            return true;
+        }
+        return false;
+    }
+
+    private static long readPrimitiveBits(JsonByteReader reader, PrimitiveKind kind) throws IOException, SerializerException {
+        switch (kind) {
+            case INT:
+                return (int) inRange(reader.readLong("int"), Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+            case LONG:
+                return reader.readLong("long");
+            default:
+                return Double.doubleToLongBits(reader.readDouble());
+        }
+    }
+
+    private long readPrimitiveKeyBits(JsonByteReader reader, PDescriptor keyType, PrimitiveKind kind)
+            throws IOException, SerializerException {
+        switch (kind) {
+            case INT:
+                return (int) inRange(reader.readQuotedLong("int"), Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+            case LONG:
+                return reader.readQuotedLong("long");
+            default:
+                return kind.bits(readMapKey(reader, keyType));
+        }
+    }
+
+    private Object readMapKey(JsonByteReader reader, PDescriptor keyType) throws IOException, SerializerException {
+        switch (keyType.getType()) {
+            case BYTE:
+                return (byte) inRange(reader.readQuotedLong("byte"), Byte.MIN_VALUE, Byte.MAX_VALUE, "byte");
+            case I16:
+                return (short) inRange(reader.readQuotedLong("short"), Short.MIN_VALUE, Short.MAX_VALUE, "short");
+            case I32:
+                return (int) inRange(reader.readQuotedLong("int"), Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+            case I64:
+                return reader.readQuotedLong("long");
+            default:
+                break;
+        }
+
+        String key = reader.readString();
+        try {
+            switch (keyType.getType()) {
+                case BOOL:
+                    return Boolean.parseBoolean(key);
+                case DOUBLE:
+                    return new JsonByteReader(key.getBytes(StandardCharsets.UTF_8)).readDouble();
+                case STRING:
+                    return key;
+                case BINARY:
+                    try {
+                        return Binary.fromBase64(key);
+                    } catch (IllegalArgumentException e) {
+                        throw new SerializerException(e, "Unable to parse Base64 data.");
+                    }
+                case ENUM:
+                    PEnumBuilder<?> eb = ((PEnumDescriptor<?>) keyType).builder();
+                    if (!key.isEmpty() && (key.charAt(0) == '-' || Character.isDigit(key.charAt(0)))) {
+                        eb.setByValue(Integer.parseInt(key));
+                    } else {
+                        eb.setByName(key);
+                    }
+                    if (readStrict && !eb.isValid()) {
+                        throw new SerializerException("%s is not a valid enum value for %s",
+                                                      key, keyType.getQualifiedName(null));
+                    }
+                    return eb.build();
+                case MESSAGE:
+                    PStructDescriptor<?, ?> st = (PStructDescriptor<?, ?>) keyType;
+                    if (!st.isSimple()) {
+                        throw new SerializerException("Only simple structs can be used as map key. %s is not.",
+                                                      st.getQualifiedName(null));
+                    }
+                    JsonByteReader keyReader = new JsonByteReader(key.getBytes(StandardCharsets.UTF_8));
+                    keyReader.expect('{', "message start");
+                    return readMessage(keyReader, st);
+                default:
+                    throw new SerializerException("Illegal key type: %s", keyType.getType());
+            }
+        } catch (NumberFormatException nfe) {
+            throw new SerializerException(nfe, "Unable to parse numeric value %s", key);
+        }
+    }
+
+    private void writeMessage(JsonByteWriter writer, PMessage<?, ?> message) throws IOException, SerializerException {
+        JsonFieldTable table = table(message.descriptor());
+        PField[] fields = table.fields();
+        if (message instanceof PUnion) {
+            writer.writeByte('{');
+            PField field = ((PUnion<?, ?>) message).unionField();
+            boolean first = true;
+            if (field != null) {
+                writer.writeRaw(table.key(table.indexOf(field), idType));
+                writeValue(writer, field.getDescriptor(), message.get(field.getKey()));
+                first = false;
+            }
+            writeUnknownFields(writer, message, first);
+            writer.writeByte('}');
+        } else if (message.compact()) {
+            writer.writeByte('[');
+            for (int i = 0; i < fields.length; ++i) {
+                if (!message.has(fields[i].getKey())) {
+                    break;
+                }
+                if (i > 0) {
+                    writer.writeByte(',');
+                }
+                writeValue(writer, fields[i].getDescriptor(), message.get(fields[i].getKey()));
+            }
+            writer.writeByte(']');
+        } else {
+            writer.writeByte('{');
+            boolean first = true;
+            for (int i = 0; i < fields.length; ++i) {
+                PField field = fields[i];
+                if (message.has(field.getKey())) {
+                    if (!first) {
+                        writer.writeByte(',');
+                    }
+                    first = false;
+                    writer.writeRaw(table.key(i, idType));
+                    writeValue(writer, field.getDescriptor(), message.get(field.getKey()));
+                }
+            }
+            writeUnknownFields(writer, message, first);
+            writer.writeByte('}');
+        }
+    }
+
+    /**
+     * Write the unknown fields of the message, if they were read as JSON.
+     * The unknown fields are kept as a compact JSON object, so the content
+     * is written as is.
+     *
+     * @param writer The writer to add the fields to.
+     * @param message The message to write unknown fields of.
+     * @param first If no fields has been written to the message yet.
+     */
+    private static void writeUnknownFields(JsonByteWriter writer, PMessage<?, ?> message, boolean first)
+            throws IOException {
+        PUnknownFields unknown = message.unknownFields();
+        if (unknown == null || !MIME_TYPE.equals(unknown.getFormat())) {
+            return;
+        }
+        byte[] content = unknown.getContent().get();
+        // Skip the enclosing '{' and '}'.
+        if (content.length > 2) {
+            if (!first) {
+                writer.writeByte(',');
+            }
+            writer.writeRaw(content, 1, content.length - 2);
+        }
+    }
+
+    private void writeValue(JsonByteWriter writer, PDescriptor type, Object value) throws IOException, SerializerException {
+        switch (type.getType()) {
+            case VOID:
+                writer.writeNull();
+                break;
+            case MESSAGE:
+                writeMessage(writer, (PMessage<?, ?>) value);
+                break;
+            case MAP: {
+                writer.writeByte('{');
+                if (value instanceof PrimitiveMap) {
+                    PrimitiveMap<?, ?> primitive = (PrimitiveMap<?, ?>) value;
+                    for (int i = 0; i < primitive.size(); ++i) {
+                        if (i > 0) {
+                            writer.writeByte(',');
+                        }
+                        writer.writeByte('\"');
+                        writePrimitiveBits(writer, primitive.getKeyKind(), primitive.keyBits(i));
+                        writer.writeByte('\"');
+                        writer.writeByte(':');
+                        writePrimitiveBits(writer, primitive.getValueKind(), primitive.valueBits(i));
+                    }
+                } else {
+                    PDescriptor itemType = ((PMap<?, ?>) type).itemDescriptor();
+                    boolean first = true;
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        if (!first) {
+                            writer.writeByte(',');
+                        }
+                        first = false;
+                        writeMapKey(writer, entry.getKey());
+                        writer.writeByte(':');
+                        writeValue(writer, itemType, entry.getValue());
+                    }
+                }
+                writer.writeByte('}');
+                break;
+            }
+            case SET:
+            case LIST: {
+                writer.writeByte('[');
+                if (value instanceof LongList) {
+                    LongList longs = (LongList) value;
+                    for (int i = 0; i < longs.size(); ++i) {
+                        if (i > 0) {
+                            writer.writeByte(',');
+                        }
+                        writer.writeLong(longs.getLong(i));
+                    }
+                } else if (value instanceof IntList) {
+                    IntList ints = (IntList) value;
+                    for (int i = 0; i < ints.size(); ++i) {
+                        if (i > 0) {
+                            writer.writeByte(',');
+                        }
+                        writer.writeLong(ints.getInt(i));
+                    }
+                } else if (value instanceof DoubleList) {
+                    DoubleList doubles = (DoubleList) value;
+                    for (int i = 0; i < doubles.size(); ++i) {
+                        if (i > 0) {
+                            writer.writeByte(',');
+                        }
+                        writer.writeDouble(doubles.getDouble(i));
+                    }
+                } else {
+                    PDescriptor itemType = ((PContainer<?>) type).itemDescriptor();
+                    boolean first = true;
+                    for (Object item : (Collection<?>) value) {
+                        if (!first) {
+                            writer.writeByte(',');
+                        }
+                        first = false;
+                        writeValue(writer, itemType, item);
+                    }
+                }
+                writer.writeByte(']');
+                break;
+            }
+            default:
+                writePrimitive(writer, value);
+                break;
+        }
+    }
+
+    private static void writePrimitiveBits(JsonByteWriter writer, PrimitiveKind kind, long bits) throws IOException {
+        switch (kind) {
+            case INT:
+                writer.writeLong((int) bits);
+                break;
+            case LONG:
+                writer.writeLong(bits);
+                break;
+            default:
+                writer.writeDouble(Double.longBitsToDouble(bits));
+                break;
+        }
+    }
+
+    /**
+     * Write a primitive map key. All map keys are quoted.
+     *
+     * @param writer The JSON writer.
+     * @param key The map key.
+     */
+    private void writeMapKey(JsonByteWriter writer, Object key) throws IOException, SerializerException {
+        if (key instanceof String) {
+            writer.writeString((String) key);
+        } else if (key instanceof PEnumValue && idType == JsonSerializer.IdType.NAME) {
+            writer.writeString(key.toString());
+        } else if (key instanceof Binary) {
+            writer.writeByte('\"');
+            writer.writeAscii(((Binary) key).toBase64());
+            writer.writeByte('\"');
+        } else if (key instanceof PMessage) {
+            PMessage<?, ?> message = (PMessage<?, ?>) key;
+            if (!message.descriptor().isSimple()) {
+                throw new SerializerException("Only simple messages can be used as map keys. " +
+                                              message.descriptor().getQualifiedName(null) + " is not.");
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            JsonByteWriter json = new JsonByteWriter(baos);
+            writeMessage(json, message);
+            json.flush();
+            writer.writeString(new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        } else {
+            writer.writeByte('\"');
+            writePrimitive(writer, key instanceof PEnumValue ? ((PEnumValue<?>) key).getValue() : key);
+            writer.writeByte('\"');
+        }
+    }
+
+    /**
+     * Write a primitive value.
+     *
+     * @param writer The JSON writer.
+     * @param primitive The primitive instance.
+     */
+    private void writePrimitive(JsonByteWriter writer, Object primitive) throws IOException, SerializerException {
+        if (primitive instanceof PEnumValue) {
+            if (enumType == JsonSerializer.IdType.ID) {
+                writer.writeLong(((PEnumValue<?>) primitive).getValue());
+            } else {
+                writer.writeString(primitive.toString());
+            }
+        } else if (primitive instanceof Boolean) {
+            writer.writeBoolean((Boolean) primitive);
+        } else if (primitive instanceof Byte || primitive instanceof Short ||
+                   primitive instanceof Integer || primitive instanceof Long) {
+            writer.writeLong(((Number) primitive).longValue());
+        } else if (primitive instanceof Double) {
+            writer.writeDouble((Double) primitive);
+        } else if (primitive instanceof String) {
+            writer.writeString((String) primitive);
+        } else if (primitive instanceof Binary) {
+            writer.writeByte('\"');
+            writer.writeAscii(((Binary) primitive).toBase64());
+            writer.writeByte('\"');
+        } else {
+            throw new SerializerException("illegal primitive type class " + primitive.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.util.Binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte level JSON reader for the {@link FastJsonSerializer}. Values are
+ * parsed directly from the read buffer, and message keys are matched
+ * against the {@link JsonFieldTable} of the message type without making
+ * strings of them.
+ * <p>
+ * The reader never consumes more from the input stream than the values
+ * read. If the stream supports mark and reset, it is read in chunks and
+ * the unread part of the last chunk is put back with {@link #finish()},
+ * otherwise it is read one byte at a time.
+ */
+final class JsonByteReader {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final InputStream in;
+    private final boolean     markable;
+    private       byte[]      buffer;
+    private       int         pos;
+    private       int         limit;
+
+    // Content of a key or string split between reads.
+    private byte[] scratch;
+    private int    scratchLength;
+    // The JSON of the last key not found in the message type.
+    private byte[] unknownKey;
+
+    JsonByteReader(InputStream in) {
+        this.in = in;
+        this.markable = in.markSupported();
+        this.buffer = new byte[markable ? 1 << 13 : 1];
+        this.scratch = new byte[64];
+    }
+
+    /**
+     * Create a reader for the content of the byte array.
+     *
+     * @param bytes The bytes to read.
+     */
+    JsonByteReader(byte[] bytes) {
+        this.in = null;
+        this.markable = false;
+        this.buffer = bytes;
+        this.limit = bytes.length;
+        this.scratch = new byte[64];
+    }
+
+    /**
+     * Put back what was read from the input stream past the values read.
+     *
+     * @throws IOException If unable to reset the input stream.
+     */
+    void finish() throws IOException {
+        if (markable && pos < limit) {
+            // The buffer always holds what was read since the last mark.
+            in.reset();
+            long skip = pos;
+            while (skip > 0) {
+                long skipped = in.skip(skip);
+                if (skipped <= 0) {
+                    throw new IOException("Unable to skip past JSON content");
+                }
+                skip -= skipped;
+            }
+            pos = limit = 0;
+        }
+    }
+
+    /**
+     * @return The next non-whitespace byte without consuming it, or -1 at
+     *         end of input.
+     * @throws IOException If unable to read.
+     */
+    int peek() throws IOException {
+        while (pos < limit || fill()) {
+            byte b = buffer[pos];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                ++pos;
+            } else {
+                return b & 0xff;
+            }
+        }
+        return -1;
+    }
+
+    void expect(char symbol, String what) throws IOException, SerializerException {
+        int b = peek();
+        if (b != symbol) {
+            throw unexpected(b, what);
+        }
+        ++pos;
+    }
+
+    char expectAny(String what, char a, char b) throws IOException, SerializerException {
+        int c = peek();
+        if (c == a || c == b) {
+            ++pos;
+            return (char) c;
+        }
+        throw unexpected(c, what);
+    }
+
+    /**
+     * Consume a null value if next.
+     *
+     * @return True if a null value was consumed.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the value is invalid.
+     */
+    boolean skipNull() throws IOException, SerializerException {
+        if (peek() != 'n') {
+            return false;
+        }
+        expectLiteral("null");
+        return true;
+    }
+
+    boolean readBoolean() throws IOException, SerializerException {
+        int b = peek();
+        if (b == 't') {
+            expectLiteral("true");
+            return true;
+        } else if (b == 'f') {
+            expectLiteral("false");
+            return false;
+        } else if (b == '-' || (b >= '0' && b <= '9')) {
+            return readLong("boolean") != 0;
+        }
+        throw unexpected(b, "boolean value");
+    }
+
+    /**
+     * Read an integer value, parsed directly from the input bytes.
+     *
+     * @param what The expected value type, for the error message.
+     * @return The value.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the value is not an integer.
+     */
+    long readLong(String what) throws IOException, SerializerException {
+        int b = peek();
+        boolean negative = b == '-';
+        if (negative) {
+            ++pos;
+            b = pos < limit || fill() ? buffer[pos] : -1;
+        }
+        if (b < '0' || b > '9') {
+            throw new SerializerException("Not a valid %s value", what);
+        }
+
+        long value = 0;
+        while (pos < limit || fill()) {
+            b = buffer[pos];
+            if (b < '0' || b > '9') {
+                if (b == '.' || b == 'e' || b == 'E') {
+                    throw new SerializerException("Not a valid %s value", what);
+                }
+                break;
+            }
+            ++pos;
+            // Accumulated as negative, to include Long.MIN_VALUE.
+            if (value < -(Long.MAX_VALUE / 10) ||
+                (value == -(Long.MAX_VALUE / 10) && (b - '0') > (negative ? 8 : 7))) {
+                throw new SerializerException("Integer overflow in %s value", what);
+            }
+            value = value * 10 - (b - '0');
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * Read a number value. Numbers with up to 15 significant digits and a
+     * small exponent are calculated directly from the input bytes, which
+     * gives the same result as {@link Double#parseDouble(String)}. Other
+     * numbers are parsed with it.
+     *
+     * @return The value.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the value is not a number.
+     */
+    double readDouble() throws IOException, SerializerException {
+        int b = peek();
+        scratchLength = 0;
+
+        boolean negative = b == '-';
+        if (negative) {
+            ++pos;
+            appendScratch('-');
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        boolean fraction = false;
+        while (pos < limit || fill()) {
+            b = buffer[pos];
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (mantissa != 0 || b != '0') {
+                    ++digits;
+                }
+                if (digits <= 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (fraction) {
+                        --exponent;
+                    }
+                } else if (!fraction) {
+                    ++exponent;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            appendScratch(b);
+            ++pos;
+        }
+        if (!any) {
+            throw new SerializerException("Not a valid double value");
+        }
+
+        if ((pos < limit || fill()) && (buffer[pos] == 'e' || buffer[pos] == 'E')) {
+            appendScratch(buffer[pos++]);
+            int exp = 0;
+            boolean negativeExp = false;
+            if ((pos < limit || fill()) && (buffer[pos] == '-' || buffer[pos] == '+')) {
+                negativeExp = buffer[pos] == '-';
+                appendScratch(buffer[pos++]);
+            }
+            boolean expDigits = false;
+            while (pos < limit || fill()) {
+                b = buffer[pos];
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                expDigits = true;
+                if (exp < 10000) {
+                    exp = exp * 10 + (b - '0');
+                }
+                appendScratch(b);
+                ++pos;
+            }
+            if (!expDigits) {
+                throw new SerializerException("Not a valid double value");
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        if (digits <= 15 && exponent >= -22 && exponent <= 22) {
+            // Both the mantissa and the power of ten are exact doubles, so
+            // the result is correctly rounded.
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(new String(scratch, 0, scratchLength, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new SerializerException(e, "Not a valid double value");
+        }
+    }
+
+    /**
+     * Read a string value.
+     *
+     * @return The decoded string.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the next value is not a string.
+     */
+    String readString() throws IOException, SerializerException {
+        expect('\"', "string literal");
+        int start = pos;
+        boolean escaped = false;
+        boolean escapes = false;
+        while (pos < limit) {
+            byte b = buffer[pos++];
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = escapes = true;
+            } else if (b == '\"') {
+                return decode(buffer, start, pos - start - 1, escapes);
+            }
+        }
+
+        // The string continues past the buffer.
+        scratchLength = 0;
+        appendScratch(buffer, start, pos - start);
+        escapes = readRestOfString(escaped) || escapes;
+        return decode(scratch, 0, scratchLength, escapes);
+    }
+
+    Binary readBinary() throws IOException, SerializerException {
+        try {
+            return Binary.fromBase64(readString());
+        } catch (IllegalArgumentException e) {
+            throw new SerializerException(e, "Unable to parse Base64 data.");
+        }
+    }
+
+    /**
+     * Read an integer from a string literal, e.g. a numeric map key.
+     *
+     * @param what The expected value type, for the error message.
+     * @return The value.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the string is not an integer.
+     */
+    long readQuotedLong(String what) throws IOException, SerializerException {
+        expect('\"', "map key");
+        long value = readLong(what);
+        if (!(pos < limit || fill()) || buffer[pos] != '\"') {
+            throw new SerializerException("Not a valid %s value", what);
+        }
+        ++pos;
+        return value;
+    }
+
+    /**
+     * Read a message key, and look up the field. The key may be either the
+     * field name or the numeric field ID.
+     *
+     * @param table      The field table of the message type.
+     * @param descriptor The message type.
+     * @return The field, or null if not found. See {@link #unknownKey()}.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the next value is not a string.
+     */
+    PField readKey(JsonFieldTable table, PStructDescriptor<?, ?> descriptor) throws IOException, SerializerException {
+        expect('\"', "message key");
+        byte[] bytes = buffer;
+        int start = pos;
+        int len = -1;
+        boolean escapes = false;
+        while (pos < limit) {
+            byte b = buffer[pos++];
+            if (b == '\\') {
+                escapes = true;
+                break;
+            } else if (b == '\"') {
+                len = pos - start - 1;
+                break;
+            }
+        }
+        if (len < 0) {
+            // The key has escapes or continues past the buffer.
+            scratchLength = 0;
+            if (escapes) {
+                appendScratch(buffer, start, pos - start - 1);
+                pos -= 1;
+            } else {
+                appendScratch(buffer, start, pos - start);
+            }
+            escapes = readRestOfString(false) || escapes;
+            bytes = scratch;
+            start = 0;
+            len = scratchLength;
+        }
+
+        PField field;
+        if (escapes) {
+            String key = decode(bytes, start, len, true);
+            field = isInteger(key) ? descriptor.getField(Integer.parseInt(key)) : descriptor.getField(key);
+        } else {
+            int id = parseFieldId(bytes, start, len);
+            field = id >= 0 ? descriptor.getField(id) : table.get(bytes, start, len);
+        }
+        if (field == null) {
+            unknownKey = new byte[len + 2];
+            unknownKey[0] = '\"';
+            System.arraycopy(bytes, start, unknownKey, 1, len);
+            unknownKey[len + 1] = '\"';
+        }
+        return field;
+    }
+
+    /**
+     * @return The raw JSON of the last key not found in the message type.
+     */
+    byte[] unknownKey() {
+        return unknownKey;
+    }
+
+    /**
+     * Skip the next value, and append its compact JSON to the output.
+     *
+     * @param raw Output to append the compact value JSON to, or null.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the value is invalid.
+     */
+    void skipValue(ByteArrayOutputStream raw) throws IOException, SerializerException {
+        int b = peek();
+        if (b == '{' || b == '[') {
+            char end = b == '{' ? '}' : ']';
+            ++pos;
+            append(raw, b);
+            if (peek() == end) {
+                ++pos;
+                append(raw, end);
+                return;
+            }
+            char sep;
+            do {
+                if (b == '{') {
+                    skipString(raw);
+                    expect(':', "map key value sep");
+                    append(raw, ':');
+                }
+                skipValue(raw);
+                sep = expectAny("list or map sep", ',', end);
+                append(raw, sep);
+            } while (sep != end);
+        } else if (b == '\"') {
+            skipString(raw);
+        } else if (b == 't' || b == 'f' || b == 'n' || b == '-' || (b >= '0' && b <= '9')) {
+            while (pos < limit || fill()) {
+                int c = buffer[pos];
+                if (c == ',' || c == ':' || c == ']' || c == '}' ||
+                    c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                    break;
+                }
+                append(raw, c);
+                ++pos;
+            }
+        } else {
+            throw unexpected(b, "value");
+        }
+    }
+
+    private void skipString(ByteArrayOutputStream raw) throws IOException, SerializerException {
+        expect('\"', "string literal");
+        append(raw, '\"');
+        boolean escaped = false;
+        while (pos < limit || fill()) {
+            byte b = buffer[pos++];
+            append(raw, b);
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '\"') {
+                return;
+            }
+        }
+        throw new SerializerException("Unexpected end of stream in string literal");
+    }
+
+    /**
+     * Read the rest of a string literal into the scratch buffer.
+     *
+     * @param escaped If the last byte read was an escape.
+     * @return True if the string contains escapes.
+     */
+    private boolean readRestOfString(boolean escaped) throws IOException, SerializerException {
+        boolean escapes = false;
+        while (pos < limit || fill()) {
+            byte b = buffer[pos++];
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = escapes = true;
+            } else if (b == '\"') {
+                return escapes;
+            }
+            appendScratch(b);
+        }
+        throw new SerializerException("Unexpected end of stream in string literal");
+    }
+
+    private void expectLiteral(String literal) throws IOException, SerializerException {
+        for (int i = 0; i < literal.length(); ++i) {
+            if (!(pos < limit || fill()) || buffer[pos] != literal.charAt(i)) {
+                throw new SerializerException("Invalid literal, expected %s", literal);
+            }
+            ++pos;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        if (markable) {
+            in.mark(buffer.length);
+        }
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            pos = limit = 0;
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+
+    private void appendScratch(int b) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        }
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    private void appendScratch(byte[] bytes, int off, int len) {
+        if (scratchLength + len > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchLength + len));
+        }
+        System.arraycopy(bytes, off, scratch, scratchLength, len);
+        scratchLength += len;
+    }
+
+    private static void append(ByteArrayOutputStream raw, int b) {
+        if (raw != null) {
+            raw.write(b);
+        }
+    }
+
+    private static SerializerException unexpected(int b, String what) {
+        if (b < 0) {
+            return new SerializerException("Unexpected end of stream, expected %s", what);
+        }
+        return new SerializerException("Unexpected '%c', expected %s", (char) b, what);
+    }
+
+    /**
+     * Parse numeric field ID from the key bytes.
+     *
+     * @return The field ID, or -1 if not numeric.
+     */
+    private static int parseFieldId(byte[] bytes, int off, int len) {
+        if (len == 0 || len > 9) {
+            return -1;
+        }
+        int id = 0;
+        for (int i = off; i < off + len; ++i) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            id = id * 10 + (b - '0');
+        }
+        return id;
+    }
+
+    private static boolean isInteger(String key) {
+        if (key.isEmpty() || key.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); ++i) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode the content of a JSON string literal.
+     */
+    private static String decode(byte[] bytes, int off, int len, boolean escapes) throws SerializerException {
+        if (!escapes) {
+            return new String(bytes, off, len, StandardCharsets.UTF_8);
+        }
+
+        StringBuilder out = new StringBuilder(len);
+        int start = off;
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (bytes[i] != '\\') {
+                ++i;
+                continue;
+            }
+            out.append(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+            if (i + 1 >= end) {
+                throw new SerializerException("Invalid escape at end of string literal");
+            }
+            char c = (char) bytes[i + 1];
+            i += 2;
+            switch (c) {
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case '\"':
+                case '\'':
+                case '\\':
+                case '/':
+                    out.append(c);
+                    break;
+                case 'u':
+                    if (i + 4 > end) {
+                        throw new SerializerException("Invalid unicode escape in string literal");
+                    }
+                    try {
+                        out.append((char) Integer.parseInt(new String(bytes, i, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException e) {
+                        throw new SerializerException(e, "Invalid unicode escape in string literal");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw new SerializerException("Invalid escaped char '%c' in string literal", c);
+            }
+            start = i;
+        }
+        out.append(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        return out.toString();
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compact JSON writer for the {@link FastJsonSerializer}. Writes UTF-8
+ * bytes directly to a byte buffer, and has no state apart from the buffer,
+ * so structure and separators are handled by the serializer.
+ */
+final class JsonByteWriter {
+    private static final byte[] TRUE  = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] NULL  = {'n', 'u', 'l', 'l'};
+    private static final byte[] HEX   = {'0', '1', '2', '3', '4', '5', '6', '7',
+                                         '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private final OutputStream out;
+    private final byte[]       buffer;
+    private       int          pos;
+    private       int          count;
+
+    JsonByteWriter(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[1 << 13];
+    }
+
+    /**
+     * @return The number of bytes written, including buffered bytes.
+     */
+    int getByteCount() {
+        return count + pos;
+    }
+
+    void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            count += pos;
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    void writeByte(int b) throws IOException {
+        if (pos == buffer.length) {
+            drain();
+        }
+        buffer[pos++] = (byte) b;
+    }
+
+    void writeRaw(byte[] bytes) throws IOException {
+        writeRaw(bytes, 0, bytes.length);
+    }
+
+    void writeRaw(byte[] bytes, int off, int len) throws IOException {
+        if (len > buffer.length - pos) {
+            drain();
+            if (len > buffer.length) {
+                out.write(bytes, off, len);
+                count += len;
+                return;
+            }
+        }
+        System.arraycopy(bytes, off, buffer, pos, len);
+        pos += len;
+    }
+
+    void writeNull() throws IOException {
+        writeRaw(NULL);
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+        writeRaw(value ? TRUE : FALSE);
+    }
+
+    void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            ++digits;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; --i) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        pos = end;
+    }
+
+    /**
+     * Write a double value. Integral values are written without fraction,
+     * the rest as by {@link Double#toString(double)}.
+     *
+     * @param value The value to write.
+     * @throws IOException If unable to write.
+     */
+    void writeDouble(double value) throws IOException {
+        long integral = (long) value;
+        if (value == (double) integral && integral != Long.MAX_VALUE && integral != Long.MIN_VALUE) {
+            writeLong(integral);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * Write the string as a quoted and escaped JSON string literal.
+     *
+     * @param value The string to write.
+     * @throws IOException If unable to write.
+     */
+    void writeString(CharSequence value) throws IOException {
+        writeByte('\"');
+        final int len = value.length();
+        for (int i = 0; i < len; ++i) {
+            char c = value.charAt(i);
+            if (buffer.length - pos < 6) {
+                drain();
+            }
+            if (c < 0x80) {
+                if (c == '\"' || c == '\\') {
+                    buffer[pos++] = '\\';
+                    buffer[pos++] = (byte) c;
+                } else if (c < 0x20 || c == 0x7f) {
+                    writeEscaped(c);
+                } else {
+                    buffer[pos++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                if (c < 0xa0) {
+                    // C1 control characters.
+                    writeEscaped(c);
+                } else {
+                    buffer[pos++] = (byte) (0xc0 | (c >> 6));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer[pos++] = (byte) (0xf0 | (cp >> 18));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buffer[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c) || !Character.isDefined(c)) {
+                writeEscaped(c);
+            } else {
+                buffer[pos++] = (byte) (0xe0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('\"');
+    }
+
+    /**
+     * Write ASCII only content, e.g. numbers and base64 data.
+     *
+     * @param value The ASCII content.
+     * @throws IOException If unable to write.
+     */
+    void writeAscii(String value) throws IOException {
+        final int len = value.length();
+        for (int i = 0; i < len; ++i) {
+            if (pos == buffer.length) {
+                drain();
+            }
+            buffer[pos++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeEscaped(char c) {
+        buffer[pos++] = '\\';
+        switch (c) {
+            case '\b':
+                buffer[pos++] = 'b';
+                break;
+            case '\t':
+                buffer[pos++] = 't';
+                break;
+            case '\n':
+                buffer[pos++] = 'n';
+                break;
+            case '\f':
+                buffer[pos++] = 'f';
+                break;
+            case '\r':
+                buffer[pos++] = 'r';
+                break;
+            default:
+                buffer[pos++] = 'u';
+                buffer[pos++] = HEX[(c >> 12) & 0xf];
+                buffer[pos++] = HEX[(c >> 8) & 0xf];
+                buffer[pos++] = HEX[(c >> 4) & 0xf];
+                buffer[pos++] = HEX[c & 0xf];
+                break;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.length - pos < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, pos);
+        count += pos;
+        pos = 0;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Precomputed JSON field name tables for a message type, used by the
+ * {@link FastJsonSerializer}. Field names are looked up directly from the
+ * UTF-8 bytes of the JSON key, and the quoted keys are kept as bytes ready
+ * to be written for both {@link JsonSerializer.IdType} variants.
+ */
+final class JsonFieldTable {
+    private final PField[] fields;
+    private final byte[][] idKeys;
+    private final byte[][] nameKeys;
+
+    // Open addressing hash table from field name bytes to field.
+    private final PField[] slots;
+    private final byte[][] slotNames;
+    private final int      mask;
+
+    JsonFieldTable(PStructDescriptor<?, ?> descriptor) {
+        this.fields = descriptor.getFields();
+        this.idKeys = new byte[fields.length][];
+        this.nameKeys = new byte[fields.length][];
+
+        int size = Integer.highestOneBit(Math.max(2, fields.length * 2 + 1)) << 1;
+        this.slots = new PField[size];
+        this.slotNames = new byte[size][];
+        this.mask = size - 1;
+
+        for (int i = 0; i < fields.length; ++i) {
+            PField field = fields[i];
+            byte[] name = field.getName().getBytes(StandardCharsets.UTF_8);
+
+            idKeys[i] = quotedKey(Integer.toString(field.getKey()));
+            nameKeys[i] = quotedKey(field.getName());
+
+            int slot = hash(name, 0, name.length) & mask;
+            while (slots[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = field;
+            slotNames[slot] = name;
+        }
+    }
+
+    /**
+     * @return The fields of the message type, in declared order.
+     */
+    PField[] fields() {
+        return fields;
+    }
+
+    /**
+     * Get the quoted key of the field at the index, including the key value
+     * separator.
+     *
+     * @param index  The field index in {@link #fields()}.
+     * @param idType The field ID type to write.
+     * @return The key bytes.
+     */
+    byte[] key(int index, JsonSerializer.IdType idType) {
+        return idType == JsonSerializer.IdType.ID ? idKeys[index] : nameKeys[index];
+    }
+
+    /**
+     * @param field The field to find.
+     * @return The index of the field in {@link #fields()}, or -1.
+     */
+    int indexOf(PField field) {
+        for (int i = 0; i < fields.length; ++i) {
+            if (fields[i].getKey() == field.getKey()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find field by the UTF-8 bytes of its name.
+     *
+     * @param bytes The byte array containing the name.
+     * @param off   Offset of the name.
+     * @param len   Length of the name.
+     * @return The field, or null if no field has the name.
+     */
+    PField get(byte[] bytes, int off, int len) {
+        int slot = hash(bytes, off, len) & mask;
+        PField field;
+        while ((field = slots[slot]) != null) {
+            if (matches(slotNames[slot], bytes, off, len)) {
+                return field;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] name, byte[] bytes, int off, int len) {
+        if (name.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            if (name[i] != bytes[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int off, int len) {
+        int h = len;
+        for (int i = 0; i < len; ++i) {
+            h = 31 * h + bytes[off + i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static byte[] quotedKey(String key) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            JsonByteWriter writer = new JsonByteWriter(out);
+            writer.writeString(key);
+            writer.writeByte(':');
+            writer.flush();
+        } catch (IOException e) {
+            // Writing to memory never fails.
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -27,6 +27,7 @@ import net.morimekta.providence.PServiceCall;
 import net.morimekta.providence.PServiceCallType;
 import net.morimekta.providence.PType;
 import net.morimekta.providence.PUnion;
+import net.morimekta.providence.PUnknownFields;
 import net.morimekta.providence.descriptor.PContainer;
 import net.morimekta.providence.descriptor.PDescriptor;
 import net.morimekta.providence.descriptor.PEnumDescriptor;
@@ -37,6 +38,11 @@ import net.morimekta.providence.descriptor.PService;
 import net.morimekta.providence.descriptor.PServiceMethod;
 import net.morimekta.providence.descriptor.PSet;
 import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
+import net.morimekta.providence.util.collect.PrimitiveKind;
+import net.morimekta.providence.util.collect.PrimitiveMap;
 import net.morimekta.util.Binary;
 import net.morimekta.util.Strings;
 import net.morimekta.util.io.CountingOutputStream;
@@ -62,7 +68,8 @@ import java.util.Map;
  * <p>
  * There is also the strict mode. If strict is OFF:
  * - Unknown enum values will be ignored (as field missing).
- * - Unknown fields will be ignored.
+ * - Unknown fields will be kept as unknown fields on the message, and
+ *   written back when the message is serialized as JSON.
  * - Struct validity will be ignored.
  * If strict more is ON:
  * - Unknown enum values will fail the deserialization.
@@ -218,6 +225,7 @@ public class JsonSerializer extends Serializer {
         PServiceCallType type = null;
         String methodName = null;
         int sequence = 0;
+        boolean hasSequence = false;
         try {
             tokenizer.expectSymbol("Service call start", JsonToken.kListStart);
 
@@ -250,6 +258,7 @@ public class JsonSerializer extends Serializer {
 
             sequence = tokenizer.expectNumber("Service call sequence")
                                 .intValue();
+            hasSequence = true;
 
             tokenizer.expectSymbol("Service call sep", JsonToken.kListSep);
 
@@ -277,23 +286,30 @@ public class JsonSerializer extends Serializer {
 
             return new PServiceCall<>(methodName, type, sequence, message);
         } catch (IOException | JsonException ie) {
-            throw new SerializerException(ie, ie.getMessage())
+            SerializerException ex = new SerializerException(ie, ie.getMessage())
                     .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
                     .setMethodName(methodName)
-                    .setCallType(type)
-                    .setSequenceNo(sequence);
+                    .setCallType(type);
+            if (hasSequence) {
+                ex.setSequenceNo(sequence);
+            }
+            throw ex;
         } catch (SerializerException se) {
-            throw new SerializerException(se, se.getMessage())
+            SerializerException ex = new SerializerException(se, se.getMessage())
                     .setExceptionType(se.getExceptionType())
                     .setMethodName(methodName)
-                    .setCallType(type)
-                    .setSequenceNo(sequence);
+                    .setCallType(type);
+            if (hasSequence) {
+                ex.setSequenceNo(sequence);
+            }
+            throw ex;
         }
     }
 
     private <T extends PMessage<T, F>, F extends PField> T parseMessage(JsonTokenizer tokenizer, PStructDescriptor<T, F> type)
             throws SerializerException, JsonException, IOException {
         PMessageBuilder<T, F> builder = type.builder();
+        StringBuilder unknown = null;
 
         if (tokenizer.peek("checking for empty message").isSymbol(JsonToken.kMapEnd)) {
             tokenizer.next();
@@ -317,13 +333,27 @@ public class JsonSerializer extends Serializer {
                 } else if (readStrict) {
                     throw new SerializerException("Unknown field " + key + " for type " + type.getQualifiedName(null));
                 } else {
-                    consume(tokenizer.expect("consuming unknown message value"), tokenizer);
+                    // Keep the unknown field as is, so it can be written back.
+                    if (unknown == null) {
+                        unknown = new StringBuilder().append(JsonToken.kMapStart);
+                    } else {
+                        unknown.append(JsonToken.kListSep);
+                    }
+                    unknown.append(token.asString())
+                           .append(JsonToken.kKeyValSep);
+                    consume(tokenizer.expect("consuming unknown message value"), tokenizer, unknown);
                 }
 
                 sep = tokenizer.expectSymbol("parsing message entry sep", JsonToken.kMapEnd, JsonToken.kListSep);
             }
         }
 
+        if (unknown != null) {
+            unknown.append(JsonToken.kMapEnd);
+            builder.setUnknownFields(new PUnknownFields(MIME_TYPE, Binary.wrap(unknown.toString()
+                                                                                       .getBytes(StandardCharsets.UTF_8))));
+        }
+
         if (readStrict) {
             try {
                 builder.validate();
@@ -352,7 +382,7 @@ public class JsonSerializer extends Serializer {
                 throw new SerializerException("Compact Field ID " + (i) + " outside field spectrum for type " +
                                               type.getQualifiedName(null));
             } else {
-                consume(tokenizer.expect("consuming compact message field value"), tokenizer);
+                consume(tokenizer.expect("consuming compact message field value"), tokenizer, null);
             }
 
             sep = tokenizer.expectSymbol("parsing compact message entry sep", JsonToken.kListEnd, JsonToken.kListSep);
@@ -369,28 +399,54 @@ public class JsonSerializer extends Serializer {
         return builder.build();
     }
 
-    private void consume(JsonToken token, JsonTokenizer tokenizer) throws IOException, JsonException {
+    /**
+     * Consume a JSON value without parsing it.
+     *
+     * @param token The first token of the value.
+     * @param tokenizer The tokenizer to consume the rest of the value from.
+     * @param raw Builder to append the compact JSON of the value to, or null.
+     */
+    private void consume(JsonToken token, JsonTokenizer tokenizer, StringBuilder raw) throws IOException, JsonException {
+        if (raw != null) {
+            raw.append(token.asString());
+        }
         if (token.isSymbol()) {
             if (token.isSymbol(JsonToken.kListStart)) {
                 if (tokenizer.peek("checking for empty list").isSymbol(JsonToken.kListEnd)) {
                     tokenizer.next();
+                    if (raw != null) {
+                        raw.append(JsonToken.kListEnd);
+                    }
                 } else {
                     char sep = JsonToken.kListStart;
                     while (sep != JsonToken.kListEnd) {
-                        consume(tokenizer.expect("consuming list item"), tokenizer);
+                        consume(tokenizer.expect("consuming list item"), tokenizer, raw);
                         sep = tokenizer.expectSymbol("consuming list sep", JsonToken.kListEnd, JsonToken.kListSep);
+                        if (raw != null) {
+                            raw.append(sep);
+                        }
                     }
                 }
             } else if (token.isSymbol(JsonToken.kMapStart)) {
                 if (tokenizer.peek("checking for empty map").isSymbol(JsonToken.kMapEnd)) {
                     tokenizer.next();
+                    if (raw != null) {
+                        raw.append(JsonToken.kMapEnd);
+                    }
                 } else {
                     char sep = JsonToken.kMapStart;
                     while (sep != JsonToken.kMapEnd) {
-                        tokenizer.expectString("consuming map key");
+                        JsonToken key = tokenizer.expectString("consuming map key");
                         tokenizer.expectSymbol("consuming map kv sep", JsonToken.kKeyValSep);
-                        consume(tokenizer.expect("consuming map value"), tokenizer);
+                        if (raw != null) {
+                            raw.append(key.asString())
+                               .append(JsonToken.kKeyValSep);
+                        }
+                        consume(tokenizer.expect("consuming map value"), tokenizer, raw);
                         sep = tokenizer.expectSymbol("consuming map entry sep", JsonToken.kMapEnd, JsonToken.kListSep);
+                        if (raw != null) {
+                            raw.append(sep);
+                        }
                     }
                 }
             }
@@ -493,15 +549,24 @@ public class JsonSerializer extends Serializer {
                         throw new SerializerException("Incompatible start of map " + token);
                     }
                     PMap.Builder<Object, Object> map = mapType.builder();
+                    PrimitiveMap.Builder<?, ?> primitive = map instanceof PrimitiveMap.Builder ?
+                                                           (PrimitiveMap.Builder<?, ?>) map : null;
 
                     if (!tokenizer.peek("checking for empty map").isSymbol(JsonToken.kMapEnd)) {
                         char sep = JsonToken.kMapStart;
                         while (sep != JsonToken.kMapEnd) {
-                            Object key = parseMapKey(tokenizer.expectString("parsing map key")
-                                                              .decodeJsonLiteral(), keyType);
+                            String keyString = tokenizer.expectString("parsing map key")
+                                                        .decodeJsonLiteral();
                             tokenizer.expectSymbol("parsing map K/V sep", JsonToken.kKeyValSep);
-                            Object value = parseTypedValue(tokenizer.expect("parsing map value"), tokenizer, itemType);
-                            map.put(key, value);
+                            JsonToken valueToken = tokenizer.expect("parsing map value");
+                            if (primitive != null) {
+                                long key = parsePrimitiveKeyBits(keyString, keyType, primitive.getKeyKind());
+                                primitive.putBits(key, parsePrimitiveBits(valueToken, primitive.getValueKind()));
+                            } else {
+                                Object key = parseMapKey(keyString, keyType);
+                                Object value = parseTypedValue(valueToken, tokenizer, itemType);
+                                map.put(key, value);
+                            }
                             sep = tokenizer.expectSymbol("parsing map entry sep", JsonToken.kMapEnd, JsonToken.kListSep);
                         }
                     }
@@ -534,7 +599,10 @@ public class JsonSerializer extends Serializer {
                     if (!tokenizer.peek("checking for empty list").isSymbol(JsonToken.kListEnd)) {
                         char sep = JsonToken.kListStart;
                         while (sep != JsonToken.kListEnd) {
-                            list.add(parseTypedValue(tokenizer.expect("parsing list value"), tokenizer, itemType));
+                            JsonToken item = tokenizer.expect("parsing list value");
+                            if (!addPrimitive(list, item)) {
+                                list.add(parseTypedValue(item, tokenizer, itemType));
+                            }
                             sep = tokenizer.expectSymbol("parsing list entry sep", JsonToken.kListSep, JsonToken.kListEnd);
                         }
                     }
@@ -550,6 +618,62 @@ public class JsonSerializer extends Serializer {
         throw new SerializerException("Unhandled item type " + t.getQualifiedName(null));
     }
 
+    /**
+     * Add a list item to a primitive list builder without boxing it.
+     *
+     * @param list The list builder.
+     * @param token The item token.
+     * @return True if the item was added, false if not a primitive list.
+     */
+    private static boolean addPrimitive(PList.Builder<?> list, JsonToken token) throws SerializerException {
+        if (list instanceof LongList.Builder) {
+            ((LongList.Builder) list).add(parsePrimitiveBits(token, PrimitiveKind.LONG));
+            return true;
+        } else if (list instanceof IntList.Builder) {
+            ((IntList.Builder) list).add((int) parsePrimitiveBits(token, PrimitiveKind.INT));
+            return true;
+        } else if (list instanceof DoubleList.Builder) {
+            ((DoubleList.Builder) list).add(Double.longBitsToDouble(parsePrimitiveBits(token, PrimitiveKind.DOUBLE)));
+            return true;
+        }
+        return false;
+    }
+
+    private static long parsePrimitiveBits(JsonToken token, PrimitiveKind kind) throws SerializerException {
+        switch (kind) {
+            case INT:
+                if (token.isInteger()) {
+                    return token.intValue();
+                }
+                throw new SerializerException("Not a valid int value: " + token.asString());
+            case LONG:
+                if (token.isInteger()) {
+                    return token.longValue();
+                }
+                throw new SerializerException("Not a valid long value: " + token.asString());
+            default:
+                if (token.isNumber()) {
+                    return Double.doubleToLongBits(token.doubleValue());
+                }
+                throw new SerializerException("Not a valid double value: " + token.asString());
+        }
+    }
+
+    private long parsePrimitiveKeyBits(String key, PDescriptor keyType, PrimitiveKind kind) throws SerializerException {
+        try {
+            switch (kind) {
+                case INT:
+                    return Integer.parseInt(key);
+                case LONG:
+                    return Long.parseLong(key);
+                default:
+                    return kind.bits(parseMapKey(key, keyType));
+            }
+        } catch (NumberFormatException nfe) {
+            throw new SerializerException(nfe, "Unable to parse numeric value %s", key);
+        }
+    }
+
     private Object parseMapKey(String key, PDescriptor keyType) throws SerializerException {
         try {
             switch (keyType.getType()) {
@@ -634,6 +758,7 @@ public class JsonSerializer extends Serializer {
                 }
                 appendTypedValue(writer, field.getDescriptor(), value);
             }
+            appendUnknownFields(writer, message);
             writer.endObject();
         } else {
             if (message.compact()) {
@@ -659,11 +784,41 @@ public class JsonSerializer extends Serializer {
                         appendTypedValue(writer, field.getDescriptor(), value);
                     }
                 }
+                appendUnknownFields(writer, message);
                 writer.endObject();
             }
         }
     }
 
+    /**
+     * Write the unknown fields of the message, if they were read as JSON.
+     *
+     * @param writer The writer to add the fields to.
+     * @param message The message to write unknown fields of.
+     */
+    private void appendUnknownFields(JsonWriter writer, PMessage<?,?> message) throws SerializerException, JsonException {
+        PUnknownFields unknown = message.unknownFields();
+        if (unknown == null || !MIME_TYPE.equals(unknown.getFormat())) {
+            return;
+        }
+        try {
+            JsonTokenizer tokenizer = new JsonTokenizer(new ByteArrayInputStream(unknown.getContent().get()));
+            tokenizer.expectSymbol("unknown fields start", JsonToken.kMapStart);
+            char sep = JsonToken.kMapStart;
+            while (sep != JsonToken.kMapEnd) {
+                JsonToken key = tokenizer.expectString("unknown field key");
+                tokenizer.expectSymbol("unknown field kv sep", JsonToken.kKeyValSep);
+                StringBuilder value = new StringBuilder();
+                consume(tokenizer.expect("unknown field value"), tokenizer, value);
+                writer.keyLiteral(key.asString())
+                      .valueLiteral(value);
+                sep = tokenizer.expectSymbol("unknown field sep", JsonToken.kMapEnd, JsonToken.kListSep);
+            }
+        } catch (IOException e) {
+            throw new SerializerException(e, "Unable to write unknown fields");
+        }
+    }
+
     private void appendTypedValue(JsonWriter writer, PDescriptor type, Object value)
             throws SerializerException, JsonException {
         switch (type.getType()) {
@@ -681,6 +836,16 @@ public class JsonSerializer extends Serializer {
 
                 Map<?, ?> map = (Map<?, ?>) value;
 
+                if (value instanceof PrimitiveMap) {
+                    PrimitiveMap<?, ?> primitive = (PrimitiveMap<?, ?>) value;
+                    for (int i = 0; i < primitive.size(); ++i) {
+                        appendPrimitiveBits(writer, primitive.getKeyKind(), primitive.keyBits(i), true);
+                        appendPrimitiveBits(writer, primitive.getValueKind(), primitive.valueBits(i), false);
+                    }
+                    writer.endObject();
+                    break;
+                }
+
                 for (Map.Entry<?, ?> entry : map.entrySet()) {
                     appendPrimitiveKey(writer, entry.getKey());
                     appendTypedValue(writer, mapType.itemDescriptor(), entry.getValue());
@@ -695,8 +860,25 @@ public class JsonSerializer extends Serializer {
                 PContainer<?> containerType = (PContainer<?>) type;
                 Collection<?> collection = (Collection<?>) value;
 
-                for (Object i : collection) {
-                    appendTypedValue(writer, containerType.itemDescriptor(), i);
+                if (value instanceof LongList) {
+                    LongList longs = (LongList) value;
+                    for (int i = 0; i < longs.size(); ++i) {
+                        writer.value(longs.getLong(i));
+                    }
+                } else if (value instanceof IntList) {
+                    IntList ints = (IntList) value;
+                    for (int i = 0; i < ints.size(); ++i) {
+                        writer.value(ints.getInt(i));
+                    }
+                } else if (value instanceof DoubleList) {
+                    DoubleList doubles = (DoubleList) value;
+                    for (int i = 0; i < doubles.size(); ++i) {
+                        writer.value(doubles.getDouble(i));
+                    }
+                } else {
+                    for (Object i : collection) {
+                        appendTypedValue(writer, containerType.itemDescriptor(), i);
+                    }
                 }
 
                 writer.endArray();
@@ -707,6 +889,41 @@ public class JsonSerializer extends Serializer {
         }
     }
 
+    /**
+     * Append a primitive map key or value from the unboxed value bits.
+     *
+     * @param writer The writer to add the key or value to.
+     * @param kind The primitive kind.
+     * @param bits The value bits.
+     * @param key True if writing a map key.
+     */
+    private static void appendPrimitiveBits(JsonWriter writer, PrimitiveKind kind, long bits, boolean key)
+            throws JsonException {
+        switch (kind) {
+            case INT:
+                if (key) {
+                    writer.key((int) bits);
+                } else {
+                    writer.value((int) bits);
+                }
+                break;
+            case LONG:
+                if (key) {
+                    writer.key(bits);
+                } else {
+                    writer.value(bits);
+                }
+                break;
+            default:
+                if (key) {
+                    writer.key(Double.longBitsToDouble(bits));
+                } else {
+                    writer.value(Double.longBitsToDouble(bits));
+                }
+                break;
+        }
+    }
+
     /**
      * @param writer    The writer to add primitive key to.
      * @param primitive Primitive object to get map key value of.
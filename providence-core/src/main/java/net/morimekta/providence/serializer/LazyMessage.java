@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PUnknownFields;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Message read with {@link FastBinarySerializer#deserializeLazy(java.io.InputStream, PStructDescriptor)}.
+ * Primitive fields are decoded when the message is read, but nested
+ * message and collection fields are kept as the serialized bytes, and
+ * are only decoded on the first {@link #get(int)} of the field.
+ * <p>
+ * The message keeps a copy of the serialized message, so serializing an
+ * untouched lazy message with {@link FastBinarySerializer} just copies
+ * the original bytes. Use {@link #decode()} to get the fully decoded
+ * message. A lazy message is never equal to a message of the decoded
+ * type, see {@link #equals(Object)}.
+ *
+ * @param <Message> The message type.
+ * @param <Field>   The message field type.
+ */
+public final class LazyMessage<Message extends PMessage<Message, Field>, Field extends PField>
+        implements PMessage<Message, Field> {
+    private final FastBinarySerializer              serializer;
+    private final PStructDescriptor<Message, Field> descriptor;
+    private final byte[]                            bytes;
+    private final Map<Integer, Slot>                slots;
+    private final PUnknownFields                    unknownFields;
+
+    private volatile Message defaults;
+    private volatile Message decoded;
+
+    LazyMessage(FastBinarySerializer serializer,
+                PStructDescriptor<Message, Field> descriptor,
+                byte[] bytes,
+                Map<Integer, Slot> slots,
+                PUnknownFields unknownFields) {
+        this.serializer = serializer;
+        this.descriptor = descriptor;
+        this.bytes = bytes;
+        this.slots = slots;
+        this.unknownFields = unknownFields;
+    }
+
+    /**
+     * Decode all the fields of the message.
+     *
+     * @return The decoded message.
+     */
+    public Message decode() {
+        Message result = decoded;
+        if (result == null) {
+            PMessageBuilder<Message, Field> builder = descriptor.builder();
+            for (Map.Entry<Integer, Slot> entry : slots.entrySet()) {
+                builder.set(entry.getKey(), get(entry.getKey()));
+            }
+            builder.setUnknownFields(unknownFields);
+            result = builder.build();
+            decoded = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return The serialized size of the message in bytes.
+     */
+    public int serializedSize() {
+        return bytes.length;
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean has(int key) {
+        return slots.containsKey(key) || defaults().has(key);
+    }
+
+    @Override
+    public int num(int key) {
+        if (!slots.containsKey(key)) {
+            return defaults().num(key);
+        }
+        Object value = get(key);
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        } else if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        }
+        return 1;
+    }
+
+    @Override
+    public Object get(int key) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            return defaults().get(key);
+        }
+        Object value = slot.value;
+        if (value == null) {
+            try {
+                value = serializer.readSlot(bytes, slot, descriptor.getField(key).getDescriptor());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SerializerException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            slot.value = value;
+        }
+        return value;
+    }
+
+    @Override
+    public PUnknownFields unknownFields() {
+        return unknownFields;
+    }
+
+    @Override
+    public PMessageBuilder<Message, Field> mutate() {
+        return decode().mutate();
+    }
+
+    @Override
+    public boolean compact() {
+        return decode().compact();
+    }
+
+    @Override
+    public String asString() {
+        return decode().asString();
+    }
+
+    @Override
+    public PStructDescriptor<Message, Field> descriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Compare with a message of the decoded type. This decodes the message.
+     *
+     * @param other The message to compare to.
+     * @return The compare result.
+     */
+    @Override
+    public int compareTo(Message other) {
+        return decode().compareTo(other);
+    }
+
+    /**
+     * A lazy message is only equal to another lazy message with the same
+     * content, and never to a message of the decoded type, as the
+     * generated equals does not know about lazy messages. Use
+     * {@link #decode()} to compare with decoded messages. Lazy messages
+     * with the same serialized bytes are compared without decoding.
+     *
+     * @param o The object to compare to.
+     * @return True if the other object is an equal lazy message.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof LazyMessage)) return false;
+        LazyMessage<?, ?> other = (LazyMessage<?, ?>) o;
+        if (!descriptor.equals(other.descriptor)) return false;
+        if (Arrays.equals(bytes, other.bytes)) return true;
+        return decode().equals(other.decode());
+    }
+
+    /**
+     * The hash code is the same as for the decoded message, so this decodes
+     * the message.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return decode().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return decode().toString();
+    }
+
+    private Message defaults() {
+        Message result = defaults;
+        if (result == null) {
+            result = descriptor.builder().build();
+            defaults = result;
+        }
+        return result;
+    }
+
+    /**
+     * Position of a field value in the serialized message, and the value
+     * when decoded.
+     */
+    static final class Slot {
+        final int type;
+        final int offset;
+        final int length;
+
+        volatile Object value;
+
+        Slot(int type, int offset, int length) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        Slot(Object value) {
+            this(0, 0, 0);
+            this.value = value;
+        }
+    }
+}
@@ -24,10 +24,13 @@ import net.morimekta.providence.PServiceCall;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PService;
 import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.util.io.ByteBufferOutputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Thrift serializers are stateless injectable implementation classes that
@@ -48,6 +51,123 @@ public abstract class Serializer {
     public abstract <Message extends PMessage<Message, Field>, Field extends PField>
     PServiceCall<Message, Field> deserialize(InputStream input, PService service) throws SerializerException, IOException;
 
+    /**
+     * Serialize the message into the byte buffer, starting at the buffer's
+     * position. The position is moved to after the written content.
+     *
+     * @param buffer The buffer to write to.
+     * @param message The message to serialize.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The number of bytes written.
+     * @throws IOException If the buffer does not have room for the message.
+     * @throws SerializerException If the message can not be serialized.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer buffer, Message message) throws IOException, SerializerException {
+        return serialize(new ByteBufferOutputStream(buffer), message);
+    }
+
+    /**
+     * Serialize the service call into the byte buffer, starting at the
+     * buffer's position. The position is moved to after the written content.
+     *
+     * @param buffer The buffer to write to.
+     * @param call The service call to serialize.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The number of bytes written.
+     * @throws IOException If the buffer does not have room for the call.
+     * @throws SerializerException If the call can not be serialized.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer buffer, PServiceCall<Message, Field> call) throws IOException, SerializerException {
+        return serialize(new ByteBufferOutputStream(buffer), call);
+    }
+
+    /**
+     * Deserialize a message from the byte buffer, starting at the buffer's
+     * position. The buffer may be heap, direct or memory mapped.
+     * <p>
+     * The binary serializers, {@link FastJsonSerializer} and
+     * {@link PrettySerializer} with enclosed messages move the position to
+     * right after the consumed content, so consecutive messages can be read
+     * from the same buffer. Other serializers may read ahead, and leave the
+     * position anywhere up to the buffer limit.
+     *
+     * @param buffer The buffer to read from.
+     * @param descriptor The message type descriptor.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The deserialized message.
+     * @throws IOException If the buffer does not contain the whole message.
+     * @throws SerializerException If the content is not a valid message.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    Message deserialize(ByteBuffer buffer, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
+        try (ByteBufferReader in = new ByteBufferReader(buffer, ByteOrder.BIG_ENDIAN)) {
+            return deserialize(in, descriptor);
+        }
+    }
+
+    /**
+     * Deserialize a service call from the byte buffer, starting at the
+     * buffer's position. The buffer may be heap, direct or memory mapped.
+     * <p>
+     * The binary serializers and {@link FastJsonSerializer} move the
+     * position to right after the consumed content. Other serializers may
+     * read ahead, and leave the position anywhere up to the buffer limit.
+     *
+     * @param buffer The buffer to read from.
+     * @param service The service to read a call to.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The deserialized service call.
+     * @throws IOException If the buffer does not contain the whole call.
+     * @throws SerializerException If the content is not a valid call.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(ByteBuffer buffer, PService service)
+            throws IOException, SerializerException {
+        try (ByteBufferReader in = new ByteBufferReader(buffer, ByteOrder.BIG_ENDIAN)) {
+            return deserialize(in, service);
+        }
+    }
+
+    /**
+     * Calculate the number of bytes the message will be serialized to. This
+     * can be used to pre-size buffers or to write length headers before the
+     * content. Serializers that can not calculate the size cheaper than by
+     * serializing the message returns -1.
+     *
+     * @param message The message to calculate the size of.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The serialized size in bytes, or -1 if not known.
+     * @throws SerializerException If the message can not be serialized.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serializedSize(Message message) throws SerializerException {
+        return -1;
+    }
+
+    /**
+     * Calculate the number of bytes the service call will be serialized to.
+     * Serializers that can not calculate the size cheaper than by
+     * serializing the call returns -1.
+     *
+     * @param call The service call to calculate the size of.
+     * @param <Message> The message type.
+     * @param <Field> The message field type.
+     * @return The serialized size in bytes, or -1 if not known.
+     * @throws SerializerException If the call can not be serialized.
+     */
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serializedSize(PServiceCall<Message, Field> call) throws SerializerException {
+        return -1;
+    }
+
     public abstract boolean binaryProtocol();
 
     public abstract String mimeType();
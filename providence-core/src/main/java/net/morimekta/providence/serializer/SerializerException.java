@@ -34,6 +34,7 @@ public class SerializerException extends Exception implements Stringable {
     private String           methodName;
     private PServiceCallType callType;
     private int              sequenceNo;
+    private boolean          hasSequenceNo;
     private ApplicationExceptionType exceptionType;
 
     public SerializerException(String format, Object... args) {
@@ -58,6 +59,14 @@ public class SerializerException extends Exception implements Stringable {
         return sequenceNo;
     }
 
+    /**
+     * @return True if the sequence number was read before the error, false
+     *         if {@link #getSequenceNo()} is just the default value.
+     */
+    public boolean hasSequenceNo() {
+        return hasSequenceNo;
+    }
+
     public ApplicationExceptionType getExceptionType() {
         return exceptionType;
     }
@@ -74,6 +83,7 @@ public class SerializerException extends Exception implements Stringable {
 
     public SerializerException setSequenceNo(int sequenceNo) {
         this.sequenceNo = sequenceNo;
+        this.hasSequenceNo = true;
         return this;
     }
 
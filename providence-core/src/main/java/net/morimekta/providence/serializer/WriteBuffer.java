@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import net.morimekta.util.io.BigEndianBinaryWriter;
+import net.morimekta.util.io.BinaryWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable, reusable byte arena for the binary serializers. The serializer
+ * writes the whole message into the buffer, and then flushes it to the
+ * target stream with a single write.
+ * <p>
+ * Each thread has a pooled buffer, which is handed out by {@link #acquire()}
+ * and given back with {@link #close()}. If the pooled buffer is already in
+ * use (e.g. serializing from within a serializer call), a new unpooled buffer
+ * is returned instead.
+ *
+ * <pre>{@code
+ * try (WriteBuffer buffer = WriteBuffer.acquire()) {
+ *     buffer.writer().writeInt(42);
+ *     buffer.writeTo(out);
+ * }
+ * }</pre>
+ */
+public final class WriteBuffer extends OutputStream {
+    private static final int INITIAL_CAPACITY = 1 << 10;  // 1 kB
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;  // 1 MB
+
+    private static final ThreadLocal<WriteBuffer> POOL = new ThreadLocal<WriteBuffer>() {
+        @Override
+        protected WriteBuffer initialValue() {
+            return new WriteBuffer(true);
+        }
+    };
+
+    private final boolean pooled;
+    private final Writer writer;
+    private final BigEndianWriter bigEndianWriter;
+
+    private byte[] buffer;
+    private int size;
+    private boolean inUse;
+
+    private WriteBuffer(boolean pooled) {
+        this.pooled = pooled;
+        this.buffer = new byte[INITIAL_CAPACITY];
+        this.writer = new Writer(this);
+        this.bigEndianWriter = new BigEndianWriter(this);
+    }
+
+    /**
+     * Get an empty buffer for the current thread.
+     *
+     * @return The write buffer.
+     */
+    public static WriteBuffer acquire() {
+        WriteBuffer buffer = POOL.get();
+        if (buffer.inUse) {
+            return new WriteBuffer(false);
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    /**
+     * @return Little endian binary writer writing to this buffer.
+     */
+    public Writer writer() {
+        return writer;
+    }
+
+    /**
+     * @return Big endian binary writer writing to this buffer.
+     */
+    public BigEndianWriter bigEndianWriter() {
+        return bigEndianWriter;
+    }
+
+    /**
+     * @return Number of bytes written to the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clear the buffer content, keeping the allocated capacity.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * Write the buffer content to the output stream.
+     *
+     * @param out The stream to write to.
+     * @return The number of bytes written.
+     * @throws IOException If unable to write to stream.
+     */
+    public int writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+        return size;
+    }
+
+    /**
+     * Write the buffer content to the byte buffer.
+     *
+     * @param out The buffer to write to.
+     * @return The number of bytes written.
+     * @throws IOException If there is not room for the content.
+     */
+    public int writeTo(ByteBuffer out) throws IOException {
+        if (out.remaining() < size) {
+            throw new IOException("Not enough space in buffer: " + out.remaining() + " < " + size);
+        }
+        out.put(buffer, 0, size);
+        return size;
+    }
+
+    /**
+     * @return Copy of the buffer content.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Encode the string as UTF-8 directly into the buffer. Unpaired
+     * surrogate chars are encoded as '?', same as
+     * {@link String#getBytes(java.nio.charset.Charset)}.
+     *
+     * @param str The string to write.
+     * @return The number of bytes written.
+     */
+    public int writeUtf8(CharSequence str) {
+        final int len = str.length();
+        ensureCapacity(size + 3 * len);
+
+        final byte[] buf = buffer;
+        int pos = size;
+        for (int i = 0; i < len; ++i) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                buf[pos++] = (byte) ch;
+            } else if (ch < 0x800) {
+                buf[pos++] = (byte) (0xc0 | (ch >> 6));
+                buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+            } else if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(ch, str.charAt(++i));
+                    buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    buf[pos++] = '?';
+                }
+            } else {
+                buf[pos++] = (byte) (0xe0 | (ch >> 12));
+                buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+            }
+        }
+        int written = pos - size;
+        size = pos;
+        return written;
+    }
+
+    /**
+     * Calculate the UTF-8 encoded length of a string without encoding it.
+     *
+     * @param str The string to check.
+     * @return The number of bytes needed to UTF-8 encode the string.
+     */
+    public static int utf8Length(CharSequence str) {
+        final int len = str.length();
+        int out = len;
+        for (int i = 0; i < len; ++i) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                continue;
+            }
+            if (ch < 0x800) {
+                out += 1;
+            } else if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+                    // 2 chars -> 4 bytes.
+                    out += 2;
+                    ++i;
+                }
+            } else {
+                out += 2;
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public void write(int b) {
+        if (size == buffer.length) {
+            ensureCapacity(size + 1);
+        }
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) {
+        ensureCapacity(size + len);
+        System.arraycopy(bytes, off, buffer, size, len);
+        size += len;
+    }
+
+    /**
+     * Give the buffer back to the pool. Oversized buffers are shrunk so the
+     * thread does not hold on to the memory of the largest message seen.
+     */
+    @Override
+    public void close() {
+        size = 0;
+        if (pooled) {
+            if (buffer.length > MAX_POOLED_CAPACITY) {
+                buffer = new byte[INITIAL_CAPACITY];
+            }
+            inUse = false;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length << 1));
+        }
+    }
+
+    /**
+     * Little endian binary writer with direct UTF-8 string encoding.
+     */
+    public static final class Writer extends BinaryWriter {
+        private final WriteBuffer buffer;
+
+        private Writer(WriteBuffer buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param str The string to write.
+         * @return The number of bytes written.
+         */
+        public int writeUtf8(CharSequence str) {
+            return buffer.writeUtf8(str);
+        }
+    }
+
+    /**
+     * Big endian binary writer with direct UTF-8 string encoding.
+     */
+    public static final class BigEndianWriter extends BigEndianBinaryWriter {
+        private final WriteBuffer buffer;
+
+        private BigEndianWriter(WriteBuffer buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param str The string to write.
+         * @return The number of bytes written.
+         */
+        public int writeUtf8(CharSequence str) {
+            return buffer.writeUtf8(str);
+        }
+    }
+}
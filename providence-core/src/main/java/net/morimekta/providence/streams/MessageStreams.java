@@ -32,6 +32,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Comparator;
 import java.util.Spliterator;
 import java.util.function.Consumer;
@@ -49,6 +52,9 @@ public class MessageStreams {
      * Read a file containing entries of a given type. Tries to detect the
      * entry format of the file based on file magic. If not detected will try
      * to use the default binary serializer format.
+     * <p>
+     * Files with binary serializer formats are memory mapped, and the
+     * messages are read directly from the mapped buffer.
      *
      * @param file       The file to read.
      * @param serializer The serializer to use.
@@ -63,6 +69,14 @@ public class MessageStreams {
                          Serializer serializer,
                          PStructDescriptor<Message, Field> descriptor)
             throws IOException {
+        if (serializer.binaryProtocol() && file.length() <= Integer.MAX_VALUE) {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed.
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            return StreamSupport.stream(new BufferMessageSpliterator<>(buffer, serializer, descriptor), false);
+        }
         InputStream in = new BufferedInputStream(new FileInputStream(file));
         return stream(in, serializer, descriptor);
     }
@@ -197,6 +211,35 @@ public class MessageStreams {
         }
     }
 
+    private static class BufferMessageSpliterator<Message extends PMessage<Message, Field>, Field extends PField>
+            extends BaseMessageSpliterator<Message, Field> {
+        private final ByteBuffer                        buffer;
+        private final PStructDescriptor<Message, Field> descriptor;
+        private final Serializer                        serializer;
+
+        private BufferMessageSpliterator(ByteBuffer buffer,
+                                         Serializer serializer,
+                                         PStructDescriptor<Message, Field> descriptor) {
+            this.buffer = buffer;
+            this.serializer = serializer;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public Message read() {
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            try {
+                return serializer.deserialize(buffer, descriptor);
+            } catch (SerializerException e) {
+                throw new UncheckedIOException(new IOException(e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     private static class StreamMessageSpliterator<Message extends PMessage<Message, Field>, Field extends PField>
             extends BaseMessageSpliterator<Message, Field> {
         private final InputStream                       in;
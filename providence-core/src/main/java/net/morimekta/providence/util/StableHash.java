@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.util;
+
+import net.morimekta.providence.PEnumValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Hash code helpers for generated messages, that give the same hash code in
+ * every JVM run. Java enums use the identity hash code, so enum values are
+ * hashed by their numeric value instead, also when contained in lists, sets
+ * and maps. Containers otherwise follow the {@link List#hashCode()},
+ * {@link Set#hashCode()} and {@link Map#hashCode()} contracts.
+ */
+public class StableHash {
+    /**
+     * @param value The value to hash, may be null.
+     * @return The stable hash code of the value.
+     */
+    public static int hashCode(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof PEnumValue) {
+            return ((PEnumValue<?>) value).getValue();
+        } else if (value instanceof List) {
+            return hashCode((List<?>) value);
+        } else if (value instanceof Set) {
+            return hashCode((Set<?>) value);
+        } else if (value instanceof Map) {
+            return hashCode((Map<?, ?>) value);
+        }
+        return value.hashCode();
+    }
+
+    /**
+     * @param list The list to hash.
+     * @return The stable hash code of the list.
+     */
+    public static int hashCode(List<?> list) {
+        int hash = 1;
+        if (list instanceof RandomAccess) {
+            for (int i = 0; i < list.size(); ++i) {
+                hash = 31 * hash + hashCode(list.get(i));
+            }
+        } else {
+            for (Object item : list) {
+                hash = 31 * hash + hashCode(item);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param set The set to hash.
+     * @return The stable hash code of the set.
+     */
+    public static int hashCode(Set<?> set) {
+        int hash = 0;
+        for (Object item : set) {
+            hash += hashCode(item);
+        }
+        return hash;
+    }
+
+    /**
+     * @param map The map to hash.
+     * @return The stable hash code of the map.
+     */
+    public static int hashCode(Map<?, ?> map) {
+        int hash = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            hash += hashCode(entry.getKey()) ^ hashCode(entry.getValue());
+        }
+        return hash;
+    }
+
+    private StableHash() {}
+}
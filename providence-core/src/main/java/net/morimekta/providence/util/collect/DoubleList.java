@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.descriptor.PList;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of doubles backed by a <code>double[]</code> array. The values
+ * are only boxed when accessed through the {@link List} interface, use
+ * {@link #getDouble(int)} to read them unboxed.
+ */
+public final class DoubleList extends AbstractList<Double> implements RandomAccess, Serializable {
+    private static final double[]   EMPTY_ARRAY = new double[0];
+    private static final DoubleList EMPTY       = new DoubleList(EMPTY_ARRAY, 0);
+
+    private final double[] values;
+    private final int    size;
+
+    private DoubleList(double[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param values The list values.
+     * @return The double list.
+     */
+    public static DoubleList of(double... values) {
+        if (values.length == 0) {
+            return EMPTY;
+        }
+        return new DoubleList(Arrays.copyOf(values, values.length), values.length);
+    }
+
+    /**
+     * @param values The list values.
+     * @return The double list, or the same instance if already a double list.
+     */
+    public static DoubleList copyOf(Collection<Double> values) {
+        if (values instanceof DoubleList) {
+            return (DoubleList) values;
+        }
+        return new Builder(values.size()).addAll(values).build();
+    }
+
+    /**
+     * @param index The value index.
+     * @return The unboxed value.
+     */
+    public double getDouble(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return A copy of the list values.
+     */
+    public double[] toDoubleArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; ++i) {
+            hash = 31 * hash + Double.hashCode(values[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof DoubleList) {
+            DoubleList other = (DoubleList) o;
+            if (other.size != size) {
+                return false;
+            }
+            for (int i = 0; i < size; ++i) {
+                if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(other.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * Builder for double lists. Adding all values of another double list to an
+     * empty builder shares the backing array until the builder is modified.
+     */
+    public static class Builder implements PList.Builder<Double> {
+        private double[]  values;
+        private int     size;
+        private boolean shared;
+
+        public Builder() {
+            this.values = EMPTY_ARRAY;
+        }
+
+        public Builder(int capacity) {
+            this.values = capacity > 0 ? new double[capacity] : EMPTY_ARRAY;
+        }
+
+        @Override
+        public Builder add(Double value) {
+            return add(value.doubleValue());
+        }
+
+        public Builder add(double value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            return this;
+        }
+
+        @Override
+        public Builder addAll(Collection<Double> items) {
+            if (items instanceof DoubleList) {
+                DoubleList other = (DoubleList) items;
+                if (size == 0) {
+                    values = other.values;
+                    size = other.size;
+                    shared = true;
+                } else {
+                    ensureCapacity(size + other.size);
+                    System.arraycopy(other.values, 0, values, size, other.size);
+                    size += other.size;
+                }
+            } else {
+                ensureCapacity(size + items.size());
+                for (Double item : items) {
+                    values[size++] = item;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Builder clear() {
+            values = EMPTY_ARRAY;
+            size = 0;
+            shared = false;
+            return this;
+        }
+
+        @Override
+        public DoubleList build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+            shared = true;
+            return new DoubleList(values, size);
+        }
+
+        /**
+         * Make sure the builder has room for the given number of values
+         * without reallocating.
+         *
+         * @param capacity The needed capacity.
+         * @return The builder.
+         */
+        public Builder ensureCapacity(int capacity) {
+            if (shared || capacity > values.length) {
+                int length = Math.max(capacity, shared ? values.length : values.length * 2);
+                values = Arrays.copyOf(values, Math.max(length, 8));
+                shared = false;
+            }
+            return this;
+        }
+    }
+}
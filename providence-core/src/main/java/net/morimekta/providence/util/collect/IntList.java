@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.descriptor.PList;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of ints backed by an <code>int[]</code> array. The values
+ * are only boxed when accessed through the {@link List} interface, use
+ * {@link #getInt(int)} to read them unboxed.
+ */
+public final class IntList extends AbstractList<Integer> implements RandomAccess, Serializable {
+    private static final int[]   EMPTY_ARRAY = new int[0];
+    private static final IntList EMPTY       = new IntList(EMPTY_ARRAY, 0);
+
+    private final int[] values;
+    private final int    size;
+
+    private IntList(int[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param values The list values.
+     * @return The int list.
+     */
+    public static IntList of(int... values) {
+        if (values.length == 0) {
+            return EMPTY;
+        }
+        return new IntList(Arrays.copyOf(values, values.length), values.length);
+    }
+
+    /**
+     * @param values The list values.
+     * @return The int list, or the same instance if already an int list.
+     */
+    public static IntList copyOf(Collection<Integer> values) {
+        if (values instanceof IntList) {
+            return (IntList) values;
+        }
+        return new Builder(values.size()).addAll(values).build();
+    }
+
+    /**
+     * @param index The value index.
+     * @return The unboxed value.
+     */
+    public int getInt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return A copy of the list values.
+     */
+    public int[] toIntArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; ++i) {
+            hash = 31 * hash + Integer.hashCode(values[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof IntList) {
+            IntList other = (IntList) o;
+            if (other.size != size) {
+                return false;
+            }
+            for (int i = 0; i < size; ++i) {
+                if (values[i] != other.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * Builder for int lists. Adding all values of another int list to an
+     * empty builder shares the backing array until the builder is modified.
+     */
+    public static class Builder implements PList.Builder<Integer> {
+        private int[]  values;
+        private int     size;
+        private boolean shared;
+
+        public Builder() {
+            this.values = EMPTY_ARRAY;
+        }
+
+        public Builder(int capacity) {
+            this.values = capacity > 0 ? new int[capacity] : EMPTY_ARRAY;
+        }
+
+        @Override
+        public Builder add(Integer value) {
+            return add(value.intValue());
+        }
+
+        public Builder add(int value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            return this;
+        }
+
+        @Override
+        public Builder addAll(Collection<Integer> items) {
+            if (items instanceof IntList) {
+                IntList other = (IntList) items;
+                if (size == 0) {
+                    values = other.values;
+                    size = other.size;
+                    shared = true;
+                } else {
+                    ensureCapacity(size + other.size);
+                    System.arraycopy(other.values, 0, values, size, other.size);
+                    size += other.size;
+                }
+            } else {
+                ensureCapacity(size + items.size());
+                for (Integer item : items) {
+                    values[size++] = item;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Builder clear() {
+            values = EMPTY_ARRAY;
+            size = 0;
+            shared = false;
+            return this;
+        }
+
+        @Override
+        public IntList build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+            shared = true;
+            return new IntList(values, size);
+        }
+
+        /**
+         * Make sure the builder has room for the given number of values
+         * without reallocating.
+         *
+         * @param capacity The needed capacity.
+         * @return The builder.
+         */
+        public Builder ensureCapacity(int capacity) {
+            if (shared || capacity > values.length) {
+                int length = Math.max(capacity, shared ? values.length : values.length * 2);
+                values = Arrays.copyOf(values, Math.max(length, 8));
+                shared = false;
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.descriptor.PList;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of longs backed by a <code>long[]</code> array. The values
+ * are only boxed when accessed through the {@link List} interface, use
+ * {@link #getLong(int)} to read them unboxed.
+ */
+public final class LongList extends AbstractList<Long> implements RandomAccess, Serializable {
+    private static final long[]   EMPTY_ARRAY = new long[0];
+    private static final LongList EMPTY       = new LongList(EMPTY_ARRAY, 0);
+
+    private final long[] values;
+    private final int    size;
+
+    private LongList(long[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param values The list values.
+     * @return The long list.
+     */
+    public static LongList of(long... values) {
+        if (values.length == 0) {
+            return EMPTY;
+        }
+        return new LongList(Arrays.copyOf(values, values.length), values.length);
+    }
+
+    /**
+     * @param values The list values.
+     * @return The long list, or the same instance if already a long list.
+     */
+    public static LongList copyOf(Collection<Long> values) {
+        if (values instanceof LongList) {
+            return (LongList) values;
+        }
+        return new Builder(values.size()).addAll(values).build();
+    }
+
+    /**
+     * @param index The value index.
+     * @return The unboxed value.
+     */
+    public long getLong(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return A copy of the list values.
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; ++i) {
+            hash = 31 * hash + Long.hashCode(values[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof LongList) {
+            LongList other = (LongList) o;
+            if (other.size != size) {
+                return false;
+            }
+            for (int i = 0; i < size; ++i) {
+                if (values[i] != other.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * Builder for long lists. Adding all values of another long list to an
+     * empty builder shares the backing array until the builder is modified.
+     */
+    public static class Builder implements PList.Builder<Long> {
+        private long[]  values;
+        private int     size;
+        private boolean shared;
+
+        public Builder() {
+            this.values = EMPTY_ARRAY;
+        }
+
+        public Builder(int capacity) {
+            this.values = capacity > 0 ? new long[capacity] : EMPTY_ARRAY;
+        }
+
+        @Override
+        public Builder add(Long value) {
+            return add(value.longValue());
+        }
+
+        public Builder add(long value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            return this;
+        }
+
+        @Override
+        public Builder addAll(Collection<Long> items) {
+            if (items instanceof LongList) {
+                LongList other = (LongList) items;
+                if (size == 0) {
+                    values = other.values;
+                    size = other.size;
+                    shared = true;
+                } else {
+                    ensureCapacity(size + other.size);
+                    System.arraycopy(other.values, 0, values, size, other.size);
+                    size += other.size;
+                }
+            } else {
+                ensureCapacity(size + items.size());
+                for (Long item : items) {
+                    values[size++] = item;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Builder clear() {
+            values = EMPTY_ARRAY;
+            size = 0;
+            shared = false;
+            return this;
+        }
+
+        @Override
+        public LongList build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (values.length != size) {
+                values = Arrays.copyOf(values, size);
+            }
+            shared = true;
+            return new LongList(values, size);
+        }
+
+        /**
+         * Make sure the builder has room for the given number of values
+         * without reallocating.
+         *
+         * @param capacity The needed capacity.
+         * @return The builder.
+         */
+        public Builder ensureCapacity(int capacity) {
+            if (shared || capacity > values.length) {
+                int length = Math.max(capacity, shared ? values.length : values.length * 2);
+                values = Arrays.copyOf(values, Math.max(length, 8));
+                shared = false;
+            }
+            return this;
+        }
+    }
+}
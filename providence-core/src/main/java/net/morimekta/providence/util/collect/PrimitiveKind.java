@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.PType;
+
+/**
+ * The primitive number types that can be stored unboxed in a
+ * {@link PrimitiveMap}. All values are stored as <code>long</code> bits:
+ * ints are widened, and doubles use {@link Double#doubleToLongBits(double)},
+ * so equal bits means equal values in the same way as {@link Object#equals(Object)}
+ * on the boxed values.
+ */
+public enum PrimitiveKind {
+    INT(PType.I32) {
+        @Override
+        public Object box(long bits) {
+            return (int) bits;
+        }
+
+        @Override
+        public long bits(Object value) {
+            return (Integer) value;
+        }
+
+        @Override
+        public boolean isInstance(Object value) {
+            return value instanceof Integer;
+        }
+
+        @Override
+        public int hashCode(long bits) {
+            return Integer.hashCode((int) bits);
+        }
+    },
+    LONG(PType.I64) {
+        @Override
+        public Object box(long bits) {
+            return bits;
+        }
+
+        @Override
+        public long bits(Object value) {
+            return (Long) value;
+        }
+
+        @Override
+        public boolean isInstance(Object value) {
+            return value instanceof Long;
+        }
+
+        @Override
+        public int hashCode(long bits) {
+            return Long.hashCode(bits);
+        }
+    },
+    DOUBLE(PType.DOUBLE) {
+        @Override
+        public Object box(long bits) {
+            return Double.longBitsToDouble(bits);
+        }
+
+        @Override
+        public long bits(Object value) {
+            return Double.doubleToLongBits((Double) value);
+        }
+
+        @Override
+        public boolean isInstance(Object value) {
+            return value instanceof Double;
+        }
+
+        @Override
+        public int hashCode(long bits) {
+            // Same as Double.hashCode(double).
+            return Long.hashCode(bits);
+        }
+    };
+
+    private final PType type;
+
+    PrimitiveKind(PType type) {
+        this.type = type;
+    }
+
+    /**
+     * @return The providence type of the values.
+     */
+    public PType getType() {
+        return type;
+    }
+
+    /**
+     * @param bits The value bits.
+     * @return The boxed value.
+     */
+    public abstract Object box(long bits);
+
+    /**
+     * @param value The boxed value.
+     * @return The value bits.
+     */
+    public abstract long bits(Object value);
+
+    /**
+     * @param value The value to check.
+     * @return True if the value is a boxed value of this kind.
+     */
+    public abstract boolean isInstance(Object value);
+
+    /**
+     * @param bits The value bits.
+     * @return The hash code of the boxed value.
+     */
+    public abstract int hashCode(long bits);
+
+    /**
+     * @param type The providence type.
+     * @return The primitive kind for the type, or null if the type cannot be
+     *         stored unboxed.
+     */
+    public static PrimitiveKind forType(PType type) {
+        switch (type) {
+            case I32:
+                return INT;
+            case I64:
+                return LONG;
+            case DOUBLE:
+                return DOUBLE;
+            default:
+                return null;
+        }
+    }
+}
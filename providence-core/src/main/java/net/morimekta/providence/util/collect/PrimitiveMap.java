@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.descriptor.PMap;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable map with primitive number keys and values, stored unboxed in
+ * <code>long[]</code> arrays in insertion order, with an open addressing
+ * hash table for lookup. Keys and values are only boxed when accessed
+ * through the {@link Map} interface. Use {@link #size()},
+ * {@link #keyBits(int)} and {@link #valueBits(int)} to iterate the entries
+ * unboxed, and {@link #indexOf(long)} to look up a key. See
+ * {@link PrimitiveKind} for how values are stored as bits.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public final class PrimitiveMap<K, V> extends AbstractMap<K, V> implements Serializable {
+    private static final long[] EMPTY_ARRAY = new long[0];
+    private static final int[]  EMPTY_TABLE = new int[1];
+
+    private final PrimitiveKind keyKind;
+    private final PrimitiveKind valueKind;
+    private final long[]        keys;
+    private final long[]        values;
+    private final int[]         table;
+    private final int           size;
+
+    private transient Set<Entry<K, V>> entrySet;
+
+    private PrimitiveMap(PrimitiveKind keyKind, PrimitiveKind valueKind,
+                         long[] keys, long[] values, int[] table, int size) {
+        this.keyKind = keyKind;
+        this.valueKind = valueKind;
+        this.keys = keys;
+        this.values = values;
+        this.table = table;
+        this.size = size;
+    }
+
+    /**
+     * @param keyKind The key kind.
+     * @param valueKind The value kind.
+     * @param map The map to copy.
+     * @param <K> The key type.
+     * @param <V> The value type.
+     * @return The primitive map, or the same instance if already a
+     *         primitive map of the same kinds.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PrimitiveMap<K, V> copyOf(PrimitiveKind keyKind, PrimitiveKind valueKind, Map<K, V> map) {
+        if (map instanceof PrimitiveMap) {
+            PrimitiveMap<K, V> other = (PrimitiveMap<K, V>) map;
+            if (other.keyKind == keyKind && other.valueKind == valueKind) {
+                return other;
+            }
+        }
+        return new Builder<K, V>(keyKind, valueKind).putAll(map).build();
+    }
+
+    public PrimitiveKind getKeyKind() {
+        return keyKind;
+    }
+
+    public PrimitiveKind getValueKind() {
+        return valueKind;
+    }
+
+    /**
+     * @param index The entry index, in insertion order.
+     * @return The key bits of the entry.
+     */
+    public long keyBits(int index) {
+        checkIndex(index);
+        return keys[index];
+    }
+
+    /**
+     * @param index The entry index, in insertion order.
+     * @return The value bits of the entry.
+     */
+    public long valueBits(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @param keyBits The key bits to look up.
+     * @return The entry index of the key, or -1 if not present.
+     */
+    public int indexOf(long keyBits) {
+        return find(table, keys, keyBits);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return keyKind.isInstance(key) && indexOf(keyKind.bits(key)) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (!keyKind.isInstance(key)) {
+            return null;
+        }
+        int index = indexOf(keyKind.bits(key));
+        return index < 0 ? null : (V) valueKind.box(values[index]);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < size; ++i) {
+            hash += keyKind.hashCode(keys[i]) ^ valueKind.hashCode(values[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof PrimitiveMap) {
+            PrimitiveMap<?, ?> other = (PrimitiveMap<?, ?>) o;
+            if (other.keyKind == keyKind && other.valueKind == valueKind) {
+                if (other.size != size) {
+                    return false;
+                }
+                for (int i = 0; i < size; ++i) {
+                    int index = other.indexOf(keys[i]);
+                    if (index < 0 || other.values[index] != values[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return super.equals(o);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new Iterator<Entry<K, V>>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public Entry<K, V> next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    int i = next++;
+                    return new SimpleImmutableEntry<>((K) keyKind.box(keys[i]), (V) valueKind.box(values[i]));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static int hash(long bits) {
+        long h = bits * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int find(int[] table, long[] keys, long keyBits) {
+        int mask = table.length - 1;
+        for (int slot = hash(keyBits) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[table[slot] - 1] == keyBits) {
+                return table[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void insert(int[] table, long keyBits, int index) {
+        int mask = table.length - 1;
+        int slot = hash(keyBits) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Builder for primitive maps. Entries keep the order they were put in.
+     * Putting an already present key throws an
+     * {@link IllegalArgumentException}, same as with the
+     * {@link PMap.ImmutableMapBuilder}. Putting all entries of another
+     * primitive map into an empty builder shares the backing arrays until
+     * the builder is modified.
+     *
+     * @param <K> The key type.
+     * @param <V> The value type.
+     */
+    public static class Builder<K, V> implements PMap.Builder<K, V> {
+        private final PrimitiveKind keyKind;
+        private final PrimitiveKind valueKind;
+
+        private long[]  keys;
+        private long[]  values;
+        private int[]   table;
+        private int     size;
+        private boolean shared;
+
+        public Builder(PrimitiveKind keyKind, PrimitiveKind valueKind) {
+            this.keyKind = keyKind;
+            this.valueKind = valueKind;
+            this.keys = EMPTY_ARRAY;
+            this.values = EMPTY_ARRAY;
+            this.table = EMPTY_TABLE;
+        }
+
+        public PrimitiveKind getKeyKind() {
+            return keyKind;
+        }
+
+        public PrimitiveKind getValueKind() {
+            return valueKind;
+        }
+
+        @Override
+        public Builder<K, V> put(K key, V value) {
+            return putBits(keyKind.bits(key), valueKind.bits(value));
+        }
+
+        /**
+         * Put an entry given as key and value bits.
+         *
+         * @param keyBits The key bits.
+         * @param valueBits The value bits.
+         * @return The builder.
+         * @throws IllegalArgumentException If the key is already present.
+         */
+        public Builder<K, V> putBits(long keyBits, long valueBits) {
+            int index = find(table, keys, keyBits);
+            if (index >= 0) {
+                throw new IllegalArgumentException(
+                        "Multiple entries with same key: " +
+                        keyKind.box(keyBits) + "=" + valueKind.box(values[index]) + " and " +
+                        keyKind.box(keyBits) + "=" + valueKind.box(valueBits));
+            }
+            ensureCapacity(size + 1);
+            keys[size] = keyBits;
+            values[size] = valueBits;
+            insert(table, keyBits, size);
+            ++size;
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Builder<K, V> putAll(Map<K, V> map) {
+            if (map instanceof PrimitiveMap) {
+                PrimitiveMap<K, V> other = (PrimitiveMap<K, V>) map;
+                if (other.keyKind == keyKind && other.valueKind == valueKind) {
+                    if (size == 0) {
+                        keys = other.keys;
+                        values = other.values;
+                        table = other.table;
+                        size = other.size;
+                        shared = true;
+                    } else {
+                        ensureCapacity(size + other.size);
+                        for (int i = 0; i < other.size; ++i) {
+                            putBits(other.keys[i], other.values[i]);
+                        }
+                    }
+                    return this;
+                }
+            }
+            ensureCapacity(size + map.size());
+            for (Entry<K, V> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        @Override
+        public Builder<K, V> clear() {
+            keys = EMPTY_ARRAY;
+            values = EMPTY_ARRAY;
+            table = EMPTY_TABLE;
+            size = 0;
+            shared = false;
+            return this;
+        }
+
+        @Override
+        public PrimitiveMap<K, V> build() {
+            if (keys.length != size) {
+                keys = Arrays.copyOf(keys, size);
+                values = Arrays.copyOf(values, size);
+            }
+            shared = true;
+            return new PrimitiveMap<>(keyKind, valueKind, keys, values, table, size);
+        }
+
+        /**
+         * Make sure the builder has room for the given number of entries
+         * without reallocating.
+         *
+         * @param capacity The needed capacity.
+         * @return The builder.
+         */
+        public Builder<K, V> ensureCapacity(int capacity) {
+            if (shared || capacity > keys.length) {
+                int length = Math.max(8, Math.max(capacity, shared ? keys.length : keys.length * 2));
+                keys = Arrays.copyOf(keys, length);
+                values = Arrays.copyOf(values, length);
+                // Keep the table at most half full.
+                int tableLength = Integer.highestOneBit(length * 2 - 1) << 1;
+                if (shared || tableLength != table.length) {
+                    table = new int[tableLength];
+                    for (int i = 0; i < size; ++i) {
+                        insert(table, keys[i], i);
+                    }
+                }
+                shared = false;
+            }
+            return this;
+        }
+    }
+}
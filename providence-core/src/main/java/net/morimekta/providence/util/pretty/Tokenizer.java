@@ -22,81 +22,66 @@ package net.morimekta.providence.util.pretty;
 
 import net.morimekta.util.Slice;
 import net.morimekta.util.Strings;
-import net.morimekta.util.io.IOUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Simple tokenizer for the pretty serializer that strips away comments based
  * on the "#" (shell) comment character. Each comment lasts until the next
  * newline.
+ * <p>
+ * The input is read incrementally into a window buffer, which is refilled
+ * as the tokens are read. Apart from the token being read, only the current
+ * and previous line are kept in the buffer, so the line content of errors
+ * on these lines can be reported. Returned tokens reference the buffer they
+ * were read from, which is never overwritten.
+ * <p>
+ * With enclosed content, the tokenizer will not read from the input stream
+ * past the end of the enclosing message. If the input stream supports mark
+ * and reset, the input is still read in chunks, otherwise it is read one
+ * byte at a time.
  */
 public class Tokenizer extends InputStream {
-    private final byte[] buffer;
-    private       int    readOffset;
-    private       int    lineNo;
-    private       int    linePos;
-    private       Token  nextToken;
+    private static final int BUFFER_SIZE   = 1 << 13;
+    private static final int MAX_LINE_KEPT = BUFFER_SIZE / 2;
+
+    private final InputStream in;
+    private final boolean     enclosedContent;
+
+    // The buffer window, and the offset in the stream of its first byte.
+    private byte[]  buffer;
+    private int     bufferOffset;
+    private int     bufferLength;
+    private boolean endOfStream;
+
+    // Enclosed content state.
+    private int     stack;
+    private char    literal;
+    private boolean escaped;
+    private boolean comment;
+
+    // Stream offset of the start of the token being read, or -1 if none.
+    private int   mark;
+    private int   readOffset;
+    private int   lineNo;
+    private int   linePos;
+    private int   lineStart;
+    private int   prevLineStart;
+    private Token nextToken;
 
     public Tokenizer(InputStream in, boolean enclosedContent) throws IOException {
-        ByteArrayOutputStream tmp = new ByteArrayOutputStream();
-        if (enclosedContent) {
-            int stack = 0;
-            char literal = '\0';
-            boolean escaped = false;
-            boolean comment = false;
-
-            int r;
-            while ((r = in.read()) >= 0) {
-                if (comment) {
-                    if (r == '\n' || r == '\r') {
-                        tmp.write(r);
-                        comment = false;
-                    }
-                } else {
-                    if (literal != '\0') {
-                        if (escaped) {
-                            escaped = false;
-                        } else if (r == literal) {
-                            literal = '\0';
-                            escaped = false;
-                        } else if (r == '\\') {
-                            escaped = true;
-                        }
-                    } else if (r == ' ' || r == '\t' || r == '\r' || r == '\n') {
-                        // just continue.
-                    } else if (r == '\"' || r == '\'') {
-                        literal = (char) r;
-                    } else if (r == '#') {
-                        comment = true;
-                        continue;  // do not write char.
-                    } else if (r == '}') {
-                        if (--stack <= 0) {
-                            tmp.write(r);
-                            break;
-                        }
-                    } else if (r == '{') {
-                        ++stack;
-                    } else if (stack == 0) {
-                        // This means there is a "meaningful" symbol
-                        // before the first { character. This means we are
-                        // actually in non-enclosed mode. Setting the max
-                        // stack to 1, so that the read will not stop until
-                        // end or file, or something invalid has occurred.
-                        stack = 1;
-                    }
+        this.in = in;
+        this.enclosedContent = enclosedContent;
 
-                    tmp.write(r);
-                }
-            }
-        } else {
-            IOUtils.copy(in, tmp);
-        }
+        this.buffer = new byte[BUFFER_SIZE];
+        this.bufferOffset = 0;
+        this.bufferLength = 0;
+        this.literal = '\0';
 
-        this.buffer = tmp.toByteArray();
+        this.mark = -1;
         this.readOffset = -1;
 
         this.lineNo = 1;
@@ -104,19 +89,23 @@ public class Tokenizer extends InputStream {
     }
 
     @Override
-    public int read() {
-        if (++readOffset >= buffer.length) {
-            readOffset = buffer.length;
+    public int read() throws IOException {
+        int next = readOffset + 1;
+        if (next >= bufferOffset + bufferLength && !fill()) {
+            readOffset = bufferOffset + bufferLength;
             return -1;
         }
-        int ret = buffer[readOffset];
+        readOffset = next;
+        int ret = buffer[next - bufferOffset] & 0xFF;
         if (ret == '\n') {
             ++lineNo;
             linePos = -1;
+            prevLineStart = lineStart;
+            lineStart = next + 1;
         } else {
             ++linePos;
         }
-        return ret > 0 ? ret : 0x100 + ret;
+        return ret;
     }
 
     /**
@@ -124,18 +113,158 @@ public class Tokenizer extends InputStream {
      * immediately after reading, until reading again.
      */
     private void unread() {
-        if (readOffset == buffer.length) {
+        if (readOffset >= bufferOffset + bufferLength) {
             --readOffset;
             return;
         }
 
-        if (buffer[readOffset--] == '\n') {
+        if (buffer[readOffset-- - bufferOffset] == '\n') {
             --lineNo;
+            lineStart = prevLineStart;
         } else {
             --linePos;
         }
     }
 
+    /**
+     * Read more content into the buffer window.
+     *
+     * @return True if more content was read, false on end of stream.
+     * @throws IOException If unable to read from the input stream.
+     */
+    private boolean fill() throws IOException {
+        if (endOfStream) {
+            return false;
+        }
+
+        if (bufferLength == buffer.length) {
+            // Keep the last read byte for unread, the token being read, and
+            // the current and previous line for error reporting unless they
+            // are very long. Tokens already returned may still reference the
+            // old buffer, so the window is moved to a new buffer.
+            int keep = Math.max(readOffset, 0);
+            if (mark >= 0) {
+                keep = Math.min(keep, mark);
+            }
+            if (keep - prevLineStart <= MAX_LINE_KEPT) {
+                keep = Math.min(keep, prevLineStart);
+            } else if (keep - lineStart <= MAX_LINE_KEPT) {
+                keep = Math.min(keep, lineStart);
+            }
+            int retained = bufferOffset + bufferLength - keep;
+            byte[] next = new byte[retained < BUFFER_SIZE / 2 ? BUFFER_SIZE : 2 * retained];
+            System.arraycopy(buffer, keep - bufferOffset, next, 0, retained);
+            buffer = next;
+            bufferOffset = keep;
+            bufferLength = retained;
+        }
+
+        int read = enclosedContent ? readEnclosed() : in.read(buffer, bufferLength, buffer.length - bufferLength);
+        if (read <= 0) {
+            endOfStream = true;
+            return false;
+        }
+        bufferLength += read;
+        return true;
+    }
+
+    /**
+     * Read enclosed content into the buffer, but not past the end of the
+     * enclosing message.
+     *
+     * @return The number of bytes read, or -1 on end of stream.
+     * @throws IOException If unable to read from the input stream.
+     */
+    private int readEnclosed() throws IOException {
+        int free = buffer.length - bufferLength;
+        if (in.markSupported()) {
+            in.mark(free);
+            int read = in.read(buffer, bufferLength, free);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < read; ++i) {
+                if (enclosedEnd(buffer[bufferLength + i])) {
+                    // Put back what was read after the end of the content.
+                    in.reset();
+                    long skip = i + 1;
+                    while (skip > 0) {
+                        long skipped = in.skip(skip);
+                        if (skipped <= 0) {
+                            throw new IOException("Unable to skip to end of enclosed content");
+                        }
+                        skip -= skipped;
+                    }
+                    endOfStream = true;
+                    return i + 1;
+                }
+            }
+            return read;
+        }
+
+        // Read one byte at a time, and only block for the first.
+        int read = 0;
+        do {
+            int r = in.read();
+            if (r < 0) {
+                break;
+            }
+            buffer[bufferLength + read++] = (byte) r;
+            if (enclosedEnd((byte) r)) {
+                endOfStream = true;
+                break;
+            }
+        } while (read < free && in.available() > 0);
+        return read == 0 ? -1 : read;
+    }
+
+    /**
+     * Update the enclosed content state with the byte.
+     *
+     * @param b The next byte in the input.
+     * @return True if the byte ends the enclosed content.
+     */
+    private boolean enclosedEnd(byte b) {
+        if (comment) {
+            if (b == '\n' || b == '\r') {
+                comment = false;
+            }
+        } else if (literal != '\0') {
+            if (escaped) {
+                escaped = false;
+            } else if (b == literal) {
+                literal = '\0';
+            } else if (b == '\\') {
+                escaped = true;
+            }
+        } else if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+            // just continue.
+        } else if (b == '\"' || b == '\'') {
+            literal = (char) b;
+        } else if (b == '#') {
+            comment = true;
+        } else if (b == '}') {
+            return --stack <= 0;
+        } else if (b == '{') {
+            ++stack;
+        } else if (stack == 0) {
+            // This means there is a "meaningful" symbol
+            // before the first { character. This means we are
+            // actually in non-enclosed mode. Setting the max
+            // stack to 1, so that the read will not stop until
+            // end or file, or something invalid has occurred.
+            stack = 1;
+        }
+        return false;
+    }
+
+    /**
+     * Make a token from the buffer window.
+     */
+    private Token token(int offset, int len, int lineNo, int linePos) {
+        return new Token(buffer, offset - bufferOffset, len, lineNo, linePos);
+    }
+
     public Token expect(String message) throws IOException, TokenizerException {
         if (!hasNext()) {
             throw new TokenizerException("Expected %s, got end of file", message);
@@ -225,7 +354,7 @@ public class Tokenizer extends InputStream {
         return nextInternal();
     }
 
-    private Token nextStringLiteral(int startQuote) throws TokenizerException {
+    private Token nextStringLiteral(int startQuote) throws IOException, TokenizerException {
         int startOffset = readOffset;
         int startLineNo = lineNo;
         int startLinePos = linePos;
@@ -264,10 +393,11 @@ public class Tokenizer extends InputStream {
             }
             // else just include into string token.
         }
-        return new Token(buffer, startOffset, readOffset - startOffset + 1, lineNo, startLinePos);
+        return token(startOffset, readOffset - startOffset + 1, lineNo, startLinePos);
     }
 
     private Token nextInternal() throws IOException, TokenizerException {
+        mark = -1;
         int startOffset = readOffset;
         int r;
         while ((r = read()) != -1) {
@@ -280,6 +410,7 @@ public class Tokenizer extends InputStream {
                     }
                 } else {
                     startOffset = readOffset;
+                    mark = startOffset;
                     break;
                 }
             }
@@ -291,7 +422,7 @@ public class Tokenizer extends InputStream {
 
         // Known symbols.
         if (Token.kSymbols.indexOf(r) >= 0) {
-            return new Token(buffer, startOffset, 1, lineNo, linePos);
+            return token(startOffset, 1, lineNo, linePos);
         }
 
         // String literals.
@@ -315,7 +446,7 @@ public class Tokenizer extends InputStream {
                 .setLine(getLine(lineNo));
     }
 
-    private Token nextNumber(int lastByte) throws TokenizerException {
+    private Token nextNumber(int lastByte) throws IOException, TokenizerException {
         // NOTE: This code is pretty messy because it is a full state-engine
         // to ensure that the parsed number follows the JSON number syntax.
         // Alternatives are:
@@ -366,7 +497,7 @@ public class Tokenizer extends InputStream {
                     break;
                 }
 
-                return new Token(buffer, startOffset, len, lineNo, startLinePos);
+                return token(startOffset, len, lineNo, startLinePos);
             }
 
             // Octal
@@ -380,7 +511,7 @@ public class Tokenizer extends InputStream {
                 break;
             }
 
-            return new Token(buffer, startOffset, len, lineNo, startLinePos);
+            return token(startOffset, len, lineNo, startLinePos);
         }
 
         // decimal part.
@@ -432,7 +563,7 @@ public class Tokenizer extends InputStream {
                 }
             }
         }
-        Token token = new Token(buffer, startOffset, len, lineNo, startLinePos);
+        Token token = token(startOffset, len, lineNo, startLinePos);
 
         // A number must be terminated correctly: End of stream, space, newline
         // or a symbol that may be after a value: ':', ',' ';' '}' ')'.
@@ -452,7 +583,7 @@ public class Tokenizer extends InputStream {
         }
     }
 
-    private Token nextIdentifier() throws TokenizerException {
+    private Token nextIdentifier() throws IOException, TokenizerException {
         int startOffset = readOffset;
         int startLinePos = linePos;
 
@@ -480,7 +611,7 @@ public class Tokenizer extends InputStream {
             unread();
             break;
         }
-        Token token = new Token(buffer, startOffset, len, lineNo, startLinePos);
+        Token token = token(startOffset, len, lineNo, startLinePos);
 
         if (dot) {
             throw new TokenizerException("Identifier trailing with '.'")
@@ -499,37 +630,74 @@ public class Tokenizer extends InputStream {
         }
     }
 
+    /**
+     * Get the content of the line, for error reporting. Only the current
+     * and the previous line are kept in the buffer window.
+     *
+     * @param theLine The line number.
+     * @return The line content, or null if the line is not available.
+     */
     public String getLine(final int theLine) {
         if (theLine < 1) {
             throw new IllegalStateException(theLine + " is not a valid line number. Must be 1 .. N");
         }
-        // reset read position.
-        readOffset = -1;
-        lineNo = 1;
-        linePos = -1;
+
+        int start;
+        if (theLine == lineNo) {
+            start = lineStart;
+        } else if (theLine == lineNo - 1 && prevLineStart < lineStart) {
+            start = prevLineStart;
+        } else {
+            return null;
+        }
+        if (start < bufferOffset) {
+            // The start of the line is no longer in the buffer.
+            return null;
+        }
 
         try {
-            int line = theLine;
-            while (--line > 0) {
-                if (!IOUtils.skipUntil(this, (byte) '\n')) {
-                    throw new IOException("No such line " + theLine);
+            // Read ahead until the end of the line, without moving the read
+            // position. Refilling the buffer may drop the start of a long
+            // line from the window, so the line content is copied out before
+            // each refill.
+            ByteArrayOutputStream out = null;
+            int end = start;
+            while (true) {
+                if (end >= bufferOffset + bufferLength) {
+                    if (out == null) {
+                        out = new ByteArrayOutputStream();
+                    }
+                    out.write(buffer, start - bufferOffset, end - start);
+                    start = end;
+                    if (!fill()) {
+                        break;
+                    }
                 }
+                if (buffer[end - bufferOffset] == '\n') {
+                    break;
+                }
+                ++end;
             }
-            return IOUtils.readString(this, "\n");
+            if (out == null) {
+                return new String(buffer, start - bufferOffset, end - start, StandardCharsets.UTF_8);
+            }
+            out.write(buffer, start - bufferOffset, end - start);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
         } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            return null;
         }
     }
 
-    public String readUntil(char end, boolean allowSpaces, boolean allowNewlines) throws TokenizerException {
+    public String readUntil(char end, boolean allowSpaces, boolean allowNewlines) throws IOException, TokenizerException {
         int startOffset = readOffset + 1;
+        mark = startOffset;
         int startLinePos = linePos;
         int startLineNo = lineNo;
 
         int r;
         while ((r = read()) != -1) {
             if (r == end) {
-                return new Slice(buffer, startOffset, readOffset - startOffset).asString();
+                return new Slice(buffer, startOffset - bufferOffset, readOffset - startOffset).asString();
             } else if (r == ' ' || r == '\t') {
                 if (!allowSpaces) {
                     throw new TokenizerException("Illegal char '%s' in binary", escapeChar(r))
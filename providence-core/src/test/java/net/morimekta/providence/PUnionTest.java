@@ -1,11 +1,21 @@
 package net.morimekta.providence;
 
 import net.morimekta.test.providence.UnionFields;
+import net.morimekta.test.providence.Value;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -30,4 +40,62 @@ public class PUnionTest {
         assertEquals(bl1, bl2);
         assertNotEquals(bl1, bl3);
     }
+
+    @Test
+    public void testUnionFields_sharedValueSlot() {
+        UnionFields lng = UnionFields.withLongValue(-1L);
+        UnionFields integer = UnionFields.withIntegerValue(-1);
+        UnionFields str = UnionFields.withStringValue("-1");
+
+        // Fields that are not set return the default value.
+        assertEquals(-1L, lng.getLongValue());
+        assertFalse(lng.hasIntegerValue());
+        assertEquals(0, lng.getIntegerValue());
+        assertFalse(lng.isBooleanValue());
+        assertNull(lng.getStringValue());
+        assertEquals(-1, integer.getIntegerValue());
+        assertEquals(0L, integer.getLongValue());
+        assertEquals("-1", str.getStringValue());
+        assertNull(str.getEnumValue());
+        assertEquals(0L, str.getLongValue());
+
+        assertNotEquals(lng, integer);
+        assertNotEquals(integer, str);
+        assertEquals(lng, lng.mutate().build());
+        assertEquals(str, str.mutate().build());
+        assertEquals(Value.FIRST, str.mutate()
+                                     .setEnumValue(Value.FIRST)
+                                     .build()
+                                     .getEnumValue());
+    }
+
+    @Test
+    public void testUnionFields_double() {
+        assertEquals(UnionFields.withDoubleValue(Double.NaN),
+                     UnionFields.withDoubleValue(Double.NaN));
+        assertEquals(UnionFields.withDoubleValue(Double.NaN).hashCode(),
+                     UnionFields.withDoubleValue(Double.NaN).hashCode());
+        assertNotEquals(UnionFields.withDoubleValue(0.0),
+                        UnionFields.withDoubleValue(-0.0));
+        assertEquals(-0.0, UnionFields.withDoubleValue(-0.0).getDoubleValue(), 0.0);
+        assertEquals(Double.MIN_VALUE, UnionFields.withDoubleValue(Double.MIN_VALUE).getDoubleValue(), 0.0);
+    }
+
+    @Test
+    public void testUnionFields_javaSerializable() throws IOException, ClassNotFoundException {
+        // Unions serialized with the old per-field members can not be read
+        // into the value slots, so the serial version UID is changed.
+        assertNotEquals(-4125227148631020921L, ObjectStreamClass.lookup(UnionFields.class).getSerialVersionUID());
+
+        UnionFields expected = UnionFields.withLongValue(1234567890123L);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(expected);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            UnionFields actual = (UnionFields) in.readObject();
+            assertEquals(expected, actual);
+            assertEquals(1234567890123L, actual.getLongValue());
+        }
+    }
 }
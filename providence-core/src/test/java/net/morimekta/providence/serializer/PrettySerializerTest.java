@@ -19,6 +19,7 @@
 
 package net.morimekta.providence.serializer;
 
+import net.morimekta.providence.util.pretty.TokenizerException;
 import net.morimekta.test.calculator.Operand;
 import net.morimekta.test.calculator.Operation;
 import net.morimekta.test.calculator.Operator;
@@ -27,11 +28,17 @@ import net.morimekta.test.number.Imaginary;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Stein Eldar Johnsen
@@ -100,4 +107,76 @@ public class PrettySerializerTest {
 
         assertEquals(mOperation, actual);
     }
+
+    @Test
+    public void testParse_enclosedStream() throws IOException, SerializerException {
+        PrettySerializer serializer = new PrettySerializer();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < 200; ++i) {
+            serializer.serialize(baos, mOperation);
+            baos.write('\n');
+        }
+        byte[] data = baos.toByteArray();
+
+        // Each message is read from the same stream, so the tokenizer must
+        // not read past the end of each message. The data spans multiple
+        // buffer windows.
+        InputStream buffered = new BufferedInputStream(new ByteArrayInputStream(data));
+        InputStream unbuffered = new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        for (int i = 0; i < 200; ++i) {
+            assertEquals(mOperation, serializer.deserialize(buffered, Operation.kDescriptor));
+            assertEquals(mOperation, serializer.deserialize(unbuffered, Operation.kDescriptor));
+        }
+    }
+
+    @Test
+    public void testParse_errorAfterRefill() throws IOException {
+        PrettySerializer serializer = new PrettySerializer("  ", " ", "\n", "", false, true);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            content.append("# padding comment to fill up the tokenizer buffer\n");
+        }
+        content.append("operator = MULTIPLY\n")
+               .append("no_such_field = 1\n");
+
+        try {
+            serializer.deserialize(new ByteArrayInputStream(content.toString().getBytes(UTF_8)), Operation.kDescriptor);
+            fail("No exception on unknown field");
+        } catch (TokenizerException e) {
+            assertEquals(1002, e.getLineNo());
+            assertEquals(0, e.getLinePos());
+            assertEquals("no_such_field = 1", e.getLine());
+        }
+    }
+
+    @Test
+    public void testParse_errorInLongLine() throws IOException {
+        PrettySerializer serializer = new PrettySerializer("  ", " ", "\n", "", false, true);
+        StringBuilder prefix = new StringBuilder("operator = MULTIPLY ");
+        for (int i = 0; i < 200; ++i) {
+            prefix.append("operands = { number = 1 } ");
+        }
+        StringBuilder line = new StringBuilder(prefix).append("no_such_field = 1 ");
+        for (int i = 0; i < 200; ++i) {
+            line.append("operands = { number = 1 } ");
+        }
+        // The error is about 5 kB into a line longer than the tokenizer
+        // buffer, so the buffer is refilled while reading the error line.
+        assertTrue(prefix.length() > 5000);
+        assertTrue(line.length() > 10000);
+
+        try {
+            serializer.deserialize(new ByteArrayInputStream(line.toString().getBytes(UTF_8)), Operation.kDescriptor);
+            fail("No exception on unknown field");
+        } catch (TokenizerException e) {
+            assertEquals(1, e.getLineNo());
+            assertEquals(prefix.length(), e.getLinePos());
+            assertEquals(line.toString(), e.getLine());
+        }
+    }
 }
@@ -19,10 +19,15 @@
 
 package net.morimekta.providence.serializer;
 
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.streams.MessageCollectors;
 import net.morimekta.providence.util.ProvidenceHelper;
 import net.morimekta.test.calculator.Operation;
 import net.morimekta.test.providence.Containers;
+import net.morimekta.test.providence.OptionalFields;
 import net.morimekta.util.Binary;
 
 import org.junit.Before;
@@ -33,9 +38,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -82,6 +94,7 @@ public class SerializerTest {
 
             size = serializer.serialize(baos, operation);
             assertEquals(baos.size(), size);
+            assertSerializedSize(serializer, size, operation);
 
             bais = new ByteArrayInputStream(baos.toByteArray());
             Operation actual = serializer.deserialize(bais, Operation.kDescriptor);
@@ -96,6 +109,7 @@ public class SerializerTest {
             Containers expected = containers.get(i);
             size = serializer.serialize(baos, expected);
             assertEquals(baos.size(), size);
+            assertSerializedSize(serializer, size, expected);
 
             bais = new ByteArrayInputStream(baos.toByteArray());
             Containers actual = serializer.deserialize(bais, Containers.kDescriptor);
@@ -108,6 +122,28 @@ public class SerializerTest {
             }
         }
 
+        // complex message, through heap and direct byte buffers.
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1 << 16), ByteBuffer.allocateDirect(1 << 16)}) {
+            for (int i = 0; i < 10; ++i) {
+                buffer.clear();
+
+                Containers expected = containers.get(i);
+                size = serializer.serialize(buffer, expected);
+                assertEquals(buffer.position(), size);
+
+                buffer.flip();
+                Containers actual = serializer.deserialize(buffer, Containers.kDescriptor);
+
+                if (serializer.binaryProtocol()) {
+                    assertEquals(expected, actual);
+                    assertEquals(size, buffer.position());
+                } else {
+                    assertEquals(expected.toString().replaceAll("[,]", ",\n"),
+                                 actual.toString().replaceAll("[,]", ",\n"));
+                }
+            }
+        }
+
         // complex message in stream.
         {
             baos.reset();
@@ -143,6 +179,18 @@ public class SerializerTest {
         }
     }
 
+    /**
+     * Check that the calculated serialized size matches the actual, if the
+     * serializer supports calculating it.
+     */
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void assertSerializedSize(Serializer serializer, int size, Message message) throws SerializerException {
+        int calculated = serializer.serializedSize(message);
+        if (calculated >= 0) {
+            assertEquals(size, calculated);
+        }
+    }
+
     /**
      * Tests that the serializer can deserialize the given file and still produce the
      */
@@ -213,6 +261,146 @@ public class SerializerTest {
         testCompatibility(serializer, "/compat/named.json");
     }
 
+    @Test
+    public void testFastJson() throws SerializerException, IOException {
+        Serializer serializer = new FastJsonSerializer(true, JsonSerializer.IdType.ID);
+        testSerializer(serializer);
+        testCompatibility(serializer, "/compat/compact.json");
+    }
+
+    @Test
+    public void testFastJsonNamed() throws SerializerException, IOException {
+        Serializer serializer = new FastJsonSerializer(true, JsonSerializer.IdType.NAME);
+        testSerializer(serializer);
+        testCompatibility(serializer, "/compat/named.json");
+    }
+
+    @Test
+    public void testFastJson_readableByJson() throws SerializerException, IOException {
+        Serializer[][] pairs = new Serializer[][]{
+                {new FastJsonSerializer(true, JsonSerializer.IdType.ID),
+                 new JsonSerializer(true, JsonSerializer.IdType.ID)},
+                {new FastJsonSerializer(true, JsonSerializer.IdType.NAME),
+                 new JsonSerializer(true, JsonSerializer.IdType.NAME)},
+                };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        for (Serializer[] pair : pairs) {
+            for (Containers expected : containers) {
+                baos.reset();
+                pair[0].serialize(baos, expected);
+                Containers actual = pair[1].deserialize(new ByteArrayInputStream(baos.toByteArray()),
+                                                        Containers.kDescriptor);
+                assertEquals(expected.toString().replaceAll("[,]", ",\n"),
+                             actual.toString().replaceAll("[,]", ",\n"));
+
+                baos.reset();
+                pair[1].serialize(baos, expected);
+                actual = pair[0].deserialize(new ByteArrayInputStream(baos.toByteArray()), Containers.kDescriptor);
+                assertEquals(expected.toString().replaceAll("[,]", ",\n"),
+                             actual.toString().replaceAll("[,]", ",\n"));
+            }
+        }
+    }
+
+    @Test
+    public void testFastJson_exponentOnChunkBoundary() throws SerializerException, IOException {
+        Serializer serializer = new FastJsonSerializer(true, JsonSerializer.IdType.ID);
+
+        // The stream is read in 8 kB chunks, so pad the JSON to put the
+        // exponent of the number as the first byte of the second chunk.
+        String number = "{\"6\":1.5";
+        StringBuilder json = new StringBuilder();
+        for (int i = number.length(); i < 8192; ++i) {
+            json.append(' ');
+        }
+        json.append(number).append("e3}");
+
+        InputStream in = new ByteArrayInputStream(json.toString().getBytes(UTF_8));
+        OptionalFields actual = serializer.deserialize(in, OptionalFields.kDescriptor);
+        assertEquals(1500.0, actual.getDoubleValue(), 0.0);
+    }
+
+    @Test
+    public void testFastJson_outOfRange() throws IOException, SerializerException {
+        Serializer serializer = new FastJsonSerializer(true, JsonSerializer.IdType.ID);
+        // Values that do not fit the field type are rejected, and not
+        // wrapped around.
+        for (String json : new String[]{"{\"2\":128}", "{\"2\":-129}"}) {
+            try {
+                serializer.deserialize(new ByteArrayInputStream(json.getBytes(UTF_8)), OptionalFields.kDescriptor);
+                fail("No exception on " + json);
+            } catch (SerializerException e) {
+                // expected.
+            }
+        }
+        for (String json : new String[]{"{\"22\":{\"300\":1}}", "{\"22\":{\"1\":300}}"}) {
+            try {
+                serializer.deserialize(new ByteArrayInputStream(json.getBytes(UTF_8)), Containers.kDescriptor);
+                fail("No exception on " + json);
+            } catch (SerializerException e) {
+                // expected.
+            }
+        }
+
+        OptionalFields actual = serializer.deserialize(new ByteArrayInputStream("{\"2\":-128}".getBytes(UTF_8)),
+                                                       OptionalFields.kDescriptor);
+        assertEquals(Byte.MIN_VALUE, actual.getByteValue());
+    }
+
+    @Test
+    public void testFastJson_nonMarkableStream() throws SerializerException, IOException {
+        Serializer serializer = new FastJsonSerializer(true, JsonSerializer.IdType.ID);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        for (Containers expected : containers) {
+            baos.reset();
+            serializer.serialize(baos, expected);
+            baos.write("trailing".getBytes(UTF_8));
+
+            InputStream in = new NonMarkableInputStream(baos.toByteArray());
+            Containers actual = serializer.deserialize(in, Containers.kDescriptor);
+            assertEquals(expected.toString().replaceAll("[,]", ",\n"),
+                         actual.toString().replaceAll("[,]", ",\n"));
+
+            // Nothing after the message is consumed from the stream.
+            byte[] rest = new byte[in.available()];
+            assertEquals(rest.length, in.read(rest));
+            assertEquals("trailing", new String(rest, UTF_8));
+        }
+    }
+
+    @Test
+    public void testByteBuffer_consecutiveMessages() throws SerializerException, IOException {
+        // These serializers only consume the message content from the
+        // buffer, so consecutive messages can be read from one buffer.
+        Serializer[] serializers = new Serializer[]{
+                new BinarySerializer(true, false),
+                new FastBinarySerializer(true),
+                new FastJsonSerializer(true, JsonSerializer.IdType.ID),
+                new PrettySerializer(),
+                };
+
+        for (Serializer serializer : serializers) {
+            for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1 << 18), ByteBuffer.allocateDirect(1 << 18)}) {
+                int[] ends = new int[containers.size()];
+                for (int i = 0; i < containers.size(); ++i) {
+                    serializer.serialize(buffer, containers.get(i));
+                    ends[i] = buffer.position();
+                }
+                buffer.flip();
+
+                for (int i = 0; i < containers.size(); ++i) {
+                    Containers expected = containers.get(i);
+                    Containers actual = serializer.deserialize(buffer, Containers.kDescriptor);
+                    assertEquals(serializer.getClass().getSimpleName(), ends[i], buffer.position());
+                    assertEquals(expected.toString().replaceAll("[,]", ",\n"),
+                                 actual.toString().replaceAll("[,]", ",\n"));
+                }
+            }
+        }
+    }
+
     @Test
     public void testPrettyJson() throws SerializerException, IOException {
         Serializer serializer = new JsonSerializer(true,
@@ -247,4 +435,150 @@ public class SerializerTest {
         testOutput(serializer, "/compat/fast-binary.data");
         testCompatibility(serializer, "/compat/fast-binary.data");
     }
+
+    @Test
+    public void testFastBinary_lazy() throws IOException, SerializerException {
+        FastBinarySerializer serializer = new FastBinarySerializer(true);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        for (Containers expected : containers) {
+            baos.reset();
+            serializer.serialize(baos, expected);
+            byte[] bytes = baos.toByteArray();
+
+            LazyMessage<Containers, Containers._Field> lazy =
+                    serializer.deserializeLazy(new ByteArrayInputStream(bytes), Containers.kDescriptor);
+            assertEquals(bytes.length, lazy.serializedSize());
+
+            // Untouched message is written as is.
+            baos.reset();
+            assertEquals(bytes.length, serializer.serialize(baos, lazy));
+            assertArrayEquals(bytes, baos.toByteArray());
+
+            for (Containers._Field field : Containers._Field.values()) {
+                assertEquals(field.getName(), expected.has(field.getKey()), lazy.has(field.getKey()));
+                assertEquals(field.getName(), expected.num(field.getKey()), lazy.num(field.getKey()));
+                assertEquals(field.getName(), expected.get(field.getKey()), lazy.get(field.getKey()));
+            }
+            assertEquals(expected, lazy.decode());
+            assertEquals(0, lazy.compareTo(expected));
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+            assertEquals(bytes.length, serializer.serialize(buffer, lazy));
+            buffer.flip();
+            LazyMessage<Containers, Containers._Field> copy = serializer.deserializeLazy(buffer, Containers.kDescriptor);
+            assertEquals(bytes.length, buffer.position());
+            assertEquals(lazy, copy);
+            assertEquals(lazy.hashCode(), copy.hashCode());
+            assertEquals(expected, copy.mutate().build());
+            // Lazy messages are never equal to the decoded type.
+            assertFalse(lazy.equals(expected));
+            assertFalse(expected.equals(lazy));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFastBinary_lazyPassThrough() throws IOException, SerializerException {
+        FastBinarySerializer serializer = new FastBinarySerializer(true);
+        // integerValue = 1, with a padded varint, so it is only written
+        // back the same if the original bytes are copied.
+        byte[] bytes = new byte[]{(4 << 3) | 0x03, (byte) 0x82, 0x00, 0x00};
+
+        LazyMessage<OptionalFields, OptionalFields._Field> lazy =
+                serializer.deserializeLazy(new ByteArrayInputStream(bytes), OptionalFields.kDescriptor);
+        assertEquals(1, lazy.get(OptionalFields._Field.INTEGER_VALUE.getKey()));
+
+        Serializer generic = serializer;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        assertEquals(bytes.length, generic.serialize(baos, (PMessage) lazy));
+        assertArrayEquals(bytes, baos.toByteArray());
+        assertEquals(bytes.length, generic.serializedSize((PMessage) lazy));
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        assertEquals(bytes.length, generic.serialize(buffer, (PMessage) lazy));
+        assertArrayEquals(bytes, buffer.array());
+
+        // And as part of a service call.
+        PServiceCall call = new PServiceCall("test", PServiceCallType.CALL, 4, lazy);
+        baos.reset();
+        int size = generic.serialize(baos, call);
+        byte[] written = baos.toByteArray();
+        assertEquals(written.length, size);
+        assertEquals(size, generic.serializedSize(call));
+        assertArrayEquals(bytes, Arrays.copyOfRange(written, written.length - bytes.length, written.length));
+    }
+
+    @Test
+    public void testUnknownFields() throws IOException, SerializerException {
+        Serializer[] serializers = new Serializer[]{
+                new BinarySerializer(false),
+                new FastBinarySerializer(false),
+                new JsonSerializer(false, JsonSerializer.IdType.ID),
+                new JsonSerializer(false, JsonSerializer.IdType.NAME),
+                new FastJsonSerializer(false, JsonSerializer.IdType.ID),
+                new FastJsonSerializer(false, JsonSerializer.IdType.NAME),
+                };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        for (Serializer serializer : serializers) {
+            for (Containers full : containers) {
+                // Only keep the message fields, as they are all unknown to OptionalFields.
+                Containers._Builder builder = Containers.builder();
+                for (Containers._Field field : Containers._Field.values()) {
+                    if (field.getKey() > 40 && full.has(field.getKey())) {
+                        builder.set(field.getKey(), full.get(field.getKey()));
+                    }
+                }
+                Containers expected = builder.build();
+
+                baos.reset();
+                serializer.serialize(baos, expected);
+                byte[] bytes = baos.toByteArray();
+
+                OptionalFields unknown = serializer.deserialize(new ByteArrayInputStream(bytes),
+                                                                OptionalFields.kDescriptor);
+                assertEquals(OptionalFields.builder().build(), unknown);
+                if (expected.equals(Containers.builder().build())) {
+                    assertNull(unknown.unknownFields());
+                    continue;
+                }
+                assertNotNull(unknown.unknownFields());
+                assertEquals(serializer.mimeType(), unknown.unknownFields().getFormat());
+
+                // Unknown fields are written back as read.
+                baos.reset();
+                int size = serializer.serialize(baos, unknown);
+                assertEquals(baos.size(), size);
+                assertSerializedSize(serializer, size, unknown);
+                if (serializer.binaryProtocol()) {
+                    assertArrayEquals(bytes, baos.toByteArray());
+                }
+                assertEquals(expected, serializer.deserialize(new ByteArrayInputStream(baos.toByteArray()),
+                                                              Containers.kDescriptor));
+
+                // And are kept when the message is modified.
+                OptionalFields modified = unknown.mutate()
+                                                 .setStringValue("modified")
+                                                 .build();
+                baos.reset();
+                serializer.serialize(baos, modified);
+                OptionalFields actual = serializer.deserialize(new ByteArrayInputStream(baos.toByteArray()),
+                                                               OptionalFields.kDescriptor);
+                assertEquals("modified", actual.getStringValue());
+                assertEquals(unknown.unknownFields(), actual.unknownFields());
+            }
+        }
+    }
+
+    private static class NonMarkableInputStream extends ByteArrayInputStream {
+        private NonMarkableInputStream(byte[] buf) {
+            super(buf);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
 }
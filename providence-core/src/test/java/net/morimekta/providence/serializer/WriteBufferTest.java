@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.serializer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the pooled serializer write buffer.
+ */
+public class WriteBufferTest {
+    @Test
+    public void testWriteUtf8() {
+        String[] strings = {
+                "",
+                "ascii only",
+                "æøå ÆØÅ",
+                "€ あ ￿",
+                "😀 emoji",
+                "unpaired \ud83d and \ude00",
+                "ends with high \ud83d",
+        };
+
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            for (String str : strings) {
+                byte[] expected = str.getBytes(UTF_8);
+
+                buffer.reset();
+                assertEquals(str, expected.length, WriteBuffer.utf8Length(str));
+                assertEquals(str, expected.length, buffer.writeUtf8(str));
+                assertArrayEquals(str, expected, buffer.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testGrowAndWriteTo() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            for (int i = 0; i < 5000; ++i) {
+                expected.write(i);
+                buffer.write(i);
+            }
+            buffer.writer().writeInt(1234);
+            buffer.bigEndianWriter().writeInt(1234);
+            expected.write(new byte[]{(byte) 0xd2, 0x04, 0, 0, 0, 0, 0x04, (byte) 0xd2});
+
+            assertEquals(5008, buffer.size());
+            assertEquals(5008, buffer.writeTo(actual));
+        }
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testAcquire() {
+        WriteBuffer first;
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            first = buffer;
+            buffer.write(1);
+
+            // The pooled buffer is in use, so a nested acquire must get
+            // a separate buffer.
+            try (WriteBuffer nested = WriteBuffer.acquire()) {
+                assertNotSame(buffer, nested);
+                assertEquals(0, nested.size());
+            }
+        }
+
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            assertSame(first, buffer);
+            assertEquals(0, buffer.size());
+        }
+    }
+}
@@ -1,14 +1,50 @@
 package net.morimekta.providence.streams;
 
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.FastBinarySerializer;
+import net.morimekta.providence.serializer.JsonSerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.util.ProvidenceHelper;
+import net.morimekta.test.providence.Containers;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * @author Stein Eldar Johnsen
  * @since 07.11.15.
  */
 public class MessageStreamsTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     @Test
-    public void testFileMessage() {
+    public void testFileMessage() throws Exception {
+        List<Containers> expected = ProvidenceHelper.arrayListFromJsonResource("/compat/compact.json",
+                                                                               Containers.kDescriptor);
+
+        Serializer[] serializers = new Serializer[]{
+                new BinarySerializer(),
+                new FastBinarySerializer(),
+                new JsonSerializer()
+        };
+        for (Serializer serializer : serializers) {
+            File file = temp.newFile();
+            expected.stream().collect(MessageCollectors.toFile(file, serializer));
 
+            List<Containers> actual = MessageStreams.file(file, serializer, Containers.kDescriptor)
+                                                    .collect(Collectors.toList());
+            assertEquals(expected.size(), actual.size());
+            if (serializer.binaryProtocol()) {
+                assertEquals(expected, actual);
+            }
+        }
     }
 }
@@ -0,0 +1,66 @@
+package net.morimekta.providence.util;
+
+import net.morimekta.test.providence.Containers;
+import net.morimekta.test.providence.UnionFields;
+import net.morimekta.test.providence.Value;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.LinkedList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests for the stable hash code helpers, and the generated hash codes
+ * using them.
+ */
+public class StableHashTest {
+    @Test
+    public void testHashCode_plainValues() {
+        ImmutableList<String> list = ImmutableList.of("a", "b", "c");
+        ImmutableSet<Integer> set = ImmutableSet.of(1, 2, 3);
+        ImmutableMap<String, Long> map = ImmutableMap.of("a", 1L, "b", 2L);
+
+        assertEquals(0, StableHash.hashCode((Object) null));
+        assertEquals("a".hashCode(), StableHash.hashCode("a"));
+        assertEquals(list.hashCode(), StableHash.hashCode(list));
+        assertEquals(list.hashCode(), StableHash.hashCode(new LinkedList<>(list)));
+        assertEquals(set.hashCode(), StableHash.hashCode(set));
+        assertEquals(map.hashCode(), StableHash.hashCode(map));
+    }
+
+    @Test
+    public void testHashCode_enums() {
+        assertEquals(2, StableHash.hashCode(Value.SECOND));
+        assertEquals(ImmutableList.of(1, 5).hashCode(),
+                     StableHash.hashCode(ImmutableList.of(Value.FIRST, Value.FOURTH)));
+        assertEquals(ImmutableSet.of(1, 5).hashCode(),
+                     StableHash.hashCode(ImmutableSet.of(Value.FIRST, Value.FOURTH)));
+        assertEquals(ImmutableMap.of(1, "a", 5, "b").hashCode(),
+                     StableHash.hashCode(ImmutableMap.of(Value.FIRST, "a", Value.FOURTH, "b")));
+        assertEquals(ImmutableList.of(ImmutableList.of(3)).hashCode(),
+                     StableHash.hashCode((Object) ImmutableList.of(ImmutableList.of(Value.THIRD))));
+    }
+
+    @Test
+    public void testGeneratedHashCode() {
+        // The generated hash code must be the same in every JVM run.
+        assertEquals(1881007245, UnionFields.withEnumValue(Value.SECOND).hashCode());
+
+        Containers a = Containers.builder()
+                                 .addToEnumList(Value.FIRST, Value.SECOND)
+                                 .build();
+        Containers b = Containers.builder()
+                                 .addToEnumList(Value.FIRST, Value.SECOND)
+                                 .build();
+        Containers c = Containers.builder()
+                                 .addToEnumList(Value.SECOND, Value.FIRST)
+                                 .build();
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a.hashCode(), c.hashCode());
+    }
+}
@@ -0,0 +1,115 @@
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.descriptor.PList;
+import net.morimekta.providence.descriptor.PPrimitive;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the unboxed int, long and double lists.
+ */
+public class PrimitiveListTest {
+    @Test
+    public void testLongList() {
+        LongList list = new LongList.Builder().add(1L)
+                                              .add(Long.MAX_VALUE)
+                                              .addAll(ImmutableList.of(-3L, 4L))
+                                              .build();
+        ImmutableList<Long> expected = ImmutableList.of(1L, Long.MAX_VALUE, -3L, 4L);
+
+        assertEquals(4, list.size());
+        assertEquals(Long.MAX_VALUE, list.getLong(1));
+        assertArrayEquals(new long[]{1L, Long.MAX_VALUE, -3L, 4L}, list.toLongArray());
+        assertEquals(expected, list);
+        assertEquals(list, expected);
+        assertEquals(expected.hashCode(), list.hashCode());
+        assertEquals(LongList.of(1L, Long.MAX_VALUE, -3L, 4L), list);
+        assertSame(list, LongList.copyOf(list));
+    }
+
+    @Test
+    public void testIntList() {
+        IntList list = IntList.of(5, -1, Integer.MIN_VALUE);
+        ImmutableList<Integer> expected = ImmutableList.of(5, -1, Integer.MIN_VALUE);
+
+        assertEquals(Integer.MIN_VALUE, list.getInt(2));
+        assertEquals(expected, list);
+        assertEquals(list, expected);
+        assertEquals(expected.hashCode(), list.hashCode());
+        assertEquals(list, IntList.copyOf(expected));
+        assertNotEquals(list, IntList.of(5, -1));
+    }
+
+    @Test
+    public void testDoubleList() {
+        DoubleList list = DoubleList.of(1.5, Double.NaN, -0.0);
+        ImmutableList<Double> expected = ImmutableList.of(1.5, Double.NaN, -0.0);
+
+        assertEquals(-0.0, list.getDouble(2), 0.0);
+        assertEquals(expected, list);
+        assertEquals(expected.hashCode(), list.hashCode());
+        assertEquals(list, DoubleList.of(1.5, Double.NaN, -0.0));
+        assertNotEquals(list, DoubleList.of(1.5, Double.NaN, 0.0));
+    }
+
+    @Test
+    public void testBuilder_sharedArray() {
+        LongList base = LongList.of(1L, 2L, 3L);
+
+        LongList.Builder builder = new LongList.Builder();
+        builder.addAll(base);
+        LongList copy = builder.add(4L).build();
+
+        assertEquals(LongList.of(1L, 2L, 3L), base);
+        assertEquals(LongList.of(1L, 2L, 3L, 4L), copy);
+
+        // Modifying the builder after build must not change the built list.
+        builder.add(5L);
+        assertEquals(LongList.of(1L, 2L, 3L, 4L), copy);
+        assertEquals(LongList.of(1L, 2L, 3L, 4L, 5L), builder.build());
+
+        assertSame(builder.clear().build(), LongList.of());
+    }
+
+    @Test
+    public void testImmutable() {
+        List<Long> list = LongList.of(1L, 2L);
+        try {
+            list.add(3L);
+            fail("No exception on add");
+        } catch (UnsupportedOperationException e) {
+            // expected.
+        }
+        try {
+            list.get(2);
+            fail("No exception on out of bounds");
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals("Index: 2, Size: 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPrimitiveProvider() {
+        PList<Long> longs = PList.<Long>primitiveProvider(PPrimitive.I64.provider()).descriptor();
+        PList<Integer> ints = PList.<Integer>primitiveProvider(PPrimitive.I32.provider()).descriptor();
+        PList<Double> doubles = PList.<Double>primitiveProvider(PPrimitive.DOUBLE.provider()).descriptor();
+        PList<String> strings = PList.<String>primitiveProvider(PPrimitive.STRING.provider()).descriptor();
+
+        assertTrue(longs.builder() instanceof LongList.Builder);
+        assertTrue(ints.builder() instanceof IntList.Builder);
+        assertTrue(doubles.builder() instanceof DoubleList.Builder);
+        assertFalse(strings.builder() instanceof LongList.Builder);
+        assertEquals(ImmutableList.of("a"), strings.builder().add("a").build());
+    }
+}
@@ -0,0 +1,134 @@
+package net.morimekta.providence.util.collect;
+
+import net.morimekta.providence.descriptor.PMap;
+import net.morimekta.providence.descriptor.PPrimitive;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the unboxed primitive map.
+ */
+public class PrimitiveMapTest {
+    @Test
+    public void testLongMap() {
+        PrimitiveMap<Long, Long> map = new PrimitiveMap.Builder<Long, Long>(PrimitiveKind.LONG, PrimitiveKind.LONG)
+                .put(3L, 30L)
+                .put(1L, 10L)
+                .put(2L, 20L)
+                .build();
+
+        assertEquals(3, map.size());
+        assertEquals((Long) 10L, map.get(1L));
+        assertNull(map.get(4L));
+        assertNull(map.get(1));
+        assertTrue(map.containsKey(2L));
+        assertFalse(map.containsKey(2));
+
+        // Keeps the order of insertion.
+        assertEquals(ImmutableList.of(3L, 1L, 2L), new ArrayList<>(map.keySet()));
+        assertEquals(ImmutableList.of(30L, 10L, 20L), new ArrayList<>(map.values()));
+        assertEquals(1, map.indexOf(1L));
+        assertEquals(10L, map.valueBits(1));
+
+        Map<Long, Long> expected = ImmutableMap.of(1L, 10L, 2L, 20L, 3L, 30L);
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    @Test
+    public void testDuplicateKey() {
+        PrimitiveMap.Builder<Long, Long> builder = new PrimitiveMap.Builder<Long, Long>(PrimitiveKind.LONG, PrimitiveKind.LONG)
+                .put(1L, 10L)
+                .put(2L, 20L);
+        try {
+            builder.put(1L, 11L);
+            fail("No exception on duplicate key");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Multiple entries with same key: 1=10 and 1=11", e.getMessage());
+        }
+
+        // Same as the default map builder.
+        try {
+            new PMap.ImmutableMapBuilder<Long, Long>().put(1L, 10L).put(1L, 11L).build();
+            fail("No exception on duplicate key");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        // Including when putting all entries of another map.
+        try {
+            builder.putAll(ImmutableMap.of(3L, 30L, 2L, 21L));
+            fail("No exception on duplicate key");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Multiple entries with same key: 2=20 and 2=21", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testIntDoubleMap() {
+        PrimitiveMap.Builder<Integer, Double> builder = new PrimitiveMap.Builder<>(PrimitiveKind.INT, PrimitiveKind.DOUBLE);
+        for (int i = 0; i < 1000; ++i) {
+            builder.put(i, i / 2.0);
+        }
+        PrimitiveMap<Integer, Double> map = builder.build();
+
+        Map<Integer, Double> expected = new HashMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            expected.put(i, i / 2.0);
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals((Double) 499.5, map.get(999));
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(Double.doubleToLongBits(0.5), map.valueBits(map.indexOf(1)));
+    }
+
+    @Test
+    public void testCopyOf() {
+        Map<Long, Long> source = ImmutableMap.of(5L, 50L, 6L, 60L);
+        PrimitiveMap<Long, Long> map = PrimitiveMap.copyOf(PrimitiveKind.LONG, PrimitiveKind.LONG, source);
+
+        assertEquals(source, map);
+        assertSame(map, PrimitiveMap.copyOf(PrimitiveKind.LONG, PrimitiveKind.LONG, map));
+
+        // Modifying a builder sharing the arrays must not change the map.
+        PrimitiveMap.Builder<Long, Long> builder = new PrimitiveMap.Builder<>(PrimitiveKind.LONG, PrimitiveKind.LONG);
+        PrimitiveMap<Long, Long> other = builder.putAll(map)
+                                                .put(7L, 70L)
+                                                .build();
+
+        assertEquals(source, map);
+        assertEquals(ImmutableMap.of(5L, 50L, 6L, 60L, 7L, 70L), other);
+        assertNotEquals(map, other);
+        assertEquals(0, builder.clear().build().size());
+    }
+
+    @Test
+    public void testPrimitiveProvider() {
+        PMap<Long, Long> longs = PMap.<Long, Long>primitiveProvider(PPrimitive.I64.provider(),
+                                                                    PPrimitive.I64.provider()).descriptor();
+        PMap<Long, String> strings = PMap.<Long, String>primitiveProvider(PPrimitive.I64.provider(),
+                                                                          PPrimitive.STRING.provider()).descriptor();
+
+        assertTrue(longs.builder() instanceof PrimitiveMap.Builder);
+        assertFalse(strings.builder() instanceof PrimitiveMap.Builder);
+        assertEquals(ImmutableMap.of(1L, "a"), strings.builder().put(1L, "a").build());
+    }
+}
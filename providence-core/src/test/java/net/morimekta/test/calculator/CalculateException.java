@@ -9,6 +9,7 @@ public class CalculateException
     private final String mMessage;
     private final net.morimekta.test.calculator.Operation mOperation;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private CalculateException(_Builder builder) {
@@ -17,6 +18,8 @@ public class CalculateException
 
         mMessage = builder.mMessage;
         mOperation = builder.mOperation_builder != null ? builder.mOperation_builder.build() : builder.mOperation;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public CalculateException(String pMessage,
@@ -26,6 +29,8 @@ public class CalculateException
 
         mMessage = pMessage;
         mOperation = pOperation;
+
+        tUnknownFields = null;
     }
 
     private static String createMessage(String pMessage,
@@ -71,6 +76,11 @@ public class CalculateException
         return mOperation;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -115,10 +125,14 @@ public class CalculateException
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    CalculateException.class,
-                    _Field.MESSAGE, mMessage,
-                    _Field.OPERATION, mOperation);
+            int _hash = 0xd3b70e15;
+            if (mMessage != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mMessage.hashCode());
+            }
+            if (mOperation != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mOperation.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -328,6 +342,8 @@ public class CalculateException
                 optionals.set(1);
                 mOperation = base.mOperation;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -12,6 +12,13 @@ public class Calculator {
                 throws java.io.IOException;
     }
 
+    public interface AsyncIface {
+        java.util.concurrent.CompletableFuture<net.morimekta.test.calculator.Operand> calculate(
+                net.morimekta.test.calculator.Operation pOp);
+
+        java.util.concurrent.CompletableFuture<Void> iamalive();
+    }
+
     public static class Client
             extends net.morimekta.providence.PClient
             implements Iface {
@@ -65,12 +72,62 @@ public class Calculator {
         }
     }
 
+    public static class AsyncClient
+            extends net.morimekta.providence.PClient
+            implements AsyncIface {
+        private final net.morimekta.providence.PAsyncClientHandler handler;
+
+        public AsyncClient(net.morimekta.providence.PAsyncClientHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public java.util.concurrent.CompletableFuture<net.morimekta.test.calculator.Operand> calculate(
+                net.morimekta.test.calculator.Operation pOp) {
+            Calculate_request._Builder rq = Calculate_request.builder();
+            rq.setOp(pOp);
+
+            net.morimekta.providence.PServiceCall call = new net.morimekta.providence.PServiceCall("calculate", net.morimekta.providence.PServiceCallType.CALL, getNextSequenceId(), rq.build());
+            java.util.concurrent.CompletableFuture<net.morimekta.providence.PServiceCall> future = handler.handleCallAsync(call, Calculator.kDescriptor);
+            return future.thenApply(resp -> {
+                if (resp.getType() == net.morimekta.providence.PServiceCallType.EXCEPTION) {
+                    net.morimekta.providence.serializer.ApplicationException ex = (net.morimekta.providence.serializer.ApplicationException) resp.getMessage();
+                    throw new java.util.concurrent.CompletionException(new java.io.IOException(ex.getMessage(), ex));
+                }
+
+                Calculate_response msg = (Calculate_response) resp.getMessage();
+                if (msg.unionField() != null) {
+                    switch (msg.unionField()) {
+                        case CE:
+                            throw new java.util.concurrent.CompletionException(msg.getCe());
+                    }
+                }
+
+                return msg.getSuccess();
+            });
+        }
+
+        @Override
+        public java.util.concurrent.CompletableFuture<Void> iamalive() {
+            Iamalive_request._Builder rq = Iamalive_request.builder();
+
+            net.morimekta.providence.PServiceCall call = new net.morimekta.providence.PServiceCall("iamalive", net.morimekta.providence.PServiceCallType.ONEWAY, getNextSequenceId(), rq.build());
+            java.util.concurrent.CompletableFuture<net.morimekta.providence.PServiceCall> future = handler.handleCallAsync(call, Calculator.kDescriptor);
+            return future.thenApply(resp -> null);
+        }
+    }
+
     public static class Processor implements net.morimekta.providence.PProcessor {
         private final Iface impl;
         public Processor(Iface impl) {
             this.impl = impl;
         }
 
+        @Override
+        public net.morimekta.providence.descriptor.PService getDescriptor() {
+            return Calculator.kDescriptor;
+        }
+
         @Override
         public boolean process(net.morimekta.providence.mio.MessageReader reader, net.morimekta.providence.mio.MessageWriter writer) throws java.io.IOException {
             try {
@@ -196,14 +253,19 @@ public class Calculator {
 
         private final net.morimekta.test.calculator.Operation mOp;
         
+        private final net.morimekta.providence.PUnknownFields tUnknownFields;
         private volatile int tHashCode;
 
         private Calculate_request(_Builder builder) {
             mOp = builder.mOp_builder != null ? builder.mOp_builder.build() : builder.mOp;
+
+            tUnknownFields = builder.getUnknownFields();
         }
 
         public Calculate_request(net.morimekta.test.calculator.Operation pOp) {
             mOp = pOp;
+
+            tUnknownFields = null;
         }
 
         public boolean hasOp() {
@@ -217,6 +279,11 @@ public class Calculator {
             return mOp;
         }
 
+        @Override
+        public net.morimekta.providence.PUnknownFields unknownFields() {
+            return tUnknownFields;
+        }
+
         @Override
         public boolean has(int key) {
             switch(key) {
@@ -257,9 +324,11 @@ public class Calculator {
         @Override
         public int hashCode() {
             if (tHashCode == 0) {
-                tHashCode = java.util.Objects.hash(
-                        Calculate_request.class,
-                        _Field.OP, mOp);
+                int _hash = 0xaa7f9c2a;
+                if (mOp != null) {
+                    _hash = 31 * _hash + (0x92ca2f0e ^ mOp.hashCode());
+                }
+                tHashCode = _hash;
             }
             return tHashCode;
         }
@@ -445,6 +514,8 @@ public class Calculator {
                     optionals.set(0);
                     mOp = base.mOp;
                 }
+
+                setUnknownFields(base.tUnknownFields);
             }
 
             @Override
@@ -571,27 +642,34 @@ public class Calculator {
     }
 
     // type <-- calculate___response
-    @SuppressWarnings("unused")
+    @SuppressWarnings({"unused", "unchecked"})
     private static class Calculate_response
             implements net.morimekta.providence.PUnion<Calculate_response,Calculate_response._Field>, java.io.Serializable, Comparable<Calculate_response> {
-        private final static long serialVersionUID = 3839355577455995570L;
-
-        private final net.morimekta.test.calculator.Operand mSuccess;
-        private final net.morimekta.test.calculator.CalculateException mCe;
+        private final static long serialVersionUID = 3383817134706531442L;
 
+        private final Object tUnionValue;
         private final _Field tUnionField;
         
+        private final net.morimekta.providence.PUnknownFields tUnknownFields;
         private volatile int tHashCode;
 
         private Calculate_response(_Builder builder) {
             tUnionField = builder.tUnionField;
 
-            mSuccess = tUnionField != _Field.SUCCESS
-                    ? null
-                    : builder.mSuccess_builder != null ? builder.mSuccess_builder.build() : builder.mSuccess;
-            mCe = tUnionField != _Field.CE
-                    ? null
-                    : builder.mCe_builder != null ? builder.mCe_builder.build() : builder.mCe;
+            Object _value = null;
+            if (tUnionField != null) {
+                switch (tUnionField) {
+                    case SUCCESS:
+                        _value = builder.mSuccess_builder != null ? builder.mSuccess_builder.build() : builder.mSuccess;
+                        break;
+                    case CE:
+                        _value = builder.mCe_builder != null ? builder.mCe_builder.build() : builder.mCe;
+                        break;
+                }
+            }
+            tUnionValue = _value;
+
+            tUnknownFields = builder.getUnknownFields();
         }
 
         /**
@@ -611,25 +689,25 @@ public class Calculator {
         }
 
         public boolean hasSuccess() {
-            return tUnionField == _Field.SUCCESS && mSuccess != null;
+            return tUnionField == _Field.SUCCESS && tUnionValue != null;
         }
 
         /**
          * @return The field value
          */
         public net.morimekta.test.calculator.Operand getSuccess() {
-            return mSuccess;
+            return hasSuccess() ? (net.morimekta.test.calculator.Operand) tUnionValue : null;
         }
 
         public boolean hasCe() {
-            return tUnionField == _Field.CE && mCe != null;
+            return tUnionField == _Field.CE && tUnionValue != null;
         }
 
         /**
          * @return The field value
          */
         public net.morimekta.test.calculator.CalculateException getCe() {
-            return mCe;
+            return hasCe() ? (net.morimekta.test.calculator.CalculateException) tUnionValue : null;
         }
 
         @Override
@@ -637,6 +715,11 @@ public class Calculator {
             return tUnionField;
         }
 
+        @Override
+        public net.morimekta.providence.PUnknownFields unknownFields() {
+            return tUnknownFields;
+        }
+
         @Override
         public boolean has(int key) {
             switch(key) {
@@ -675,17 +758,28 @@ public class Calculator {
             if (o == null || !(o instanceof Calculate_response)) return false;
             Calculate_response other = (Calculate_response) o;
             return java.util.Objects.equals(tUnionField, other.tUnionField) &&
-                   java.util.Objects.equals(mSuccess, other.mSuccess) &&
-                   java.util.Objects.equals(mCe, other.mCe);
+                   java.util.Objects.equals(tUnionValue, other.tUnionValue);
         }
 
         @Override
         public int hashCode() {
             if (tHashCode == 0) {
-                tHashCode = java.util.Objects.hash(
-                        Calculate_response.class,
-                        _Field.SUCCESS, mSuccess,
-                        _Field.CE, mCe);
+                int _hash = 0xa89b9e06;
+                if (tUnionField != null) {
+                    switch (tUnionField) {
+                        case SUCCESS:
+                            if (getSuccess() != null) {
+                                _hash = 31 * _hash + (0x00000000 ^ getSuccess().hashCode());
+                            }
+                            break;
+                        case CE:
+                            if (getCe() != null) {
+                                _hash = 31 * _hash + (0x92ca2f0e ^ getCe().hashCode());
+                            }
+                            break;
+                    }
+                }
+                tHashCode = _hash;
             }
             return tHashCode;
         }
@@ -703,12 +797,12 @@ public class Calculator {
             switch (tUnionField) {
                 case SUCCESS: {
                     out.append("success:")
-                       .append(mSuccess.asString());
+                       .append(getSuccess().asString());
                     break;
                 }
                 case CE: {
                     out.append("ce:")
-                       .append(mCe.asString());
+                       .append(getCe().asString());
                     break;
                 }
             }
@@ -723,9 +817,9 @@ public class Calculator {
 
             switch (tUnionField) {
                 case SUCCESS:
-                    return mSuccess.compareTo(other.mSuccess);
+                    return getSuccess().compareTo(other.getSuccess());
                 case CE:
-                    return mCe.compareTo(other.mCe);
+                    return getCe().compareTo(other.getCe());
                 default: return 0;
             }
         }
@@ -881,8 +975,14 @@ public class Calculator {
 
                 tUnionField = base.tUnionField;
 
-                mSuccess = base.mSuccess;
-                mCe = base.mCe;
+                if (tUnionField == _Field.SUCCESS) {
+                    mSuccess = base.getSuccess();
+                }
+                if (tUnionField == _Field.CE) {
+                    mCe = base.getCe();
+                }
+
+                setUnknownFields(base.tUnknownFields);
             }
 
             @Override
@@ -1097,12 +1197,22 @@ public class Calculator {
         private final static long serialVersionUID = 7912890008187182926L;
 
         
+        private final net.morimekta.providence.PUnknownFields tUnknownFields;
         private volatile int tHashCode;
 
         private Iamalive_request(_Builder builder) {
+
+            tUnknownFields = builder.getUnknownFields();
         }
 
         public Iamalive_request() {
+
+            tUnknownFields = null;
+        }
+
+        @Override
+        public net.morimekta.providence.PUnknownFields unknownFields() {
+            return tUnknownFields;
         }
 
         @Override
@@ -1141,8 +1251,8 @@ public class Calculator {
         @Override
         public int hashCode() {
             if (tHashCode == 0) {
-                tHashCode = java.util.Objects.hash(
-                        Iamalive_request.class);
+                int _hash = 0xa4d9c934;
+                tHashCode = _hash;
             }
             return tHashCode;
         }
@@ -1307,6 +1417,8 @@ public class Calculator {
             public _Builder(Iamalive_request base) {
                 this();
 
+
+                setUnknownFields(base.tUnknownFields);
             }
 
             @Override
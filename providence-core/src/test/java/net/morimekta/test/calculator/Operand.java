@@ -1,30 +1,41 @@
 package net.morimekta.test.calculator;
 
-@SuppressWarnings("unused")
+@SuppressWarnings({"unused", "unchecked"})
 public class Operand
         implements net.morimekta.providence.PUnion<Operand,Operand._Field>, java.io.Serializable, Comparable<Operand> {
-    private final static long serialVersionUID = -7034870678901672325L;
+    private final static long serialVersionUID = -8100935883077567377L;
 
     private final static double kDefaultNumber = 0.0d;
 
-    private final net.morimekta.test.calculator.Operation mOperation;
-    private final double mNumber;
-    private final net.morimekta.test.number.Imaginary mImaginary;
-
+    private final Object tUnionValue;
+    private final long tUnionBits;
     private final _Field tUnionField;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private Operand(_Builder builder) {
         tUnionField = builder.tUnionField;
 
-        mOperation = tUnionField != _Field.OPERATION
-                ? null
-                : builder.mOperation_builder != null ? builder.mOperation_builder.build() : builder.mOperation;
-        mNumber = tUnionField == _Field.NUMBER ? builder.mNumber : kDefaultNumber;
-        mImaginary = tUnionField != _Field.IMAGINARY
-                ? null
-                : builder.mImaginary_builder != null ? builder.mImaginary_builder.build() : builder.mImaginary;
+        Object _value = null;
+        long _bits = 0L;
+        if (tUnionField != null) {
+            switch (tUnionField) {
+                case OPERATION:
+                    _value = builder.mOperation_builder != null ? builder.mOperation_builder.build() : builder.mOperation;
+                    break;
+                case NUMBER:
+                    _bits = Double.doubleToLongBits(builder.mNumber);
+                    break;
+                case IMAGINARY:
+                    _value = builder.mImaginary_builder != null ? builder.mImaginary_builder.build() : builder.mImaginary;
+                    break;
+            }
+        }
+        tUnionValue = _value;
+        tUnionBits = _bits;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     /**
@@ -52,14 +63,14 @@ public class Operand
     }
 
     public boolean hasOperation() {
-        return tUnionField == _Field.OPERATION && mOperation != null;
+        return tUnionField == _Field.OPERATION && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.test.calculator.Operation getOperation() {
-        return mOperation;
+        return hasOperation() ? (net.morimekta.test.calculator.Operation) tUnionValue : null;
     }
 
     public boolean hasNumber() {
@@ -70,18 +81,18 @@ public class Operand
      * @return The field value
      */
     public double getNumber() {
-        return mNumber;
+        return hasNumber() ? Double.longBitsToDouble(tUnionBits) : kDefaultNumber;
     }
 
     public boolean hasImaginary() {
-        return tUnionField == _Field.IMAGINARY && mImaginary != null;
+        return tUnionField == _Field.IMAGINARY && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.test.number.Imaginary getImaginary() {
-        return mImaginary;
+        return hasImaginary() ? (net.morimekta.test.number.Imaginary) tUnionValue : null;
     }
 
     @Override
@@ -89,6 +100,11 @@ public class Operand
         return tUnionField;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -130,19 +146,32 @@ public class Operand
         if (o == null || !(o instanceof Operand)) return false;
         Operand other = (Operand) o;
         return java.util.Objects.equals(tUnionField, other.tUnionField) &&
-               java.util.Objects.equals(mOperation, other.mOperation) &&
-               java.util.Objects.equals(mNumber, other.mNumber) &&
-               java.util.Objects.equals(mImaginary, other.mImaginary);
+               tUnionBits == other.tUnionBits &&
+               java.util.Objects.equals(tUnionValue, other.tUnionValue);
     }
 
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    Operand.class,
-                    _Field.OPERATION, mOperation,
-                    _Field.NUMBER, mNumber,
-                    _Field.IMAGINARY, mImaginary);
+            int _hash = 0x6e76f9bd;
+            if (tUnionField != null) {
+                switch (tUnionField) {
+                    case OPERATION:
+                        if (getOperation() != null) {
+                            _hash = 31 * _hash + (0x92ca2f0e ^ getOperation().hashCode());
+                        }
+                        break;
+                    case NUMBER:
+                        _hash = 31 * _hash + (0x3cd6e3f3 ^ Double.hashCode(getNumber()));
+                        break;
+                    case IMAGINARY:
+                        if (getImaginary() != null) {
+                            _hash = 31 * _hash + (0x1b147dcc ^ getImaginary().hashCode());
+                        }
+                        break;
+                }
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -160,17 +189,17 @@ public class Operand
         switch (tUnionField) {
             case OPERATION: {
                 out.append("operation:")
-                   .append(mOperation.asString());
+                   .append(getOperation().asString());
                 break;
             }
             case NUMBER: {
                 out.append("number:")
-                   .append(net.morimekta.util.Strings.asString(mNumber));
+                   .append(net.morimekta.util.Strings.asString(getNumber()));
                 break;
             }
             case IMAGINARY: {
                 out.append("imaginary:")
-                   .append(mImaginary.asString());
+                   .append(getImaginary().asString());
                 break;
             }
         }
@@ -185,11 +214,11 @@ public class Operand
 
         switch (tUnionField) {
             case OPERATION:
-                return mOperation.compareTo(other.mOperation);
+                return getOperation().compareTo(other.getOperation());
             case NUMBER:
-                return Double.compare(mNumber, other.mNumber);
+                return Double.compare(getNumber(), other.getNumber());
             case IMAGINARY:
-                return mImaginary.compareTo(other.mImaginary);
+                return getImaginary().compareTo(other.getImaginary());
             default: return 0;
         }
     }
@@ -350,9 +379,17 @@ public class Operand
 
             tUnionField = base.tUnionField;
 
-            mOperation = base.mOperation;
-            mNumber = base.mNumber;
-            mImaginary = base.mImaginary;
+            if (tUnionField == _Field.OPERATION) {
+                mOperation = base.getOperation();
+            }
+            if (tUnionField == _Field.NUMBER) {
+                mNumber = base.getNumber();
+            }
+            if (tUnionField == _Field.IMAGINARY) {
+                mImaginary = base.getImaginary();
+            }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
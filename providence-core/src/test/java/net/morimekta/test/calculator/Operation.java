@@ -8,6 +8,7 @@ public class Operation
     private final net.morimekta.test.calculator.Operator mOperator;
     private final java.util.List<net.morimekta.test.calculator.Operand> mOperands;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private Operation(_Builder builder) {
@@ -17,6 +18,8 @@ public class Operation
         } else {
             mOperands = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public Operation(net.morimekta.test.calculator.Operator pOperator,
@@ -27,6 +30,8 @@ public class Operation
         } else {
             mOperands = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasOperator() {
@@ -55,6 +60,11 @@ public class Operation
         return mOperands;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -99,10 +109,14 @@ public class Operation
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    Operation.class,
-                    _Field.OPERATOR, mOperator,
-                    _Field.OPERANDS, mOperands);
+            int _hash = 0xaca2595b;
+            if (mOperator != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mOperator.getValue());
+            }
+            if (mOperands != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mOperands.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -291,7 +305,6 @@ public class Operation
          */
         public _Builder() {
             optionals = new java.util.BitSet(2);
-            mOperands = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
         }
 
         /**
@@ -308,8 +321,11 @@ public class Operation
             }
             if (base.numOperands() > 0) {
                 optionals.set(1);
+                mOperands = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mOperands.addAll(base.mOperands);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -321,7 +337,11 @@ public class Operation
 
             if (from.hasOperands()) {
                 optionals.set(1);
-                mOperands.clear();
+                if (mOperands == null) {
+                    mOperands = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mOperands.clear();
+                }
                 mOperands.addAll(from.getOperands());
             }
             return this;
@@ -367,7 +387,11 @@ public class Operation
          */
         public _Builder setOperands(java.util.Collection<net.morimekta.test.calculator.Operand> value) {
             optionals.set(1);
-            mOperands.clear();
+            if (mOperands == null) {
+                mOperands = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mOperands.clear();
+            }
             mOperands.addAll(value);
             return this;
         }
@@ -380,6 +404,9 @@ public class Operation
          */
         public _Builder addToOperands(net.morimekta.test.calculator.Operand... values) {
             optionals.set(1);
+            if (mOperands == null) {
+                mOperands = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.test.calculator.Operand item : values) {
                 mOperands.add(item);
             }
@@ -402,7 +429,7 @@ public class Operation
          */
         public _Builder clearOperands() {
             optionals.clear(1);
-            mOperands.clear();
+            mOperands = null;
             return this;
         }
 
@@ -413,6 +440,9 @@ public class Operation
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.test.calculator.Operand> mutableOperands() {
             optionals.set(1);
+            if (mOperands == null) {
+                mOperands = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mOperands;
         }
 
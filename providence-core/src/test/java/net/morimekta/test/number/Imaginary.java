@@ -11,17 +11,22 @@ public class Imaginary
     private final double mV;
     private final double mI;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private Imaginary(_Builder builder) {
         mV = builder.mV;
         mI = builder.mI;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public Imaginary(double pV,
                      double pI) {
         mV = pV;
         mI = pI;
+
+        tUnknownFields = null;
     }
 
     public boolean hasV() {
@@ -46,6 +51,11 @@ public class Imaginary
         return mI;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -83,17 +93,17 @@ public class Imaginary
         if (o == this) return true;
         if (o == null || !(o instanceof Imaginary)) return false;
         Imaginary other = (Imaginary) o;
-        return java.util.Objects.equals(mV, other.mV) &&
-               java.util.Objects.equals(mI, other.mI);
+        return Double.compare(mV, other.mV) == 0 &&
+               Double.compare(mI, other.mI) == 0;
     }
 
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    Imaginary.class,
-                    _Field.V, mV,
-                    _Field.I, mI);
+            int _hash = 0xf70ae494;
+            _hash = 31 * _hash + (0x92ca2f0e ^ Double.hashCode(mV));
+            _hash = 31 * _hash + (0x3cd6e3f3 ^ Double.hashCode(mI));
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -284,6 +294,8 @@ public class Imaginary
             mV = base.mV;
             optionals.set(1);
             mI = base.mI;
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
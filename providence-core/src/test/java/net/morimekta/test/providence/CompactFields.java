@@ -11,12 +11,15 @@ public class CompactFields
     private final int mId;
     private final String mLabel;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private CompactFields(_Builder builder) {
         mName = builder.mName;
         mId = builder.mId;
         mLabel = builder.mLabel;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public CompactFields(String pName,
@@ -25,6 +28,8 @@ public class CompactFields
         mName = pName;
         mId = pId;
         mLabel = pLabel;
+
+        tUnknownFields = null;
     }
 
     public boolean hasName() {
@@ -60,6 +65,11 @@ public class CompactFields
         return mLabel;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -113,18 +123,22 @@ public class CompactFields
         if (o == null || !(o instanceof CompactFields)) return false;
         CompactFields other = (CompactFields) o;
         return java.util.Objects.equals(mName, other.mName) &&
-               java.util.Objects.equals(mId, other.mId) &&
+               mId == other.mId &&
                java.util.Objects.equals(mLabel, other.mLabel);
     }
 
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    CompactFields.class,
-                    _Field.NAME, mName,
-                    _Field.ID, mId,
-                    _Field.LABEL, mLabel);
+            int _hash = 0x18232efd;
+            if (mName != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mName.hashCode());
+            }
+            _hash = 31 * _hash + (0x3cd6e3f3 ^ Integer.hashCode(mId));
+            if (mLabel != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mLabel.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -347,6 +361,8 @@ public class CompactFields
                 optionals.set(2);
                 mLabel = base.mLabel;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -42,6 +42,7 @@ public class Containers
     private final net.morimekta.test.providence.ExceptionFields mExceptionFields;
     private final net.morimekta.test.providence.DefaultValues mDefaultValues;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private Containers(_Builder builder) {
@@ -201,6 +202,8 @@ public class Containers
         mUnionFields = builder.mUnionFields_builder != null ? builder.mUnionFields_builder.build() : builder.mUnionFields;
         mExceptionFields = builder.mExceptionFields_builder != null ? builder.mExceptionFields_builder.build() : builder.mExceptionFields;
         mDefaultValues = builder.mDefaultValues_builder != null ? builder.mDefaultValues_builder.build() : builder.mDefaultValues;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public Containers(java.util.List<Boolean> pBooleanList,
@@ -395,6 +398,8 @@ public class Containers
         mUnionFields = pUnionFields;
         mExceptionFields = pExceptionFields;
         mDefaultValues = pDefaultValues;
+
+        tUnknownFields = null;
     }
 
     public int numBooleanList() {
@@ -923,6 +928,11 @@ public class Containers
         return mDefaultValues;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -1103,44 +1113,116 @@ public class Containers
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    Containers.class,
-                    _Field.BOOLEAN_LIST, mBooleanList,
-                    _Field.BYTE_LIST, mByteList,
-                    _Field.SHORT_LIST, mShortList,
-                    _Field.INTEGER_LIST, mIntegerList,
-                    _Field.LONG_LIST, mLongList,
-                    _Field.DOUBLE_LIST, mDoubleList,
-                    _Field.STRING_LIST, mStringList,
-                    _Field.BINARY_LIST, mBinaryList,
-                    _Field.BOOLEAN_SET, mBooleanSet,
-                    _Field.BYTE_SET, mByteSet,
-                    _Field.SHORT_SET, mShortSet,
-                    _Field.INTEGER_SET, mIntegerSet,
-                    _Field.LONG_SET, mLongSet,
-                    _Field.DOUBLE_SET, mDoubleSet,
-                    _Field.STRING_SET, mStringSet,
-                    _Field.BINARY_SET, mBinarySet,
-                    _Field.BOOLEAN_MAP, mBooleanMap,
-                    _Field.BYTE_MAP, mByteMap,
-                    _Field.SHORT_MAP, mShortMap,
-                    _Field.INTEGER_MAP, mIntegerMap,
-                    _Field.LONG_MAP, mLongMap,
-                    _Field.DOUBLE_MAP, mDoubleMap,
-                    _Field.STRING_MAP, mStringMap,
-                    _Field.BINARY_MAP, mBinaryMap,
-                    _Field.ENUM_LIST, mEnumList,
-                    _Field.ENUM_SET, mEnumSet,
-                    _Field.ENUM_MAP, mEnumMap,
-                    _Field.MESSAGE_LIST, mMessageList,
-                    _Field.MESSAGE_SET, mMessageSet,
-                    _Field.MESSAGE_MAP, mMessageMap,
-                    _Field.REQUIRED_FIELDS, mRequiredFields,
-                    _Field.DEFAULT_FIELDS, mDefaultFields,
-                    _Field.OPTIONAL_FIELDS, mOptionalFields,
-                    _Field.UNION_FIELDS, mUnionFields,
-                    _Field.EXCEPTION_FIELDS, mExceptionFields,
-                    _Field.DEFAULT_VALUES, mDefaultValues);
+            int _hash = 0xaaf3c471;
+            if (mBooleanList != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mBooleanList.hashCode());
+            }
+            if (mByteList != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mByteList.hashCode());
+            }
+            if (mShortList != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mShortList.hashCode());
+            }
+            if (mIntegerList != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mIntegerList.hashCode());
+            }
+            if (mLongList != null) {
+                _hash = 31 * _hash + (0x487981ab ^ mLongList.hashCode());
+            }
+            if (mDoubleList != null) {
+                _hash = 31 * _hash + (0xdb408c9d ^ mDoubleList.hashCode());
+            }
+            if (mStringList != null) {
+                _hash = 31 * _hash + (0x78bc1b8f ^ mStringList.hashCode());
+            }
+            if (mBinaryList != null) {
+                _hash = 31 * _hash + (0xd83072e5 ^ mBinaryList.hashCode());
+            }
+            if (mBooleanSet != null) {
+                _hash = 31 * _hash + (0x91783bb0 ^ mBooleanSet.hashCode());
+            }
+            if (mByteSet != null) {
+                _hash = 31 * _hash + (0x0231739b ^ mByteSet.hashCode());
+            }
+            if (mShortSet != null) {
+                _hash = 31 * _hash + (0x2aa96dd0 ^ mShortSet.hashCode());
+            }
+            if (mIntegerSet != null) {
+                _hash = 31 * _hash + (0xb42bc0b0 ^ mIntegerSet.hashCode());
+            }
+            if (mLongSet != null) {
+                _hash = 31 * _hash + (0x04e90bf5 ^ mLongSet.hashCode());
+            }
+            if (mDoubleSet != null) {
+                _hash = 31 * _hash + (0xe2ad51ba ^ mDoubleSet.hashCode());
+            }
+            if (mStringSet != null) {
+                _hash = 31 * _hash + (0x79f70494 ^ mStringSet.hashCode());
+            }
+            if (mBinarySet != null) {
+                _hash = 31 * _hash + (0x010b6880 ^ mBinarySet.hashCode());
+            }
+            if (mBooleanMap != null) {
+                _hash = 31 * _hash + (0xd939ff68 ^ mBooleanMap.hashCode());
+            }
+            if (mByteMap != null) {
+                _hash = 31 * _hash + (0xb18c6441 ^ mByteMap.hashCode());
+            }
+            if (mShortMap != null) {
+                _hash = 31 * _hash + (0xdd507b42 ^ mShortMap.hashCode());
+            }
+            if (mIntegerMap != null) {
+                _hash = 31 * _hash + (0x5db59265 ^ mIntegerMap.hashCode());
+            }
+            if (mLongMap != null) {
+                _hash = 31 * _hash + (0x33469494 ^ mLongMap.hashCode());
+            }
+            if (mDoubleMap != null) {
+                _hash = 31 * _hash + (0xa65d9b7a ^ mDoubleMap.hashCode());
+            }
+            if (mStringMap != null) {
+                _hash = 31 * _hash + (0x57dcb96b ^ mStringMap.hashCode());
+            }
+            if (mBinaryMap != null) {
+                _hash = 31 * _hash + (0x1b486183 ^ mBinaryMap.hashCode());
+            }
+            if (mEnumList != null) {
+                _hash = 31 * _hash + (0x9e2ea24f ^ net.morimekta.providence.util.StableHash.hashCode(mEnumList));
+            }
+            if (mEnumSet != null) {
+                _hash = 31 * _hash + (0xb7fbe3e5 ^ net.morimekta.providence.util.StableHash.hashCode(mEnumSet));
+            }
+            if (mEnumMap != null) {
+                _hash = 31 * _hash + (0xa452933a ^ net.morimekta.providence.util.StableHash.hashCode(mEnumMap));
+            }
+            if (mMessageList != null) {
+                _hash = 31 * _hash + (0x9d3e0d8a ^ mMessageList.hashCode());
+            }
+            if (mMessageSet != null) {
+                _hash = 31 * _hash + (0xa6ece606 ^ mMessageSet.hashCode());
+            }
+            if (mMessageMap != null) {
+                _hash = 31 * _hash + (0xc5c7990c ^ mMessageMap.hashCode());
+            }
+            if (mRequiredFields != null) {
+                _hash = 31 * _hash + (0xa3d32f02 ^ mRequiredFields.hashCode());
+            }
+            if (mDefaultFields != null) {
+                _hash = 31 * _hash + (0xdb12a15c ^ mDefaultFields.hashCode());
+            }
+            if (mOptionalFields != null) {
+                _hash = 31 * _hash + (0x13b3abcf ^ mOptionalFields.hashCode());
+            }
+            if (mUnionFields != null) {
+                _hash = 31 * _hash + (0x730c5f25 ^ mUnionFields.hashCode());
+            }
+            if (mExceptionFields != null) {
+                _hash = 31 * _hash + (0x1db71420 ^ mExceptionFields.hashCode());
+            }
+            if (mDefaultValues != null) {
+                _hash = 31 * _hash + (0xf9435a88 ^ mDefaultValues.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -1913,36 +1995,6 @@ public class Containers
          */
         public _Builder() {
             optionals = new java.util.BitSet(36);
-            mBooleanList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mByteList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mShortList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mIntegerList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mLongList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mDoubleList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mStringList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mBinaryList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mBooleanSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mByteSet = new net.morimekta.providence.descriptor.PSet.ImmutableSortedSetBuilder<>();
-            mShortSet = new net.morimekta.providence.descriptor.PSet.LinkedHashSetBuilder<>();
-            mIntegerSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mLongSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mDoubleSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mStringSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mBinarySet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mBooleanMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mByteMap = new net.morimekta.providence.descriptor.PMap.ImmutableSortedMapBuilder<>();
-            mShortMap = new net.morimekta.providence.descriptor.PMap.LinkedHashMapBuilder<>();
-            mIntegerMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mLongMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mDoubleMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mStringMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mBinaryMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mEnumList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mEnumSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mEnumMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mMessageList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mMessageSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
-            mMessageMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -1955,122 +2007,152 @@ public class Containers
 
             if (base.numBooleanList() > 0) {
                 optionals.set(0);
+                mBooleanList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mBooleanList.addAll(base.mBooleanList);
             }
             if (base.numByteList() > 0) {
                 optionals.set(1);
+                mByteList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mByteList.addAll(base.mByteList);
             }
             if (base.numShortList() > 0) {
                 optionals.set(2);
+                mShortList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mShortList.addAll(base.mShortList);
             }
             if (base.numIntegerList() > 0) {
                 optionals.set(3);
+                mIntegerList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mIntegerList.addAll(base.mIntegerList);
             }
             if (base.numLongList() > 0) {
                 optionals.set(4);
+                mLongList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mLongList.addAll(base.mLongList);
             }
             if (base.numDoubleList() > 0) {
                 optionals.set(5);
+                mDoubleList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mDoubleList.addAll(base.mDoubleList);
             }
             if (base.numStringList() > 0) {
                 optionals.set(6);
+                mStringList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mStringList.addAll(base.mStringList);
             }
             if (base.numBinaryList() > 0) {
                 optionals.set(7);
+                mBinaryList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mBinaryList.addAll(base.mBinaryList);
             }
             if (base.numBooleanSet() > 0) {
                 optionals.set(8);
+                mBooleanSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mBooleanSet.addAll(base.mBooleanSet);
             }
             if (base.numByteSet() > 0) {
                 optionals.set(9);
+                mByteSet = new net.morimekta.providence.descriptor.PSet.ImmutableSortedSetBuilder<>();
                 mByteSet.addAll(base.mByteSet);
             }
             if (base.numShortSet() > 0) {
                 optionals.set(10);
+                mShortSet = new net.morimekta.providence.descriptor.PSet.LinkedHashSetBuilder<>();
                 mShortSet.addAll(base.mShortSet);
             }
             if (base.numIntegerSet() > 0) {
                 optionals.set(11);
+                mIntegerSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mIntegerSet.addAll(base.mIntegerSet);
             }
             if (base.numLongSet() > 0) {
                 optionals.set(12);
+                mLongSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mLongSet.addAll(base.mLongSet);
             }
             if (base.numDoubleSet() > 0) {
                 optionals.set(13);
+                mDoubleSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mDoubleSet.addAll(base.mDoubleSet);
             }
             if (base.numStringSet() > 0) {
                 optionals.set(14);
+                mStringSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mStringSet.addAll(base.mStringSet);
             }
             if (base.numBinarySet() > 0) {
                 optionals.set(15);
+                mBinarySet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mBinarySet.addAll(base.mBinarySet);
             }
             if (base.numBooleanMap() > 0) {
                 optionals.set(16);
+                mBooleanMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mBooleanMap.putAll(base.mBooleanMap);
             }
             if (base.numByteMap() > 0) {
                 optionals.set(17);
+                mByteMap = new net.morimekta.providence.descriptor.PMap.ImmutableSortedMapBuilder<>();
                 mByteMap.putAll(base.mByteMap);
             }
             if (base.numShortMap() > 0) {
                 optionals.set(18);
+                mShortMap = new net.morimekta.providence.descriptor.PMap.LinkedHashMapBuilder<>();
                 mShortMap.putAll(base.mShortMap);
             }
             if (base.numIntegerMap() > 0) {
                 optionals.set(19);
+                mIntegerMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mIntegerMap.putAll(base.mIntegerMap);
             }
             if (base.numLongMap() > 0) {
                 optionals.set(20);
+                mLongMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mLongMap.putAll(base.mLongMap);
             }
             if (base.numDoubleMap() > 0) {
                 optionals.set(21);
+                mDoubleMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mDoubleMap.putAll(base.mDoubleMap);
             }
             if (base.numStringMap() > 0) {
                 optionals.set(22);
+                mStringMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mStringMap.putAll(base.mStringMap);
             }
             if (base.numBinaryMap() > 0) {
                 optionals.set(23);
+                mBinaryMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mBinaryMap.putAll(base.mBinaryMap);
             }
             if (base.numEnumList() > 0) {
                 optionals.set(24);
+                mEnumList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mEnumList.addAll(base.mEnumList);
             }
             if (base.numEnumSet() > 0) {
                 optionals.set(25);
+                mEnumSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mEnumSet.addAll(base.mEnumSet);
             }
             if (base.numEnumMap() > 0) {
                 optionals.set(26);
+                mEnumMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mEnumMap.putAll(base.mEnumMap);
             }
             if (base.numMessageList() > 0) {
                 optionals.set(27);
+                mMessageList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mMessageList.addAll(base.mMessageList);
             }
             if (base.numMessageSet() > 0) {
                 optionals.set(28);
+                mMessageSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
                 mMessageSet.addAll(base.mMessageSet);
             }
             if (base.numMessageMap() > 0) {
                 optionals.set(29);
+                mMessageMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mMessageMap.putAll(base.mMessageMap);
             }
             if (base.hasRequiredFields()) {
@@ -2097,167 +2179,269 @@ public class Containers
                 optionals.set(35);
                 mDefaultValues = base.mDefaultValues;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
         public _Builder merge(Containers from) {
             if (from.hasBooleanList()) {
                 optionals.set(0);
-                mBooleanList.clear();
+                if (mBooleanList == null) {
+                    mBooleanList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mBooleanList.clear();
+                }
                 mBooleanList.addAll(from.getBooleanList());
             }
 
             if (from.hasByteList()) {
                 optionals.set(1);
-                mByteList.clear();
+                if (mByteList == null) {
+                    mByteList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mByteList.clear();
+                }
                 mByteList.addAll(from.getByteList());
             }
 
             if (from.hasShortList()) {
                 optionals.set(2);
-                mShortList.clear();
+                if (mShortList == null) {
+                    mShortList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mShortList.clear();
+                }
                 mShortList.addAll(from.getShortList());
             }
 
             if (from.hasIntegerList()) {
                 optionals.set(3);
-                mIntegerList.clear();
+                if (mIntegerList == null) {
+                    mIntegerList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mIntegerList.clear();
+                }
                 mIntegerList.addAll(from.getIntegerList());
             }
 
             if (from.hasLongList()) {
                 optionals.set(4);
-                mLongList.clear();
+                if (mLongList == null) {
+                    mLongList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mLongList.clear();
+                }
                 mLongList.addAll(from.getLongList());
             }
 
             if (from.hasDoubleList()) {
                 optionals.set(5);
-                mDoubleList.clear();
+                if (mDoubleList == null) {
+                    mDoubleList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mDoubleList.clear();
+                }
                 mDoubleList.addAll(from.getDoubleList());
             }
 
             if (from.hasStringList()) {
                 optionals.set(6);
-                mStringList.clear();
+                if (mStringList == null) {
+                    mStringList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mStringList.clear();
+                }
                 mStringList.addAll(from.getStringList());
             }
 
             if (from.hasBinaryList()) {
                 optionals.set(7);
-                mBinaryList.clear();
+                if (mBinaryList == null) {
+                    mBinaryList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mBinaryList.clear();
+                }
                 mBinaryList.addAll(from.getBinaryList());
             }
 
             if (from.hasBooleanSet()) {
                 optionals.set(8);
+                if (mBooleanSet == null) {
+                    mBooleanSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mBooleanSet.addAll(from.getBooleanSet());
             }
 
             if (from.hasByteSet()) {
                 optionals.set(9);
+                if (mByteSet == null) {
+                    mByteSet = new net.morimekta.providence.descriptor.PSet.ImmutableSortedSetBuilder<>();
+                }
                 mByteSet.addAll(from.getByteSet());
             }
 
             if (from.hasShortSet()) {
                 optionals.set(10);
+                if (mShortSet == null) {
+                    mShortSet = new net.morimekta.providence.descriptor.PSet.LinkedHashSetBuilder<>();
+                }
                 mShortSet.addAll(from.getShortSet());
             }
 
             if (from.hasIntegerSet()) {
                 optionals.set(11);
+                if (mIntegerSet == null) {
+                    mIntegerSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mIntegerSet.addAll(from.getIntegerSet());
             }
 
             if (from.hasLongSet()) {
                 optionals.set(12);
+                if (mLongSet == null) {
+                    mLongSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mLongSet.addAll(from.getLongSet());
             }
 
             if (from.hasDoubleSet()) {
                 optionals.set(13);
+                if (mDoubleSet == null) {
+                    mDoubleSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mDoubleSet.addAll(from.getDoubleSet());
             }
 
             if (from.hasStringSet()) {
                 optionals.set(14);
+                if (mStringSet == null) {
+                    mStringSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mStringSet.addAll(from.getStringSet());
             }
 
             if (from.hasBinarySet()) {
                 optionals.set(15);
+                if (mBinarySet == null) {
+                    mBinarySet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mBinarySet.addAll(from.getBinarySet());
             }
 
             if (from.hasBooleanMap()) {
                 optionals.set(16);
+                if (mBooleanMap == null) {
+                    mBooleanMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mBooleanMap.putAll(from.getBooleanMap());
             }
 
             if (from.hasByteMap()) {
                 optionals.set(17);
+                if (mByteMap == null) {
+                    mByteMap = new net.morimekta.providence.descriptor.PMap.ImmutableSortedMapBuilder<>();
+                }
                 mByteMap.putAll(from.getByteMap());
             }
 
             if (from.hasShortMap()) {
                 optionals.set(18);
+                if (mShortMap == null) {
+                    mShortMap = new net.morimekta.providence.descriptor.PMap.LinkedHashMapBuilder<>();
+                }
                 mShortMap.putAll(from.getShortMap());
             }
 
             if (from.hasIntegerMap()) {
                 optionals.set(19);
+                if (mIntegerMap == null) {
+                    mIntegerMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mIntegerMap.putAll(from.getIntegerMap());
             }
 
             if (from.hasLongMap()) {
                 optionals.set(20);
+                if (mLongMap == null) {
+                    mLongMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mLongMap.putAll(from.getLongMap());
             }
 
             if (from.hasDoubleMap()) {
                 optionals.set(21);
+                if (mDoubleMap == null) {
+                    mDoubleMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mDoubleMap.putAll(from.getDoubleMap());
             }
 
             if (from.hasStringMap()) {
                 optionals.set(22);
+                if (mStringMap == null) {
+                    mStringMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mStringMap.putAll(from.getStringMap());
             }
 
             if (from.hasBinaryMap()) {
                 optionals.set(23);
+                if (mBinaryMap == null) {
+                    mBinaryMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mBinaryMap.putAll(from.getBinaryMap());
             }
 
             if (from.hasEnumList()) {
                 optionals.set(24);
-                mEnumList.clear();
+                if (mEnumList == null) {
+                    mEnumList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mEnumList.clear();
+                }
                 mEnumList.addAll(from.getEnumList());
             }
 
             if (from.hasEnumSet()) {
                 optionals.set(25);
+                if (mEnumSet == null) {
+                    mEnumSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mEnumSet.addAll(from.getEnumSet());
             }
 
             if (from.hasEnumMap()) {
                 optionals.set(26);
+                if (mEnumMap == null) {
+                    mEnumMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mEnumMap.putAll(from.getEnumMap());
             }
 
             if (from.hasMessageList()) {
                 optionals.set(27);
-                mMessageList.clear();
+                if (mMessageList == null) {
+                    mMessageList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mMessageList.clear();
+                }
                 mMessageList.addAll(from.getMessageList());
             }
 
             if (from.hasMessageSet()) {
                 optionals.set(28);
+                if (mMessageSet == null) {
+                    mMessageSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+                }
                 mMessageSet.addAll(from.getMessageSet());
             }
 
             if (from.hasMessageMap()) {
                 optionals.set(29);
+                if (mMessageMap == null) {
+                    mMessageMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mMessageMap.putAll(from.getMessageMap());
             }
 
@@ -2345,7 +2529,11 @@ public class Containers
          */
         public _Builder setBooleanList(java.util.Collection<Boolean> value) {
             optionals.set(0);
-            mBooleanList.clear();
+            if (mBooleanList == null) {
+                mBooleanList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mBooleanList.clear();
+            }
             mBooleanList.addAll(value);
             return this;
         }
@@ -2360,6 +2548,9 @@ public class Containers
          */
         public _Builder addToBooleanList(boolean... values) {
             optionals.set(0);
+            if (mBooleanList == null) {
+                mBooleanList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (boolean item : values) {
                 mBooleanList.add(item);
             }
@@ -2386,7 +2577,7 @@ public class Containers
          */
         public _Builder clearBooleanList() {
             optionals.clear(0);
-            mBooleanList.clear();
+            mBooleanList = null;
             return this;
         }
 
@@ -2399,6 +2590,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<Boolean> mutableBooleanList() {
             optionals.set(0);
+            if (mBooleanList == null) {
+                mBooleanList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mBooleanList;
         }
 
@@ -2410,7 +2604,11 @@ public class Containers
          */
         public _Builder setByteList(java.util.Collection<Byte> value) {
             optionals.set(1);
-            mByteList.clear();
+            if (mByteList == null) {
+                mByteList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mByteList.clear();
+            }
             mByteList.addAll(value);
             return this;
         }
@@ -2423,6 +2621,9 @@ public class Containers
          */
         public _Builder addToByteList(byte... values) {
             optionals.set(1);
+            if (mByteList == null) {
+                mByteList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (byte item : values) {
                 mByteList.add(item);
             }
@@ -2445,7 +2646,7 @@ public class Containers
          */
         public _Builder clearByteList() {
             optionals.clear(1);
-            mByteList.clear();
+            mByteList = null;
             return this;
         }
 
@@ -2456,6 +2657,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<Byte> mutableByteList() {
             optionals.set(1);
+            if (mByteList == null) {
+                mByteList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mByteList;
         }
 
@@ -2467,7 +2671,11 @@ public class Containers
          */
         public _Builder setShortList(java.util.Collection<Short> value) {
             optionals.set(2);
-            mShortList.clear();
+            if (mShortList == null) {
+                mShortList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mShortList.clear();
+            }
             mShortList.addAll(value);
             return this;
         }
@@ -2480,6 +2688,9 @@ public class Containers
          */
         public _Builder addToShortList(short... values) {
             optionals.set(2);
+            if (mShortList == null) {
+                mShortList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (short item : values) {
                 mShortList.add(item);
             }
@@ -2502,7 +2713,7 @@ public class Containers
          */
         public _Builder clearShortList() {
             optionals.clear(2);
-            mShortList.clear();
+            mShortList = null;
             return this;
         }
 
@@ -2513,6 +2724,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<Short> mutableShortList() {
             optionals.set(2);
+            if (mShortList == null) {
+                mShortList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mShortList;
         }
 
@@ -2524,7 +2738,11 @@ public class Containers
          */
         public _Builder setIntegerList(java.util.Collection<Integer> value) {
             optionals.set(3);
-            mIntegerList.clear();
+            if (mIntegerList == null) {
+                mIntegerList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mIntegerList.clear();
+            }
             mIntegerList.addAll(value);
             return this;
         }
@@ -2537,6 +2755,9 @@ public class Containers
          */
         public _Builder addToIntegerList(int... values) {
             optionals.set(3);
+            if (mIntegerList == null) {
+                mIntegerList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (int item : values) {
                 mIntegerList.add(item);
             }
@@ -2559,7 +2780,7 @@ public class Containers
          */
         public _Builder clearIntegerList() {
             optionals.clear(3);
-            mIntegerList.clear();
+            mIntegerList = null;
             return this;
         }
 
@@ -2570,6 +2791,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<Integer> mutableIntegerList() {
             optionals.set(3);
+            if (mIntegerList == null) {
+                mIntegerList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mIntegerList;
         }
 
@@ -2581,7 +2805,11 @@ public class Containers
          */
         public _Builder setLongList(java.util.Collection<Long> value) {
             optionals.set(4);
-            mLongList.clear();
+            if (mLongList == null) {
+                mLongList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mLongList.clear();
+            }
             mLongList.addAll(value);
             return this;
         }
@@ -2594,6 +2822,9 @@ public class Containers
          */
         public _Builder addToLongList(long... values) {
             optionals.set(4);
+            if (mLongList == null) {
+                mLongList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (long item : values) {
                 mLongList.add(item);
             }
@@ -2616,7 +2847,7 @@ public class Containers
          */
         public _Builder clearLongList() {
             optionals.clear(4);
-            mLongList.clear();
+            mLongList = null;
             return this;
         }
 
@@ -2627,6 +2858,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<Long> mutableLongList() {
             optionals.set(4);
+            if (mLongList == null) {
+                mLongList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mLongList;
         }
 
@@ -2638,7 +2872,11 @@ public class Containers
          */
         public _Builder setDoubleList(java.util.Collection<Double> value) {
             optionals.set(5);
-            mDoubleList.clear();
+            if (mDoubleList == null) {
+                mDoubleList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mDoubleList.clear();
+            }
             mDoubleList.addAll(value);
             return this;
         }
@@ -2651,6 +2889,9 @@ public class Containers
          */
         public _Builder addToDoubleList(double... values) {
             optionals.set(5);
+            if (mDoubleList == null) {
+                mDoubleList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (double item : values) {
                 mDoubleList.add(item);
             }
@@ -2673,7 +2914,7 @@ public class Containers
          */
         public _Builder clearDoubleList() {
             optionals.clear(5);
-            mDoubleList.clear();
+            mDoubleList = null;
             return this;
         }
 
@@ -2684,6 +2925,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<Double> mutableDoubleList() {
             optionals.set(5);
+            if (mDoubleList == null) {
+                mDoubleList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mDoubleList;
         }
 
@@ -2695,7 +2939,11 @@ public class Containers
          */
         public _Builder setStringList(java.util.Collection<String> value) {
             optionals.set(6);
-            mStringList.clear();
+            if (mStringList == null) {
+                mStringList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mStringList.clear();
+            }
             mStringList.addAll(value);
             return this;
         }
@@ -2708,6 +2956,9 @@ public class Containers
          */
         public _Builder addToStringList(String... values) {
             optionals.set(6);
+            if (mStringList == null) {
+                mStringList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (String item : values) {
                 mStringList.add(item);
             }
@@ -2730,7 +2981,7 @@ public class Containers
          */
         public _Builder clearStringList() {
             optionals.clear(6);
-            mStringList.clear();
+            mStringList = null;
             return this;
         }
 
@@ -2741,6 +2992,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<String> mutableStringList() {
             optionals.set(6);
+            if (mStringList == null) {
+                mStringList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mStringList;
         }
 
@@ -2752,7 +3006,11 @@ public class Containers
          */
         public _Builder setBinaryList(java.util.Collection<net.morimekta.util.Binary> value) {
             optionals.set(7);
-            mBinaryList.clear();
+            if (mBinaryList == null) {
+                mBinaryList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mBinaryList.clear();
+            }
             mBinaryList.addAll(value);
             return this;
         }
@@ -2765,6 +3023,9 @@ public class Containers
          */
         public _Builder addToBinaryList(net.morimekta.util.Binary... values) {
             optionals.set(7);
+            if (mBinaryList == null) {
+                mBinaryList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.util.Binary item : values) {
                 mBinaryList.add(item);
             }
@@ -2787,7 +3048,7 @@ public class Containers
          */
         public _Builder clearBinaryList() {
             optionals.clear(7);
-            mBinaryList.clear();
+            mBinaryList = null;
             return this;
         }
 
@@ -2798,6 +3059,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.util.Binary> mutableBinaryList() {
             optionals.set(7);
+            if (mBinaryList == null) {
+                mBinaryList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mBinaryList;
         }
 
@@ -2811,7 +3075,11 @@ public class Containers
          */
         public _Builder setBooleanSet(java.util.Collection<Boolean> value) {
             optionals.set(8);
-            mBooleanSet.clear();
+            if (mBooleanSet == null) {
+                mBooleanSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mBooleanSet.clear();
+            }
             mBooleanSet.addAll(value);
             return this;
         }
@@ -2826,6 +3094,9 @@ public class Containers
          */
         public _Builder addToBooleanSet(boolean... values) {
             optionals.set(8);
+            if (mBooleanSet == null) {
+                mBooleanSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (boolean item : values) {
                 mBooleanSet.add(item);
             }
@@ -2852,7 +3123,7 @@ public class Containers
          */
         public _Builder clearBooleanSet() {
             optionals.clear(8);
-            mBooleanSet.clear();
+            mBooleanSet = null;
             return this;
         }
 
@@ -2865,6 +3136,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<Boolean> mutableBooleanSet() {
             optionals.set(8);
+            if (mBooleanSet == null) {
+                mBooleanSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mBooleanSet;
         }
 
@@ -2876,7 +3150,11 @@ public class Containers
          */
         public _Builder setByteSet(java.util.Collection<Byte> value) {
             optionals.set(9);
-            mByteSet.clear();
+            if (mByteSet == null) {
+                mByteSet = new net.morimekta.providence.descriptor.PSet.ImmutableSortedSetBuilder<>();
+            } else {
+                mByteSet.clear();
+            }
             mByteSet.addAll(value);
             return this;
         }
@@ -2889,6 +3167,9 @@ public class Containers
          */
         public _Builder addToByteSet(byte... values) {
             optionals.set(9);
+            if (mByteSet == null) {
+                mByteSet = new net.morimekta.providence.descriptor.PSet.ImmutableSortedSetBuilder<>();
+            }
             for (byte item : values) {
                 mByteSet.add(item);
             }
@@ -2911,7 +3192,7 @@ public class Containers
          */
         public _Builder clearByteSet() {
             optionals.clear(9);
-            mByteSet.clear();
+            mByteSet = null;
             return this;
         }
 
@@ -2922,6 +3203,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<Byte> mutableByteSet() {
             optionals.set(9);
+            if (mByteSet == null) {
+                mByteSet = new net.morimekta.providence.descriptor.PSet.ImmutableSortedSetBuilder<>();
+            }
             return mByteSet;
         }
 
@@ -2933,7 +3217,11 @@ public class Containers
          */
         public _Builder setShortSet(java.util.Collection<Short> value) {
             optionals.set(10);
-            mShortSet.clear();
+            if (mShortSet == null) {
+                mShortSet = new net.morimekta.providence.descriptor.PSet.LinkedHashSetBuilder<>();
+            } else {
+                mShortSet.clear();
+            }
             mShortSet.addAll(value);
             return this;
         }
@@ -2946,6 +3234,9 @@ public class Containers
          */
         public _Builder addToShortSet(short... values) {
             optionals.set(10);
+            if (mShortSet == null) {
+                mShortSet = new net.morimekta.providence.descriptor.PSet.LinkedHashSetBuilder<>();
+            }
             for (short item : values) {
                 mShortSet.add(item);
             }
@@ -2968,7 +3259,7 @@ public class Containers
          */
         public _Builder clearShortSet() {
             optionals.clear(10);
-            mShortSet.clear();
+            mShortSet = null;
             return this;
         }
 
@@ -2979,6 +3270,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<Short> mutableShortSet() {
             optionals.set(10);
+            if (mShortSet == null) {
+                mShortSet = new net.morimekta.providence.descriptor.PSet.LinkedHashSetBuilder<>();
+            }
             return mShortSet;
         }
 
@@ -2990,7 +3284,11 @@ public class Containers
          */
         public _Builder setIntegerSet(java.util.Collection<Integer> value) {
             optionals.set(11);
-            mIntegerSet.clear();
+            if (mIntegerSet == null) {
+                mIntegerSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mIntegerSet.clear();
+            }
             mIntegerSet.addAll(value);
             return this;
         }
@@ -3003,6 +3301,9 @@ public class Containers
          */
         public _Builder addToIntegerSet(int... values) {
             optionals.set(11);
+            if (mIntegerSet == null) {
+                mIntegerSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (int item : values) {
                 mIntegerSet.add(item);
             }
@@ -3025,7 +3326,7 @@ public class Containers
          */
         public _Builder clearIntegerSet() {
             optionals.clear(11);
-            mIntegerSet.clear();
+            mIntegerSet = null;
             return this;
         }
 
@@ -3036,6 +3337,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<Integer> mutableIntegerSet() {
             optionals.set(11);
+            if (mIntegerSet == null) {
+                mIntegerSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mIntegerSet;
         }
 
@@ -3047,7 +3351,11 @@ public class Containers
          */
         public _Builder setLongSet(java.util.Collection<Long> value) {
             optionals.set(12);
-            mLongSet.clear();
+            if (mLongSet == null) {
+                mLongSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mLongSet.clear();
+            }
             mLongSet.addAll(value);
             return this;
         }
@@ -3060,6 +3368,9 @@ public class Containers
          */
         public _Builder addToLongSet(long... values) {
             optionals.set(12);
+            if (mLongSet == null) {
+                mLongSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (long item : values) {
                 mLongSet.add(item);
             }
@@ -3082,7 +3393,7 @@ public class Containers
          */
         public _Builder clearLongSet() {
             optionals.clear(12);
-            mLongSet.clear();
+            mLongSet = null;
             return this;
         }
 
@@ -3093,6 +3404,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<Long> mutableLongSet() {
             optionals.set(12);
+            if (mLongSet == null) {
+                mLongSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mLongSet;
         }
 
@@ -3104,7 +3418,11 @@ public class Containers
          */
         public _Builder setDoubleSet(java.util.Collection<Double> value) {
             optionals.set(13);
-            mDoubleSet.clear();
+            if (mDoubleSet == null) {
+                mDoubleSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mDoubleSet.clear();
+            }
             mDoubleSet.addAll(value);
             return this;
         }
@@ -3117,6 +3435,9 @@ public class Containers
          */
         public _Builder addToDoubleSet(double... values) {
             optionals.set(13);
+            if (mDoubleSet == null) {
+                mDoubleSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (double item : values) {
                 mDoubleSet.add(item);
             }
@@ -3139,7 +3460,7 @@ public class Containers
          */
         public _Builder clearDoubleSet() {
             optionals.clear(13);
-            mDoubleSet.clear();
+            mDoubleSet = null;
             return this;
         }
 
@@ -3150,6 +3471,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<Double> mutableDoubleSet() {
             optionals.set(13);
+            if (mDoubleSet == null) {
+                mDoubleSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mDoubleSet;
         }
 
@@ -3161,7 +3485,11 @@ public class Containers
          */
         public _Builder setStringSet(java.util.Collection<String> value) {
             optionals.set(14);
-            mStringSet.clear();
+            if (mStringSet == null) {
+                mStringSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mStringSet.clear();
+            }
             mStringSet.addAll(value);
             return this;
         }
@@ -3174,6 +3502,9 @@ public class Containers
          */
         public _Builder addToStringSet(String... values) {
             optionals.set(14);
+            if (mStringSet == null) {
+                mStringSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (String item : values) {
                 mStringSet.add(item);
             }
@@ -3196,7 +3527,7 @@ public class Containers
          */
         public _Builder clearStringSet() {
             optionals.clear(14);
-            mStringSet.clear();
+            mStringSet = null;
             return this;
         }
 
@@ -3207,6 +3538,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<String> mutableStringSet() {
             optionals.set(14);
+            if (mStringSet == null) {
+                mStringSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mStringSet;
         }
 
@@ -3218,7 +3552,11 @@ public class Containers
          */
         public _Builder setBinarySet(java.util.Collection<net.morimekta.util.Binary> value) {
             optionals.set(15);
-            mBinarySet.clear();
+            if (mBinarySet == null) {
+                mBinarySet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mBinarySet.clear();
+            }
             mBinarySet.addAll(value);
             return this;
         }
@@ -3231,6 +3569,9 @@ public class Containers
          */
         public _Builder addToBinarySet(net.morimekta.util.Binary... values) {
             optionals.set(15);
+            if (mBinarySet == null) {
+                mBinarySet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (net.morimekta.util.Binary item : values) {
                 mBinarySet.add(item);
             }
@@ -3253,7 +3594,7 @@ public class Containers
          */
         public _Builder clearBinarySet() {
             optionals.clear(15);
-            mBinarySet.clear();
+            mBinarySet = null;
             return this;
         }
 
@@ -3264,6 +3605,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<net.morimekta.util.Binary> mutableBinarySet() {
             optionals.set(15);
+            if (mBinarySet == null) {
+                mBinarySet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mBinarySet;
         }
 
@@ -3277,7 +3621,11 @@ public class Containers
          */
         public _Builder setBooleanMap(java.util.Map<Boolean,Boolean> value) {
             optionals.set(16);
-            mBooleanMap.clear();
+            if (mBooleanMap == null) {
+                mBooleanMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mBooleanMap.clear();
+            }
             mBooleanMap.putAll(value);
             return this;
         }
@@ -3293,6 +3641,9 @@ public class Containers
          */
         public _Builder putInBooleanMap(boolean key, boolean value) {
             optionals.set(16);
+            if (mBooleanMap == null) {
+                mBooleanMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mBooleanMap.put(key, value);
             return this;
         }
@@ -3317,7 +3668,7 @@ public class Containers
          */
         public _Builder clearBooleanMap() {
             optionals.clear(16);
-            mBooleanMap.clear();
+            mBooleanMap = null;
             return this;
         }
 
@@ -3330,6 +3681,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<Boolean,Boolean> mutableBooleanMap() {
             optionals.set(16);
+            if (mBooleanMap == null) {
+                mBooleanMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mBooleanMap;
         }
 
@@ -3341,7 +3695,11 @@ public class Containers
          */
         public _Builder setByteMap(java.util.Map<Byte,Byte> value) {
             optionals.set(17);
-            mByteMap.clear();
+            if (mByteMap == null) {
+                mByteMap = new net.morimekta.providence.descriptor.PMap.ImmutableSortedMapBuilder<>();
+            } else {
+                mByteMap.clear();
+            }
             mByteMap.putAll(value);
             return this;
         }
@@ -3355,6 +3713,9 @@ public class Containers
          */
         public _Builder putInByteMap(byte key, byte value) {
             optionals.set(17);
+            if (mByteMap == null) {
+                mByteMap = new net.morimekta.providence.descriptor.PMap.ImmutableSortedMapBuilder<>();
+            }
             mByteMap.put(key, value);
             return this;
         }
@@ -3375,7 +3736,7 @@ public class Containers
          */
         public _Builder clearByteMap() {
             optionals.clear(17);
-            mByteMap.clear();
+            mByteMap = null;
             return this;
         }
 
@@ -3386,6 +3747,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<Byte,Byte> mutableByteMap() {
             optionals.set(17);
+            if (mByteMap == null) {
+                mByteMap = new net.morimekta.providence.descriptor.PMap.ImmutableSortedMapBuilder<>();
+            }
             return mByteMap;
         }
 
@@ -3397,7 +3761,11 @@ public class Containers
          */
         public _Builder setShortMap(java.util.Map<Short,Short> value) {
             optionals.set(18);
-            mShortMap.clear();
+            if (mShortMap == null) {
+                mShortMap = new net.morimekta.providence.descriptor.PMap.LinkedHashMapBuilder<>();
+            } else {
+                mShortMap.clear();
+            }
             mShortMap.putAll(value);
             return this;
         }
@@ -3411,6 +3779,9 @@ public class Containers
          */
         public _Builder putInShortMap(short key, short value) {
             optionals.set(18);
+            if (mShortMap == null) {
+                mShortMap = new net.morimekta.providence.descriptor.PMap.LinkedHashMapBuilder<>();
+            }
             mShortMap.put(key, value);
             return this;
         }
@@ -3431,7 +3802,7 @@ public class Containers
          */
         public _Builder clearShortMap() {
             optionals.clear(18);
-            mShortMap.clear();
+            mShortMap = null;
             return this;
         }
 
@@ -3442,6 +3813,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<Short,Short> mutableShortMap() {
             optionals.set(18);
+            if (mShortMap == null) {
+                mShortMap = new net.morimekta.providence.descriptor.PMap.LinkedHashMapBuilder<>();
+            }
             return mShortMap;
         }
 
@@ -3453,7 +3827,11 @@ public class Containers
          */
         public _Builder setIntegerMap(java.util.Map<Integer,Integer> value) {
             optionals.set(19);
-            mIntegerMap.clear();
+            if (mIntegerMap == null) {
+                mIntegerMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mIntegerMap.clear();
+            }
             mIntegerMap.putAll(value);
             return this;
         }
@@ -3467,6 +3845,9 @@ public class Containers
          */
         public _Builder putInIntegerMap(int key, int value) {
             optionals.set(19);
+            if (mIntegerMap == null) {
+                mIntegerMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mIntegerMap.put(key, value);
             return this;
         }
@@ -3487,7 +3868,7 @@ public class Containers
          */
         public _Builder clearIntegerMap() {
             optionals.clear(19);
-            mIntegerMap.clear();
+            mIntegerMap = null;
             return this;
         }
 
@@ -3498,6 +3879,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<Integer,Integer> mutableIntegerMap() {
             optionals.set(19);
+            if (mIntegerMap == null) {
+                mIntegerMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mIntegerMap;
         }
 
@@ -3509,7 +3893,11 @@ public class Containers
          */
         public _Builder setLongMap(java.util.Map<Long,Long> value) {
             optionals.set(20);
-            mLongMap.clear();
+            if (mLongMap == null) {
+                mLongMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mLongMap.clear();
+            }
             mLongMap.putAll(value);
             return this;
         }
@@ -3523,6 +3911,9 @@ public class Containers
          */
         public _Builder putInLongMap(long key, long value) {
             optionals.set(20);
+            if (mLongMap == null) {
+                mLongMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mLongMap.put(key, value);
             return this;
         }
@@ -3543,7 +3934,7 @@ public class Containers
          */
         public _Builder clearLongMap() {
             optionals.clear(20);
-            mLongMap.clear();
+            mLongMap = null;
             return this;
         }
 
@@ -3554,6 +3945,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<Long,Long> mutableLongMap() {
             optionals.set(20);
+            if (mLongMap == null) {
+                mLongMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mLongMap;
         }
 
@@ -3565,7 +3959,11 @@ public class Containers
          */
         public _Builder setDoubleMap(java.util.Map<Double,Double> value) {
             optionals.set(21);
-            mDoubleMap.clear();
+            if (mDoubleMap == null) {
+                mDoubleMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mDoubleMap.clear();
+            }
             mDoubleMap.putAll(value);
             return this;
         }
@@ -3579,6 +3977,9 @@ public class Containers
          */
         public _Builder putInDoubleMap(double key, double value) {
             optionals.set(21);
+            if (mDoubleMap == null) {
+                mDoubleMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mDoubleMap.put(key, value);
             return this;
         }
@@ -3599,7 +4000,7 @@ public class Containers
          */
         public _Builder clearDoubleMap() {
             optionals.clear(21);
-            mDoubleMap.clear();
+            mDoubleMap = null;
             return this;
         }
 
@@ -3610,6 +4011,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<Double,Double> mutableDoubleMap() {
             optionals.set(21);
+            if (mDoubleMap == null) {
+                mDoubleMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mDoubleMap;
         }
 
@@ -3621,7 +4025,11 @@ public class Containers
          */
         public _Builder setStringMap(java.util.Map<String,String> value) {
             optionals.set(22);
-            mStringMap.clear();
+            if (mStringMap == null) {
+                mStringMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mStringMap.clear();
+            }
             mStringMap.putAll(value);
             return this;
         }
@@ -3635,6 +4043,9 @@ public class Containers
          */
         public _Builder putInStringMap(String key, String value) {
             optionals.set(22);
+            if (mStringMap == null) {
+                mStringMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mStringMap.put(key, value);
             return this;
         }
@@ -3655,7 +4066,7 @@ public class Containers
          */
         public _Builder clearStringMap() {
             optionals.clear(22);
-            mStringMap.clear();
+            mStringMap = null;
             return this;
         }
 
@@ -3666,6 +4077,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableStringMap() {
             optionals.set(22);
+            if (mStringMap == null) {
+                mStringMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mStringMap;
         }
 
@@ -3677,7 +4091,11 @@ public class Containers
          */
         public _Builder setBinaryMap(java.util.Map<net.morimekta.util.Binary,net.morimekta.util.Binary> value) {
             optionals.set(23);
-            mBinaryMap.clear();
+            if (mBinaryMap == null) {
+                mBinaryMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mBinaryMap.clear();
+            }
             mBinaryMap.putAll(value);
             return this;
         }
@@ -3691,6 +4109,9 @@ public class Containers
          */
         public _Builder putInBinaryMap(net.morimekta.util.Binary key, net.morimekta.util.Binary value) {
             optionals.set(23);
+            if (mBinaryMap == null) {
+                mBinaryMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mBinaryMap.put(key, value);
             return this;
         }
@@ -3711,7 +4132,7 @@ public class Containers
          */
         public _Builder clearBinaryMap() {
             optionals.clear(23);
-            mBinaryMap.clear();
+            mBinaryMap = null;
             return this;
         }
 
@@ -3722,6 +4143,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<net.morimekta.util.Binary,net.morimekta.util.Binary> mutableBinaryMap() {
             optionals.set(23);
+            if (mBinaryMap == null) {
+                mBinaryMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mBinaryMap;
         }
 
@@ -3735,7 +4159,11 @@ public class Containers
          */
         public _Builder setEnumList(java.util.Collection<net.morimekta.test.providence.Value> value) {
             optionals.set(24);
-            mEnumList.clear();
+            if (mEnumList == null) {
+                mEnumList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mEnumList.clear();
+            }
             mEnumList.addAll(value);
             return this;
         }
@@ -3750,6 +4178,9 @@ public class Containers
          */
         public _Builder addToEnumList(net.morimekta.test.providence.Value... values) {
             optionals.set(24);
+            if (mEnumList == null) {
+                mEnumList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.test.providence.Value item : values) {
                 mEnumList.add(item);
             }
@@ -3776,7 +4207,7 @@ public class Containers
          */
         public _Builder clearEnumList() {
             optionals.clear(24);
-            mEnumList.clear();
+            mEnumList = null;
             return this;
         }
 
@@ -3789,6 +4220,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.test.providence.Value> mutableEnumList() {
             optionals.set(24);
+            if (mEnumList == null) {
+                mEnumList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mEnumList;
         }
 
@@ -3800,7 +4234,11 @@ public class Containers
          */
         public _Builder setEnumSet(java.util.Collection<net.morimekta.test.providence.Value> value) {
             optionals.set(25);
-            mEnumSet.clear();
+            if (mEnumSet == null) {
+                mEnumSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mEnumSet.clear();
+            }
             mEnumSet.addAll(value);
             return this;
         }
@@ -3813,6 +4251,9 @@ public class Containers
          */
         public _Builder addToEnumSet(net.morimekta.test.providence.Value... values) {
             optionals.set(25);
+            if (mEnumSet == null) {
+                mEnumSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (net.morimekta.test.providence.Value item : values) {
                 mEnumSet.add(item);
             }
@@ -3835,7 +4276,7 @@ public class Containers
          */
         public _Builder clearEnumSet() {
             optionals.clear(25);
-            mEnumSet.clear();
+            mEnumSet = null;
             return this;
         }
 
@@ -3846,6 +4287,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<net.morimekta.test.providence.Value> mutableEnumSet() {
             optionals.set(25);
+            if (mEnumSet == null) {
+                mEnumSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mEnumSet;
         }
 
@@ -3857,7 +4301,11 @@ public class Containers
          */
         public _Builder setEnumMap(java.util.Map<net.morimekta.test.providence.Value,net.morimekta.test.providence.Value> value) {
             optionals.set(26);
-            mEnumMap.clear();
+            if (mEnumMap == null) {
+                mEnumMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mEnumMap.clear();
+            }
             mEnumMap.putAll(value);
             return this;
         }
@@ -3871,6 +4319,9 @@ public class Containers
          */
         public _Builder putInEnumMap(net.morimekta.test.providence.Value key, net.morimekta.test.providence.Value value) {
             optionals.set(26);
+            if (mEnumMap == null) {
+                mEnumMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mEnumMap.put(key, value);
             return this;
         }
@@ -3891,7 +4342,7 @@ public class Containers
          */
         public _Builder clearEnumMap() {
             optionals.clear(26);
-            mEnumMap.clear();
+            mEnumMap = null;
             return this;
         }
 
@@ -3902,6 +4353,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<net.morimekta.test.providence.Value,net.morimekta.test.providence.Value> mutableEnumMap() {
             optionals.set(26);
+            if (mEnumMap == null) {
+                mEnumMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mEnumMap;
         }
 
@@ -3915,7 +4369,11 @@ public class Containers
          */
         public _Builder setMessageList(java.util.Collection<net.morimekta.test.providence.DefaultFields> value) {
             optionals.set(27);
-            mMessageList.clear();
+            if (mMessageList == null) {
+                mMessageList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mMessageList.clear();
+            }
             mMessageList.addAll(value);
             return this;
         }
@@ -3930,6 +4388,9 @@ public class Containers
          */
         public _Builder addToMessageList(net.morimekta.test.providence.DefaultFields... values) {
             optionals.set(27);
+            if (mMessageList == null) {
+                mMessageList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.test.providence.DefaultFields item : values) {
                 mMessageList.add(item);
             }
@@ -3956,7 +4417,7 @@ public class Containers
          */
         public _Builder clearMessageList() {
             optionals.clear(27);
-            mMessageList.clear();
+            mMessageList = null;
             return this;
         }
 
@@ -3969,6 +4430,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.test.providence.DefaultFields> mutableMessageList() {
             optionals.set(27);
+            if (mMessageList == null) {
+                mMessageList = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mMessageList;
         }
 
@@ -3980,7 +4444,11 @@ public class Containers
          */
         public _Builder setMessageSet(java.util.Collection<net.morimekta.test.providence.DefaultFields> value) {
             optionals.set(28);
-            mMessageSet.clear();
+            if (mMessageSet == null) {
+                mMessageSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            } else {
+                mMessageSet.clear();
+            }
             mMessageSet.addAll(value);
             return this;
         }
@@ -3993,6 +4461,9 @@ public class Containers
          */
         public _Builder addToMessageSet(net.morimekta.test.providence.DefaultFields... values) {
             optionals.set(28);
+            if (mMessageSet == null) {
+                mMessageSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             for (net.morimekta.test.providence.DefaultFields item : values) {
                 mMessageSet.add(item);
             }
@@ -4015,7 +4486,7 @@ public class Containers
          */
         public _Builder clearMessageSet() {
             optionals.clear(28);
-            mMessageSet.clear();
+            mMessageSet = null;
             return this;
         }
 
@@ -4026,6 +4497,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PSet.Builder<net.morimekta.test.providence.DefaultFields> mutableMessageSet() {
             optionals.set(28);
+            if (mMessageSet == null) {
+                mMessageSet = new net.morimekta.providence.descriptor.PSet.ImmutableSetBuilder<>();
+            }
             return mMessageSet;
         }
 
@@ -4037,7 +4511,11 @@ public class Containers
          */
         public _Builder setMessageMap(java.util.Map<String,net.morimekta.test.providence.DefaultFields> value) {
             optionals.set(29);
-            mMessageMap.clear();
+            if (mMessageMap == null) {
+                mMessageMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mMessageMap.clear();
+            }
             mMessageMap.putAll(value);
             return this;
         }
@@ -4051,6 +4529,9 @@ public class Containers
          */
         public _Builder putInMessageMap(String key, net.morimekta.test.providence.DefaultFields value) {
             optionals.set(29);
+            if (mMessageMap == null) {
+                mMessageMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mMessageMap.put(key, value);
             return this;
         }
@@ -4071,7 +4552,7 @@ public class Containers
          */
         public _Builder clearMessageMap() {
             optionals.clear(29);
-            mMessageMap.clear();
+            mMessageMap = null;
             return this;
         }
 
@@ -4082,6 +4563,9 @@ public class Containers
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,net.morimekta.test.providence.DefaultFields> mutableMessageMap() {
             optionals.set(29);
+            if (mMessageMap == null) {
+                mMessageMap = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mMessageMap;
         }
 
@@ -25,6 +25,7 @@ public class DefaultValues
     private final net.morimekta.test.providence.Value mEnumValue;
     private final net.morimekta.test.providence.CompactFields mCompactValue;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private DefaultValues(_Builder builder) {
@@ -38,6 +39,8 @@ public class DefaultValues
         mBinaryValue = builder.mBinaryValue;
         mEnumValue = builder.mEnumValue;
         mCompactValue = builder.mCompactValue_builder != null ? builder.mCompactValue_builder.build() : builder.mCompactValue;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public DefaultValues(boolean pBooleanValue,
@@ -60,6 +63,8 @@ public class DefaultValues
         mBinaryValue = pBinaryValue;
         mEnumValue = pEnumValue;
         mCompactValue = pCompactValue;
+
+        tUnknownFields = null;
     }
 
     public boolean hasBooleanValue() {
@@ -172,6 +177,11 @@ public class DefaultValues
         return mCompactValue;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -233,12 +243,12 @@ public class DefaultValues
         if (o == this) return true;
         if (o == null || !(o instanceof DefaultValues)) return false;
         DefaultValues other = (DefaultValues) o;
-        return java.util.Objects.equals(mBooleanValue, other.mBooleanValue) &&
-               java.util.Objects.equals(mByteValue, other.mByteValue) &&
-               java.util.Objects.equals(mShortValue, other.mShortValue) &&
-               java.util.Objects.equals(mIntegerValue, other.mIntegerValue) &&
-               java.util.Objects.equals(mLongValue, other.mLongValue) &&
-               java.util.Objects.equals(mDoubleValue, other.mDoubleValue) &&
+        return mBooleanValue == other.mBooleanValue &&
+               mByteValue == other.mByteValue &&
+               mShortValue == other.mShortValue &&
+               mIntegerValue == other.mIntegerValue &&
+               mLongValue == other.mLongValue &&
+               Double.compare(mDoubleValue, other.mDoubleValue) == 0 &&
                java.util.Objects.equals(mStringValue, other.mStringValue) &&
                java.util.Objects.equals(mBinaryValue, other.mBinaryValue) &&
                java.util.Objects.equals(mEnumValue, other.mEnumValue) &&
@@ -248,18 +258,26 @@ public class DefaultValues
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    DefaultValues.class,
-                    _Field.BOOLEAN_VALUE, mBooleanValue,
-                    _Field.BYTE_VALUE, mByteValue,
-                    _Field.SHORT_VALUE, mShortValue,
-                    _Field.INTEGER_VALUE, mIntegerValue,
-                    _Field.LONG_VALUE, mLongValue,
-                    _Field.DOUBLE_VALUE, mDoubleValue,
-                    _Field.STRING_VALUE, mStringValue,
-                    _Field.BINARY_VALUE, mBinaryValue,
-                    _Field.ENUM_VALUE, mEnumValue,
-                    _Field.COMPACT_VALUE, mCompactValue);
+            int _hash = 0xae4a9a04;
+            _hash = 31 * _hash + (0x92ca2f0e ^ Boolean.hashCode(mBooleanValue));
+            _hash = 31 * _hash + (0x3cd6e3f3 ^ Byte.hashCode(mByteValue));
+            _hash = 31 * _hash + (0x1b147dcc ^ Short.hashCode(mShortValue));
+            _hash = 31 * _hash + (0x4c081dbf ^ Integer.hashCode(mIntegerValue));
+            _hash = 31 * _hash + (0x487981ab ^ Long.hashCode(mLongValue));
+            _hash = 31 * _hash + (0xdb408c9d ^ Double.hashCode(mDoubleValue));
+            if (mStringValue != null) {
+                _hash = 31 * _hash + (0x78bc1b8f ^ mStringValue.hashCode());
+            }
+            if (mBinaryValue != null) {
+                _hash = 31 * _hash + (0xd83072e5 ^ mBinaryValue.hashCode());
+            }
+            if (mEnumValue != null) {
+                _hash = 31 * _hash + (0x65cbdd54 ^ mEnumValue.getValue());
+            }
+            if (mCompactValue != null) {
+                _hash = 31 * _hash + (0x1f4b8cef ^ mCompactValue.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -587,6 +605,8 @@ public class DefaultValues
                 optionals.set(9);
                 mCompactValue = base.mCompactValue;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -23,6 +23,7 @@ public class OptionalFields
     private final net.morimekta.test.providence.Value mEnumValue;
     private final net.morimekta.test.providence.CompactFields mCompactValue;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private OptionalFields(_Builder builder) {
@@ -36,6 +37,8 @@ public class OptionalFields
         mBinaryValue = builder.mBinaryValue;
         mEnumValue = builder.mEnumValue;
         mCompactValue = builder.mCompactValue_builder != null ? builder.mCompactValue_builder.build() : builder.mCompactValue;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public OptionalFields(boolean pBooleanValue,
@@ -58,6 +61,8 @@ public class OptionalFields
         mBinaryValue = pBinaryValue;
         mEnumValue = pEnumValue;
         mCompactValue = pCompactValue;
+
+        tUnknownFields = null;
     }
 
     public boolean hasBooleanValue() {
@@ -170,6 +175,11 @@ public class OptionalFields
         return mCompactValue;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -246,18 +256,38 @@ public class OptionalFields
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    OptionalFields.class,
-                    _Field.BOOLEAN_VALUE, mBooleanValue,
-                    _Field.BYTE_VALUE, mByteValue,
-                    _Field.SHORT_VALUE, mShortValue,
-                    _Field.INTEGER_VALUE, mIntegerValue,
-                    _Field.LONG_VALUE, mLongValue,
-                    _Field.DOUBLE_VALUE, mDoubleValue,
-                    _Field.STRING_VALUE, mStringValue,
-                    _Field.BINARY_VALUE, mBinaryValue,
-                    _Field.ENUM_VALUE, mEnumValue,
-                    _Field.COMPACT_VALUE, mCompactValue);
+            int _hash = 0x38ace718;
+            if (mBooleanValue != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ Boolean.hashCode(mBooleanValue));
+            }
+            if (mByteValue != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ Byte.hashCode(mByteValue));
+            }
+            if (mShortValue != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ Short.hashCode(mShortValue));
+            }
+            if (mIntegerValue != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ Integer.hashCode(mIntegerValue));
+            }
+            if (mLongValue != null) {
+                _hash = 31 * _hash + (0x487981ab ^ Long.hashCode(mLongValue));
+            }
+            if (mDoubleValue != null) {
+                _hash = 31 * _hash + (0xdb408c9d ^ Double.hashCode(mDoubleValue));
+            }
+            if (mStringValue != null) {
+                _hash = 31 * _hash + (0x78bc1b8f ^ mStringValue.hashCode());
+            }
+            if (mBinaryValue != null) {
+                _hash = 31 * _hash + (0xd83072e5 ^ mBinaryValue.hashCode());
+            }
+            if (mEnumValue != null) {
+                _hash = 31 * _hash + (0x65cbdd54 ^ mEnumValue.getValue());
+            }
+            if (mCompactValue != null) {
+                _hash = 31 * _hash + (0x1f4b8cef ^ mCompactValue.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -637,6 +667,8 @@ public class OptionalFields
                 optionals.set(9);
                 mCompactValue = base.mCompactValue;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -23,6 +23,7 @@ public class RequiredFields
     private final net.morimekta.test.providence.Value mEnumValue;
     private final net.morimekta.test.providence.CompactFields mCompactValue;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private RequiredFields(_Builder builder) {
@@ -36,6 +37,8 @@ public class RequiredFields
         mBinaryValue = builder.mBinaryValue;
         mEnumValue = builder.mEnumValue;
         mCompactValue = builder.mCompactValue_builder != null ? builder.mCompactValue_builder.build() : builder.mCompactValue;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public RequiredFields(boolean pBooleanValue,
@@ -58,6 +61,8 @@ public class RequiredFields
         mBinaryValue = pBinaryValue;
         mEnumValue = pEnumValue;
         mCompactValue = pCompactValue;
+
+        tUnknownFields = null;
     }
 
     public boolean hasBooleanValue() {
@@ -170,6 +175,11 @@ public class RequiredFields
         return mCompactValue;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -231,12 +241,12 @@ public class RequiredFields
         if (o == this) return true;
         if (o == null || !(o instanceof RequiredFields)) return false;
         RequiredFields other = (RequiredFields) o;
-        return java.util.Objects.equals(mBooleanValue, other.mBooleanValue) &&
-               java.util.Objects.equals(mByteValue, other.mByteValue) &&
-               java.util.Objects.equals(mShortValue, other.mShortValue) &&
-               java.util.Objects.equals(mIntegerValue, other.mIntegerValue) &&
-               java.util.Objects.equals(mLongValue, other.mLongValue) &&
-               java.util.Objects.equals(mDoubleValue, other.mDoubleValue) &&
+        return mBooleanValue == other.mBooleanValue &&
+               mByteValue == other.mByteValue &&
+               mShortValue == other.mShortValue &&
+               mIntegerValue == other.mIntegerValue &&
+               mLongValue == other.mLongValue &&
+               Double.compare(mDoubleValue, other.mDoubleValue) == 0 &&
                java.util.Objects.equals(mStringValue, other.mStringValue) &&
                java.util.Objects.equals(mBinaryValue, other.mBinaryValue) &&
                java.util.Objects.equals(mEnumValue, other.mEnumValue) &&
@@ -246,18 +256,26 @@ public class RequiredFields
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    RequiredFields.class,
-                    _Field.BOOLEAN_VALUE, mBooleanValue,
-                    _Field.BYTE_VALUE, mByteValue,
-                    _Field.SHORT_VALUE, mShortValue,
-                    _Field.INTEGER_VALUE, mIntegerValue,
-                    _Field.LONG_VALUE, mLongValue,
-                    _Field.DOUBLE_VALUE, mDoubleValue,
-                    _Field.STRING_VALUE, mStringValue,
-                    _Field.BINARY_VALUE, mBinaryValue,
-                    _Field.ENUM_VALUE, mEnumValue,
-                    _Field.COMPACT_VALUE, mCompactValue);
+            int _hash = 0x11f45c17;
+            _hash = 31 * _hash + (0x92ca2f0e ^ Boolean.hashCode(mBooleanValue));
+            _hash = 31 * _hash + (0x3cd6e3f3 ^ Byte.hashCode(mByteValue));
+            _hash = 31 * _hash + (0x1b147dcc ^ Short.hashCode(mShortValue));
+            _hash = 31 * _hash + (0x4c081dbf ^ Integer.hashCode(mIntegerValue));
+            _hash = 31 * _hash + (0x487981ab ^ Long.hashCode(mLongValue));
+            _hash = 31 * _hash + (0xdb408c9d ^ Double.hashCode(mDoubleValue));
+            if (mStringValue != null) {
+                _hash = 31 * _hash + (0x78bc1b8f ^ mStringValue.hashCode());
+            }
+            if (mBinaryValue != null) {
+                _hash = 31 * _hash + (0xd83072e5 ^ mBinaryValue.hashCode());
+            }
+            if (mEnumValue != null) {
+                _hash = 31 * _hash + (0x65cbdd54 ^ mEnumValue.getValue());
+            }
+            if (mCompactValue != null) {
+                _hash = 31 * _hash + (0x1f4b8cef ^ mCompactValue.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -585,6 +603,8 @@ public class RequiredFields
                 optionals.set(9);
                 mCompactValue = base.mCompactValue;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -1,9 +1,9 @@
 package net.morimekta.test.providence;
 
-@SuppressWarnings("unused")
+@SuppressWarnings({"unused", "unchecked"})
 public class UnionFields
         implements net.morimekta.providence.PUnion<UnionFields,UnionFields._Field>, java.io.Serializable, Comparable<UnionFields> {
-    private final static long serialVersionUID = -4125227148631020921L;
+    private final static long serialVersionUID = -8320110124035426453L;
 
     private final static boolean kDefaultBooleanValue = false;
     private final static byte kDefaultByteValue = (byte)0;
@@ -12,36 +12,56 @@ public class UnionFields
     private final static long kDefaultLongValue = 0L;
     private final static double kDefaultDoubleValue = 0.0d;
 
-    private final boolean mBooleanValue;
-    private final byte mByteValue;
-    private final short mShortValue;
-    private final int mIntegerValue;
-    private final long mLongValue;
-    private final double mDoubleValue;
-    private final String mStringValue;
-    private final net.morimekta.util.Binary mBinaryValue;
-    private final net.morimekta.test.providence.Value mEnumValue;
-    private final net.morimekta.test.providence.CompactFields mCompactValue;
-
+    private final Object tUnionValue;
+    private final long tUnionBits;
     private final _Field tUnionField;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private UnionFields(_Builder builder) {
         tUnionField = builder.tUnionField;
 
-        mBooleanValue = tUnionField == _Field.BOOLEAN_VALUE ? builder.mBooleanValue : kDefaultBooleanValue;
-        mByteValue = tUnionField == _Field.BYTE_VALUE ? builder.mByteValue : kDefaultByteValue;
-        mShortValue = tUnionField == _Field.SHORT_VALUE ? builder.mShortValue : kDefaultShortValue;
-        mIntegerValue = tUnionField == _Field.INTEGER_VALUE ? builder.mIntegerValue : kDefaultIntegerValue;
-        mLongValue = tUnionField == _Field.LONG_VALUE ? builder.mLongValue : kDefaultLongValue;
-        mDoubleValue = tUnionField == _Field.DOUBLE_VALUE ? builder.mDoubleValue : kDefaultDoubleValue;
-        mStringValue = tUnionField == _Field.STRING_VALUE ? builder.mStringValue : null;
-        mBinaryValue = tUnionField == _Field.BINARY_VALUE ? builder.mBinaryValue : null;
-        mEnumValue = tUnionField == _Field.ENUM_VALUE ? builder.mEnumValue : null;
-        mCompactValue = tUnionField != _Field.COMPACT_VALUE
-                ? null
-                : builder.mCompactValue_builder != null ? builder.mCompactValue_builder.build() : builder.mCompactValue;
+        Object _value = null;
+        long _bits = 0L;
+        if (tUnionField != null) {
+            switch (tUnionField) {
+                case BOOLEAN_VALUE:
+                    _bits = (builder.mBooleanValue ? 1L : 0L);
+                    break;
+                case BYTE_VALUE:
+                    _bits = builder.mByteValue;
+                    break;
+                case SHORT_VALUE:
+                    _bits = builder.mShortValue;
+                    break;
+                case INTEGER_VALUE:
+                    _bits = builder.mIntegerValue;
+                    break;
+                case LONG_VALUE:
+                    _bits = builder.mLongValue;
+                    break;
+                case DOUBLE_VALUE:
+                    _bits = Double.doubleToLongBits(builder.mDoubleValue);
+                    break;
+                case STRING_VALUE:
+                    _value = builder.mStringValue;
+                    break;
+                case BINARY_VALUE:
+                    _value = builder.mBinaryValue;
+                    break;
+                case ENUM_VALUE:
+                    _value = builder.mEnumValue;
+                    break;
+                case COMPACT_VALUE:
+                    _value = builder.mCompactValue_builder != null ? builder.mCompactValue_builder.build() : builder.mCompactValue;
+                    break;
+            }
+        }
+        tUnionValue = _value;
+        tUnionBits = _bits;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     /**
@@ -132,7 +152,7 @@ public class UnionFields
      * @return The field value
      */
     public boolean isBooleanValue() {
-        return mBooleanValue;
+        return hasBooleanValue() ? tUnionBits != 0L : kDefaultBooleanValue;
     }
 
     public boolean hasByteValue() {
@@ -143,7 +163,7 @@ public class UnionFields
      * @return The field value
      */
     public byte getByteValue() {
-        return mByteValue;
+        return hasByteValue() ? (byte) tUnionBits : kDefaultByteValue;
     }
 
     public boolean hasShortValue() {
@@ -154,7 +174,7 @@ public class UnionFields
      * @return The field value
      */
     public short getShortValue() {
-        return mShortValue;
+        return hasShortValue() ? (short) tUnionBits : kDefaultShortValue;
     }
 
     public boolean hasIntegerValue() {
@@ -165,7 +185,7 @@ public class UnionFields
      * @return The field value
      */
     public int getIntegerValue() {
-        return mIntegerValue;
+        return hasIntegerValue() ? (int) tUnionBits : kDefaultIntegerValue;
     }
 
     public boolean hasLongValue() {
@@ -176,7 +196,7 @@ public class UnionFields
      * @return The field value
      */
     public long getLongValue() {
-        return mLongValue;
+        return hasLongValue() ? tUnionBits : kDefaultLongValue;
     }
 
     public boolean hasDoubleValue() {
@@ -187,51 +207,51 @@ public class UnionFields
      * @return The field value
      */
     public double getDoubleValue() {
-        return mDoubleValue;
+        return hasDoubleValue() ? Double.longBitsToDouble(tUnionBits) : kDefaultDoubleValue;
     }
 
     public boolean hasStringValue() {
-        return tUnionField == _Field.STRING_VALUE && mStringValue != null;
+        return tUnionField == _Field.STRING_VALUE && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public String getStringValue() {
-        return mStringValue;
+        return hasStringValue() ? (String) tUnionValue : null;
     }
 
     public boolean hasBinaryValue() {
-        return tUnionField == _Field.BINARY_VALUE && mBinaryValue != null;
+        return tUnionField == _Field.BINARY_VALUE && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.util.Binary getBinaryValue() {
-        return mBinaryValue;
+        return hasBinaryValue() ? (net.morimekta.util.Binary) tUnionValue : null;
     }
 
     public boolean hasEnumValue() {
-        return tUnionField == _Field.ENUM_VALUE && mEnumValue != null;
+        return tUnionField == _Field.ENUM_VALUE && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.test.providence.Value getEnumValue() {
-        return mEnumValue;
+        return hasEnumValue() ? (net.morimekta.test.providence.Value) tUnionValue : null;
     }
 
     public boolean hasCompactValue() {
-        return tUnionField == _Field.COMPACT_VALUE && mCompactValue != null;
+        return tUnionField == _Field.COMPACT_VALUE && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.test.providence.CompactFields getCompactValue() {
-        return mCompactValue;
+        return hasCompactValue() ? (net.morimekta.test.providence.CompactFields) tUnionValue : null;
     }
 
     @Override
@@ -239,6 +259,11 @@ public class UnionFields
         return tUnionField;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -301,33 +326,57 @@ public class UnionFields
         if (o == null || !(o instanceof UnionFields)) return false;
         UnionFields other = (UnionFields) o;
         return java.util.Objects.equals(tUnionField, other.tUnionField) &&
-               java.util.Objects.equals(mBooleanValue, other.mBooleanValue) &&
-               java.util.Objects.equals(mByteValue, other.mByteValue) &&
-               java.util.Objects.equals(mShortValue, other.mShortValue) &&
-               java.util.Objects.equals(mIntegerValue, other.mIntegerValue) &&
-               java.util.Objects.equals(mLongValue, other.mLongValue) &&
-               java.util.Objects.equals(mDoubleValue, other.mDoubleValue) &&
-               java.util.Objects.equals(mStringValue, other.mStringValue) &&
-               java.util.Objects.equals(mBinaryValue, other.mBinaryValue) &&
-               java.util.Objects.equals(mEnumValue, other.mEnumValue) &&
-               java.util.Objects.equals(mCompactValue, other.mCompactValue);
+               tUnionBits == other.tUnionBits &&
+               java.util.Objects.equals(tUnionValue, other.tUnionValue);
     }
 
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    UnionFields.class,
-                    _Field.BOOLEAN_VALUE, mBooleanValue,
-                    _Field.BYTE_VALUE, mByteValue,
-                    _Field.SHORT_VALUE, mShortValue,
-                    _Field.INTEGER_VALUE, mIntegerValue,
-                    _Field.LONG_VALUE, mLongValue,
-                    _Field.DOUBLE_VALUE, mDoubleValue,
-                    _Field.STRING_VALUE, mStringValue,
-                    _Field.BINARY_VALUE, mBinaryValue,
-                    _Field.ENUM_VALUE, mEnumValue,
-                    _Field.COMPACT_VALUE, mCompactValue);
+            int _hash = 0xbe44b5e9;
+            if (tUnionField != null) {
+                switch (tUnionField) {
+                    case BOOLEAN_VALUE:
+                        _hash = 31 * _hash + (0x92ca2f0e ^ Boolean.hashCode(isBooleanValue()));
+                        break;
+                    case BYTE_VALUE:
+                        _hash = 31 * _hash + (0x3cd6e3f3 ^ Byte.hashCode(getByteValue()));
+                        break;
+                    case SHORT_VALUE:
+                        _hash = 31 * _hash + (0x1b147dcc ^ Short.hashCode(getShortValue()));
+                        break;
+                    case INTEGER_VALUE:
+                        _hash = 31 * _hash + (0x4c081dbf ^ Integer.hashCode(getIntegerValue()));
+                        break;
+                    case LONG_VALUE:
+                        _hash = 31 * _hash + (0x487981ab ^ Long.hashCode(getLongValue()));
+                        break;
+                    case DOUBLE_VALUE:
+                        _hash = 31 * _hash + (0xdb408c9d ^ Double.hashCode(getDoubleValue()));
+                        break;
+                    case STRING_VALUE:
+                        if (getStringValue() != null) {
+                            _hash = 31 * _hash + (0x78bc1b8f ^ getStringValue().hashCode());
+                        }
+                        break;
+                    case BINARY_VALUE:
+                        if (getBinaryValue() != null) {
+                            _hash = 31 * _hash + (0xd83072e5 ^ getBinaryValue().hashCode());
+                        }
+                        break;
+                    case ENUM_VALUE:
+                        if (getEnumValue() != null) {
+                            _hash = 31 * _hash + (0x65cbdd54 ^ getEnumValue().getValue());
+                        }
+                        break;
+                    case COMPACT_VALUE:
+                        if (getCompactValue() != null) {
+                            _hash = 31 * _hash + (0x1f4b8cef ^ getCompactValue().hashCode());
+                        }
+                        break;
+                }
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -345,52 +394,52 @@ public class UnionFields
         switch (tUnionField) {
             case BOOLEAN_VALUE: {
                 out.append("booleanValue:")
-                   .append(mBooleanValue);
+                   .append(isBooleanValue());
                 break;
             }
             case BYTE_VALUE: {
                 out.append("byteValue:")
-                   .append((int) mByteValue);
+                   .append((int) getByteValue());
                 break;
             }
             case SHORT_VALUE: {
                 out.append("shortValue:")
-                   .append((int) mShortValue);
+                   .append((int) getShortValue());
                 break;
             }
             case INTEGER_VALUE: {
                 out.append("integerValue:")
-                   .append(mIntegerValue);
+                   .append(getIntegerValue());
                 break;
             }
             case LONG_VALUE: {
                 out.append("longValue:")
-                   .append(mLongValue);
+                   .append(getLongValue());
                 break;
             }
             case DOUBLE_VALUE: {
                 out.append("doubleValue:")
-                   .append(net.morimekta.util.Strings.asString(mDoubleValue));
+                   .append(net.morimekta.util.Strings.asString(getDoubleValue()));
                 break;
             }
             case STRING_VALUE: {
                 out.append("stringValue:")
-                   .append('\"').append(net.morimekta.util.Strings.escape(mStringValue)).append('\"');
+                   .append('\"').append(net.morimekta.util.Strings.escape(getStringValue())).append('\"');
                 break;
             }
             case BINARY_VALUE: {
                 out.append("binaryValue:")
-                   .append("b64(").append(mBinaryValue.toBase64()).append(')');
+                   .append("b64(").append(getBinaryValue().toBase64()).append(')');
                 break;
             }
             case ENUM_VALUE: {
                 out.append("enumValue:")
-                   .append(mEnumValue.getName());
+                   .append(getEnumValue().getName());
                 break;
             }
             case COMPACT_VALUE: {
                 out.append("compactValue:")
-                   .append(mCompactValue.asString());
+                   .append(getCompactValue().asString());
                 break;
             }
         }
@@ -405,25 +454,25 @@ public class UnionFields
 
         switch (tUnionField) {
             case BOOLEAN_VALUE:
-                return Boolean.compare(mBooleanValue, other.mBooleanValue);
+                return Boolean.compare(isBooleanValue(), other.isBooleanValue());
             case BYTE_VALUE:
-                return Byte.compare(mByteValue, other.mByteValue);
+                return Byte.compare(getByteValue(), other.getByteValue());
             case SHORT_VALUE:
-                return Short.compare(mShortValue, other.mShortValue);
+                return Short.compare(getShortValue(), other.getShortValue());
             case INTEGER_VALUE:
-                return Integer.compare(mIntegerValue, other.mIntegerValue);
+                return Integer.compare(getIntegerValue(), other.getIntegerValue());
             case LONG_VALUE:
-                return Long.compare(mLongValue, other.mLongValue);
+                return Long.compare(getLongValue(), other.getLongValue());
             case DOUBLE_VALUE:
-                return Double.compare(mDoubleValue, other.mDoubleValue);
+                return Double.compare(getDoubleValue(), other.getDoubleValue());
             case STRING_VALUE:
-                return mStringValue.compareTo(other.mStringValue);
+                return getStringValue().compareTo(other.getStringValue());
             case BINARY_VALUE:
-                return mBinaryValue.compareTo(other.mBinaryValue);
+                return getBinaryValue().compareTo(other.getBinaryValue());
             case ENUM_VALUE:
-                return Integer.compare(mEnumValue.getValue(), other.mEnumValue.getValue());
+                return Integer.compare(getEnumValue().getValue(), other.getEnumValue().getValue());
             case COMPACT_VALUE:
-                return mCompactValue.compareTo(other.mCompactValue);
+                return getCompactValue().compareTo(other.getCompactValue());
             default: return 0;
         }
     }
@@ -616,16 +665,38 @@ public class UnionFields
 
             tUnionField = base.tUnionField;
 
-            mBooleanValue = base.mBooleanValue;
-            mByteValue = base.mByteValue;
-            mShortValue = base.mShortValue;
-            mIntegerValue = base.mIntegerValue;
-            mLongValue = base.mLongValue;
-            mDoubleValue = base.mDoubleValue;
-            mStringValue = base.mStringValue;
-            mBinaryValue = base.mBinaryValue;
-            mEnumValue = base.mEnumValue;
-            mCompactValue = base.mCompactValue;
+            if (tUnionField == _Field.BOOLEAN_VALUE) {
+                mBooleanValue = base.isBooleanValue();
+            }
+            if (tUnionField == _Field.BYTE_VALUE) {
+                mByteValue = base.getByteValue();
+            }
+            if (tUnionField == _Field.SHORT_VALUE) {
+                mShortValue = base.getShortValue();
+            }
+            if (tUnionField == _Field.INTEGER_VALUE) {
+                mIntegerValue = base.getIntegerValue();
+            }
+            if (tUnionField == _Field.LONG_VALUE) {
+                mLongValue = base.getLongValue();
+            }
+            if (tUnionField == _Field.DOUBLE_VALUE) {
+                mDoubleValue = base.getDoubleValue();
+            }
+            if (tUnionField == _Field.STRING_VALUE) {
+                mStringValue = base.getStringValue();
+            }
+            if (tUnionField == _Field.BINARY_VALUE) {
+                mBinaryValue = base.getBinaryValue();
+            }
+            if (tUnionField == _Field.ENUM_VALUE) {
+                mEnumValue = base.getEnumValue();
+            }
+            if (tUnionField == _Field.COMPACT_VALUE) {
+                mCompactValue = base.getCompactValue();
+            }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
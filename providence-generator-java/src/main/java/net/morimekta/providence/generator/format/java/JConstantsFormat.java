@@ -89,12 +89,16 @@ public class JConstantsFormat {
 
                     writer.formatln("public static final %s %s;", helper.getValueType(c.getDescriptor()), name)
                           .appendln("static {")
-                          .begin()
-                          .formatln("%s = new %s<%s>()",
-                                    name,
-                                    constant.builderInstanceType(),
-                                    helper.getFieldType(itemDesc))
-                          .begin(DBL_INDENT);
+                          .begin();
+                    if (constant.primitiveContainer()) {
+                        writer.formatln("%s = %s", name, constant.newBuilderInstance());
+                    } else {
+                        writer.formatln("%s = new %s<%s>()",
+                                        name,
+                                        constant.builderInstanceType(),
+                                        helper.getFieldType(itemDesc));
+                    }
+                    writer.begin(DBL_INDENT);
 
                     @SuppressWarnings("unchecked")
                     Collection<Object> items = (Collection<Object>) c.getDefaultValue();
@@ -124,7 +128,7 @@ public class JConstantsFormat {
                     writer.formatln("public static final %s %s;", helper.getValueType(c.getDescriptor()), name)
                           .appendln("static {")
                           .begin()
-                          .formatln("%s = new %s<>()", name, field.builderInstanceType())
+                          .formatln("%s = %s", name, field.newBuilderInstance())
                           .begin(DBL_INDENT);
 
                     @SuppressWarnings("unchecked")
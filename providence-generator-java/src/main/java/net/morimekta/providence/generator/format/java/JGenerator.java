@@ -49,7 +49,7 @@ public class JGenerator extends Generator {
     public JGenerator(FileManager manager, DocumentRegistry registry, JOptions options) throws GeneratorException {
         super(manager);
 
-        helper           = new JHelper(registry);
+        helper           = new JHelper(registry, options.primitiveCollections);
         messageFormatter = new JMessageFormat(helper, options);
         enumFormatter    = new JEnumFormat(options);
         serviceFormatter = new JServiceFormat(helper, messageFormatter);
@@ -0,0 +1,219 @@
+package net.morimekta.providence.generator.format.java;
+
+import net.morimekta.providence.PType;
+import net.morimekta.providence.generator.GeneratorException;
+import net.morimekta.providence.generator.format.java.utils.JField;
+import net.morimekta.providence.generator.format.java.utils.JMessage;
+import net.morimekta.providence.serializer.BinaryReadable;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.BinaryWritable;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+import net.morimekta.util.Binary;
+import net.morimekta.util.io.BinaryReader;
+import net.morimekta.util.io.IndentedPrintWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates the {@link BinaryWritable} and {@link BinaryReadable} methods
+ * used by the {@link BinarySerializer} to write and read the typed field
+ * values directly.
+ */
+public class JMessageBinaryFormat {
+    private final IndentedPrintWriter writer;
+
+    public JMessageBinaryFormat(IndentedPrintWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Append the {@link BinaryWritable} method to the message class.
+     *
+     * @param message The message to generate for.
+     * @throws GeneratorException If unable to generate the method.
+     */
+    public void appendWriteBinary(JMessage<?> message) throws GeneratorException {
+        writer.appendln("@Override")
+              .formatln("public int writeBinaryFields(%s serializer,", BinarySerializer.class.getName())
+              .formatln("                             %s.BigEndianWriter writer)", WriteBuffer.class.getName())
+              .formatln("        throws %s, %s {", IOException.class.getName(), SerializerException.class.getName())
+              .begin()
+              .appendln("int len = 0;");
+
+        if (message.isUnion()) {
+            writer.appendln("if (tUnionField != null) {")
+                  .begin()
+                  .appendln("switch (tUnionField) {")
+                  .begin();
+            for (JField field : message.fields()) {
+                writer.formatln("case %s:", field.fieldEnum())
+                      .begin();
+                appendWriteField(field, field.unionValue());
+                writer.appendln("break;")
+                      .end();
+            }
+            writer.end()
+                  .appendln('}')
+                  .end()
+                  .appendln('}');
+        } else {
+            for (JField field : message.fields()) {
+                if (field.alwaysPresent()) {
+                    appendWriteField(field, field.member());
+                } else {
+                    writer.formatln("if (%s != null) {", field.member())
+                          .begin();
+                    appendWriteField(field, field.member());
+                    writer.end()
+                          .appendln('}');
+                }
+            }
+        }
+
+        writer.appendln("return len;")
+              .end()
+              .appendln('}')
+              .newline();
+    }
+
+    /**
+     * Append the {@link BinaryReadable} method to the message builder.
+     *
+     * @param message The message to generate for.
+     * @throws GeneratorException If unable to generate the method.
+     */
+    public void appendReadBinary(JMessage<?> message) throws GeneratorException {
+        boolean containers = message.fields()
+                                    .stream()
+                                    .anyMatch(JField::container);
+        writer.appendln("@Override");
+        if (containers) {
+            writer.appendln("@SuppressWarnings(\"unchecked\")");
+        }
+        writer.formatln("public boolean readBinaryField(%s serializer,", BinarySerializer.class.getName())
+              .formatln("                               %s reader,", BinaryReader.class.getName())
+              .appendln("                               int key,")
+              .appendln("                               byte type)")
+              .formatln("        throws %s, %s {", IOException.class.getName(), SerializerException.class.getName())
+              .begin()
+              .appendln("switch (key) {")
+              .begin();
+
+        for (JField field : message.fields()) {
+            if (field.type() == PType.VOID) {
+                // Void fields are handled by the serializer.
+                continue;
+            }
+            writer.formatln("case %d:", field.id())
+                  .begin()
+                  .formatln("if (type == %d) {", field.type().id)
+                  .begin();
+            appendReadField(field);
+            writer.appendln("return true;")
+                  .end()
+                  .appendln('}')
+                  .appendln("break;")
+                  .end();
+        }
+
+        writer.end()
+              .appendln('}')
+              .appendln("return false;")
+              .end()
+              .appendln('}')
+              .newline();
+    }
+
+    private void appendWriteField(JField field, String value) throws GeneratorException {
+        writer.formatln("len += writer.writeByte((byte) %d);", field.type().id)
+              .formatln("len += writer.writeUInt16(%d);", field.id());
+        switch (field.type()) {
+            case BOOL:
+                writer.formatln("len += writer.writeByte(%s ? (byte) 1 : (byte) 0);", value);
+                break;
+            case BYTE:
+                writer.formatln("len += writer.writeByte(%s);", value);
+                break;
+            case I16:
+                writer.formatln("len += writer.writeShort(%s);", value);
+                break;
+            case I32:
+                writer.formatln("len += writer.writeInt(%s);", value);
+                break;
+            case I64:
+                writer.formatln("len += writer.writeLong(%s);", value);
+                break;
+            case DOUBLE:
+                writer.formatln("len += writer.writeDouble(%s);", value);
+                break;
+            case STRING:
+                writer.formatln("len += writer.writeUInt32(%s.utf8Length(%s));", WriteBuffer.class.getName(), value)
+                      .formatln("len += writer.writeUtf8(%s);", value);
+                break;
+            case BINARY:
+                writer.formatln("len += writer.writeUInt32((%s).length());", value)
+                      .formatln("len += writer.writeBinary(%s);", value);
+                break;
+            case ENUM:
+                writer.formatln("len += writer.writeInt((%s).getValue());", value);
+                break;
+            case MESSAGE:
+                writer.formatln("len += serializer.writeMessage(writer, %s);", value);
+                break;
+            default:
+                writer.formatln("len += serializer.writeFieldValue(writer, %s, _Field.%s.getDescriptor());",
+                                value, field.fieldEnum());
+                break;
+        }
+    }
+
+    private void appendReadField(JField field) throws GeneratorException {
+        switch (field.type()) {
+            case BOOL:
+                writer.formatln("%s(reader.expectByte() != 0);", field.setter());
+                break;
+            case BYTE:
+                writer.formatln("%s(reader.expectByte());", field.setter());
+                break;
+            case I16:
+                writer.formatln("%s(reader.expectShort());", field.setter());
+                break;
+            case I32:
+                writer.formatln("%s(reader.expectInt());", field.setter());
+                break;
+            case I64:
+                writer.formatln("%s(reader.expectLong());", field.setter());
+                break;
+            case DOUBLE:
+                writer.formatln("%s(reader.expectDouble());", field.setter());
+                break;
+            case STRING:
+                writer.formatln("%s(new String(reader.expectBytes(reader.expectUInt32()), %s.UTF_8));",
+                                field.setter(), StandardCharsets.class.getName());
+                break;
+            case BINARY:
+                writer.formatln("%s(%s.wrap(reader.expectBytes(reader.expectUInt32())));",
+                                field.setter(), Binary.class.getName());
+                break;
+            case ENUM:
+                // Unknown enum values clears the field, same as the serializer.
+                writer.formatln("%s value = %s.forValue(reader.expectInt());", field.valueType(), field.valueType())
+                      .appendln("if (value != null) {")
+                      .formatln("    %s(value);", field.setter())
+                      .appendln("} else {")
+                      .formatln("    %s();", field.resetter())
+                      .appendln('}');
+                break;
+            case MESSAGE:
+                writer.formatln("%s(serializer.readMessage(reader, %s.kDescriptor));",
+                                field.setter(), field.valueType());
+                break;
+            default:
+                writer.formatln("%s((%s) serializer.readFieldValue(reader, type, _Field.%s.getDescriptor()));",
+                                field.setter(), field.fieldType(), field.fieldEnum());
+                break;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import net.morimekta.providence.generator.format.java.utils.JAnnotation;
 import net.morimekta.providence.generator.format.java.utils.JField;
 import net.morimekta.providence.generator.format.java.utils.JHelper;
 import net.morimekta.providence.generator.format.java.utils.JMessage;
+import net.morimekta.providence.serializer.BinaryReadable;
 import net.morimekta.util.Strings;
 import net.morimekta.util.io.IndentedPrintWriter;
 
@@ -26,10 +27,12 @@ import java.util.LinkedList;
 public class JMessageBuilderFormat {
     private final IndentedPrintWriter writer;
     private final JHelper             helper;
+    private final JOptions            options;
 
     public JMessageBuilderFormat(IndentedPrintWriter writer, JHelper helper, JOptions options) {
         this.writer = writer;
         this.helper = helper;
+        this.options = options;
     }
 
     public void appendBuilder(JMessage<?> message) throws GeneratorException {
@@ -41,9 +44,13 @@ public class JMessageBuilderFormat {
 
         writer.appendln("public static class _Builder")
               .begin()
-              .formatln("    extends %s<%s,_Field> {",
+              .formatln("    extends %s<%s,_Field>",
                         PMessageBuilder.class.getName(),
                         message.instanceType());
+        if (options.binarySerializer) {
+            writer.formatln("    implements %s", BinaryReadable.class.getName());
+        }
+        writer.append(" {");
 
         appendFields(message);
 
@@ -70,6 +77,10 @@ public class JMessageBuilderFormat {
         appendOverrideValidate(message);
         appendOverrideDescriptor(message);
 
+        if (options.binarySerializer) {
+            new JMessageBinaryFormat(writer).appendReadBinary(message);
+        }
+
         writer.appendln("@Override")
               .formatln("public %s build() {", message.instanceType())
               .begin()
@@ -134,10 +145,9 @@ public class JMessageBuilderFormat {
                             message.fields()
                                    .size());
         }
+        // Container builders are created when first used.
         for (JField field : message.fields()) {
-            if (field.container()) {
-                writer.formatln("%s = new %s<>();", field.member(), field.builderInstanceType());
-            } else if (field.alwaysPresent()) {
+            if (!field.container() && field.alwaysPresent()) {
                 writer.formatln("%s = %s;", field.member(), field.kDefault());
             }
         }
@@ -147,7 +157,7 @@ public class JMessageBuilderFormat {
 
     }
 
-    private void appendMutateConstructor(JMessage<?> message) {
+    private void appendMutateConstructor(JMessage<?> message) throws GeneratorException {
         BlockCommentBuilder comment = new BlockCommentBuilder(writer);
         comment.comment("Make a mutating builder off a base " + message.descriptor().getQualifiedName(null) + ".")
                .newline()
@@ -162,9 +172,14 @@ public class JMessageBuilderFormat {
                   .newline();
         }
         for (JField field : message.fields()) {
-            boolean checkPresence = message.isUnion() ? field.container() : !field.alwaysPresent();
+            // Union values share one value slot, so are read with the getter.
+            String value = message.isUnion() ? field.getter() + "()" : field.member();
+            boolean checkPresence = message.isUnion() || !field.alwaysPresent();
             if (checkPresence) {
-                if (field.container()) {
+                if (message.isUnion()) {
+                    writer.formatln("if (tUnionField == _Field.%s) {", field.fieldEnum())
+                          .begin();
+                } else if (field.container()) {
                     writer.formatln("if (base.%s() > 0) {", field.counter())
                           .begin();
                 } else {
@@ -178,13 +193,15 @@ public class JMessageBuilderFormat {
             switch (field.type()) {
                 case LIST:
                 case SET:
-                    writer.formatln("%s.addAll(base.%s);", field.member(), field.member());
+                    writer.formatln("%s = %s;", field.member(), field.newBuilderInstance())
+                          .formatln("%s.addAll(base.%s);", field.member(), value);
                     break;
                 case MAP:
-                    writer.formatln("%s.putAll(base.%s);", field.member(), field.member());
+                    writer.formatln("%s = %s;", field.member(), field.newBuilderInstance())
+                          .formatln("%s.putAll(base.%s);", field.member(), value);
                     break;
                 default:
-                    writer.formatln("%s = base.%s;", field.member(), field.member());
+                    writer.formatln("%s = base.%s;", field.member(), value);
                     break;
             }
             if (checkPresence) {
@@ -193,7 +210,9 @@ public class JMessageBuilderFormat {
             }
         }
 
-        writer.end()
+        writer.newline()
+              .appendln("setUnknownFields(base.tUnknownFields);")
+              .end()
               .appendln('}')
               .newline();
     }
@@ -228,9 +247,9 @@ public class JMessageBuilderFormat {
                               .appendln('}');
                         break;
                     case SET:
-                        writer.formatln("if (tUnionField == _Field.%s) {",
-                                        field.fieldEnum())
-                              .formatln("    %s.addAll(from.%s()):",
+                        writer.formatln("if (tUnionField == _Field.%s && %s != null) {",
+                                        field.fieldEnum(), field.member())
+                              .formatln("    %s.addAll(from.%s());",
                                         field.member(), field.getter())
                               .appendln("} else {")
                               .formatln("    %s(from.%s());",
@@ -238,9 +257,9 @@ public class JMessageBuilderFormat {
                               .appendln('}');
                         break;
                     case MAP:
-                        writer.formatln("if (tUnionField == _Field.%s) {",
-                                        field.fieldEnum())
-                              .formatln("    %s.putAll(from.%s()):",
+                        writer.formatln("if (tUnionField == _Field.%s && %s != null) {",
+                                        field.fieldEnum(), field.member())
+                              .formatln("    %s.putAll(from.%s());",
                                         field.member(), field.getter())
                               .appendln("} else {")
                               .formatln("    %s(from.%s());",
@@ -293,13 +312,15 @@ public class JMessageBuilderFormat {
                               .appendln('}');
                         break;
                     case SET:
+                        appendLazyContainer(field);
                         writer.formatln("%s.addAll(from.%s());", field.member(), field.getter());
                         break;
                     case MAP:
+                        appendLazyContainer(field);
                         writer.formatln("%s.putAll(from.%s());", field.member(), field.getter());
                         break;
                     case LIST:
-                        writer.formatln("%s.clear();", field.member());
+                        appendClearContainer(field);
                         writer.formatln("%s.addAll(from.%s());", field.member(), field.getter());
                         break;
                     default:
@@ -355,12 +376,12 @@ public class JMessageBuilderFormat {
         switch (field.type()) {
             case SET:
             case LIST:
-                writer.formatln("%s.clear();", field.member())
-                      .formatln("%s.addAll(value);", field.member());
+                appendClearContainer(field);
+                writer.formatln("%s.addAll(value);", field.member());
                 break;
             case MAP:
-                writer.formatln("%s.clear();", field.member())
-                      .formatln("%s.putAll(value);", field.member());
+                appendClearContainer(field);
+                writer.formatln("%s.putAll(value);", field.member());
                 break;
             case MESSAGE:
                 writer.formatln("%s_builder = null;", field.member());
@@ -417,6 +438,7 @@ public class JMessageBuilderFormat {
                 } else {
                     writer.formatln("optionals.set(%d);", field.index());
                 }
+                appendLazyContainer(field);
                 writer.formatln("%s.put(key, value);", field.member())
                       .appendln("return this;")
                       .end()
@@ -438,6 +460,7 @@ public class JMessageBuilderFormat {
                 } else {
                     writer.formatln("optionals.set(%d);", field.index());
                 }
+                appendLazyContainer(field);
                 writer.formatln("for (%s item : values) {", liType)
                       .begin()
                       .formatln("%s.add(item);", field.member())
@@ -496,7 +519,7 @@ public class JMessageBuilderFormat {
         }
 
         if (field.container()) {
-            writer.formatln("%s.clear();", field.member());
+            writer.formatln("%s = null;", field.member());
         } else if (field.alwaysPresent()) {
             writer.formatln("%s = %s;", field.member(), field.kDefault());
         } else {
@@ -583,6 +606,7 @@ public class JMessageBuilderFormat {
                     writer.formatln("optionals.set(%d);", field.index());
                 }
 
+                appendLazyContainer(field);
                 writer.formatln("return %s;", field.member());
 
                 writer.end()
@@ -594,6 +618,31 @@ public class JMessageBuilderFormat {
         }
     }
 
+    /**
+     * Create the container builder if not already created. Container builders
+     * are created lazily, as most messages only have a few fields set.
+     *
+     * @param field The container field.
+     */
+    private void appendLazyContainer(JField field) throws GeneratorException {
+        writer.formatln("if (%s == null) {", field.member())
+              .formatln("    %s = %s;", field.member(), field.newBuilderInstance())
+              .appendln('}');
+    }
+
+    /**
+     * Create the container builder if not already created, or clear it.
+     *
+     * @param field The container field.
+     */
+    private void appendClearContainer(JField field) throws GeneratorException {
+        writer.formatln("if (%s == null) {", field.member())
+              .formatln("    %s = %s;", field.member(), field.newBuilderInstance())
+              .appendln("} else {")
+              .formatln("    %s.clear();", field.member())
+              .appendln('}');
+    }
+
     private void appendOverrideMutator(JMessage<?> message) throws GeneratorException {
         writer.appendln("@Override")
               .appendln("@SuppressWarnings(\"unchecked\")")
@@ -25,6 +25,7 @@ import net.morimekta.providence.PMessageBuilderFactory;
 import net.morimekta.providence.PMessageVariant;
 import net.morimekta.providence.PType;
 import net.morimekta.providence.PUnion;
+import net.morimekta.providence.PUnknownFields;
 import net.morimekta.providence.descriptor.PDefaultValueProvider;
 import net.morimekta.providence.descriptor.PDescriptor;
 import net.morimekta.providence.descriptor.PDescriptorProvider;
@@ -43,6 +44,7 @@ import net.morimekta.providence.generator.format.java.utils.JUtils;
 import net.morimekta.providence.generator.format.java.utils.ValueBuilder;
 import net.morimekta.providence.reflect.contained.CAnnotatedDescriptor;
 import net.morimekta.providence.reflect.contained.CService;
+import net.morimekta.providence.serializer.BinaryWritable;
 import net.morimekta.util.Strings;
 import net.morimekta.util.io.IndentedPrintWriter;
 
@@ -58,6 +60,8 @@ import static net.morimekta.providence.generator.format.java.utils.JUtils.camelC
  */
 public class JMessageFormat {
     private static final String DBL_INDENT = IndentedPrintWriter.INDENT + IndentedPrintWriter.INDENT;
+    // Name of the union storage layout, part of the union serial version UID.
+    private static final String UNION_LAYOUT = "value-slot";
 
     private final JHelper  helper;
     private final JOptions options;
@@ -80,6 +84,7 @@ public class JMessageFormat {
         JMessage<?> message = new JMessage(descriptor, helper);
 
         JMessageAndroidFormat android = new JMessageAndroidFormat(writer, helper);
+        JMessageBinaryFormat binary = new JMessageBinaryFormat(writer);
         JMessageOverridesFormat overrides = new JMessageOverridesFormat(writer, options, helper);
         JMessageBuilderFormat builder = new JMessageBuilderFormat(writer, helper, options);
         ValueBuilder values = new ValueBuilder(writer, helper);
@@ -103,8 +108,13 @@ public class JMessageFormat {
             mod = "private static";
         }
 
-        writer.appendln("@SuppressWarnings(\"unused\")")
-              .formatln("%s class %s", mod, message.instanceType())
+        if (message.isUnion()) {
+            // Container union values are cast from the value slot.
+            writer.appendln("@SuppressWarnings({\"unused\", \"unchecked\"})");
+        } else {
+            writer.appendln("@SuppressWarnings(\"unused\")");
+        }
+        writer.formatln("%s class %s", mod, message.instanceType())
               .begin(DBL_INDENT);
         if (message.variant()
                    .equals(PMessageVariant.EXCEPTION)) {
@@ -119,12 +129,18 @@ public class JMessageFormat {
         if (options.android) {
             writer.format(", android.os.Parcelable");
         }
+        if (options.binarySerializer) {
+            writer.format(", %s", BinaryWritable.class.getName());
+        }
         writer.append(" {")
               .end()  // double indent.
               .begin();
 
-        writer.formatln("private final static long serialVersionUID = %dL;",
-                        JUtils.generateSerialVersionUID(message.descriptor()))
+        // Unions store the value in shared slots, not one member per field.
+        long serialVersionUID = message.isUnion()
+                                ? JUtils.generateSerialVersionUID(message.descriptor(), UNION_LAYOUT)
+                                : JUtils.generateSerialVersionUID(message.descriptor());
+        writer.formatln("private final static long serialVersionUID = %dL;", serialVersionUID)
               .newline();
 
         values.appendDefaultConstants(message.fields());
@@ -148,6 +164,10 @@ public class JMessageFormat {
             android.appendParcelable(message);
         }
 
+        if (options.binarySerializer) {
+            binary.appendWriteBinary(message);
+        }
+
         builder.appendBuilder(message);
 
         writer.end()
@@ -378,22 +398,21 @@ public class JMessageFormat {
             if (message.isUnion()) {
                 if (field.container()) {
                     writer.formatln("public int %s() {", field.counter())
-                          .formatln("    return tUnionField == _Field.%s ? %s.size() : 0;",
+                          .formatln("    return tUnionField == _Field.%s ? (%s).size() : 0;",
                                     field.fieldEnum(),
-                                    field.member())
+                                    field.unionValue())
                           .appendln('}')
                           .newline();
                 }
-                if (field.alwaysPresent()) {
+                if (field.unionBits()) {
                     writer.formatln("public boolean %s() {", field.presence())
                           .formatln("    return tUnionField == _Field.%s;", field.fieldEnum())
                           .appendln('}')
                           .newline();
                 } else {
                     writer.formatln("public boolean %s() {", field.presence())
-                          .formatln("    return tUnionField == _Field.%s && %s != null;",
-                                    field.fieldEnum(),
-                                    field.member())
+                          .formatln("    return tUnionField == _Field.%s && tUnionValue != null;",
+                                    field.fieldEnum())
                           .appendln('}')
                           .newline();
                 }
@@ -432,7 +451,13 @@ public class JMessageFormat {
                 writer.appendln(JAnnotation.DEPRECATED);
             }
             writer.formatln("public %s %s() {", field.valueType(), field.getter());
-            if ((field.isPrimitiveJavaValue() && !field.alwaysPresent()) || (
+            if (message.isUnion()) {
+                // The value slot is shared with the other union fields.
+                writer.formatln("    return %s() ? %s : %s;",
+                                field.presence(),
+                                field.unionValue(),
+                                field.hasDefault() || field.isPrimitiveJavaValue() ? field.kDefault() : "null");
+            } else if ((field.isPrimitiveJavaValue() && !field.alwaysPresent()) || (
                     !field.container() && !field.alwaysPresent() && field.getPField().hasDefaultValue())) {
                 writer.formatln("    return %s() ? %s : %s;", field.presence(), field.member(), field.kDefault());
             } else {
@@ -449,17 +474,32 @@ public class JMessageFormat {
                   .appendln('}')
                   .newline();
         }
+
+        writer.appendln("@Override")
+              .formatln("public %s unknownFields() {", PUnknownFields.class.getName())
+              .appendln("    return tUnknownFields;")
+              .appendln('}')
+              .newline();
     }
 
     private void appendFieldDeclarations(IndentedPrintWriter writer, JMessage<?> message) throws GeneratorException {
-        for (JField field : message.fields()) {
-            writer.formatln("private final %s %s;", field.fieldType(), field.member());
-        }
         if (message.isUnion()) {
-            writer.newline()
-                  .appendln("private final _Field tUnionField;");
+            // Only one union field can be set, so all fields share the
+            // same value slot.
+            if (hasUnionValue(message)) {
+                writer.appendln("private final Object tUnionValue;");
+            }
+            if (hasUnionBits(message)) {
+                writer.appendln("private final long tUnionBits;");
+            }
+            writer.appendln("private final _Field tUnionField;");
+        } else {
+            for (JField field : message.fields()) {
+                writer.formatln("private final %s %s;", field.fieldType(), field.member());
+            }
         }
         writer.appendln()
+              .formatln("private final %s tUnknownFields;", PUnknownFields.class.getName())
               .appendln("private volatile int tHashCode;")
               .newline();
     }
@@ -468,53 +508,56 @@ public class JMessageFormat {
         writer.formatln("private %s(_Builder builder) {", message.instanceType())
               .begin();
         if (message.isUnion()) {
+            boolean hasValue = hasUnionValue(message);
+            boolean hasBits = hasUnionBits(message);
+
             writer.appendln("tUnionField = builder.tUnionField;")
                   .newline();
-
-            for (JField field : message.fields()) {
-                switch (field.type()) {
-                    case LIST:
-                        writer.formatln(
-                                "%s = tUnionField == _Field.%s ? builder.%s.build() : null;",
-                                field.member(),
-                                field.fieldEnum(),
-                                field.member());
-                        break;
-                    case SET:
-                        writer.formatln(
-                                "%s = tUnionField == _Field.%s ? builder.%s.build() : null;",
-                                field.member(),
-                                field.fieldEnum(),
-                                field.member());
-                        break;
-                    case MAP:
-                        writer.formatln(
-                                "%s = tUnionField == _Field.%s ? builder.%s.build() : null;",
-                                field.member(),
-                                field.fieldEnum(),
-                                field.member());
-                        break;
-                    case MESSAGE:
-                        writer.formatln("%s = tUnionField != _Field.%s", field.member(), field.fieldEnum())
-                              .appendln("        ? null")
-                              .formatln("        : builder.%s_builder != null ? builder.%s_builder.build() : builder.%s;",
-                                        field.member(), field.member(), field.member());
-                        break;
-                    default:
-                        if (field.alwaysPresent()) {
-                            writer.formatln("%s = tUnionField == _Field.%s ? builder.%s : %s;",
-                                            field.member(),
-                                            field.fieldEnum(),
-                                            field.member(),
-                                            field.kDefault());
-                        } else {
-                            writer.formatln("%s = tUnionField == _Field.%s ? builder.%s : null;",
-                                            field.member(),
-                                            field.fieldEnum(),
-                                            field.member());
-                        }
-                        break;
+            if (hasValue) {
+                writer.appendln("Object _value = null;");
+            }
+            if (hasBits) {
+                writer.appendln("long _bits = 0L;");
+            }
+            if (message.fields().size() > 0) {
+                writer.appendln("if (tUnionField != null) {")
+                      .begin()
+                      .appendln("switch (tUnionField) {")
+                      .begin();
+                for (JField field : message.fields()) {
+                    writer.formatln("case %s:", field.fieldEnum())
+                          .begin();
+                    switch (field.type()) {
+                        case LIST:
+                        case SET:
+                        case MAP:
+                            writer.formatln("_value = builder.%s.build();", field.member());
+                            break;
+                        case MESSAGE:
+                            writer.formatln("_value = builder.%s_builder != null ? builder.%s_builder.build() : builder.%s;",
+                                            field.member(), field.member(), field.member());
+                            break;
+                        default:
+                            if (field.unionBits()) {
+                                writer.formatln("_bits = %s;", field.unionBitsOf("builder." + field.member()));
+                            } else {
+                                writer.formatln("_value = builder.%s;", field.member());
+                            }
+                            break;
+                    }
+                    writer.appendln("break;")
+                          .end();
                 }
+                writer.end()
+                      .appendln('}')
+                      .end()
+                      .appendln('}');
+            }
+            if (hasValue) {
+                writer.appendln("tUnionValue = _value;");
+            }
+            if (hasBits) {
+                writer.appendln("tUnionBits = _bits;");
             }
         } else {
             if (message.isException()) {
@@ -557,7 +600,9 @@ public class JMessageFormat {
                 }
             }
         }
-        writer.end()
+        writer.newline()
+              .appendln("tUnknownFields = builder.getUnknownFields();")
+              .end()
               .appendln('}')
               .newline();
     }
@@ -766,7 +811,11 @@ public class JMessageFormat {
                     case MAP:
                         writer.formatln("if (%s != null) {", field.param())
                               .begin();
-                        if (field.containerType() == ContainerType.ORDERED) {
+                        if (field.primitiveContainer()) {
+                            writer.formatln("%s = %s;",
+                                            field.member(),
+                                            field.primitiveMapCopyOf(field.param()));
+                        } else if (field.containerType() == ContainerType.ORDERED) {
                             writer.formatln("%s = %s.unmodifiableMap(%s);",
                                             field.member(),
                                             Collections.class.getName(),
@@ -796,9 +845,29 @@ public class JMessageFormat {
                     }
                 }
             }
-            writer.end()
+            writer.newline()
+                  .appendln("tUnknownFields = null;")
+                  .end()
                   .appendln('}')
                   .newline();
         }
     }
+
+    private static boolean hasUnionValue(JMessage<?> message) {
+        for (JField field : message.fields()) {
+            if (!field.unionBits()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasUnionBits(JMessage<?> message) {
+        for (JField field : message.fields()) {
+            if (field.unionBits()) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
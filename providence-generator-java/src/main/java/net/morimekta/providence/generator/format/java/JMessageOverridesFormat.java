@@ -1,8 +1,13 @@
 package net.morimekta.providence.generator.format.java;
 
+import net.morimekta.providence.PType;
+import net.morimekta.providence.descriptor.PContainer;
+import net.morimekta.providence.descriptor.PDescriptor;
+import net.morimekta.providence.descriptor.PMap;
 import net.morimekta.providence.generator.format.java.utils.JField;
 import net.morimekta.providence.generator.format.java.utils.JHelper;
 import net.morimekta.providence.generator.format.java.utils.JMessage;
+import net.morimekta.providence.util.StableHash;
 import net.morimekta.util.Strings;
 import net.morimekta.util.io.IndentedPrintWriter;
 
@@ -151,32 +156,30 @@ public class JMessageOverridesFormat {
               .formatln("if (o == null || !(o instanceof %s)) return false;", message.instanceType());
         if (message.fields()
                    .size() > 0) {
-            boolean first = true;
             writer.formatln("%s other = (%s) o;", message.instanceType(), message.instanceType())
                   .appendln("return ");
             if (message.isUnion()) {
+                // The value slots of unset fields are always null or 0, and
+                // doubles are stored with canonical NaN bits.
                 writer.format("%s.equals(tUnionField, other.tUnionField)",
                               Objects.class.getName());
-                first = false;
-            }
-            for (JField field : message.fields()) {
-                if (first) {
-                    first = false;
-                } else {
+                boolean hasValue = false;
+                boolean hasBits = false;
+                for (JField field : message.fields()) {
+                    hasBits |= field.unionBits();
+                    hasValue |= !field.unionBits();
+                }
+                if (hasBits) {
                     writer.append(" &&")
-                          .appendln("       ");
+                          .appendln("       tUnionBits == other.tUnionBits");
                 }
-                if (field.container()) {
-                    writer.format("%s.equals(%s, other.%s)",
-                                  Objects.class.getName(),
-                                  field.member(),
-                                  field.member());
-                } else {
-                    writer.format("%s.equals(%s, other.%s)",
-                                  Objects.class.getName(),
-                                  field.member(),
-                                  field.member());
+                if (hasValue) {
+                    writer.append(" &&")
+                          .appendln("       ")
+                          .format("%s.equals(tUnionValue, other.tUnionValue)", Objects.class.getName());
                 }
+            } else {
+                appendFieldsEquals(message);
             }
             writer.append(';');
         } else {
@@ -187,23 +190,71 @@ public class JMessageOverridesFormat {
               .newline();
     }
 
+    private void appendFieldsEquals(JMessage<?> message) {
+        boolean first = true;
+        for (JField field : message.fields()) {
+            if (first) {
+                first = false;
+            } else {
+                writer.append(" &&")
+                      .appendln("       ");
+            }
+            if (field.alwaysPresent() && field.type() == PType.DOUBLE) {
+                writer.format("Double.compare(%s, other.%s) == 0",
+                              field.member(),
+                              field.member());
+            } else if (field.alwaysPresent()) {
+                writer.format("%s == other.%s",
+                              field.member(),
+                              field.member());
+            } else {
+                writer.format("%s.equals(%s, other.%s)",
+                              Objects.class.getName(),
+                              field.member(),
+                              field.member());
+            }
+        }
+    }
+
     private void appendHashCode(JMessage<?> message) {
         writer.appendln("@Override")
               .appendln("public int hashCode() {")
               .begin()
               .appendln("if (tHashCode == 0) {")
               .begin()
-              .formatln("tHashCode = %s.hash(",
-                        Objects.class.getName())
-              .begin("        ")
-              .formatln("%s.class", message.instanceType());
-        for (JField field : message.fields()) {
-            writer.append(",");
-            writer.formatln("_Field.%s, %s", field.fieldEnum(), field.member());
+              .formatln("int _hash = 0x%08x;",
+                        message.descriptor()
+                               .getQualifiedName(null)
+                               .hashCode());
+
+        if (message.isUnion()) {
+            // Only the union field is hashed, as all other fields are
+            // always the default value.
+            if (message.fields()
+                       .size() > 0) {
+                writer.appendln("if (tUnionField != null) {")
+                      .begin()
+                      .appendln("switch (tUnionField) {")
+                      .begin();
+                for (JField field : message.fields()) {
+                    writer.formatln("case %s:", field.fieldEnum())
+                          .begin();
+                    appendFieldHashIfPresent(field, field.getter() + "()");
+                    writer.appendln("break;")
+                          .end();
+                }
+                writer.end()
+                      .appendln('}')
+                      .end()
+                      .appendln('}');
+            }
+        } else {
+            for (JField field : message.fields()) {
+                appendFieldHashIfPresent(field, field.member());
+            }
         }
 
-        writer.end()
-              .append(");")
+        writer.appendln("tHashCode = _hash;")
               .end()
               .appendln('}')
               .appendln("return tHashCode;")
@@ -212,6 +263,100 @@ public class JMessageOverridesFormat {
               .newline();
     }
 
+    private void appendFieldHashIfPresent(JField field, String member) {
+        if (field.alwaysPresent()) {
+            appendFieldHash(field, member);
+        } else {
+            writer.formatln("if (%s != null) {", member)
+                  .begin();
+            appendFieldHash(field, member);
+            writer.end()
+                  .appendln('}');
+        }
+    }
+
+    /**
+     * Append hashing of a single field value. Each field is mixed in with a
+     * constant based on the field ID, and primitive values are hashed
+     * without boxing. Enums are hashed by value, as the enum hash code is
+     * not stable between JVM runs.
+     *
+     * @param field The field to hash.
+     * @param member Expression with the field value.
+     */
+    private void appendFieldHash(JField field, String member) {
+        String value;
+        switch (field.type()) {
+            case VOID:
+            case BOOL:
+                value = String.format("Boolean.hashCode(%s)", member);
+                break;
+            case BYTE:
+                value = String.format("Byte.hashCode(%s)", member);
+                break;
+            case I16:
+                value = String.format("Short.hashCode(%s)", member);
+                break;
+            case I32:
+                value = String.format("Integer.hashCode(%s)", member);
+                break;
+            case I64:
+                value = String.format("Long.hashCode(%s)", member);
+                break;
+            case DOUBLE:
+                value = String.format("Double.hashCode(%s)", member);
+                break;
+            case ENUM:
+                value = String.format("%s.getValue()", member);
+                break;
+            case LIST:
+            case SET:
+            case MAP:
+                if (containsEnum(field.getPField().getDescriptor())) {
+                    value = String.format("%s.hashCode(%s)", StableHash.class.getName(), member);
+                } else {
+                    value = String.format("%s.hashCode()", member);
+                }
+                break;
+            default:
+                value = String.format("%s.hashCode()", member);
+                break;
+        }
+        writer.formatln("_hash = 31 * _hash + (0x%08x ^ %s);", fieldHashSeed(field.id()), value);
+    }
+
+    private static boolean containsEnum(PDescriptor descriptor) {
+        switch (descriptor.getType()) {
+            case ENUM:
+                return true;
+            case MAP:
+                return containsEnum(((PMap<?, ?>) descriptor).keyDescriptor()) ||
+                       containsEnum(((PMap<?, ?>) descriptor).itemDescriptor());
+            case LIST:
+            case SET:
+                return containsEnum(((PContainer<?>) descriptor).itemDescriptor());
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Spread the field ID over all bits (murmur3 finalizer), so fields with
+     * similar values get distinct hash codes.
+     *
+     * @param id The field ID.
+     * @return The field hash seed.
+     */
+    private static int fieldHashSeed(int id) {
+        int h = id * 0x9e3779b9;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
     private void appendToString(JMessage<?> message) {
         writer.appendln("@Override")
               .appendln("public String toString() {")
@@ -245,11 +390,11 @@ public class JMessageOverridesFormat {
                     case BOOL:
                     case I32:
                     case I64:
-                        writer.formatln("   .append(%s);", field.member());
+                        writer.formatln("   .append(%s);", field.getter() + "()");
                         break;
                     case BYTE:
                     case I16:
-                        writer.formatln("   .append((int) %s);", field.member());
+                        writer.formatln("   .append((int) %s);", field.getter() + "()");
                         break;
                     case DOUBLE:
                     case SET:
@@ -257,21 +402,21 @@ public class JMessageOverridesFormat {
                     case MAP:
                         writer.formatln("   .append(%s.asString(%s));",
                                         Strings.class.getName(),
-                                        field.member());
+                                        field.getter() + "()");
                         break;
                     case STRING:
                         writer.formatln("   .append('\\\"').append(%s.escape(%s)).append('\\\"');",
                                         Strings.class.getName(),
-                                        field.member());
+                                        field.getter() + "()");
                         break;
                     case BINARY:
-                        writer.formatln("   .append(\"b64(\").append(%s.toBase64()).append(')');", field.member());
+                        writer.formatln("   .append(\"b64(\").append(%s.toBase64()).append(')');", field.getter() + "()");
                         break;
                     case MESSAGE:
-                        writer.formatln("   .append(%s.asString());", field.member());
+                        writer.formatln("   .append(%s.asString());", field.getter() + "()");
                         break;
                     default:
-                        writer.formatln("   .append(%s.getName());", field.member());
+                        writer.formatln("   .append(%s.getName());", field.getter() + "()");
                         break;
                 }
 
@@ -394,40 +539,40 @@ public class JMessageOverridesFormat {
 
                 switch (field.type()) {
                     case BOOL:
-                        writer.formatln("return Boolean.compare(%s, other.%s);", field.member(), field.member());
+                        writer.formatln("return Boolean.compare(%s(), other.%s());", field.getter(), field.getter());
                         break;
                     case BYTE:
-                        writer.formatln("return Byte.compare(%s, other.%s);", field.member(), field.member());
+                        writer.formatln("return Byte.compare(%s(), other.%s());", field.getter(), field.getter());
                         break;
                     case I16:
-                        writer.formatln("return Short.compare(%s, other.%s);", field.member(), field.member());
+                        writer.formatln("return Short.compare(%s(), other.%s());", field.getter(), field.getter());
                         break;
                     case I32:
-                        writer.formatln("return Integer.compare(%s, other.%s);", field.member(), field.member());
+                        writer.formatln("return Integer.compare(%s(), other.%s());", field.getter(), field.getter());
                         break;
                     case I64:
-                        writer.formatln("return Long.compare(%s, other.%s);", field.member(), field.member());
+                        writer.formatln("return Long.compare(%s(), other.%s());", field.getter(), field.getter());
                         break;
                     case DOUBLE:
-                        writer.formatln("return Double.compare(%s, other.%s);", field.member(), field.member());
+                        writer.formatln("return Double.compare(%s(), other.%s());", field.getter(), field.getter());
                         break;
                     case STRING:
                     case BINARY:
                     case MESSAGE:
-                        writer.formatln("return %s.compareTo(other.%s);", field.member(), field.member());
+                        writer.formatln("return %s().compareTo(other.%s());", field.getter(), field.getter());
                         break;
                     case ENUM:
-                        writer.formatln("return Integer.compare(%s.getValue(), other.%s.getValue());",
-                                        field.member(),
-                                        field.member());
+                        writer.formatln("return Integer.compare(%s().getValue(), other.%s().getValue());",
+                                        field.getter(),
+                                        field.getter());
                         break;
                     case SET:
                     case LIST:
                     case MAP:
                         // containers aren't really comparable, just make some consistent comparison.
-                        writer.formatln("return Integer.compare(%s.hashCode(), other.%s.hashCode());",
-                                        field.member(),
-                                        field.member());
+                        writer.formatln("return Integer.compare(%s().hashCode(), other.%s().hashCode());",
+                                        field.getter(),
+                                        field.getter());
                         break;
                 }
 
@@ -27,4 +27,16 @@ public class JOptions {
      * Android option for the
      */
     public boolean android = false;
+
+    /**
+     * Store lists of i32, i64 and double, and maps with i32, i64 and double
+     * keys and values, unboxed in primitive arrays.
+     */
+    public boolean primitiveCollections = false;
+
+    /**
+     * Generate binary serialization methods in the model classes, which are
+     * used by the binary serializer in place of the generic field access.
+     */
+    public boolean binarySerializer = false;
 }
@@ -1,5 +1,6 @@
 package net.morimekta.providence.generator.format.java;
 
+import net.morimekta.providence.PAsyncClientHandler;
 import net.morimekta.providence.PClient;
 import net.morimekta.providence.PClientHandler;
 import net.morimekta.providence.PProcessor;
@@ -26,6 +27,8 @@ import net.morimekta.util.Strings;
 import net.morimekta.util.io.IndentedPrintWriter;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class JServiceFormat {
     private final JHelper helper;
@@ -52,8 +55,12 @@ public class JServiceFormat {
 
         appendIface(writer, service);
 
+        appendAsyncIface(writer, service);
+
         appendClient(writer, service);
 
+        appendAsyncClient(writer, service);
+
         appendProcessor(writer, service);
 
         appendDescriptor(writer, service);
@@ -204,6 +211,110 @@ public class JServiceFormat {
               .newline();
     }
 
+    private void appendAsyncClient(IndentedPrintWriter writer, JService service) throws GeneratorException {
+        writer.appendln("public static class AsyncClient")
+              .formatln("        extends %s", PClient.class.getName())
+              .formatln("        implements AsyncIface {")
+              .begin();
+
+        writer.formatln("private final %s handler;", PAsyncClientHandler.class.getName())
+              .newline();
+
+        writer.formatln("public AsyncClient(%s handler) {", PAsyncClientHandler.class.getName())
+              .appendln("    this.handler = handler;")
+              .appendln('}')
+              .newline();
+
+        boolean firstMethod = true;
+        for (JServiceMethod method : service.methods()) {
+            if (firstMethod) {
+                firstMethod = false;
+            } else {
+                writer.newline();
+            }
+
+            writer.appendln("@Override")
+                  .appendln("public ");
+            appendAsyncMethodSignature(writer, method);
+            writer.append(" {")
+                  .begin();
+
+            writer.formatln("%s._Builder rq = %s.builder();", method.getRequestClass(), method.getRequestClass());
+
+            for (JField param : method.params()) {
+                writer.formatln("rq.%s(%s);", param.setter(), param.param());
+            }
+
+            String type = method.getMethod().isOneway()
+                          ? PServiceCallType.ONEWAY.name()
+                          : PServiceCallType.CALL.name();
+            writer.newline()
+                  .formatln("%s call = new %s(\"%s\", %s.%s, getNextSequenceId(), rq.build());",
+                            PServiceCall.class.getName(),
+                            PServiceCall.class.getName(),
+                            method.name(),
+                            PServiceCallType.class.getName(),
+                            type)
+                  .formatln("%s<%s> future = handler.handleCallAsync(call, %s.kDescriptor);",
+                            CompletableFuture.class.getName(),
+                            PServiceCall.class.getName(),
+                            service.className());
+
+            if (method.getResponseClass() == null) {
+                writer.appendln("return future.thenApply(resp -> null);");
+            } else {
+                writer.appendln("return future.thenApply(resp -> {")
+                      .begin();
+
+                writer.formatln("if (resp.getType() == %s.%s) {", PServiceCallType.class.getName(), PServiceCallType.EXCEPTION.name())
+                      .formatln("    %s ex = (%s) resp.getMessage();",
+                                ApplicationException.class.getName(),
+                                ApplicationException.class.getName())
+                      .formatln("    throw new %s(new %s(ex.getMessage(), ex));",
+                                CompletionException.class.getName(),
+                                IOException.class.getName())
+                      .appendln('}')
+                      .newline();
+
+                writer.formatln("%s msg = (%s) resp.getMessage();",
+                                method.getResponseClass(), method.getResponseClass());
+
+                if (method.exceptions().length > 0) {
+                    writer.appendln("if (msg.unionField() != null) {")
+                          .begin();
+                    writer.appendln("switch (msg.unionField()) {")
+                          .begin();
+
+                    for (JField ex : method.exceptions()) {
+                        writer.formatln("case %s:", ex.fieldEnum())
+                              .formatln("    throw new %s(msg.%s());", CompletionException.class.getName(), ex.getter());
+                    }
+                    writer.end()
+                          .appendln("}");
+                    writer.end()
+                          .appendln("}");
+                }
+
+                writer.newline();
+                if (method.getResponse() != null) {
+                    writer.formatln("return msg.%s();", method.getResponse().getter());
+                } else {
+                    writer.appendln("return null;");
+                }
+
+                writer.end()
+                      .appendln("});");
+            }
+
+            writer.end()
+                  .appendln('}');
+        }
+
+        writer.end()
+              .appendln('}')
+              .newline();
+    }
+
     private void appendProcessor(IndentedPrintWriter writer, JService service) throws GeneratorException {
         writer.formatln("public static class Processor implements %s {", PProcessor.class.getName())
               .begin()
@@ -214,6 +325,12 @@ public class JServiceFormat {
               .appendln('}')
               .newline();
 
+        writer.appendln("@Override")
+              .formatln("public %s getDescriptor() {", PService.class.getName())
+              .formatln("    return %s.kDescriptor;", service.className())
+              .appendln('}')
+              .newline();
+
         writer.appendln("@Override")
               .formatln("public boolean process(%s reader, %s writer) throws %s {",
                         MessageReader.class.getName(),
@@ -550,4 +667,65 @@ public class JServiceFormat {
               .appendln('}')
               .newline();
     }
+
+    private void appendAsyncIface(IndentedPrintWriter writer, JService service) throws GeneratorException {
+        String inherits = "";
+        if (service.getService().getExtendsService() != null) {
+            CService other = (CService) service.getService().getExtendsService();
+            inherits = "extends " + helper.getJavaPackage(other) + "." +
+                       new JService(other, helper).className() + ".AsyncIface ";
+        }
+
+        writer.formatln("public interface AsyncIface %s{", inherits)
+              .begin();
+
+        boolean firstMethod = true;
+        for (JServiceMethod method : service.methods()) {
+            if (firstMethod) {
+                firstMethod = false;
+            } else {
+                writer.newline();
+            }
+
+            if (method.getMethod().getComment() != null) {
+                new BlockCommentBuilder(writer)
+                        .comment(method.getMethod().getComment())
+                        .finish();
+            }
+
+            writer.appendln();
+            appendAsyncMethodSignature(writer, method);
+            writer.append(";");
+        }
+
+        writer.end()
+              .appendln('}')
+              .newline();
+    }
+
+    /**
+     * Append the async method signature. The response is returned as a
+     * completable future of the boxed return type, and declared exceptions
+     * complete the future exceptionally.
+     */
+    private void appendAsyncMethodSignature(IndentedPrintWriter writer, JServiceMethod method) throws GeneratorException {
+        JField ret = method.getResponse();
+        String type = ret == null ? Void.class.getSimpleName() : helper.getFieldType(ret.getPField().getDescriptor());
+
+        writer.format("%s<%s> %s(", CompletableFuture.class.getName(), type, method.methodName())
+              .begin("        ");
+
+        boolean first = true;
+        for (JField param : method.params()) {
+            if (first) {
+                first = false;
+            } else {
+                writer.append(",");
+            }
+            writer.formatln("%s %s", param.valueType(), param.param());
+        }
+
+        writer.end()
+              .format(")");
+    }
 }
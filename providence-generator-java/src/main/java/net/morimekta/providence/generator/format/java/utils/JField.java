@@ -20,6 +20,7 @@
 package net.morimekta.providence.generator.format.java.utils;
 
 import net.morimekta.providence.PType;
+import net.morimekta.providence.descriptor.PDescriptor;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PList;
 import net.morimekta.providence.descriptor.PMap;
@@ -28,6 +29,11 @@ import net.morimekta.providence.descriptor.PRequirement;
 import net.morimekta.providence.descriptor.PSet;
 import net.morimekta.providence.generator.GeneratorException;
 import net.morimekta.providence.reflect.contained.CField;
+import net.morimekta.providence.util.collect.DoubleList;
+import net.morimekta.providence.util.collect.IntList;
+import net.morimekta.providence.util.collect.LongList;
+import net.morimekta.providence.util.collect.PrimitiveKind;
+import net.morimekta.providence.util.collect.PrimitiveMap;
 import net.morimekta.util.LinkedHashMapBuilder;
 import net.morimekta.util.LinkedHashSetBuilder;
 
@@ -151,6 +157,47 @@ public class JField {
         }
     }
 
+    /**
+     * @return True if the field is a list or map stored in a primitive
+     *         collection, see {@link JHelper#isPrimitiveCollections()}.
+     */
+    public boolean primitiveContainer() {
+        if (!helper.isPrimitiveCollections()) {
+            return false;
+        }
+        switch (field.getType()) {
+            case LIST:
+                return primitiveKind(((PList<?>) field.getDescriptor()).itemDescriptor()) != null;
+            case MAP: {
+                PMap<?, ?> mType = (PMap<?, ?>) field.getDescriptor();
+                return containerType() == ContainerType.DEFAULT &&
+                       primitiveKind(mType.keyDescriptor()) != null &&
+                       primitiveKind(mType.itemDescriptor()) != null;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private static PrimitiveKind primitiveKind(PDescriptor descriptor) {
+        return PrimitiveKind.forType(descriptor.getType());
+    }
+
+    private static String primitiveKindName(PDescriptor descriptor) {
+        return PrimitiveKind.class.getName() + "." + primitiveKind(descriptor).name();
+    }
+
+    private static Class<?> primitiveListClass(PDescriptor itemDescriptor) {
+        switch (primitiveKind(itemDescriptor)) {
+            case INT:
+                return IntList.class;
+            case LONG:
+                return LongList.class;
+            default:
+                return DoubleList.class;
+        }
+    }
+
     public ContainerType containerType() {
         return JAnnotation.containerType(this);
     }
@@ -175,6 +222,55 @@ public class JField {
         return false;
     }
 
+    /**
+     * Union values are stored in a single value slot per instance. Fields
+     * with primitive java values are stored in the <code>long</code> slot
+     * 'tUnionBits', and all other fields in the <code>Object</code> slot
+     * 'tUnionValue'.
+     *
+     * @return True if the field is stored in the 'tUnionBits' slot.
+     */
+    public boolean unionBits() {
+        return alwaysPresent();
+    }
+
+    /**
+     * @return Expression reading the field value from the union value slot.
+     */
+    public String unionValue() throws GeneratorException {
+        switch (field.getType()) {
+            case BOOL:
+                return "tUnionBits != 0L";
+            case BYTE:
+                return "(byte) tUnionBits";
+            case I16:
+                return "(short) tUnionBits";
+            case I32:
+                return "(int) tUnionBits";
+            case I64:
+                return "tUnionBits";
+            case DOUBLE:
+                return "Double.longBitsToDouble(tUnionBits)";
+            default:
+                return String.format("(%s) tUnionValue", fieldType());
+        }
+    }
+
+    /**
+     * @param value Expression with the primitive field value.
+     * @return Expression converting the value to the 'tUnionBits' slot value.
+     */
+    public String unionBitsOf(String value) {
+        switch (field.getType()) {
+            case BOOL:
+                return String.format("(%s ? 1L : 0L)", value);
+            case DOUBLE:
+                return String.format("Double.doubleToLongBits(%s)", value);
+            default:
+                return value;
+        }
+    }
+
     public String valueType() throws GeneratorException {
         return helper.getValueType(field.getDescriptor());
     }
@@ -229,6 +325,37 @@ public class JField {
         }
     }
 
+    /**
+     * @return Expression creating a new container builder for the field.
+     */
+    public String newBuilderInstance() throws GeneratorException {
+        if (primitiveContainer() && field.getType() == PType.MAP) {
+            PMap<?, ?> mType = (PMap<?, ?>) field.getDescriptor();
+            return String.format("new %s<%s,%s>(%s, %s)",
+                                 builderInstanceType(),
+                                 helper.getFieldType(mType.keyDescriptor()),
+                                 helper.getFieldType(mType.itemDescriptor()),
+                                 primitiveKindName(mType.keyDescriptor()),
+                                 primitiveKindName(mType.itemDescriptor()));
+        } else if (primitiveContainer()) {
+            return String.format("new %s()", builderInstanceType());
+        }
+        return String.format("new %s<>()", builderInstanceType());
+    }
+
+    /**
+     * @param variable The map variable to copy.
+     * @return Expression creating a primitive map copy of the variable.
+     */
+    public String primitiveMapCopyOf(String variable) {
+        PMap<?, ?> mType = (PMap<?, ?>) field.getDescriptor();
+        return String.format("%s.copyOf(%s, %s, %s)",
+                             PrimitiveMap.class.getName(),
+                             primitiveKindName(mType.keyDescriptor()),
+                             primitiveKindName(mType.itemDescriptor()),
+                             variable);
+    }
+
     public String copyOfUnsafe(String variable) throws GeneratorException  {
         switch (field.getType()) {
             case MAP: {
@@ -283,6 +410,14 @@ public class JField {
 
 
     public String fieldInstanceType() throws GeneratorException  {
+        if (primitiveContainer()) {
+            switch (field.getType()) {
+                case LIST:
+                    return primitiveListClass(((PList<?>) field.getDescriptor()).itemDescriptor()).getName();
+                case MAP:
+                    return PrimitiveMap.class.getName();
+            }
+        }
         switch (field.getType()) {
             case MAP:
                 switch (containerType()) {
@@ -306,7 +441,9 @@ public class JField {
     public String getProvider()  throws GeneratorException {
         String container = field.getAnnotationValue("container");
         String containerProvider = "provider";
-        if (container != null) {
+        if (primitiveContainer()) {
+            containerProvider = "primitiveProvider";
+        } else if (container != null) {
             ContainerType containerType = ContainerType.valueOf(container.toUpperCase());
             if (containerType == null) {
                 throw new GeneratorException("Unknown container type: " + container);
@@ -331,7 +468,10 @@ public class JField {
                 return String.format("%s.provider()", helper.getFieldType(field.getDescriptor()));
             case LIST:
                 PList<?> lType = (PList<?>) field.getDescriptor();
-                return String.format("%s.provider(%s)", PList.class.getName(), helper.getProviderName(lType.itemDescriptor()));
+                return String.format("%s.%s(%s)",
+                                     PList.class.getName(),
+                                     containerProvider,
+                                     helper.getProviderName(lType.itemDescriptor()));
             case SET:
                 PSet<?> sType = (PSet<?>) field.getDescriptor();
                 return String.format("%s.%s(%s)",
@@ -357,6 +497,14 @@ public class JField {
 
 
     public String builderInstanceType() throws GeneratorException  {
+        if (primitiveContainer()) {
+            switch (field.getType()) {
+                case LIST:
+                    return primitiveListClass(((PList<?>) field.getDescriptor()).itemDescriptor()).getName() + ".Builder";
+                case MAP:
+                    return PrimitiveMap.class.getName() + ".Builder";
+            }
+        }
         switch (field.getType()) {
             case MAP:
                 switch (containerType()) {
@@ -53,9 +53,23 @@ public class JHelper {
     public static String packageSeparator = ".";
 
     private final DocumentRegistry mRegistry;
+    private final boolean          mPrimitiveCollections;
 
     public JHelper(DocumentRegistry registry) {
+        this(registry, false);
+    }
+
+    public JHelper(DocumentRegistry registry, boolean primitiveCollections) {
         mRegistry = registry;
+        mPrimitiveCollections = primitiveCollections;
+    }
+
+    /**
+     * @return True if numeric lists and maps should be generated with
+     *         primitive collections.
+     */
+    public boolean isPrimitiveCollections() {
+        return mPrimitiveCollections;
     }
 
     public String getJavaPackage(PDeclaredDescriptor<?> type) throws GeneratorException {
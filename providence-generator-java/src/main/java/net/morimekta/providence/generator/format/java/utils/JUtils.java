@@ -37,7 +37,25 @@ public class JUtils {
     public static long generateSerialVersionUID(PStructDescriptor<?, ?> type) {
         String string = type.getVariant()
                             .getName() + " " + type.getQualifiedName(null);
+        return hashSerialVersionUID(string);
+    }
+
+    /**
+     * Generate the serial version UID for a type with a specific storage
+     * layout, so instances serialized with another layout are rejected
+     * instead of being read with missing values.
+     *
+     * @param type The message type.
+     * @param layout Name of the generated storage layout.
+     * @return The serial version UID.
+     */
+    public static long generateSerialVersionUID(PStructDescriptor<?, ?> type, String layout) {
+        String string = type.getVariant()
+                            .getName() + " " + type.getQualifiedName(null) + " " + layout;
+        return hashSerialVersionUID(string);
+    }
 
+    private static long hashSerialVersionUID(String string) {
         long hash = 1125899906842597L; // prime
         final int len = string.length();
         for (int i = 0; i < len; i++) {
@@ -19,7 +19,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -68,4 +70,52 @@ public class JGeneratorTest {
         File test = new File(out, "net/morimekta/test/java/Test.java");
         assertTrue(test.exists());
     }
+
+    @Test
+    public void testGenerate_binarySerializer() throws GeneratorException, IOException, ParseException {
+        JOptions options = new JOptions();
+        options.binarySerializer = true;
+
+        JGenerator generator = new JGenerator(fileManager, documentRegistry, options);
+        generator.generate(typeLoader.load(file));
+
+        File test = new File(out, "net/morimekta/test/java/Test.java");
+        assertTrue(test.exists());
+
+        String content = new String(Files.readAllBytes(test.toPath()), UTF_8);
+        assertTrue(content.contains("public int writeBinaryFields("));
+        assertTrue(content.contains("public boolean readBinaryField("));
+        assertTrue(content.contains("len += writer.writeInt(mTest);"));
+        assertTrue(content.contains("setAnother(reader.expectInt());"));
+    }
+
+    @Test
+    public void testGenerate_primitiveCollections() throws GeneratorException, IOException, ParseException {
+        JOptions options = new JOptions();
+        options.primitiveCollections = true;
+
+        JGenerator generator = new JGenerator(fileManager, documentRegistry, options);
+        generator.generate(typeLoader.load(file));
+
+        File numbers = new File(out, "net/morimekta/test/java/Numbers.java");
+        assertTrue(numbers.exists());
+
+        String content = new String(Files.readAllBytes(numbers.toPath()), UTF_8);
+        assertTrue(content.contains(
+                "net.morimekta.providence.descriptor.PList.primitiveProvider(" +
+                "net.morimekta.providence.descriptor.PPrimitive.I32.provider())"));
+        assertTrue(content.contains(
+                "net.morimekta.providence.descriptor.PMap.primitiveProvider(" +
+                "net.morimekta.providence.descriptor.PPrimitive.I64.provider()," +
+                "net.morimekta.providence.descriptor.PPrimitive.DOUBLE.provider())"));
+        assertTrue(content.contains("net.morimekta.providence.util.collect.IntList.Builder"));
+        assertTrue(content.contains("net.morimekta.providence.util.collect.PrimitiveMap.Builder"));
+        // Sets and non-numeric lists keep the boxed containers.
+        assertTrue(content.contains(
+                "net.morimekta.providence.descriptor.PSet.provider(" +
+                "net.morimekta.providence.descriptor.PPrimitive.I32.provider())"));
+        assertTrue(content.contains(
+                "net.morimekta.providence.descriptor.PList.provider(" +
+                "net.morimekta.providence.descriptor.PPrimitive.STRING.provider())"));
+    }
 }
@@ -4,3 +4,10 @@ struct Test {
     required i32 test;
     optional i32 another;
 }
+
+struct Numbers {
+    1: optional list<i32> ints;
+    2: optional map<i64,double> weights;
+    3: optional set<i32> unique;
+    4: optional list<string> names;
+}
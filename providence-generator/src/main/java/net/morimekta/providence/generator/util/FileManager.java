@@ -19,14 +19,21 @@
 
 package net.morimekta.providence.generator.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.HashSet;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
+ * Manages the generated files. Generated content is buffered, and a file is
+ * only written if its content differs from the file already there, so
+ * unchanged files keep their modification time for incremental compilers.
+ *
  * @author Stein Eldar Johnsen
  * @since 19.09.15
  */
@@ -38,7 +45,7 @@ public class FileManager {
     public FileManager(File root) {
         this.root = root;
 
-        generatedFiles = new HashSet<>();
+        generatedFiles = Collections.synchronizedSet(new TreeSet<>());
     }
 
     protected String relativePath(String path, String name) {
@@ -55,21 +62,57 @@ public class FileManager {
     public OutputStream create(String path, String name) throws IOException {
         File file = new File(absolutePath(path, name));
 
-        if (generatedFiles.contains(file.getCanonicalPath())) {
+        if (!generatedFiles.add(file.getCanonicalPath())) {
             throw new IOException("File " + path + File.separator + name + " already created.");
         }
 
-        file.getParentFile()
-            .mkdirs();
-        file.createNewFile();
-
-        generatedFiles.add(file.getCanonicalPath());
-
-        return new FileOutputStream(file, false);
+        return new GeneratedFileStream(file);
     }
 
     public void finalize(OutputStream stream) throws IOException {
         stream.flush();
         stream.close();
     }
+
+    /**
+     * @return The canonical paths of the files created by this manager.
+     */
+    public Set<String> getGeneratedFiles() {
+        synchronized (generatedFiles) {
+            return Collections.unmodifiableSet(new TreeSet<>(generatedFiles));
+        }
+    }
+
+    /**
+     * Stream buffering the generated content, which is written to file
+     * when closed.
+     */
+    private static class GeneratedFileStream extends ByteArrayOutputStream {
+        private final File file;
+        private boolean closed;
+
+        private GeneratedFileStream(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            byte[] content = toByteArray();
+            if (file.isFile() && file.length() == content.length &&
+                Arrays.equals(content, Files.readAllBytes(file.toPath()))) {
+                return;
+            }
+
+            File parent = file.getParentFile();
+            if (!parent.exists() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Unable to create directory " + parent.getPath());
+            }
+            Files.write(file.toPath(), content);
+        }
+    }
 }
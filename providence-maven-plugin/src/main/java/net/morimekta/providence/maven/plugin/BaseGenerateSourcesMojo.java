@@ -28,6 +28,8 @@ import net.morimekta.providence.reflect.contained.CDocument;
 import net.morimekta.providence.reflect.parser.DocumentParser;
 import net.morimekta.providence.reflect.parser.ParseException;
 import net.morimekta.providence.reflect.parser.ThriftDocumentParser;
+import net.morimekta.providence.reflect.util.DocumentBundle;
+import net.morimekta.util.Binary;
 import net.morimekta.util.io.IOUtils;
 
 import org.apache.maven.artifact.Artifact;
@@ -37,6 +39,7 @@ import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -48,17 +51,30 @@ import org.codehaus.plexus.util.DirectoryScanner;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -67,6 +83,10 @@ import java.util.zip.ZipInputStream;
  * mvn net.morimekta.providence:providence-maven-plugin:0.1.0-SNAPSHOT:help -Ddetail=true -Dgoal=compile
  */
 public abstract class BaseGenerateSourcesMojo extends AbstractMojo {
+    private static final String OPTIONS = "options";
+    private static final String INPUT   = "input.";
+    private static final String OUTPUT  = "output.";
+
     /**
      * Use the "tiny java" generator version instead of the default. It has
      * minimal dependencies, and cannot be serialized using the providence
@@ -84,6 +104,22 @@ public abstract class BaseGenerateSourcesMojo extends AbstractMojo {
     @Parameter(defaultValue = "false")
     protected boolean android;
 
+    /**
+     * Store lists of i32, i64 and double, and maps with i32, i64 and double
+     * keys and values, unboxed in primitive arrays. Not compatible with
+     * 'tiny'.
+     */
+    @Parameter(defaultValue = "false")
+    protected boolean primitiveCollections;
+
+    /**
+     * Generate binary serialization methods in the model classes, which are
+     * used by the binary serializer in place of the generic field access.
+     * Not compatible with 'tiny'.
+     */
+    @Parameter(defaultValue = "false")
+    protected boolean binarySerializer;
+
     /**
      * If set to true will add jackson 2 annotations to messages and enums.
      * Required additional dependency on jackson 2 core libraries:
@@ -116,6 +152,20 @@ public abstract class BaseGenerateSourcesMojo extends AbstractMojo {
     @Parameter
     protected IncludeExcludeFileSelector includeDirs;
 
+    /**
+     * Only regenerate the documents where the thrift file, any of the files
+     * it includes, or the generator options have changed since the last
+     * build. Unchanged generated files are never rewritten.
+     */
+    @Parameter(defaultValue = "true")
+    protected boolean incremental;
+
+    /**
+     * Generate the documents in parallel.
+     */
+    @Parameter(defaultValue = "true")
+    protected boolean parallel;
+
     // --- After here are internals, components and maven-set params.
 
     /**
@@ -124,9 +174,22 @@ public abstract class BaseGenerateSourcesMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project.build.directory}", readonly = true)
     protected File buildDir = null;
 
+    /**
+     * Version of the plugin, and with that the generator.
+     */
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    protected String pluginVersion = null;
+
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     protected MavenProject project = null;
 
+    /**
+     * The current execution, so each execution of the plugin in the same
+     * module keeps its own manifest of generated files.
+     */
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true, required = true)
+    protected MojoExecution mojoExecution = null;
+
     @Parameter(defaultValue = "${localRepository}", readonly = true, required = true)
     protected ArtifactRepository localRepository = null;
 
@@ -222,15 +285,14 @@ public abstract class BaseGenerateSourcesMojo extends AbstractMojo {
         }
         inputs.stream().map(File::getParentFile).forEach(includes::add);
 
-        FileManager fileManager = new FileManager(outputDir);
         DocumentParser parser = new ThriftDocumentParser();
         TypeLoader loader = new TypeLoader(includes, parser);
 
-        LinkedList<CDocument> documents = new LinkedList<>();
+        Map<File, CDocument> documents = new LinkedHashMap<>();
 
         for (File in : inputs) {
             try {
-                documents.add(loader.load(in));
+                documents.put(in.getCanonicalFile(), loader.load(in));
             } catch (IOException e) {
                 throw new MojoExecutionException("Failed to read thrift file: " + in.getName(), e);
             } catch (ParseException e) {
@@ -240,42 +302,225 @@ public abstract class BaseGenerateSourcesMojo extends AbstractMojo {
             }
         }
 
+        File manifestFile = new File(buildDir, (testCompile ? "providence-test-manifest-" : "providence-manifest-") +
+                                               mojoExecution.getExecutionId() + ".properties");
+        Properties manifest = readManifest(manifestFile);
+        Properties updated = new Properties();
+
+        String optionsHash = getOptionsHash(outputDir);
+        boolean optionsChanged = !incremental || !optionsHash.equals(manifest.getProperty(OPTIONS));
+        updated.setProperty(OPTIONS, optionsHash);
+
+        // Find the documents that needs to be regenerated, and keep the
+        // generated files of the rest.
+        Map<File, CDocument> stale = new LinkedHashMap<>();
+        Map<String, Set<String>> outputs = new LinkedHashMap<>();
+        for (Map.Entry<File, CDocument> entry : documents.entrySet()) {
+            String path = entry.getKey().getPath();
+            String hash;
+            try {
+                hash = Binary.wrap(loader.getDependencyHash(entry.getKey())).toBase64();
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to read thrift file: " + entry.getKey().getName(), e);
+            }
+            updated.setProperty(INPUT + path, hash);
+
+            Set<String> previous = getOutputs(manifest, path);
+            if (optionsChanged ||
+                !hash.equals(manifest.getProperty(INPUT + path)) ||
+                !previous.stream().allMatch(file -> new File(file).isFile())) {
+                stale.put(entry.getKey(), entry.getValue());
+            } else {
+                outputs.put(path, previous);
+            }
+        }
+
+        getLog().info("Generating " + stale.size() + " of " + documents.size() + " thrift documents.");
+
+        // Fail early on incompatible options.
+        try {
+            createGenerator(new FileManager(outputDir), loader);
+        } catch (GeneratorException e) {
+            getLog().warn(e.getMessage());
+            throw new MojoFailureException("Failed to generate file: " + e.getMessage(), e);
+        }
+
+        // Each document is generated with its own generator and file manager,
+        // so independent documents can be generated in parallel. The type
+        // registry is only read from here on.
+        int threads = parallel ? Math.max(1, Math.min(stale.size(), Runtime.getRuntime().availableProcessors())) : 1;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
-            Generator generator;
-            if (tiny) {
-                TinyOptions options = new TinyOptions();
-                options.jackson = jackson;
-                if (android) {
-                    throw new MojoExecutionException("Android option not compatible with 'tiny_java' variant.");
+            Map<File, Future<Set<String>>> futures = new LinkedHashMap<>();
+            for (Map.Entry<File, CDocument> entry : stale.entrySet()) {
+                CDocument doc = entry.getValue();
+                futures.put(entry.getKey(), executor.submit(() -> {
+                    FileManager fileManager = new FileManager(outputDir);
+                    createGenerator(fileManager, loader).generate(doc);
+                    return fileManager.getGeneratedFiles();
+                }));
+            }
+
+            for (Map.Entry<File, Future<Set<String>>> entry : futures.entrySet()) {
+                CDocument doc = stale.get(entry.getKey());
+                try {
+                    outputs.put(entry.getKey().getPath(), entry.getValue().get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted while generating: " + doc.getPackageName(), e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof GeneratorException) {
+                        getLog().warn(e.getCause().getMessage());
+                        throw new MojoFailureException("Failed to generate document: " + doc.getPackageName(), e.getCause());
+                    }
+                    throw new MojoExecutionException("Failed to write document: " + doc.getPackageName(), e.getCause());
                 }
-                generator = new TinyGenerator(fileManager, loader.getRegistry(), options);
-            } else {
-                JOptions options = new JOptions();
-                options.android = android;
-                if (jackson) {
-                    throw new MojoExecutionException("Jackson option not compatible with 'java' variant.");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Each generated file must belong to a single document.
+        Map<String, String> owners = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : outputs.entrySet()) {
+            for (String file : entry.getValue()) {
+                String owner = owners.put(file, entry.getKey());
+                if (owner != null) {
+                    throw new MojoFailureException("File " + file + " generated from both " + owner + " and " + entry.getKey());
                 }
-                generator = new JGenerator(fileManager, loader.getRegistry(), options);
             }
+            updated.setProperty(OUTPUT + entry.getKey(), String.join(File.pathSeparator, entry.getValue()));
+        }
 
-            for (CDocument doc : documents) {
-                try {
-                    generator.generate(doc);
-                } catch (IOException e) {
-                    throw new MojoExecutionException("Failed to write document: " + doc.getPackageName(), e);
-                } catch (GeneratorException e) {
-                    getLog().warn(e.getMessage());
-                    throw new MojoFailureException("Failed to generate document: " + doc.getPackageName(), e);
+        // Remove files previously generated, but not anymore, e.g. from
+        // removed types or thrift files.
+        for (String key : manifest.stringPropertyNames()) {
+            if (key.startsWith(OUTPUT)) {
+                for (String file : getOutputs(manifest, key.substring(OUTPUT.length()))) {
+                    if (!owners.containsKey(file)) {
+                        new File(file).delete();
+                    }
                 }
             }
-        } catch (GeneratorException e) {
-            getLog().warn(e.getMessage());
-            throw new MojoFailureException("Failed to generate file: " + e.getMessage(), e);
         }
 
+        writeManifest(manifestFile, updated);
+
         return compileOutput;
     }
 
+    private Generator createGenerator(FileManager fileManager, TypeLoader loader)
+            throws MojoExecutionException, GeneratorException {
+        if (tiny) {
+            TinyOptions options = new TinyOptions();
+            options.jackson = jackson;
+            if (android) {
+                throw new MojoExecutionException("Android option not compatible with 'tiny_java' variant.");
+            }
+            if (primitiveCollections) {
+                throw new MojoExecutionException("Primitive collections option not compatible with 'tiny_java' variant.");
+            }
+            if (binarySerializer) {
+                throw new MojoExecutionException("Binary serializer option not compatible with 'tiny_java' variant.");
+            }
+            return new TinyGenerator(fileManager, loader.getRegistry(), options);
+        } else {
+            JOptions options = new JOptions();
+            options.android = android;
+            options.primitiveCollections = primitiveCollections;
+            options.binarySerializer = binarySerializer;
+            if (jackson) {
+                throw new MojoExecutionException("Jackson option not compatible with 'java' variant.");
+            }
+            return new JGenerator(fileManager, loader.getRegistry(), options);
+        }
+    }
+
+    /**
+     * Get a hash of everything apart from the thrift files that affects the
+     * generated output, including the version of the generator itself.
+     */
+    private String getOptionsHash(File outputDir) throws MojoExecutionException {
+        String options = String.format("version=%s,generator=%s,output=%s,tiny=%b,android=%b,primitive=%b,binary=%b,jackson=%b",
+                                       pluginVersion,
+                                       getGeneratorChecksum(),
+                                       outputDir.getAbsolutePath(),
+                                       tiny,
+                                       android,
+                                       primitiveCollections,
+                                       binarySerializer,
+                                       jackson);
+        return Binary.wrap(DocumentBundle.hash(options.getBytes(StandardCharsets.UTF_8))).toBase64();
+    }
+
+    /**
+     * Get a checksum of the jar files containing the plugin and generators.
+     * The version alone does not change between builds of a snapshot.
+     */
+    private String getGeneratorChecksum() throws MojoExecutionException {
+        TreeSet<File> jars = new TreeSet<>();
+        for (Class<?> type : new Class<?>[]{getClass(), Generator.class, JGenerator.class, TinyGenerator.class}) {
+            CodeSource source = type.getProtectionDomain().getCodeSource();
+            if (source == null || source.getLocation() == null ||
+                !"file".equals(source.getLocation().getProtocol())) {
+                continue;
+            }
+            try {
+                File file = new File(source.getLocation().toURI());
+                // Skip class directories, e.g. when running from the IDE.
+                if (file.isFile()) {
+                    jars.add(file);
+                }
+            } catch (URISyntaxException e) {
+                throw new MojoExecutionException("Invalid generator location: " + source.getLocation(), e);
+            }
+        }
+
+        ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+        for (File jar : jars) {
+            try {
+                hashes.write(DocumentBundle.hash(Files.readAllBytes(jar.toPath())));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read generator jar: " + jar, e);
+            }
+        }
+        return Binary.wrap(DocumentBundle.hash(hashes.toByteArray())).toBase64();
+    }
+
+    private Set<String> getOutputs(Properties manifest, String input) {
+        String files = manifest.getProperty(OUTPUT + input);
+        if (files == null || files.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> out = new TreeSet<>();
+        Collections.addAll(out, files.split(File.pathSeparator));
+        return out;
+    }
+
+    private Properties readManifest(File manifestFile) {
+        Properties manifest = new Properties();
+        if (incremental && manifestFile.isFile()) {
+            try (FileInputStream fis = new FileInputStream(manifestFile);
+                 BufferedInputStream bis = new BufferedInputStream(fis)) {
+                manifest.load(bis);
+            } catch (IOException e) {
+                // Regenerate everything.
+                getLog().warn("Unable to read generator manifest: " + e.getMessage());
+                manifest.clear();
+            }
+        }
+        return manifest;
+    }
+
+    private void writeManifest(File manifestFile, Properties manifest) throws MojoExecutionException {
+        try (FileOutputStream fos = new FileOutputStream(manifestFile, false);
+             BufferedOutputStream bos = new BufferedOutputStream(fos)) {
+            manifest.store(bos, "providence generated sources");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write generator manifest: " + e.getMessage(), e);
+        }
+    }
+
     private void addDependencyInclude(File workingDir, Set<File> includes, Artifact artifact)
             throws MojoExecutionException {
         // TODO: Figure out if this is the right way to name the output directories.
@@ -16,6 +16,9 @@
 package net.morimekta.providence.maven.plugin;
 
 import net.morimekta.providence.maven.util.ProvidenceInput;
+import net.morimekta.providence.reflect.TypeLoader;
+import net.morimekta.providence.reflect.parser.ParseException;
+import net.morimekta.providence.reflect.parser.ThriftDocumentParser;
 import net.morimekta.util.Strings;
 import net.morimekta.util.io.IOUtils;
 
@@ -40,6 +43,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -54,6 +58,7 @@ public class ProvidenceAssemblyMojo extends AbstractMojo {
     public static final String GOAL = "assemble";
     public static final String TYPE = "zip";
     public static final String CLASSIFIER = "providence";
+    public static final String BUNDLE = "providence.bundle";
 
     /**
      * Skip the providence assembly step for this module.
@@ -75,6 +80,15 @@ public class ProvidenceAssemblyMojo extends AbstractMojo {
     @Parameter(defaultValue = CLASSIFIER)
     protected String classifier = CLASSIFIER;
 
+    /**
+     * Add a bundle of the parsed documents to the assembly, so tools using
+     * the assembly can load the types without parsing the thrift files.
+     * The bundle is added as '<code>providence.bundle</code>' next to the
+     * thrift files.
+     */
+    @Parameter(defaultValue = "false")
+    protected boolean bundle = false;
+
     // --- After here are internals, components and maven-set params.
 
     /**
@@ -137,6 +151,12 @@ public class ProvidenceAssemblyMojo extends AbstractMojo {
                     ++numFiles;
                 }
 
+                if (bundle) {
+                    zos.putNextEntry(new ZipEntry(internalPath + File.separator + BUNDLE));
+                    writeBundle(inputFiles, zos);
+                    zos.closeEntry();
+                }
+
                 zos.flush();
             } catch (IOException ie) {
                 throw new MojoFailureException("Unable to write providence assembly: " + ie.getMessage(), ie);
@@ -146,4 +166,22 @@ public class ProvidenceAssemblyMojo extends AbstractMojo {
             projectHelper.attachArtifact(project, TYPE, classifier, target);
         }
     }
+
+    private void writeBundle(Set<File> inputFiles, ZipOutputStream zos) throws IOException, MojoFailureException {
+        Set<File> includes = new LinkedHashSet<>();
+        for (File file : inputFiles) {
+            includes.add(file.getAbsoluteFile().getParentFile());
+        }
+
+        TypeLoader loader = new TypeLoader(includes, new ThriftDocumentParser());
+        for (File file : inputFiles) {
+            try {
+                loader.load(file);
+            } catch (ParseException e) {
+                throw new MojoFailureException("Failed to parse thrift file: " + file.getName(), e);
+            }
+        }
+        // The thrift files are put in the assembly by name only.
+        loader.toBundle(null).write(zos);
+    }
 }
@@ -0,0 +1,107 @@
+package net.morimekta.providence.maven.plugin;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Testing the incremental generation of sources.
+ */
+public class GenerateSourcesMojoTest {
+    private static final String MARKER = "// not regenerated\n";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File generated;
+
+    @Before
+    public void setUp() throws IOException {
+        File thrift = new File(tmp.getRoot(), "src/main/providence/test.thrift");
+        assertTrue(thrift.getParentFile().mkdirs());
+        Files.write(thrift.toPath(),
+                    ("namespace java net.morimekta.test.plugin\n" +
+                     "\n" +
+                     "struct Test {\n" +
+                     "    1: i32 test;\n" +
+                     "}\n").getBytes(UTF_8));
+
+        generated = new File(tmp.getRoot(), "target/generated-sources/providence/net/morimekta/test/plugin/Test.java");
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        mojo("1.0").execute();
+        assertTrue(generated.isFile());
+
+        // Same version and options does not touch the generated file.
+        markGenerated();
+        mojo("1.0").execute();
+        assertTrue(read().startsWith(MARKER));
+    }
+
+    @Test
+    public void testIncremental_versionChange() throws Exception {
+        mojo("1.0").execute();
+        markGenerated();
+
+        mojo("1.1").execute();
+        assertTrue(generated.isFile());
+        assertFalse(read().startsWith(MARKER));
+    }
+
+    @Test
+    public void testIncremental_optionsChange() throws Exception {
+        mojo("1.0").execute();
+        String plain = read();
+        markGenerated();
+
+        GenerateSourcesMojo mojo = mojo("1.0");
+        mojo.binarySerializer = true;
+        mojo.execute();
+
+        String binary = read();
+        assertFalse(binary.startsWith(MARKER));
+        assertNotEquals(plain, binary);
+        assertTrue(binary.contains("writeBinaryFields("));
+
+        // And back again.
+        markGenerated();
+        mojo("1.0").execute();
+        assertEquals(plain, read());
+    }
+
+    private GenerateSourcesMojo mojo(String version) {
+        MavenProject project = new MavenProject();
+        project.setFile(new File(tmp.getRoot(), "pom.xml"));
+
+        GenerateSourcesMojo mojo = new GenerateSourcesMojo();
+        mojo.project = project;
+        mojo.buildDir = new File(tmp.getRoot(), "target");
+        mojo.outputDir = new File(mojo.buildDir, "generated-sources/providence");
+        mojo.pluginVersion = version;
+        mojo.incremental = true;
+        mojo.compileOutput = true;
+        return mojo;
+    }
+
+    private void markGenerated() throws IOException {
+        Files.write(generated.toPath(), (MARKER + read()).getBytes(UTF_8));
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(generated.toPath()), UTF_8);
+    }
+}
@@ -23,19 +23,25 @@ import net.morimekta.providence.model.ThriftDocument;
 import net.morimekta.providence.reflect.contained.CDocument;
 import net.morimekta.providence.reflect.parser.DocumentParser;
 import net.morimekta.providence.reflect.parser.ParseException;
+import net.morimekta.providence.reflect.util.DocumentBundle;
 import net.morimekta.providence.reflect.util.DocumentConverter;
 import net.morimekta.providence.reflect.util.DocumentRegistry;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * @author Stein Eldar Johnsen
@@ -47,6 +53,8 @@ public class TypeLoader {
     private final DocumentConverter           mConverter;
     private final DocumentParser              mParser;
     private final Map<String, ThriftDocument> mLoadedDocuments;
+    private final Map<String, byte[]>         mSourceHashes;
+    private final Map<String, List<File>>     mIncludedFiles;
     private final Collection<File>            mIncludes;
 
     /**
@@ -88,6 +96,8 @@ public class TypeLoader {
         mConverter = converter;
 
         mLoadedDocuments = new LinkedHashMap<>();
+        mSourceHashes = new LinkedHashMap<>();
+        mIncludedFiles = new LinkedHashMap<>();
     }
 
     /**
@@ -120,26 +130,11 @@ public class TypeLoader {
             return cdoc;
         }
 
-        InputStream in = new BufferedInputStream(new FileInputStream(file));
-        ThriftDocument doc = mParser.parse(in, file.getName());
+        byte[] content = Files.readAllBytes(file.toPath());
+        ThriftDocument doc = mParser.parse(new ByteArrayInputStream(content), file.getName());
 
-        LinkedList<File> queue = new LinkedList<>();
-        for (String include : doc.getIncludes()) {
-            File location = new File(file.getParent(), include).getCanonicalFile();
-            if (!location.exists()) {
-                for (File inc : mIncludes) {
-                    File i = new File(inc, include);
-                    if (i.exists()) {
-                        location = i.getCanonicalFile();
-                        break;
-                    }
-                }
-            }
-
-            if (location.exists() && !queue.contains(location)) {
-                queue.add(location);
-            }
-        }
+        LinkedList<File> queue = new LinkedList<>(resolveIncludes(file, doc));
+        mIncludedFiles.put(file.getCanonicalPath(), new ArrayList<>(queue));
 
         // Load includes in reverse order, in case of serial dependencies.
         Collections.reverse(queue);
@@ -155,9 +150,154 @@ public class TypeLoader {
 
         cdoc = mConverter.convert(doc);
         mRegistry.putDocument(file.getCanonicalPath(), cdoc);
+        mSourceHashes.put(file.getCanonicalPath(), DocumentBundle.hash(content));
         return cdoc;
     }
 
+    /**
+     * Make a bundle of all the documents loaded from thrift files, which
+     * can be loaded later with {@link #loadBundle(DocumentBundle, File)}
+     * without parsing the thrift files again.
+     *
+     * @param baseDir Directory the file paths are made relative to, or null
+     *                to keep only the file names. Files outside the base
+     *                directory keep the absolute path.
+     * @return The document bundle.
+     * @throws IOException If unable to resolve the file paths.
+     */
+    public DocumentBundle toBundle(File baseDir) throws IOException {
+        Path base = baseDir == null ? null : baseDir.getCanonicalFile().toPath();
+        List<DocumentBundle.Entry> entries = new ArrayList<>();
+        // The hashes are kept in the order the documents were converted,
+        // which is the dependency order.
+        for (Map.Entry<String, byte[]> source : mSourceHashes.entrySet()) {
+            File file = new File(source.getKey());
+            String path;
+            if (base == null) {
+                path = file.getName();
+            } else if (file.toPath().startsWith(base)) {
+                path = base.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+            } else {
+                path = file.getPath();
+            }
+            entries.add(new DocumentBundle.Entry(path,
+                                                 source.getValue(),
+                                                 mLoadedDocuments.get(source.getKey())));
+        }
+        return new DocumentBundle(entries);
+    }
+
+    /**
+     * Load all the documents in the bundle without parsing the thrift
+     * files. If the thrift source file of any of the documents exists and
+     * has changed since the bundle was made, the bundle is stale, and
+     * nothing is loaded. Documents without the source file present are
+     * trusted as is.
+     *
+     * @param bundle  The bundle to load.
+     * @param baseDir Directory relative file paths in the bundle are
+     *                resolved against.
+     * @return True if the bundle was loaded, false if it was stale.
+     * @throws IOException If unable to read a thrift source file.
+     */
+    public boolean loadBundle(DocumentBundle bundle, File baseDir) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (DocumentBundle.Entry entry : bundle.getEntries()) {
+            File file = new File(entry.getPath());
+            if (!file.isAbsolute()) {
+                file = new File(baseDir, entry.getPath());
+            }
+            file = file.getCanonicalFile();
+            if (file.isFile() && !entry.matchesSource(Files.readAllBytes(file.toPath()))) {
+                return false;
+            }
+            files.add(file);
+        }
+
+        for (int i = 0; i < files.size(); ++i) {
+            String path = files.get(i).getPath();
+            if (mRegistry.getDocument(path) != null) {
+                continue;
+            }
+
+            DocumentBundle.Entry entry = bundle.getEntries().get(i);
+            mLoadedDocuments.put(path, entry.getDocument());
+            mRegistry.putDocument(path, mConverter.convert(entry.getDocument()));
+            mSourceHashes.put(path, entry.getSourceHash());
+            mIncludedFiles.put(path, resolveIncludes(files.get(i), entry.getDocument()));
+        }
+        return true;
+    }
+
+    /**
+     * Get a hash of the thrift source of the loaded file and all the files
+     * it includes, directly or transitively. The hash changes if any of the
+     * files that may affect the content of the document changes.
+     *
+     * @param file The loaded file.
+     * @return The dependency hash.
+     * @throws IOException If unable to resolve the file path.
+     * @throws IllegalArgumentException If the file is not loaded.
+     */
+    public byte[] getDependencyHash(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        if (!mSourceHashes.containsKey(path)) {
+            throw new IllegalArgumentException("No loaded document for " + path);
+        }
+
+        TreeSet<String> dependencies = new TreeSet<>();
+        LinkedList<String> queue = new LinkedList<>();
+        queue.add(path);
+        while (!queue.isEmpty()) {
+            String next = queue.poll();
+            if (dependencies.add(next)) {
+                for (File include : mIncludedFiles.getOrDefault(next, Collections.emptyList())) {
+                    queue.add(include.getPath());
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String dependency : dependencies) {
+            out.write(dependency.getBytes(StandardCharsets.UTF_8));
+            byte[] hash = mSourceHashes.get(dependency);
+            if (hash != null) {
+                out.write(hash);
+            }
+        }
+        return DocumentBundle.hash(out.toByteArray());
+    }
+
+    /**
+     * Resolve the files included by the document, either relative to the
+     * document itself, or in one of the include directories.
+     *
+     * @param file The document file.
+     * @param doc  The parsed document.
+     * @return The list of existing included files.
+     * @throws IOException If unable to resolve the file paths.
+     */
+    private List<File> resolveIncludes(File file, ThriftDocument doc) throws IOException {
+        List<File> includes = new ArrayList<>();
+        for (String include : doc.getIncludes()) {
+            File location = new File(file.getParent(), include).getCanonicalFile();
+            if (!location.exists()) {
+                for (File inc : mIncludes) {
+                    File i = new File(inc, include);
+                    if (i.exists()) {
+                        location = i.getCanonicalFile();
+                        break;
+                    }
+                }
+            }
+
+            if (location.exists() && !includes.contains(location)) {
+                includes.add(location);
+            }
+        }
+        return includes;
+    }
+
     /**
      * @return The local registry.
      */
@@ -22,6 +22,7 @@ package net.morimekta.providence.reflect.contained;
 import net.morimekta.providence.PMessage;
 import net.morimekta.providence.PMessageBuilder;
 import net.morimekta.providence.PType;
+import net.morimekta.providence.PUnknownFields;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PList;
 import net.morimekta.providence.descriptor.PMap;
@@ -48,10 +49,17 @@ import java.util.TreeMap;
 public class CException extends Throwable implements PMessage<CException, CField> {
     private final CExceptionDescriptor descriptor;
     private final Map<Integer, Object> values;
+    private final PUnknownFields       unknownFields;
 
     private CException(Builder builder) {
         values = builder.getValueMap();
         descriptor = builder.descriptor;
+        unknownFields = builder.getUnknownFields();
+    }
+
+    @Override
+    public PUnknownFields unknownFields() {
+        return unknownFields;
     }
 
     @Override
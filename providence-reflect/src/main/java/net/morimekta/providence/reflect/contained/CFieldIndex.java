@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.reflect.contained;
+
+import java.util.Arrays;
+
+/**
+ * Lookup of the index of a field in the field array of a contained
+ * descriptor from the field key, without boxing the key. When the field
+ * keys are reasonably dense, which is the normal case, the index is looked
+ * up directly in a table from key to index. Otherwise the keys are kept
+ * sorted and binary searched.
+ */
+final class CFieldIndex {
+    // Max number of table slots per field before falling back to search.
+    private static final int MAX_TABLE_SPREAD = 4;
+
+    private final int   minKey;
+    private final int[] table;
+    private final int[] keys;
+    private final int[] indices;
+
+    CFieldIndex(CField[] fields) {
+        long[] sorted = new long[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            // key in the upper bits, index in the lower bits.
+            sorted[i] = ((long) fields[i].getKey() << 32) | i;
+        }
+        Arrays.sort(sorted);
+
+        keys = new int[fields.length];
+        indices = new int[fields.length];
+        for (int i = 0; i < sorted.length; ++i) {
+            keys[i] = (int) (sorted[i] >> 32);
+            indices[i] = (int) sorted[i];
+        }
+
+        if (keys.length > 0 &&
+            (long) keys[keys.length - 1] - keys[0] < MAX_TABLE_SPREAD * (long) keys.length + 16) {
+            minKey = keys[0];
+            table = new int[keys[keys.length - 1] - minKey + 1];
+            Arrays.fill(table, -1);
+            for (int i = 0; i < keys.length; ++i) {
+                table[keys[i] - minKey] = indices[i];
+            }
+        } else {
+            minKey = 0;
+            table = null;
+        }
+    }
+
+    /**
+     * @param key The field key.
+     * @return The index of the field, or -1 if no such field.
+     */
+    int indexOf(int key) {
+        if (table != null) {
+            int slot = key - minKey;
+            return slot < 0 || slot >= table.length ? -1 : table[slot];
+        }
+        int i = Arrays.binarySearch(keys, key);
+        return i < 0 ? -1 : indices[i];
+    }
+}
@@ -21,6 +21,7 @@ package net.morimekta.providence.reflect.contained;
 
 import net.morimekta.providence.PEnumValue;
 import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PUnknownFields;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PPrimitive;
 import net.morimekta.providence.descriptor.PStructDescriptor;
@@ -44,54 +45,68 @@ public abstract class CMessage<Message extends PMessage<Message, Field>, Field e
         implements PMessage<Message, Field> {
     private static final PrettySerializer PRETTY_SERIALIZER = new PrettySerializer("", "", "", ",", true, false);
 
-    private final Map<Integer, Object> values;
+    private final Object[]       values;
+    private final PUnknownFields unknownFields;
 
-    CMessage(Map<Integer, Object> fields) {
-        values = fields;
+    private volatile int tHashCode;
+
+    /**
+     * @param values The field values, indexed as the descriptor fields.
+     * @param unknownFields The unknown fields of the message.
+     */
+    CMessage(Object[] values, PUnknownFields unknownFields) {
+        this.values = values;
+        this.unknownFields = unknownFields;
+    }
+
+    /**
+     * @param key The field key.
+     * @return The index of the field in the descriptor fields, or -1 if no
+     *         such field.
+     */
+    abstract int indexOf(int key);
+
+    /**
+     * @return The field values, indexed as the descriptor fields.
+     */
+    Object[] values() {
+        return values;
     }
 
     @Override
     public boolean has(int key) {
-        PField field = descriptor().getField(key);
-        if (field == null) {
-            return false;
-        }
-        return values.containsKey(key);
+        int index = indexOf(key);
+        return index >= 0 && values[index] != null;
     }
 
     @Override
     public int num(int key) {
-        PField field = descriptor().getField(key);
-        if (field == null) {
-            return 0;
-        }
-
+        int index = indexOf(key);
         // Non-present containers are empty.
-        if (!values.containsKey(key)) {
+        if (index < 0 || values[index] == null) {
             return 0;
         }
 
-        switch (field.getDescriptor()
-                     .getType()) {
-            case MAP:
-                return ((Map<?, ?>) values.get(key)).size();
-            case LIST:
-            case SET:
-                return ((Collection<?>) values.get(key)).size();
-            default:
-                // present non-containers also empty.
-                return 0;
+        Object value = values[index];
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        } else if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
         }
+        // present non-containers also empty.
+        return 0;
     }
 
     @Override
     public Object get(int key) {
-        PField field = descriptor().getField(key);
-        if (field != null) {
-            Object value = values.get(key);
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object value = values[index];
             if (value != null) {
                 return value;
-            } else if (field.hasDefaultValue()) {
+            }
+            PField field = descriptor().getFields()[index];
+            if (field.hasDefaultValue()) {
                 return field.getDefaultValue();
             } else if (field.getDescriptor() instanceof PPrimitive) {
                 return ((PPrimitive) field.getDescriptor()).getDefaultValue();
@@ -100,6 +115,11 @@ public abstract class CMessage<Message extends PMessage<Message, Field>, Field e
         return null;
     }
 
+    @Override
+    public PUnknownFields unknownFields() {
+        return unknownFields;
+    }
+
     @Override
     public boolean compact() {
         if (!descriptor().isCompactible()) {
@@ -125,6 +145,16 @@ public abstract class CMessage<Message extends PMessage<Message, Field>, Field e
         }
 
         CMessage other = (CMessage) o;
+        if (other.descriptor() == descriptor()) {
+            // Same type, so the values are indexed the same way.
+            for (int i = 0; i < values.length; ++i) {
+                if (!Objects.equals(values[i], other.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         PStructDescriptor<?, ?> type = other.descriptor();
         if (!descriptor().getQualifiedName(null)
                          .equals(type.getQualifiedName(null)) || !descriptor().getVariant()
@@ -146,12 +176,17 @@ public abstract class CMessage<Message extends PMessage<Message, Field>, Field e
 
     @Override
     public int hashCode() {
-        int hash = getClass().hashCode();
-        for (Map.Entry<Integer, Object> entry : values.entrySet()) {
-            PField field = descriptor().getField(entry.getKey());
-            hash += Objects.hash(field, entry.getValue());
+        if (tHashCode == 0) {
+            int hash = getClass().hashCode();
+            PField[] fields = descriptor().getFields();
+            for (int i = 0; i < values.length; ++i) {
+                if (values[i] != null) {
+                    hash += Objects.hash(fields[i], values[i]);
+                }
+            }
+            tHashCode = hash;
         }
-        return hash;
+        return tHashCode;
     }
 
     @Override
@@ -19,6 +19,7 @@
 
 package net.morimekta.providence.reflect.contained;
 
+import net.morimekta.providence.PBuilder;
 import net.morimekta.providence.PMessage;
 import net.morimekta.providence.PMessageBuilder;
 import net.morimekta.providence.PType;
@@ -28,29 +29,36 @@ import net.morimekta.providence.descriptor.PMap;
 import net.morimekta.providence.descriptor.PRequirement;
 import net.morimekta.providence.descriptor.PSet;
 import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.serializer.BinaryReadable;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.BinaryWritable;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+import net.morimekta.util.io.BinaryReader;
 
-import com.google.common.collect.ImmutableMap;
-
+import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.TreeMap;
 
 /**
  * @author Stein Eldar Johnsen
  * @since 26.08.15
  */
-public class CStruct extends CMessage<CStruct,CField> {
+public class CStruct extends CMessage<CStruct,CField> implements BinaryWritable {
     CStructDescriptor descriptor;
 
     private CStruct(Builder builder) {
-        super(builder.getValueMap());
+        super(builder.getValues(), builder.getUnknownFields());
         descriptor = builder.descriptor;
     }
 
     @Override
     public PMessageBuilder<CStruct,CField> mutate() {
-        return new Builder(descriptor);
+        Builder builder = new Builder(descriptor);
+        builder.merge(this);
+        builder.setUnknownFields(unknownFields());
+        return builder;
     }
 
     @Override
@@ -58,35 +66,49 @@ public class CStruct extends CMessage<CStruct,CField> {
         return descriptor;
     }
 
-    public static class Builder extends PMessageBuilder<CStruct,CField> {
-        private final CStructDescriptor    descriptor;
-        private final Map<Integer, Object> values;
+    @Override
+    public int writeBinaryFields(BinarySerializer serializer, WriteBuffer.BigEndianWriter writer)
+            throws IOException, SerializerException {
+        return descriptor.codec().write(serializer, writer, values());
+    }
+
+    @Override
+    int indexOf(int key) {
+        return descriptor.indexOf(key);
+    }
+
+    public static class Builder extends PMessageBuilder<CStruct,CField> implements BinaryReadable {
+        private final CStructDescriptor descriptor;
+        // Field values indexed as the descriptor fields. Containers and
+        // messages are kept either as the built value or as a builder.
+        private final Object[]          values;
 
         public Builder(CStructDescriptor descriptor) {
             this.descriptor = descriptor;
-            this.values = new TreeMap<>();
+            this.values = new Object[descriptor.getFields().length];
         }
-        
+
         @Override
         @SuppressWarnings("unchecked")
         public Builder merge(CStruct from) {
             for (PField field : descriptor.getFields()) {
                 int key = field.getKey();
                 if (from.has(key)) {
+                    int index = descriptor.indexOf(key);
                     switch (field.getType()) {
                         case MESSAGE:
                             ((PMessageBuilder) mutator(key)).merge((PMessage) from.get(key));
                             break;
                         case SET:
-                            if (values.containsKey(key)) {
-                                ((PSet.Builder<Object>) values.get(key)).addAll((Collection<Object>) from.get(key));
+                            if (values[index] != null) {
+                                ((PSet.Builder<Object>) containerBuilder(index)).addAll((Collection<Object>) from.get(key));
                             } else {
                                 set(key, from.get(key));
                             }
                             break;
                         case MAP:
-                            if (values.containsKey(key)) {
-                                ((PMap.Builder<Object, Object>) values.get(key)).putAll((Map<Object, Object>) from.get(key));
+                            if (values[index] != null) {
+                                ((PMap.Builder<Object, Object>) containerBuilder(index)).putAll((Map<Object, Object>) from.get(key));
                             } else {
                                 set(key, from.get(key));
                             }
@@ -111,13 +133,14 @@ public class CStruct extends CMessage<CStruct,CField> {
                 throw new IllegalArgumentException("Not a message field ID " + key + ": " + field.getName());
             }
 
-            Object current = values.get(key);
+            int index = descriptor.indexOf(key);
+            Object current = values[index];
             if (current == null) {
                 current = ((PStructDescriptor) field.getDescriptor()).builder();
-                values.put(key, current);
+                values[index] = current;
             } else if (current instanceof PMessage) {
                 current = ((PMessage) current).mutate();
-                values.put(key, current);
+                values[index] = current;
             } else if (!(current instanceof PMessageBuilder)) {
                 // This should in theory not be possible. This is just a safe-guard.
                 throw new IllegalArgumentException("Invalid value in map on message type: " + current.getClass().getSimpleName());
@@ -138,11 +161,10 @@ public class CStruct extends CMessage<CStruct,CField> {
 
         @Override
         public boolean isValid() {
-            for (PField field : descriptor.getFields()) {
-                if (field.getRequirement() == PRequirement.REQUIRED) {
-                    if (!values.containsKey(field.getKey())) {
-                        return false;
-                    }
+            CField[] fields = descriptor.getFields();
+            for (int i = 0; i < fields.length; ++i) {
+                if (fields[i].getRequirement() == PRequirement.REQUIRED && values[i] == null) {
+                    return false;
                 }
             }
 
@@ -152,11 +174,10 @@ public class CStruct extends CMessage<CStruct,CField> {
         @Override
         public void validate() {
             LinkedList<String> missing = new LinkedList<>();
-            for (PField field : descriptor.getFields()) {
-                if (field.getRequirement() == PRequirement.REQUIRED) {
-                    if (!values.containsKey(field.getKey())) {
-                        missing.add(field.getName());
-                    }
+            CField[] fields = descriptor.getFields();
+            for (int i = 0; i < fields.length; ++i) {
+                if (fields[i].getRequirement() == PRequirement.REQUIRED && values[i] == null) {
+                    missing.add(fields[i].getName());
                 }
             }
 
@@ -171,34 +192,35 @@ public class CStruct extends CMessage<CStruct,CField> {
         @Override
         @SuppressWarnings("unchecked")
         public Builder set(int key, Object value) {
-            PField field = descriptor.getField(key);
-            if (field == null) {
+            int index = descriptor.indexOf(key);
+            if (index < 0) {
                 return this; // soft ignoring unsupported fields.
             }
             if (value == null) {
-                values.remove(key);
+                values[index] = null;
             } else {
+                PField field = descriptor.getFields()[index];
                 switch (field.getType()) {
                     case LIST: {
                         PList.Builder builder = ((PList) field.getDescriptor()).builder();
                         builder.addAll((Collection<Object>) value);
-                        values.put(key, builder);
+                        values[index] = builder;
                         break;
                     }
                     case SET: {
                         PSet.Builder builder = ((PSet) field.getDescriptor()).builder();
                         builder.addAll((Collection<Object>) value);
-                        values.put(key, builder);
+                        values[index] = builder;
                         break;
                     }
                     case MAP: {
                         PMap.Builder builder = ((PMap) field.getDescriptor()).builder();
                         builder.putAll((Map<Object, Object>) value);
-                        values.put(key, builder);
+                        values[index] = builder;
                         break;
                     }
                     default:
-                        values.put(key, value);
+                        values[index] = value;
                         break;
                 }
             }
@@ -209,27 +231,16 @@ public class CStruct extends CMessage<CStruct,CField> {
         @Override
         @SuppressWarnings("unchecked")
         public Builder addTo(int key, Object value) {
-            PField field = descriptor.getField(key);
-            if (field == null) {
+            int index = descriptor.indexOf(key);
+            if (index < 0) {
                 return this; // soft ignoring unsupported fields.
             }
             if (value != null) {
+                PField field = descriptor.getFields()[index];
                 if (field.getType() == PType.LIST) {
-                    @SuppressWarnings("unchecked")
-                    PList.Builder<Object> list = (PList.Builder<Object>) values.get(field.getKey());
-                    if (list == null) {
-                        list = ((PList) field.getDescriptor()).builder();
-                        values.put(field.getKey(), list);
-                    }
-                    list.add(value);
+                    ((PList.Builder<Object>) containerBuilder(index)).add(value);
                 } else if (field.getType() == PType.SET) {
-                    @SuppressWarnings("unchecked")
-                    PSet.Builder<Object> set = (PSet.Builder<Object>) values.get(field.getKey());
-                    if (set == null) {
-                        set = ((PSet) field.getDescriptor()).builder();
-                        values.put(field.getKey(), set);
-                    }
-                    set.add(value);
+                    ((PSet.Builder<Object>) containerBuilder(index)).add(value);
                 } else {
                     throw new IllegalArgumentException("Key " + key + " is not a collection: " + field.getType());
                 }
@@ -239,41 +250,75 @@ public class CStruct extends CMessage<CStruct,CField> {
 
         @Override
         public Builder clear(int key) {
-            values.remove(key);
+            int index = descriptor.indexOf(key);
+            if (index >= 0) {
+                values[index] = null;
+            }
             return this;
         }
 
+        @Override
+        public boolean readBinaryField(BinarySerializer serializer, BinaryReader reader, int key, byte type)
+                throws IOException, SerializerException {
+            return descriptor.codec().read(serializer, reader, key, type, values);
+        }
+
+        /**
+         * Get the builder for a container field. Containers read with the
+         * binary codec are kept as the built container until modified.
+         *
+         * @param index The field index.
+         * @return The container builder.
+         */
         @SuppressWarnings("unchecked")
-        private Map<Integer, Object> getValueMap() {
-            ImmutableMap.Builder<Integer, Object> out = ImmutableMap.builder();
-            for (CField field : descriptor.getFields()) {
-                int key = field.getKey();
-                if (values.containsKey(key)) {
-                    switch (field.getType()) {
-                        case SET:
-                            out.put(key, ((PSet.Builder<Object>) values.get(key)).build());
-                            break;
-                        case LIST:
-                            out.put(key, ((PList.Builder<Object>) values.get(key)).build());
-                            break;
-                        case MAP:
-                            out.put(key, ((PMap.Builder<Object, Object>) values.get(key)).build());
-                            break;
-                        case MESSAGE:
-                            Object current = values.get(key);
-                            if (current instanceof PMessageBuilder) {
-                                out.put(key, ((PMessageBuilder) current).build());
-                            } else {
-                                out.put(key, current);
-                            }
-                            break;
-                        default:
-                            out.put(key, values.get(key));
-                            break;
+        private PBuilder<?> containerBuilder(int index) {
+            Object current = values[index];
+            if (current instanceof PBuilder) {
+                return (PBuilder<?>) current;
+            }
+
+            PField field = descriptor.getFields()[index];
+            switch (field.getType()) {
+                case LIST: {
+                    PList.Builder<Object> builder = ((PList<Object>) field.getDescriptor()).builder();
+                    if (current != null) {
+                        builder.addAll((Collection<Object>) current);
+                    }
+                    values[index] = builder;
+                    return builder;
+                }
+                case SET: {
+                    PSet.Builder<Object> builder = ((PSet<Object>) field.getDescriptor()).builder();
+                    if (current != null) {
+                        builder.addAll((Collection<Object>) current);
+                    }
+                    values[index] = builder;
+                    return builder;
+                }
+                case MAP: {
+                    PMap.Builder<Object, Object> builder = ((PMap<Object, Object>) field.getDescriptor()).builder();
+                    if (current != null) {
+                        builder.putAll((Map<Object, Object>) current);
                     }
+                    values[index] = builder;
+                    return builder;
+                }
+                default:
+                    throw new IllegalArgumentException("Not a container field: " + field.getName());
+            }
+        }
+
+        private Object[] getValues() {
+            Object[] out = new Object[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                Object current = values[i];
+                if (current instanceof PBuilder) {
+                    out[i] = ((PBuilder<?>) current).build();
+                } else {
+                    out[i] = current;
                 }
             }
-            return out.build();
+            return out;
         }
     }
 }
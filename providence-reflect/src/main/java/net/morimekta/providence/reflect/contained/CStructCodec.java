@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.reflect.contained;
+
+import net.morimekta.providence.PEnumValue;
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.descriptor.PDescriptor;
+import net.morimekta.providence.descriptor.PEnumDescriptor;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+import net.morimekta.util.Binary;
+import net.morimekta.util.io.BinaryReader;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary codec for contained structs. The codec resolves the type of each
+ * field once, and keeps a typed writer and reader per field, indexed the
+ * same as the struct field values. This way serializing a contained
+ * struct does not need to look up the field and switch on the field type
+ * for each value, which is what makes the generic serializer slow for
+ * contained messages.
+ * <p>
+ * The codec is created once per descriptor, see {@link CStructDescriptor#codec()}.
+ */
+final class CStructCodec {
+    @FunctionalInterface
+    private interface FieldWriter {
+        int write(BinarySerializer serializer, WriteBuffer.BigEndianWriter writer, Object value)
+                throws IOException, SerializerException;
+    }
+
+    @FunctionalInterface
+    private interface FieldReader {
+        Object read(BinarySerializer serializer, BinaryReader reader, byte type)
+                throws IOException, SerializerException;
+    }
+
+    private final CStructDescriptor descriptor;
+    private final int[]             keys;
+    private final byte[]            types;
+    private final FieldWriter[]     writers;
+    private final FieldReader[]     readers;
+
+    CStructCodec(CStructDescriptor descriptor) {
+        CField[] fields = descriptor.getFields();
+
+        this.descriptor = descriptor;
+        this.keys = new int[fields.length];
+        this.types = new byte[fields.length];
+        this.writers = new FieldWriter[fields.length];
+        this.readers = new FieldReader[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            PDescriptor type = fields[i].getDescriptor();
+            keys[i] = fields[i].getKey();
+            types[i] = type.getType().id;
+            writers[i] = writerFor(type);
+            readers[i] = readerFor(type);
+        }
+    }
+
+    /**
+     * Write the set field values.
+     *
+     * @param serializer The serializer used for nested messages and containers.
+     * @param writer The writer to write to.
+     * @param values The field values, indexed as the descriptor fields.
+     * @return The number of bytes written.
+     * @throws IOException If unable to write the values.
+     * @throws SerializerException If unable to serialize a value.
+     */
+    int write(BinarySerializer serializer, WriteBuffer.BigEndianWriter writer, Object[] values)
+            throws IOException, SerializerException {
+        int len = 0;
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i] != null) {
+                len += writer.writeByte(types[i]);
+                len += writer.writeUInt16(keys[i]);
+                len += writers[i].write(serializer, writer, values[i]);
+            }
+        }
+        return len;
+    }
+
+    /**
+     * Read a single field value.
+     *
+     * @param serializer The serializer used for nested messages and containers.
+     * @param reader The reader to read from.
+     * @param key The field key.
+     * @param type The serialized type ID of the field.
+     * @param values The field values to read into, indexed as the descriptor fields.
+     * @return True if the field value was read.
+     * @throws IOException If unable to read the value.
+     * @throws SerializerException If unable to deserialize the value.
+     */
+    boolean read(BinarySerializer serializer, BinaryReader reader, int key, byte type, Object[] values)
+            throws IOException, SerializerException {
+        int index = descriptor.indexOf(key);
+        if (index < 0 || types[index] != type) {
+            return false;
+        }
+        // Unknown enum values are read as null, which clears the field.
+        values[index] = readers[index].read(serializer, reader, type);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FieldWriter writerFor(PDescriptor type) {
+        switch (type.getType()) {
+            case BOOL:
+                return (serializer, writer, value) -> writer.writeByte((Boolean) value ? (byte) 1 : (byte) 0);
+            case BYTE:
+                return (serializer, writer, value) -> writer.writeByte((Byte) value);
+            case I16:
+                return (serializer, writer, value) -> writer.writeShort((Short) value);
+            case I32:
+                return (serializer, writer, value) -> writer.writeInt((Integer) value);
+            case I64:
+                return (serializer, writer, value) -> writer.writeLong((Long) value);
+            case DOUBLE:
+                return (serializer, writer, value) -> writer.writeDouble((Double) value);
+            case STRING:
+                return (serializer, writer, value) -> {
+                    String str = (String) value;
+                    int len = writer.writeUInt32(WriteBuffer.utf8Length(str));
+                    return len + writer.writeUtf8(str);
+                };
+            case BINARY:
+                return (serializer, writer, value) -> {
+                    Binary binary = (Binary) value;
+                    int len = writer.writeUInt32(binary.length());
+                    return len + writer.writeBinary(binary);
+                };
+            case ENUM:
+                return (serializer, writer, value) -> writer.writeInt(((PEnumValue<?>) value).getValue());
+            case MESSAGE:
+                return (serializer, writer, value) -> serializer.writeMessage(writer, (PMessage) value);
+            default:
+                return (serializer, writer, value) -> serializer.writeFieldValue(writer, value, type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FieldReader readerFor(PDescriptor type) {
+        switch (type.getType()) {
+            case BOOL:
+                return (serializer, reader, t) -> reader.expectByte() != 0;
+            case BYTE:
+                return (serializer, reader, t) -> reader.expectByte();
+            case I16:
+                return (serializer, reader, t) -> reader.expectShort();
+            case I32:
+                return (serializer, reader, t) -> reader.expectInt();
+            case I64:
+                return (serializer, reader, t) -> reader.expectLong();
+            case DOUBLE:
+                return (serializer, reader, t) -> reader.expectDouble();
+            case STRING:
+                return (serializer, reader, t) -> new String(reader.expectBytes(reader.expectUInt32()), UTF_8);
+            case BINARY:
+                return (serializer, reader, t) -> Binary.wrap(reader.expectBytes(reader.expectUInt32()));
+            case ENUM: {
+                PEnumDescriptor<?> enumType = (PEnumDescriptor<?>) type;
+                return (serializer, reader, t) -> enumType.getValueById(reader.expectInt());
+            }
+            case MESSAGE: {
+                PStructDescriptor structType = (PStructDescriptor) type;
+                return (serializer, reader, t) -> serializer.readMessage(reader, structType);
+            }
+            default:
+                return (serializer, reader, t) -> serializer.readFieldValue(reader, t, type);
+        }
+    }
+}
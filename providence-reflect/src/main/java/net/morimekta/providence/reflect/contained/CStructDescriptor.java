@@ -39,10 +39,12 @@ public class CStructDescriptor extends PStructDescriptor<CStruct, CField> implem
 
     private final String               comment;
     private final CField[]             fields;
-    private final Map<Integer, CField> fieldIdMap;
+    private final CFieldIndex          fieldIndex;
     private final Map<String, CField>  fieldNameMap;
     private final Map<String, String>  annotations;
 
+    private volatile CStructCodec codec;
+
     public CStructDescriptor(String comment, String packageName, String name, List<CField> fields, Map<String, String> annotations) {
         super(packageName, name, new _Factory(), false,
               // overrides getter to avoid having to check fields types before it's converted.
@@ -53,14 +55,12 @@ public class CStructDescriptor extends PStructDescriptor<CStruct, CField> implem
         this.fields = fields.toArray(new CField[fields.size()]);
         this.annotations = annotations;
 
-        Map<Integer, CField> fieldIdMap = new LinkedHashMap<>();
         Map<String, CField> fieldNameMap = new LinkedHashMap<>();
         for (CField field : fields) {
-            fieldIdMap.put(field.getKey(), field);
             fieldNameMap.put(field.getName(), field);
         }
-        this.fieldIdMap = fieldIdMap;
         this.fieldNameMap = fieldNameMap;
+        this.fieldIndex = new CFieldIndex(this.fields);
     }
 
     @Override
@@ -80,7 +80,32 @@ public class CStructDescriptor extends PStructDescriptor<CStruct, CField> implem
 
     @Override
     public CField getField(int key) {
-        return fieldIdMap.get(key);
+        int index = fieldIndex.indexOf(key);
+        return index < 0 ? null : fields[index];
+    }
+
+    /**
+     * @param key The field key.
+     * @return The index of the field in {@link #getFields()}, or -1 if no
+     *         such field.
+     */
+    int indexOf(int key) {
+        return fieldIndex.indexOf(key);
+    }
+
+    /**
+     * The binary codec is created on first use, as the field types may not
+     * be resolved when the descriptor is created.
+     *
+     * @return The binary codec for the struct.
+     */
+    CStructCodec codec() {
+        CStructCodec result = codec;
+        if (result == null) {
+            result = new CStructCodec(this);
+            codec = result;
+        }
+        return result;
     }
 
     @Override
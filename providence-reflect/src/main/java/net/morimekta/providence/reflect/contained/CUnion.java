@@ -28,8 +28,6 @@ import net.morimekta.providence.descriptor.PMap;
 import net.morimekta.providence.descriptor.PSet;
 import net.morimekta.providence.descriptor.PStructDescriptor;
 
-import com.google.common.collect.ImmutableMap;
-
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -43,7 +41,7 @@ public class CUnion extends CMessage<CUnion,CField> implements PUnion<CUnion,CFi
     private final CField           unionField;
 
     private CUnion(Builder builder) {
-        super(builder.getValueMap());
+        super(builder.getValues(), builder.getUnknownFields());
         this.unionField = builder.unionField;
         this.descriptor = builder.descriptor;
     }
@@ -58,6 +56,11 @@ public class CUnion extends CMessage<CUnion,CField> implements PUnion<CUnion,CFi
         return descriptor;
     }
 
+    @Override
+    int indexOf(int key) {
+        return descriptor.indexOf(key);
+    }
+
     @Override
     public CField unionField() {
         return unionField;
@@ -73,27 +76,35 @@ public class CUnion extends CMessage<CUnion,CField> implements PUnion<CUnion,CFi
             this.descriptor = descriptor;
         }
 
-        private Map<Integer, Object> getValueMap() {
+        private Object[] getValues() {
+            Object[] values = new Object[descriptor.getFields().length];
             if (unionField == null) {
-                return ImmutableMap.of();
+                return values;
             } else if (currentValue == null) {
                 throw new IllegalStateException("Union field set, but value is null.");
-            } else {
-                switch (unionField.getType()) {
-                    case LIST:
-                        return ImmutableMap.of(unionField.getKey(), ((PList.Builder) this.currentValue).build());
-                    case SET:
-                        return ImmutableMap.of(unionField.getKey(), ((PSet.Builder) this.currentValue).build());
-                    case MAP:
-                        return ImmutableMap.of(unionField.getKey(), ((PMap.Builder) this.currentValue).build());
-                    case MESSAGE:
-                        if (currentValue instanceof PMessageBuilder) {
-                            return ImmutableMap.of(unionField.getKey(), ((PMessageBuilder) currentValue).build());
-                        }
-                    default:
-                        return ImmutableMap.of(unionField.getKey(), this.currentValue);
-                }
             }
+
+            int index = descriptor.indexOf(unionField.getKey());
+            switch (unionField.getType()) {
+                case LIST:
+                    values[index] = ((PList.Builder) this.currentValue).build();
+                    break;
+                case SET:
+                    values[index] = ((PSet.Builder) this.currentValue).build();
+                    break;
+                case MAP:
+                    values[index] = ((PMap.Builder) this.currentValue).build();
+                    break;
+                case MESSAGE:
+                    if (currentValue instanceof PMessageBuilder) {
+                        values[index] = ((PMessageBuilder) currentValue).build();
+                        break;
+                    }
+                default:
+                    values[index] = this.currentValue;
+                    break;
+            }
+            return values;
         }
 
         @Override
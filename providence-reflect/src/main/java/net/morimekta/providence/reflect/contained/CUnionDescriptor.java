@@ -36,7 +36,7 @@ import java.util.Set;
  */
 public class CUnionDescriptor extends PUnionDescriptor<CUnion, CField> implements CAnnotatedDescriptor {
     private final CField[]             fields;
-    private final Map<Integer, CField> fieldIdMap;
+    private final CFieldIndex          fieldIndex;
     private final Map<String, CField>  fieldNameMap;
     private final Map<String, String>  annotations;
     private final String               comment;
@@ -56,14 +56,12 @@ public class CUnionDescriptor extends PUnionDescriptor<CUnion, CField> implement
         this.fields = fields.toArray(new CField[fields.size()]);
         this.annotations = annotations;
 
-        Map<Integer, CField> fieldIdMap = new LinkedHashMap<>();
         Map<String, CField> fieldNameMap = new LinkedHashMap<>();
         for (CField field : fields) {
-            fieldIdMap.put(field.getKey(), field);
             fieldNameMap.put(field.getName(), field);
         }
-        this.fieldIdMap = fieldIdMap;
         this.fieldNameMap = fieldNameMap;
+        this.fieldIndex = new CFieldIndex(this.fields);
     }
 
     @Override
@@ -83,7 +81,17 @@ public class CUnionDescriptor extends PUnionDescriptor<CUnion, CField> implement
 
     @Override
     public CField getField(int key) {
-        return fieldIdMap.get(key);
+        int index = fieldIndex.indexOf(key);
+        return index < 0 ? null : fields[index];
+    }
+
+    /**
+     * @param key The field key.
+     * @return The index of the field in {@link #getFields()}, or -1 if no
+     *         such field.
+     */
+    int indexOf(int key) {
+        return fieldIndex.indexOf(key);
     }
 
     @Override
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.reflect.util;
+
+import net.morimekta.providence.model.ThriftDocument;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A bundle of parsed thrift documents. The bundle keeps the parsed
+ * {@link ThriftDocument} model of each document, so the documents can be
+ * loaded without parsing the thrift files. Each entry also has a hash of
+ * the thrift source it was parsed from, so a stale bundle can be detected.
+ * <p>
+ * The documents are kept in dependency order, so each document can be
+ * converted after all the documents it includes.
+ * <p>
+ * Format:
+ * <pre>
+ * bundle   = magic:i32 version:i32 count:i32 entry*
+ * entry    = path:utf hash-len:u16 hash:byte* doc-len:i32 document:byte*
+ * </pre>
+ * Where the document is serialized with the {@link BinarySerializer}.
+ */
+public class DocumentBundle {
+    /**
+     * A single document in the bundle.
+     */
+    public static class Entry {
+        private final String         path;
+        private final byte[]         sourceHash;
+        private final ThriftDocument document;
+
+        public Entry(String path, byte[] sourceHash, ThriftDocument document) {
+            this.path = path;
+            this.sourceHash = sourceHash;
+            this.document = document;
+        }
+
+        /**
+         * @return The path of the thrift source file.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return The hash of the thrift source file content.
+         */
+        public byte[] getSourceHash() {
+            return sourceHash;
+        }
+
+        /**
+         * @return The parsed document.
+         */
+        public ThriftDocument getDocument() {
+            return document;
+        }
+
+        /**
+         * @param content The current source file content.
+         * @return True if the entry was made from the same content.
+         */
+        public boolean matchesSource(byte[] content) {
+            return Arrays.equals(sourceHash, hash(content));
+        }
+    }
+
+    private static final int MAGIC   = 0x50564442;  // "PVDB"
+    private static final int VERSION = 1;
+    // Limits for values read from the bundle, so a corrupt bundle is
+    // rejected instead of making huge allocations.
+    private static final int MAX_DOCUMENTS     = 1 << 16;
+    private static final int MAX_DOCUMENT_SIZE = 1 << 26;  // 64M.
+    private static final int INITIAL_CAPACITY  = 64;
+
+    private final List<Entry> entries;
+
+    public DocumentBundle(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * @return The bundle entries in dependency order.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Write the bundle to the output stream.
+     *
+     * @param out The stream to write to.
+     * @throws IOException If unable to write the bundle.
+     */
+    public void write(OutputStream out) throws IOException {
+        Serializer serializer = new BinarySerializer();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(entries.size());
+        for (Entry entry : entries) {
+            buffer.reset();
+            try {
+                serializer.serialize(buffer, entry.getDocument());
+            } catch (SerializerException e) {
+                throw new IOException("Unable to serialize " + entry.getPath() + ": " + e.getMessage(), e);
+            }
+
+            data.writeUTF(entry.getPath());
+            data.writeShort(entry.getSourceHash().length);
+            data.write(entry.getSourceHash());
+            data.writeInt(buffer.size());
+            buffer.writeTo(data);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read a bundle from the input stream.
+     *
+     * @param in The stream to read from.
+     * @return The read bundle.
+     * @throws IOException If unable to read the bundle, or it is not a
+     *         valid bundle.
+     */
+    public static DocumentBundle read(InputStream in) throws IOException {
+        Serializer serializer = new BinarySerializer();
+        DataInputStream data = new DataInputStream(in);
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a providence document bundle");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported document bundle version " + version);
+        }
+
+        int count = data.readInt();
+        if (count < 0 || count > MAX_DOCUMENTS) {
+            throw new IOException("Invalid document count " + count + " in bundle");
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(count, INITIAL_CAPACITY));
+        for (int i = 0; i < count; ++i) {
+            String path = data.readUTF();
+            byte[] hash = new byte[data.readUnsignedShort()];
+            data.readFully(hash);
+            int length = data.readInt();
+            if (length < 0 || length > MAX_DOCUMENT_SIZE) {
+                throw new IOException("Invalid document size " + length + " for " + path + " in bundle");
+            }
+            byte[] document = new byte[length];
+            data.readFully(document);
+
+            try {
+                entries.add(new Entry(path, hash, serializer.deserialize(new ByteArrayInputStream(document),
+                                                                         ThriftDocument.kDescriptor)));
+            } catch (SerializerException | RuntimeException e) {
+                throw new IOException("Unable to deserialize " + path + ": " + e.getMessage(), e);
+            }
+        }
+        return new DocumentBundle(entries);
+    }
+
+    /**
+     * @param content The thrift source content.
+     * @return The hash of the content.
+     */
+    public static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be present on all java platforms.
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+}
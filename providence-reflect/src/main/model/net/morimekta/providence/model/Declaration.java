@@ -3,39 +3,43 @@ package net.morimekta.providence.model;
 /**
  * ( &lt;enum&gt; | &lt;typedef&gt; | &lt;struct&gt; | &lt;service&gt; | &lt;const&gt; )
  */
-@SuppressWarnings("unused")
+@SuppressWarnings({"unused", "unchecked"})
 public class Declaration
         implements net.morimekta.providence.PUnion<Declaration,Declaration._Field>, java.io.Serializable, Comparable<Declaration> {
-    private final static long serialVersionUID = -6998763195276182553L;
-
-    private final net.morimekta.providence.model.EnumType mDeclEnum;
-    private final net.morimekta.providence.model.TypedefType mDeclTypedef;
-    private final net.morimekta.providence.model.StructType mDeclStruct;
-    private final net.morimekta.providence.model.ServiceType mDeclService;
-    private final net.morimekta.providence.model.ThriftField mDeclConst;
+    private final static long serialVersionUID = 1915963025655895115L;
 
+    private final Object tUnionValue;
     private final _Field tUnionField;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private Declaration(_Builder builder) {
         tUnionField = builder.tUnionField;
 
-        mDeclEnum = tUnionField != _Field.DECL_ENUM
-                ? null
-                : builder.mDeclEnum_builder != null ? builder.mDeclEnum_builder.build() : builder.mDeclEnum;
-        mDeclTypedef = tUnionField != _Field.DECL_TYPEDEF
-                ? null
-                : builder.mDeclTypedef_builder != null ? builder.mDeclTypedef_builder.build() : builder.mDeclTypedef;
-        mDeclStruct = tUnionField != _Field.DECL_STRUCT
-                ? null
-                : builder.mDeclStruct_builder != null ? builder.mDeclStruct_builder.build() : builder.mDeclStruct;
-        mDeclService = tUnionField != _Field.DECL_SERVICE
-                ? null
-                : builder.mDeclService_builder != null ? builder.mDeclService_builder.build() : builder.mDeclService;
-        mDeclConst = tUnionField != _Field.DECL_CONST
-                ? null
-                : builder.mDeclConst_builder != null ? builder.mDeclConst_builder.build() : builder.mDeclConst;
+        Object _value = null;
+        if (tUnionField != null) {
+            switch (tUnionField) {
+                case DECL_ENUM:
+                    _value = builder.mDeclEnum_builder != null ? builder.mDeclEnum_builder.build() : builder.mDeclEnum;
+                    break;
+                case DECL_TYPEDEF:
+                    _value = builder.mDeclTypedef_builder != null ? builder.mDeclTypedef_builder.build() : builder.mDeclTypedef;
+                    break;
+                case DECL_STRUCT:
+                    _value = builder.mDeclStruct_builder != null ? builder.mDeclStruct_builder.build() : builder.mDeclStruct;
+                    break;
+                case DECL_SERVICE:
+                    _value = builder.mDeclService_builder != null ? builder.mDeclService_builder.build() : builder.mDeclService;
+                    break;
+                case DECL_CONST:
+                    _value = builder.mDeclConst_builder != null ? builder.mDeclConst_builder.build() : builder.mDeclConst;
+                    break;
+            }
+        }
+        tUnionValue = _value;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     /**
@@ -79,58 +83,58 @@ public class Declaration
     }
 
     public boolean hasDeclEnum() {
-        return tUnionField == _Field.DECL_ENUM && mDeclEnum != null;
+        return tUnionField == _Field.DECL_ENUM && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.providence.model.EnumType getDeclEnum() {
-        return mDeclEnum;
+        return hasDeclEnum() ? (net.morimekta.providence.model.EnumType) tUnionValue : null;
     }
 
     public boolean hasDeclTypedef() {
-        return tUnionField == _Field.DECL_TYPEDEF && mDeclTypedef != null;
+        return tUnionField == _Field.DECL_TYPEDEF && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.providence.model.TypedefType getDeclTypedef() {
-        return mDeclTypedef;
+        return hasDeclTypedef() ? (net.morimekta.providence.model.TypedefType) tUnionValue : null;
     }
 
     public boolean hasDeclStruct() {
-        return tUnionField == _Field.DECL_STRUCT && mDeclStruct != null;
+        return tUnionField == _Field.DECL_STRUCT && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.providence.model.StructType getDeclStruct() {
-        return mDeclStruct;
+        return hasDeclStruct() ? (net.morimekta.providence.model.StructType) tUnionValue : null;
     }
 
     public boolean hasDeclService() {
-        return tUnionField == _Field.DECL_SERVICE && mDeclService != null;
+        return tUnionField == _Field.DECL_SERVICE && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.providence.model.ServiceType getDeclService() {
-        return mDeclService;
+        return hasDeclService() ? (net.morimekta.providence.model.ServiceType) tUnionValue : null;
     }
 
     public boolean hasDeclConst() {
-        return tUnionField == _Field.DECL_CONST && mDeclConst != null;
+        return tUnionField == _Field.DECL_CONST && tUnionValue != null;
     }
 
     /**
      * @return The field value
      */
     public net.morimekta.providence.model.ThriftField getDeclConst() {
-        return mDeclConst;
+        return hasDeclConst() ? (net.morimekta.providence.model.ThriftField) tUnionValue : null;
     }
 
     @Override
@@ -138,6 +142,11 @@ public class Declaration
         return tUnionField;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -185,23 +194,43 @@ public class Declaration
         if (o == null || !(o instanceof Declaration)) return false;
         Declaration other = (Declaration) o;
         return java.util.Objects.equals(tUnionField, other.tUnionField) &&
-               java.util.Objects.equals(mDeclEnum, other.mDeclEnum) &&
-               java.util.Objects.equals(mDeclTypedef, other.mDeclTypedef) &&
-               java.util.Objects.equals(mDeclStruct, other.mDeclStruct) &&
-               java.util.Objects.equals(mDeclService, other.mDeclService) &&
-               java.util.Objects.equals(mDeclConst, other.mDeclConst);
+               java.util.Objects.equals(tUnionValue, other.tUnionValue);
     }
 
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    Declaration.class,
-                    _Field.DECL_ENUM, mDeclEnum,
-                    _Field.DECL_TYPEDEF, mDeclTypedef,
-                    _Field.DECL_STRUCT, mDeclStruct,
-                    _Field.DECL_SERVICE, mDeclService,
-                    _Field.DECL_CONST, mDeclConst);
+            int _hash = 0x487c5a15;
+            if (tUnionField != null) {
+                switch (tUnionField) {
+                    case DECL_ENUM:
+                        if (getDeclEnum() != null) {
+                            _hash = 31 * _hash + (0x92ca2f0e ^ getDeclEnum().hashCode());
+                        }
+                        break;
+                    case DECL_TYPEDEF:
+                        if (getDeclTypedef() != null) {
+                            _hash = 31 * _hash + (0x3cd6e3f3 ^ getDeclTypedef().hashCode());
+                        }
+                        break;
+                    case DECL_STRUCT:
+                        if (getDeclStruct() != null) {
+                            _hash = 31 * _hash + (0x1b147dcc ^ getDeclStruct().hashCode());
+                        }
+                        break;
+                    case DECL_SERVICE:
+                        if (getDeclService() != null) {
+                            _hash = 31 * _hash + (0x4c081dbf ^ getDeclService().hashCode());
+                        }
+                        break;
+                    case DECL_CONST:
+                        if (getDeclConst() != null) {
+                            _hash = 31 * _hash + (0x487981ab ^ getDeclConst().hashCode());
+                        }
+                        break;
+                }
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -219,27 +248,27 @@ public class Declaration
         switch (tUnionField) {
             case DECL_ENUM: {
                 out.append("decl_enum:")
-                   .append(mDeclEnum.asString());
+                   .append(getDeclEnum().asString());
                 break;
             }
             case DECL_TYPEDEF: {
                 out.append("decl_typedef:")
-                   .append(mDeclTypedef.asString());
+                   .append(getDeclTypedef().asString());
                 break;
             }
             case DECL_STRUCT: {
                 out.append("decl_struct:")
-                   .append(mDeclStruct.asString());
+                   .append(getDeclStruct().asString());
                 break;
             }
             case DECL_SERVICE: {
                 out.append("decl_service:")
-                   .append(mDeclService.asString());
+                   .append(getDeclService().asString());
                 break;
             }
             case DECL_CONST: {
                 out.append("decl_const:")
-                   .append(mDeclConst.asString());
+                   .append(getDeclConst().asString());
                 break;
             }
         }
@@ -254,15 +283,15 @@ public class Declaration
 
         switch (tUnionField) {
             case DECL_ENUM:
-                return mDeclEnum.compareTo(other.mDeclEnum);
+                return getDeclEnum().compareTo(other.getDeclEnum());
             case DECL_TYPEDEF:
-                return mDeclTypedef.compareTo(other.mDeclTypedef);
+                return getDeclTypedef().compareTo(other.getDeclTypedef());
             case DECL_STRUCT:
-                return mDeclStruct.compareTo(other.mDeclStruct);
+                return getDeclStruct().compareTo(other.getDeclStruct());
             case DECL_SERVICE:
-                return mDeclService.compareTo(other.mDeclService);
+                return getDeclService().compareTo(other.getDeclService());
             case DECL_CONST:
-                return mDeclConst.compareTo(other.mDeclConst);
+                return getDeclConst().compareTo(other.getDeclConst());
             default: return 0;
         }
     }
@@ -433,11 +462,23 @@ public class Declaration
 
             tUnionField = base.tUnionField;
 
-            mDeclEnum = base.mDeclEnum;
-            mDeclTypedef = base.mDeclTypedef;
-            mDeclStruct = base.mDeclStruct;
-            mDeclService = base.mDeclService;
-            mDeclConst = base.mDeclConst;
+            if (tUnionField == _Field.DECL_ENUM) {
+                mDeclEnum = base.getDeclEnum();
+            }
+            if (tUnionField == _Field.DECL_TYPEDEF) {
+                mDeclTypedef = base.getDeclTypedef();
+            }
+            if (tUnionField == _Field.DECL_STRUCT) {
+                mDeclStruct = base.getDeclStruct();
+            }
+            if (tUnionField == _Field.DECL_SERVICE) {
+                mDeclService = base.getDeclService();
+            }
+            if (tUnionField == _Field.DECL_CONST) {
+                mDeclConst = base.getDeclConst();
+            }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
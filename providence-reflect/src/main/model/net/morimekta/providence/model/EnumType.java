@@ -15,6 +15,7 @@ public class EnumType
     private final java.util.List<net.morimekta.providence.model.EnumValue> mValues;
     private final java.util.Map<String,String> mAnnotations;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private EnumType(_Builder builder) {
@@ -30,6 +31,8 @@ public class EnumType
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public EnumType(String pComment,
@@ -48,6 +51,8 @@ public class EnumType
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -102,6 +107,11 @@ public class EnumType
         return mAnnotations;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -154,12 +164,20 @@ public class EnumType
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    EnumType.class,
-                    _Field.COMMENT, mComment,
-                    _Field.NAME, mName,
-                    _Field.VALUES, mValues,
-                    _Field.ANNOTATIONS, mAnnotations);
+            int _hash = 0x91930920;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mName.hashCode());
+            }
+            if (mValues != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mValues.hashCode());
+            }
+            if (mAnnotations != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mAnnotations.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -386,8 +404,6 @@ public class EnumType
          */
         public _Builder() {
             optionals = new java.util.BitSet(4);
-            mValues = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -408,12 +424,16 @@ public class EnumType
             }
             if (base.numValues() > 0) {
                 optionals.set(2);
+                mValues = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mValues.addAll(base.mValues);
             }
             if (base.numAnnotations() > 0) {
                 optionals.set(3);
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mAnnotations.putAll(base.mAnnotations);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -430,12 +450,19 @@ public class EnumType
 
             if (from.hasValues()) {
                 optionals.set(2);
-                mValues.clear();
+                if (mValues == null) {
+                    mValues = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mValues.clear();
+                }
                 mValues.addAll(from.getValues());
             }
 
             if (from.hasAnnotations()) {
                 optionals.set(3);
+                if (mAnnotations == null) {
+                    mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mAnnotations.putAll(from.getAnnotations());
             }
             return this;
@@ -513,7 +540,11 @@ public class EnumType
          */
         public _Builder setValues(java.util.Collection<net.morimekta.providence.model.EnumValue> value) {
             optionals.set(2);
-            mValues.clear();
+            if (mValues == null) {
+                mValues = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mValues.clear();
+            }
             mValues.addAll(value);
             return this;
         }
@@ -526,6 +557,9 @@ public class EnumType
          */
         public _Builder addToValues(net.morimekta.providence.model.EnumValue... values) {
             optionals.set(2);
+            if (mValues == null) {
+                mValues = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.providence.model.EnumValue item : values) {
                 mValues.add(item);
             }
@@ -548,7 +582,7 @@ public class EnumType
          */
         public _Builder clearValues() {
             optionals.clear(2);
-            mValues.clear();
+            mValues = null;
             return this;
         }
 
@@ -559,6 +593,9 @@ public class EnumType
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.providence.model.EnumValue> mutableValues() {
             optionals.set(2);
+            if (mValues == null) {
+                mValues = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mValues;
         }
 
@@ -570,7 +607,11 @@ public class EnumType
          */
         public _Builder setAnnotations(java.util.Map<String,String> value) {
             optionals.set(3);
-            mAnnotations.clear();
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mAnnotations.clear();
+            }
             mAnnotations.putAll(value);
             return this;
         }
@@ -584,6 +625,9 @@ public class EnumType
          */
         public _Builder putInAnnotations(String key, String value) {
             optionals.set(3);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mAnnotations.put(key, value);
             return this;
         }
@@ -604,7 +648,7 @@ public class EnumType
          */
         public _Builder clearAnnotations() {
             optionals.clear(3);
-            mAnnotations.clear();
+            mAnnotations = null;
             return this;
         }
 
@@ -615,6 +659,9 @@ public class EnumType
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableAnnotations() {
             optionals.set(3);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mAnnotations;
         }
 
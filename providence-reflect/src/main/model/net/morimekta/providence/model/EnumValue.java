@@ -15,6 +15,7 @@ public class EnumValue
     private final int mValue;
     private final java.util.Map<String,String> mAnnotations;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private EnumValue(_Builder builder) {
@@ -26,6 +27,8 @@ public class EnumValue
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public EnumValue(String pComment,
@@ -40,6 +43,8 @@ public class EnumValue
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -90,6 +95,11 @@ public class EnumValue
         return mAnnotations;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -135,19 +145,25 @@ public class EnumValue
         EnumValue other = (EnumValue) o;
         return java.util.Objects.equals(mComment, other.mComment) &&
                java.util.Objects.equals(mName, other.mName) &&
-               java.util.Objects.equals(mValue, other.mValue) &&
+               mValue == other.mValue &&
                java.util.Objects.equals(mAnnotations, other.mAnnotations);
     }
 
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    EnumValue.class,
-                    _Field.COMMENT, mComment,
-                    _Field.NAME, mName,
-                    _Field.VALUE, mValue,
-                    _Field.ANNOTATIONS, mAnnotations);
+            int _hash = 0xa0df544b;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mName.hashCode());
+            }
+            _hash = 31 * _hash + (0x1b147dcc ^ Integer.hashCode(mValue));
+            if (mAnnotations != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mAnnotations.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -367,7 +383,6 @@ public class EnumValue
         public _Builder() {
             optionals = new java.util.BitSet(4);
             mValue = kDefaultValue;
-            mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -390,8 +405,11 @@ public class EnumValue
             mValue = base.mValue;
             if (base.numAnnotations() > 0) {
                 optionals.set(3);
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mAnnotations.putAll(base.mAnnotations);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -411,6 +429,9 @@ public class EnumValue
 
             if (from.hasAnnotations()) {
                 optionals.set(3);
+                if (mAnnotations == null) {
+                    mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mAnnotations.putAll(from.getAnnotations());
             }
             return this;
@@ -520,7 +541,11 @@ public class EnumValue
          */
         public _Builder setAnnotations(java.util.Map<String,String> value) {
             optionals.set(3);
-            mAnnotations.clear();
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mAnnotations.clear();
+            }
             mAnnotations.putAll(value);
             return this;
         }
@@ -534,6 +559,9 @@ public class EnumValue
          */
         public _Builder putInAnnotations(String key, String value) {
             optionals.set(3);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mAnnotations.put(key, value);
             return this;
         }
@@ -554,7 +582,7 @@ public class EnumValue
          */
         public _Builder clearAnnotations() {
             optionals.clear(3);
-            mAnnotations.clear();
+            mAnnotations = null;
             return this;
         }
 
@@ -565,6 +593,9 @@ public class EnumValue
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableAnnotations() {
             optionals.set(3);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mAnnotations;
         }
 
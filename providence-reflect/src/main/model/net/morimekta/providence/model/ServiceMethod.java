@@ -18,6 +18,7 @@ public class ServiceMethod
     private final java.util.List<net.morimekta.providence.model.ThriftField> mExceptions;
     private final java.util.Map<String,String> mAnnotations;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private ServiceMethod(_Builder builder) {
@@ -40,6 +41,8 @@ public class ServiceMethod
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public ServiceMethod(String pComment,
@@ -68,6 +71,8 @@ public class ServiceMethod
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -159,6 +164,11 @@ public class ServiceMethod
         return mAnnotations;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -212,7 +222,7 @@ public class ServiceMethod
         if (o == null || !(o instanceof ServiceMethod)) return false;
         ServiceMethod other = (ServiceMethod) o;
         return java.util.Objects.equals(mComment, other.mComment) &&
-               java.util.Objects.equals(mOneWay, other.mOneWay) &&
+               mOneWay == other.mOneWay &&
                java.util.Objects.equals(mReturnType, other.mReturnType) &&
                java.util.Objects.equals(mName, other.mName) &&
                java.util.Objects.equals(mParams, other.mParams) &&
@@ -223,15 +233,27 @@ public class ServiceMethod
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    ServiceMethod.class,
-                    _Field.COMMENT, mComment,
-                    _Field.ONE_WAY, mOneWay,
-                    _Field.RETURN_TYPE, mReturnType,
-                    _Field.NAME, mName,
-                    _Field.PARAMS, mParams,
-                    _Field.EXCEPTIONS, mExceptions,
-                    _Field.ANNOTATIONS, mAnnotations);
+            int _hash = 0x758811d1;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            _hash = 31 * _hash + (0x3cd6e3f3 ^ Boolean.hashCode(mOneWay));
+            if (mReturnType != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mReturnType.hashCode());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mName.hashCode());
+            }
+            if (mParams != null) {
+                _hash = 31 * _hash + (0x487981ab ^ mParams.hashCode());
+            }
+            if (mExceptions != null) {
+                _hash = 31 * _hash + (0xdb408c9d ^ mExceptions.hashCode());
+            }
+            if (mAnnotations != null) {
+                _hash = 31 * _hash + (0x78bc1b8f ^ mAnnotations.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -500,9 +522,6 @@ public class ServiceMethod
         public _Builder() {
             optionals = new java.util.BitSet(7);
             mOneWay = kDefaultOneWay;
-            mParams = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mExceptions = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -529,16 +548,21 @@ public class ServiceMethod
             }
             if (base.numParams() > 0) {
                 optionals.set(4);
+                mParams = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mParams.addAll(base.mParams);
             }
             if (base.numExceptions() > 0) {
                 optionals.set(5);
+                mExceptions = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mExceptions.addAll(base.mExceptions);
             }
             if (base.numAnnotations() > 0) {
                 optionals.set(6);
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mAnnotations.putAll(base.mAnnotations);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -563,18 +587,29 @@ public class ServiceMethod
 
             if (from.hasParams()) {
                 optionals.set(4);
-                mParams.clear();
+                if (mParams == null) {
+                    mParams = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mParams.clear();
+                }
                 mParams.addAll(from.getParams());
             }
 
             if (from.hasExceptions()) {
                 optionals.set(5);
-                mExceptions.clear();
+                if (mExceptions == null) {
+                    mExceptions = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mExceptions.clear();
+                }
                 mExceptions.addAll(from.getExceptions());
             }
 
             if (from.hasAnnotations()) {
                 optionals.set(6);
+                if (mAnnotations == null) {
+                    mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mAnnotations.putAll(from.getAnnotations());
             }
             return this;
@@ -716,7 +751,11 @@ public class ServiceMethod
          */
         public _Builder setParams(java.util.Collection<net.morimekta.providence.model.ThriftField> value) {
             optionals.set(4);
-            mParams.clear();
+            if (mParams == null) {
+                mParams = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mParams.clear();
+            }
             mParams.addAll(value);
             return this;
         }
@@ -729,6 +768,9 @@ public class ServiceMethod
          */
         public _Builder addToParams(net.morimekta.providence.model.ThriftField... values) {
             optionals.set(4);
+            if (mParams == null) {
+                mParams = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.providence.model.ThriftField item : values) {
                 mParams.add(item);
             }
@@ -751,7 +793,7 @@ public class ServiceMethod
          */
         public _Builder clearParams() {
             optionals.clear(4);
-            mParams.clear();
+            mParams = null;
             return this;
         }
 
@@ -762,6 +804,9 @@ public class ServiceMethod
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.providence.model.ThriftField> mutableParams() {
             optionals.set(4);
+            if (mParams == null) {
+                mParams = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mParams;
         }
 
@@ -773,7 +818,11 @@ public class ServiceMethod
          */
         public _Builder setExceptions(java.util.Collection<net.morimekta.providence.model.ThriftField> value) {
             optionals.set(5);
-            mExceptions.clear();
+            if (mExceptions == null) {
+                mExceptions = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mExceptions.clear();
+            }
             mExceptions.addAll(value);
             return this;
         }
@@ -786,6 +835,9 @@ public class ServiceMethod
          */
         public _Builder addToExceptions(net.morimekta.providence.model.ThriftField... values) {
             optionals.set(5);
+            if (mExceptions == null) {
+                mExceptions = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.providence.model.ThriftField item : values) {
                 mExceptions.add(item);
             }
@@ -808,7 +860,7 @@ public class ServiceMethod
          */
         public _Builder clearExceptions() {
             optionals.clear(5);
-            mExceptions.clear();
+            mExceptions = null;
             return this;
         }
 
@@ -819,6 +871,9 @@ public class ServiceMethod
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.providence.model.ThriftField> mutableExceptions() {
             optionals.set(5);
+            if (mExceptions == null) {
+                mExceptions = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mExceptions;
         }
 
@@ -830,7 +885,11 @@ public class ServiceMethod
          */
         public _Builder setAnnotations(java.util.Map<String,String> value) {
             optionals.set(6);
-            mAnnotations.clear();
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mAnnotations.clear();
+            }
             mAnnotations.putAll(value);
             return this;
         }
@@ -844,6 +903,9 @@ public class ServiceMethod
          */
         public _Builder putInAnnotations(String key, String value) {
             optionals.set(6);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mAnnotations.put(key, value);
             return this;
         }
@@ -864,7 +926,7 @@ public class ServiceMethod
          */
         public _Builder clearAnnotations() {
             optionals.clear(6);
-            mAnnotations.clear();
+            mAnnotations = null;
             return this;
         }
 
@@ -875,6 +937,9 @@ public class ServiceMethod
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableAnnotations() {
             optionals.set(6);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mAnnotations;
         }
 
@@ -16,6 +16,7 @@ public class ServiceType
     private final java.util.List<net.morimekta.providence.model.ServiceMethod> mMethods;
     private final java.util.Map<String,String> mAnnotations;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private ServiceType(_Builder builder) {
@@ -32,6 +33,8 @@ public class ServiceType
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public ServiceType(String pComment,
@@ -52,6 +55,8 @@ public class ServiceType
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -117,6 +122,11 @@ public class ServiceType
         return mAnnotations;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -173,13 +183,23 @@ public class ServiceType
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    ServiceType.class,
-                    _Field.COMMENT, mComment,
-                    _Field.NAME, mName,
-                    _Field.EXTEND, mExtend,
-                    _Field.METHODS, mMethods,
-                    _Field.ANNOTATIONS, mAnnotations);
+            int _hash = 0x4e744c2a;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mName.hashCode());
+            }
+            if (mExtend != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mExtend.hashCode());
+            }
+            if (mMethods != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mMethods.hashCode());
+            }
+            if (mAnnotations != null) {
+                _hash = 31 * _hash + (0x487981ab ^ mAnnotations.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -425,8 +445,6 @@ public class ServiceType
          */
         public _Builder() {
             optionals = new java.util.BitSet(5);
-            mMethods = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -451,12 +469,16 @@ public class ServiceType
             }
             if (base.numMethods() > 0) {
                 optionals.set(3);
+                mMethods = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mMethods.addAll(base.mMethods);
             }
             if (base.numAnnotations() > 0) {
                 optionals.set(4);
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mAnnotations.putAll(base.mAnnotations);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -478,12 +500,19 @@ public class ServiceType
 
             if (from.hasMethods()) {
                 optionals.set(3);
-                mMethods.clear();
+                if (mMethods == null) {
+                    mMethods = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mMethods.clear();
+                }
                 mMethods.addAll(from.getMethods());
             }
 
             if (from.hasAnnotations()) {
                 optionals.set(4);
+                if (mAnnotations == null) {
+                    mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mAnnotations.putAll(from.getAnnotations());
             }
             return this;
@@ -593,7 +622,11 @@ public class ServiceType
          */
         public _Builder setMethods(java.util.Collection<net.morimekta.providence.model.ServiceMethod> value) {
             optionals.set(3);
-            mMethods.clear();
+            if (mMethods == null) {
+                mMethods = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mMethods.clear();
+            }
             mMethods.addAll(value);
             return this;
         }
@@ -606,6 +639,9 @@ public class ServiceType
          */
         public _Builder addToMethods(net.morimekta.providence.model.ServiceMethod... values) {
             optionals.set(3);
+            if (mMethods == null) {
+                mMethods = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.providence.model.ServiceMethod item : values) {
                 mMethods.add(item);
             }
@@ -628,7 +664,7 @@ public class ServiceType
          */
         public _Builder clearMethods() {
             optionals.clear(3);
-            mMethods.clear();
+            mMethods = null;
             return this;
         }
 
@@ -639,6 +675,9 @@ public class ServiceType
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.providence.model.ServiceMethod> mutableMethods() {
             optionals.set(3);
+            if (mMethods == null) {
+                mMethods = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mMethods;
         }
 
@@ -650,7 +689,11 @@ public class ServiceType
          */
         public _Builder setAnnotations(java.util.Map<String,String> value) {
             optionals.set(4);
-            mAnnotations.clear();
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mAnnotations.clear();
+            }
             mAnnotations.putAll(value);
             return this;
         }
@@ -664,6 +707,9 @@ public class ServiceType
          */
         public _Builder putInAnnotations(String key, String value) {
             optionals.set(4);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mAnnotations.put(key, value);
             return this;
         }
@@ -684,7 +730,7 @@ public class ServiceType
          */
         public _Builder clearAnnotations() {
             optionals.clear(4);
-            mAnnotations.clear();
+            mAnnotations = null;
             return this;
         }
 
@@ -695,6 +741,9 @@ public class ServiceType
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableAnnotations() {
             optionals.set(4);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mAnnotations;
         }
 
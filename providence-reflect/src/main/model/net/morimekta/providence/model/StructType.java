@@ -18,6 +18,7 @@ public class StructType
     private final java.util.List<net.morimekta.providence.model.ThriftField> mFields;
     private final java.util.Map<String,String> mAnnotations;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private StructType(_Builder builder) {
@@ -34,6 +35,8 @@ public class StructType
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public StructType(String pComment,
@@ -54,6 +57,8 @@ public class StructType
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -119,6 +124,11 @@ public class StructType
         return mAnnotations;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -175,13 +185,23 @@ public class StructType
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    StructType.class,
-                    _Field.COMMENT, mComment,
-                    _Field.VARIANT, mVariant,
-                    _Field.NAME, mName,
-                    _Field.FIELDS, mFields,
-                    _Field.ANNOTATIONS, mAnnotations);
+            int _hash = 0xd76838b4;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            if (mVariant != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mVariant.getValue());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mName.hashCode());
+            }
+            if (mFields != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mFields.hashCode());
+            }
+            if (mAnnotations != null) {
+                _hash = 31 * _hash + (0x487981ab ^ mAnnotations.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -425,8 +445,6 @@ public class StructType
          */
         public _Builder() {
             optionals = new java.util.BitSet(5);
-            mFields = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -451,12 +469,16 @@ public class StructType
             }
             if (base.numFields() > 0) {
                 optionals.set(3);
+                mFields = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mFields.addAll(base.mFields);
             }
             if (base.numAnnotations() > 0) {
                 optionals.set(4);
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mAnnotations.putAll(base.mAnnotations);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -478,12 +500,19 @@ public class StructType
 
             if (from.hasFields()) {
                 optionals.set(3);
-                mFields.clear();
+                if (mFields == null) {
+                    mFields = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mFields.clear();
+                }
                 mFields.addAll(from.getFields());
             }
 
             if (from.hasAnnotations()) {
                 optionals.set(4);
+                if (mAnnotations == null) {
+                    mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mAnnotations.putAll(from.getAnnotations());
             }
             return this;
@@ -593,7 +622,11 @@ public class StructType
          */
         public _Builder setFields(java.util.Collection<net.morimekta.providence.model.ThriftField> value) {
             optionals.set(3);
-            mFields.clear();
+            if (mFields == null) {
+                mFields = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mFields.clear();
+            }
             mFields.addAll(value);
             return this;
         }
@@ -606,6 +639,9 @@ public class StructType
          */
         public _Builder addToFields(net.morimekta.providence.model.ThriftField... values) {
             optionals.set(3);
+            if (mFields == null) {
+                mFields = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.providence.model.ThriftField item : values) {
                 mFields.add(item);
             }
@@ -628,7 +664,7 @@ public class StructType
          */
         public _Builder clearFields() {
             optionals.clear(3);
-            mFields.clear();
+            mFields = null;
             return this;
         }
 
@@ -639,6 +675,9 @@ public class StructType
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.providence.model.ThriftField> mutableFields() {
             optionals.set(3);
+            if (mFields == null) {
+                mFields = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mFields;
         }
 
@@ -650,7 +689,11 @@ public class StructType
          */
         public _Builder setAnnotations(java.util.Map<String,String> value) {
             optionals.set(4);
-            mAnnotations.clear();
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mAnnotations.clear();
+            }
             mAnnotations.putAll(value);
             return this;
         }
@@ -664,6 +707,9 @@ public class StructType
          */
         public _Builder putInAnnotations(String key, String value) {
             optionals.set(4);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mAnnotations.put(key, value);
             return this;
         }
@@ -684,7 +730,7 @@ public class StructType
          */
         public _Builder clearAnnotations() {
             optionals.clear(4);
-            mAnnotations.clear();
+            mAnnotations = null;
             return this;
         }
 
@@ -695,6 +741,9 @@ public class StructType
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableAnnotations() {
             optionals.set(4);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mAnnotations;
         }
 
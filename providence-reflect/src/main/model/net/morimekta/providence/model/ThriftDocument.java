@@ -14,6 +14,7 @@ public class ThriftDocument
     private final java.util.Map<String,String> mNamespaces;
     private final java.util.List<net.morimekta.providence.model.Declaration> mDecl;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private ThriftDocument(_Builder builder) {
@@ -34,6 +35,8 @@ public class ThriftDocument
         } else {
             mDecl = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public ThriftDocument(String pComment,
@@ -58,6 +61,8 @@ public class ThriftDocument
         } else {
             mDecl = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -135,6 +140,11 @@ public class ThriftDocument
         return mDecl;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -191,13 +201,23 @@ public class ThriftDocument
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    ThriftDocument.class,
-                    _Field.COMMENT, mComment,
-                    _Field.PACKAGE, mPackage,
-                    _Field.INCLUDES, mIncludes,
-                    _Field.NAMESPACES, mNamespaces,
-                    _Field.DECL, mDecl);
+            int _hash = 0xf4269b79;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            if (mPackage != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mPackage.hashCode());
+            }
+            if (mIncludes != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mIncludes.hashCode());
+            }
+            if (mNamespaces != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mNamespaces.hashCode());
+            }
+            if (mDecl != null) {
+                _hash = 31 * _hash + (0x487981ab ^ mDecl.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -441,9 +461,6 @@ public class ThriftDocument
          */
         public _Builder() {
             optionals = new java.util.BitSet(5);
-            mIncludes = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
-            mNamespaces = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
-            mDecl = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
         }
 
         /**
@@ -464,16 +481,21 @@ public class ThriftDocument
             }
             if (base.numIncludes() > 0) {
                 optionals.set(2);
+                mIncludes = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mIncludes.addAll(base.mIncludes);
             }
             if (base.numNamespaces() > 0) {
                 optionals.set(3);
+                mNamespaces = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mNamespaces.putAll(base.mNamespaces);
             }
             if (base.numDecl() > 0) {
                 optionals.set(4);
+                mDecl = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
                 mDecl.addAll(base.mDecl);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -490,18 +512,29 @@ public class ThriftDocument
 
             if (from.hasIncludes()) {
                 optionals.set(2);
-                mIncludes.clear();
+                if (mIncludes == null) {
+                    mIncludes = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mIncludes.clear();
+                }
                 mIncludes.addAll(from.getIncludes());
             }
 
             if (from.hasNamespaces()) {
                 optionals.set(3);
+                if (mNamespaces == null) {
+                    mNamespaces = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mNamespaces.putAll(from.getNamespaces());
             }
 
             if (from.hasDecl()) {
                 optionals.set(4);
-                mDecl.clear();
+                if (mDecl == null) {
+                    mDecl = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+                } else {
+                    mDecl.clear();
+                }
                 mDecl.addAll(from.getDecl());
             }
             return this;
@@ -593,7 +626,11 @@ public class ThriftDocument
          */
         public _Builder setIncludes(java.util.Collection<String> value) {
             optionals.set(2);
-            mIncludes.clear();
+            if (mIncludes == null) {
+                mIncludes = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mIncludes.clear();
+            }
             mIncludes.addAll(value);
             return this;
         }
@@ -608,6 +645,9 @@ public class ThriftDocument
          */
         public _Builder addToIncludes(String... values) {
             optionals.set(2);
+            if (mIncludes == null) {
+                mIncludes = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (String item : values) {
                 mIncludes.add(item);
             }
@@ -634,7 +674,7 @@ public class ThriftDocument
          */
         public _Builder clearIncludes() {
             optionals.clear(2);
-            mIncludes.clear();
+            mIncludes = null;
             return this;
         }
 
@@ -647,6 +687,9 @@ public class ThriftDocument
          */
         public net.morimekta.providence.descriptor.PList.Builder<String> mutableIncludes() {
             optionals.set(2);
+            if (mIncludes == null) {
+                mIncludes = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mIncludes;
         }
 
@@ -660,7 +703,11 @@ public class ThriftDocument
          */
         public _Builder setNamespaces(java.util.Map<String,String> value) {
             optionals.set(3);
-            mNamespaces.clear();
+            if (mNamespaces == null) {
+                mNamespaces = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mNamespaces.clear();
+            }
             mNamespaces.putAll(value);
             return this;
         }
@@ -676,6 +723,9 @@ public class ThriftDocument
          */
         public _Builder putInNamespaces(String key, String value) {
             optionals.set(3);
+            if (mNamespaces == null) {
+                mNamespaces = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mNamespaces.put(key, value);
             return this;
         }
@@ -700,7 +750,7 @@ public class ThriftDocument
          */
         public _Builder clearNamespaces() {
             optionals.clear(3);
-            mNamespaces.clear();
+            mNamespaces = null;
             return this;
         }
 
@@ -713,6 +763,9 @@ public class ThriftDocument
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableNamespaces() {
             optionals.set(3);
+            if (mNamespaces == null) {
+                mNamespaces = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mNamespaces;
         }
 
@@ -724,7 +777,11 @@ public class ThriftDocument
          */
         public _Builder setDecl(java.util.Collection<net.morimekta.providence.model.Declaration> value) {
             optionals.set(4);
-            mDecl.clear();
+            if (mDecl == null) {
+                mDecl = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            } else {
+                mDecl.clear();
+            }
             mDecl.addAll(value);
             return this;
         }
@@ -737,6 +794,9 @@ public class ThriftDocument
          */
         public _Builder addToDecl(net.morimekta.providence.model.Declaration... values) {
             optionals.set(4);
+            if (mDecl == null) {
+                mDecl = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             for (net.morimekta.providence.model.Declaration item : values) {
                 mDecl.add(item);
             }
@@ -759,7 +819,7 @@ public class ThriftDocument
          */
         public _Builder clearDecl() {
             optionals.clear(4);
-            mDecl.clear();
+            mDecl = null;
             return this;
         }
 
@@ -770,6 +830,9 @@ public class ThriftDocument
          */
         public net.morimekta.providence.descriptor.PList.Builder<net.morimekta.providence.model.Declaration> mutableDecl() {
             optionals.set(4);
+            if (mDecl == null) {
+                mDecl = new net.morimekta.providence.descriptor.PList.ImmutableListBuilder<>();
+            }
             return mDecl;
         }
 
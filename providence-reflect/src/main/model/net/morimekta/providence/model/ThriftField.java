@@ -28,6 +28,7 @@ public class ThriftField
     private final String mDefaultValue;
     private final java.util.Map<String,String> mAnnotations;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private ThriftField(_Builder builder) {
@@ -42,6 +43,8 @@ public class ThriftField
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public ThriftField(String pComment,
@@ -62,6 +65,8 @@ public class ThriftField
         } else {
             mAnnotations = null;
         }
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -145,6 +150,11 @@ public class ThriftField
         return mAnnotations;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -198,7 +208,7 @@ public class ThriftField
         if (o == null || !(o instanceof ThriftField)) return false;
         ThriftField other = (ThriftField) o;
         return java.util.Objects.equals(mComment, other.mComment) &&
-               java.util.Objects.equals(mKey, other.mKey) &&
+               mKey == other.mKey &&
                java.util.Objects.equals(mRequirement, other.mRequirement) &&
                java.util.Objects.equals(mType, other.mType) &&
                java.util.Objects.equals(mName, other.mName) &&
@@ -209,15 +219,27 @@ public class ThriftField
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    ThriftField.class,
-                    _Field.COMMENT, mComment,
-                    _Field.KEY, mKey,
-                    _Field.REQUIREMENT, mRequirement,
-                    _Field.TYPE, mType,
-                    _Field.NAME, mName,
-                    _Field.DEFAULT_VALUE, mDefaultValue,
-                    _Field.ANNOTATIONS, mAnnotations);
+            int _hash = 0xf66a235c;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            _hash = 31 * _hash + (0x3cd6e3f3 ^ Integer.hashCode(mKey));
+            if (mRequirement != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mRequirement.getValue());
+            }
+            if (mType != null) {
+                _hash = 31 * _hash + (0x4c081dbf ^ mType.hashCode());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x487981ab ^ mName.hashCode());
+            }
+            if (mDefaultValue != null) {
+                _hash = 31 * _hash + (0xdb408c9d ^ mDefaultValue.hashCode());
+            }
+            if (mAnnotations != null) {
+                _hash = 31 * _hash + (0x78bc1b8f ^ mAnnotations.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -488,7 +510,6 @@ public class ThriftField
         public _Builder() {
             optionals = new java.util.BitSet(7);
             mKey = kDefaultKey;
-            mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
         }
 
         /**
@@ -523,8 +544,11 @@ public class ThriftField
             }
             if (base.numAnnotations() > 0) {
                 optionals.set(6);
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
                 mAnnotations.putAll(base.mAnnotations);
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
@@ -559,6 +583,9 @@ public class ThriftField
 
             if (from.hasAnnotations()) {
                 optionals.set(6);
+                if (mAnnotations == null) {
+                    mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+                }
                 mAnnotations.putAll(from.getAnnotations());
             }
             return this;
@@ -764,7 +791,11 @@ public class ThriftField
          */
         public _Builder setAnnotations(java.util.Map<String,String> value) {
             optionals.set(6);
-            mAnnotations.clear();
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            } else {
+                mAnnotations.clear();
+            }
             mAnnotations.putAll(value);
             return this;
         }
@@ -778,6 +809,9 @@ public class ThriftField
          */
         public _Builder putInAnnotations(String key, String value) {
             optionals.set(6);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             mAnnotations.put(key, value);
             return this;
         }
@@ -798,7 +832,7 @@ public class ThriftField
          */
         public _Builder clearAnnotations() {
             optionals.clear(6);
-            mAnnotations.clear();
+            mAnnotations = null;
             return this;
         }
 
@@ -809,6 +843,9 @@ public class ThriftField
          */
         public net.morimekta.providence.descriptor.PMap.Builder<String,String> mutableAnnotations() {
             optionals.set(6);
+            if (mAnnotations == null) {
+                mAnnotations = new net.morimekta.providence.descriptor.PMap.ImmutableMapBuilder<>();
+            }
             return mAnnotations;
         }
 
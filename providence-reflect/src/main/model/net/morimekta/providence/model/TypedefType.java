@@ -12,12 +12,15 @@ public class TypedefType
     private final String mType;
     private final String mName;
     
+    private final net.morimekta.providence.PUnknownFields tUnknownFields;
     private volatile int tHashCode;
 
     private TypedefType(_Builder builder) {
         mComment = builder.mComment;
         mType = builder.mType;
         mName = builder.mName;
+
+        tUnknownFields = builder.getUnknownFields();
     }
 
     public TypedefType(String pComment,
@@ -26,6 +29,8 @@ public class TypedefType
         mComment = pComment;
         mType = pType;
         mName = pName;
+
+        tUnknownFields = null;
     }
 
     public boolean hasComment() {
@@ -61,6 +66,11 @@ public class TypedefType
         return mName;
     }
 
+    @Override
+    public net.morimekta.providence.PUnknownFields unknownFields() {
+        return tUnknownFields;
+    }
+
     @Override
     public boolean has(int key) {
         switch(key) {
@@ -109,11 +119,17 @@ public class TypedefType
     @Override
     public int hashCode() {
         if (tHashCode == 0) {
-            tHashCode = java.util.Objects.hash(
-                    TypedefType.class,
-                    _Field.COMMENT, mComment,
-                    _Field.TYPE, mType,
-                    _Field.NAME, mName);
+            int _hash = 0xe5919d00;
+            if (mComment != null) {
+                _hash = 31 * _hash + (0x92ca2f0e ^ mComment.hashCode());
+            }
+            if (mType != null) {
+                _hash = 31 * _hash + (0x3cd6e3f3 ^ mType.hashCode());
+            }
+            if (mName != null) {
+                _hash = 31 * _hash + (0x1b147dcc ^ mName.hashCode());
+            }
+            tHashCode = _hash;
         }
         return tHashCode;
     }
@@ -347,6 +363,8 @@ public class TypedefType
                 optionals.set(2);
                 mName = base.mName;
             }
+
+            setUnknownFields(base.tUnknownFields);
         }
 
         @Override
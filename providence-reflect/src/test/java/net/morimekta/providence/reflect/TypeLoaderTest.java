@@ -19,15 +19,151 @@
 
 package net.morimekta.providence.reflect;
 
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.reflect.parser.ThriftDocumentParser;
+import net.morimekta.providence.reflect.util.DocumentBundle;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Stein Eldar Johnsen
  * @since 12.09.15
  */
 public class TypeLoaderTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void testLoad() {
 
     }
+
+    @Test
+    public void testBundle() throws Exception {
+        File common = tmp.newFile("common.thrift");
+        File service = tmp.newFile("service.thrift");
+        Files.write(common.toPath(), "namespace java common\nstruct Common { 1: i32 id; }\n".getBytes(UTF_8));
+        Files.write(service.toPath(), ("namespace java service\n" +
+                                       "include \"common.thrift\"\n" +
+                                       "struct Request { 1: common.Common common; 2: string name; }\n").getBytes(UTF_8));
+
+        TypeLoader loader = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        loader.load(service);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        loader.toBundle(tmp.getRoot()).write(out);
+        DocumentBundle bundle = DocumentBundle.read(new ByteArrayInputStream(out.toByteArray()));
+
+        // Includes comes first.
+        assertEquals(2, bundle.getEntries().size());
+        assertEquals("common.thrift", bundle.getEntries().get(0).getPath());
+        assertEquals("service.thrift", bundle.getEntries().get(1).getPath());
+
+        TypeLoader bundled = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        assertTrue(bundled.loadBundle(bundle, tmp.getRoot()));
+        PStructDescriptor request = (PStructDescriptor) bundled.getRegistry().getDeclaredType("service.Request");
+        assertEquals("Request", request.getName());
+        assertEquals(2, request.getFields().length);
+
+        // Changing the source makes the bundle stale.
+        Files.write(common.toPath(), "namespace java common\nstruct Common { 1: i64 id; }\n".getBytes(UTF_8));
+        TypeLoader stale = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        assertFalse(stale.loadBundle(bundle, tmp.getRoot()));
+    }
+
+    @Test
+    public void testBundle_corrupt() throws Exception {
+        File common = tmp.newFile("common.thrift");
+        Files.write(common.toPath(), "namespace java common\nstruct Common { 1: i32 id; }\n".getBytes(UTF_8));
+        TypeLoader loader = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        loader.load(common);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        loader.toBundle(tmp.getRoot()).write(out);
+        byte[] valid = out.toByteArray();
+
+        // Negative and huge document count, at offset 8 after magic and
+        // version.
+        for (int count : new int[]{-1, Integer.MAX_VALUE}) {
+            byte[] corrupt = valid.clone();
+            ByteBuffer.wrap(corrupt).putInt(8, count);
+            assertCorrupt(corrupt);
+        }
+        // Negative and huge document size.
+        int sizeOffset = documentSizeOffset(valid);
+        for (int size : new int[]{-1, Integer.MAX_VALUE}) {
+            byte[] corrupt = valid.clone();
+            ByteBuffer.wrap(corrupt).putInt(sizeOffset, size);
+            assertCorrupt(corrupt);
+        }
+        // Truncated bundle.
+        assertCorrupt(Arrays.copyOf(valid, valid.length - 1));
+    }
+
+    private static int documentSizeOffset(byte[] bundle) {
+        // Magic, version and count, then the path and the hash of the first
+        // document, each with a short length prefix.
+        ByteBuffer buffer = ByteBuffer.wrap(bundle);
+        int pos = 12;
+        pos += 2 + buffer.getShort(pos);
+        pos += 2 + buffer.getShort(pos);
+        return pos;
+    }
+
+    private static void assertCorrupt(byte[] bundle) {
+        try {
+            DocumentBundle.read(new ByteArrayInputStream(bundle));
+            fail("No exception on corrupt bundle");
+        } catch (IOException e) {
+            // expected.
+        }
+    }
+
+    @Test
+    public void testDependencyHash() throws Exception {
+        File common = tmp.newFile("common.thrift");
+        File service = tmp.newFile("service.thrift");
+        File other = tmp.newFile("other.thrift");
+        Files.write(common.toPath(), "namespace java common\nstruct Common { 1: i32 id; }\n".getBytes(UTF_8));
+        Files.write(service.toPath(), ("namespace java service\n" +
+                                       "include \"common.thrift\"\n" +
+                                       "struct Request { 1: common.Common common; }\n").getBytes(UTF_8));
+        Files.write(other.toPath(), "namespace java other\nstruct Other { 1: i32 id; }\n".getBytes(UTF_8));
+
+        TypeLoader loader = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        loader.load(service);
+        loader.load(other);
+
+        byte[] serviceHash = loader.getDependencyHash(service);
+        byte[] otherHash = loader.getDependencyHash(other);
+
+        // Changing an included file changes the hash of the including file
+        // only.
+        Files.write(common.toPath(), "namespace java common\nstruct Common { 1: i64 id; }\n".getBytes(UTF_8));
+        TypeLoader changed = new TypeLoader(Collections.emptyList(), new ThriftDocumentParser());
+        changed.load(service);
+        changed.load(other);
+
+        assertNotEquals(Arrays.toString(serviceHash), Arrays.toString(changed.getDependencyHash(service)));
+        assertArrayEquals(otherHash, changed.getDependencyHash(other));
+    }
 }
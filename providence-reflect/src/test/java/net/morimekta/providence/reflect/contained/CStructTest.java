@@ -19,8 +19,28 @@
 
 package net.morimekta.providence.reflect.contained;
 
+import net.morimekta.providence.descriptor.PList;
+import net.morimekta.providence.descriptor.PPrimitive;
+import net.morimekta.providence.descriptor.PRequirement;
+import net.morimekta.providence.reflect.util.DocumentRegistry;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.Serializer;
+
+import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 /**
  * @author Stein Eldar Johnsen
  * @since 05.09.15
@@ -30,4 +50,93 @@ public class CStructTest {
     public void testStruct() {
 
     }
+
+    @Test
+    public void testBinarySerializer() throws Exception {
+        DocumentRegistry registry = new DocumentRegistry();
+        List<CField> fields = new LinkedList<>();
+        fields.add(new CField(null, 4, PRequirement.OPTIONAL, "field_32", PPrimitive.I32.provider(), null, null));
+        fields.add(new CField(null, 1, PRequirement.OPTIONAL, "field_str", PPrimitive.STRING.provider(), null, null));
+        fields.add(new CField(null, 3, PRequirement.OPTIONAL, "field_list",
+                              PList.provider(PPrimitive.I64.provider()), null, null));
+        fields.add(new CField(null,
+                              2,
+                              PRequirement.OPTIONAL,
+                              "field_a",
+                              registry.getProvider("TypeA", "test", Collections.EMPTY_MAP),
+                              null,
+                              null));
+        CStructDescriptor structType = new CStructDescriptor(null, "test", "TypeA", fields, null);
+        registry.putDeclaredType(structType);
+
+        CStruct inner = structType.builder()
+                                  .set(4, 32)
+                                  .set(1, "string")
+                                  .build();
+        CStruct outer = structType.builder()
+                                  .set(1, "outer")
+                                  .set(3, ImmutableList.of(1L, 2L))
+                                  .set(2, inner)
+                                  .build();
+
+        Serializer serializer = new BinarySerializer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(out, outer);
+
+        CStruct read = serializer.deserialize(new ByteArrayInputStream(out.toByteArray()), structType);
+        assertEquals(outer, read);
+        assertEquals(inner, read.get(2));
+        assertEquals(2, read.num(3));
+        assertFalse(read.has(4));
+
+        // Containers read with the codec can still be modified.
+        CStruct modified = read.mutate()
+                               .addTo(3, 3L)
+                               .build();
+        assertEquals(ImmutableList.of(1L, 2L, 3L), modified.get(3));
+        assertEquals(ImmutableList.of(1L, 2L), read.get(3));
+        assertTrue(modified.has(2));
+    }
+
+    @Test
+    public void testFieldLookup() {
+        List<CField> fields = new LinkedList<>();
+        fields.add(new CField(null, 3, PRequirement.OPTIONAL, "c", PPrimitive.I32.provider(), null, null));
+        fields.add(new CField(null, 1, PRequirement.OPTIONAL, "a", PPrimitive.I32.provider(), null, null));
+        fields.add(new CField(null, 2, PRequirement.OPTIONAL, "b", PPrimitive.I32.provider(), null, null));
+        CStructDescriptor dense = new CStructDescriptor(null, "test", "Dense", fields, null);
+
+        fields.add(new CField(null, -7, PRequirement.OPTIONAL, "d", PPrimitive.I32.provider(), null, null));
+        fields.add(new CField(null, 30000, PRequirement.OPTIONAL, "e", PPrimitive.I32.provider(), null, null));
+        CStructDescriptor sparse = new CStructDescriptor(null, "test", "Sparse", fields, null);
+
+        for (CStructDescriptor type : ImmutableList.of(dense, sparse)) {
+            assertEquals("a", type.getField(1).getName());
+            assertEquals("c", type.getField(3).getName());
+            assertEquals(0, type.indexOf(3));
+            assertEquals(-1, type.indexOf(4));
+            assertEquals(-1, type.indexOf(0));
+            assertNull(type.getField(4));
+        }
+        assertEquals("d", sparse.getField(-7).getName());
+        assertEquals(4, sparse.indexOf(30000));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        List<CField> fields = new LinkedList<>();
+        fields.add(new CField(null, 1, PRequirement.OPTIONAL, "a", PPrimitive.I32.provider(), null, null));
+        fields.add(new CField(null, 2, PRequirement.OPTIONAL, "b", PPrimitive.STRING.provider(), null, null));
+        CStructDescriptor structType = new CStructDescriptor(null, "test", "Type", fields, null);
+
+        CStruct a = structType.builder().set(1, 4).set(2, "b").build();
+        CStruct b = structType.builder().set(2, "b").set(1, 4).build();
+        CStruct c = structType.builder().set(1, 4).build();
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.hashCode(), a.hashCode());
+        assertNotEquals(a, c);
+        assertNotEquals(c, a);
+    }
 }
@@ -21,13 +21,21 @@
 package net.morimekta.providence.gentests;
 
 import net.morimekta.test.providence.CompactFields;
+import net.morimekta.test.providence.ContainerUnion;
+import net.morimekta.test.providence.Containers;
 import net.morimekta.test.providence.OptionalFields;
 import net.morimekta.test.providence.calculator.Operand;
 import net.morimekta.test.providence.number.Imaginary;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for providence-built sources - The message builder.
@@ -56,6 +64,108 @@ public class ProvidenceBuilderTest {
         assertEquals(exp, c);
     }
 
+    @Test
+    public void testMerge_unionContainers() {
+        // Sets and maps in the same union field are merged.
+        assertEquals(ContainerUnion.withStringSet(ImmutableSet.of("a", "b", "c")),
+                     ContainerUnion.withStringSet(ImmutableSet.of("a", "b"))
+                                   .mergeWith(ContainerUnion.withStringSet(ImmutableSet.of("b", "c"))));
+        assertEquals(ContainerUnion.withStringMap(ImmutableMap.of("a", 1, "b", 2)),
+                     ContainerUnion.withStringMap(ImmutableMap.of("a", 1))
+                                   .mergeWith(ContainerUnion.withStringMap(ImmutableMap.of("b", 2))));
+        assertEquals(ContainerUnion.withIntegerMap(ImmutableMap.of(1, 10, 2, 20)),
+                     ContainerUnion.withIntegerMap(ImmutableMap.of(1, 10))
+                                   .mergeWith(ContainerUnion.withIntegerMap(ImmutableMap.of(2, 20))));
+
+        // Lists are replaced.
+        assertEquals(ContainerUnion.withIntegerList(ImmutableList.of(3)),
+                     ContainerUnion.withIntegerList(ImmutableList.of(1, 2))
+                                   .mergeWith(ContainerUnion.withIntegerList(ImmutableList.of(3))));
+
+        // And another field replaces the value.
+        assertEquals(ContainerUnion.withStringSet(ImmutableSet.of("a")),
+                     ContainerUnion.withStringMap(ImmutableMap.of("a", 1))
+                                   .mergeWith(ContainerUnion.withStringSet(ImmutableSet.of("a"))));
+
+        // Merging into a new builder sets the field.
+        assertEquals(ContainerUnion.withStringSet(ImmutableSet.of("a")),
+                     ContainerUnion.builder()
+                                   .merge(ContainerUnion.withStringSet(ImmutableSet.of("a")))
+                                   .build());
+    }
+
+    @Test
+    public void testClearContainer() {
+        Containers containers = Containers.builder()
+                                          .addToIntegerList(1, 2)
+                                          .putInStringMap("a", "b")
+                                          .clearIntegerList()
+                                          .clearStringMap()
+                                          .build();
+        assertFalse(containers.hasIntegerList());
+        assertFalse(containers.hasStringMap());
+
+        containers = Containers.builder()
+                               .addToIntegerList(1, 2)
+                               .addToStringSet("a")
+                               .clearIntegerList()
+                               .clearStringSet()
+                               .addToIntegerList(3)
+                               .addToStringSet("b")
+                               .build();
+        assertEquals(ImmutableList.of(3), containers.getIntegerList());
+        assertEquals(ImmutableSet.of("b"), containers.getStringSet());
+
+        // Clearing a field from the base message.
+        containers = containers.mutate()
+                               .clearIntegerList()
+                               .addToIntegerList(4)
+                               .build();
+        assertEquals(ImmutableList.of(4), containers.getIntegerList());
+        assertEquals(ImmutableSet.of("b"), containers.getStringSet());
+
+        ContainerUnion union = ContainerUnion.builder()
+                                             .addToIntegerList(1, 2)
+                                             .clearIntegerList()
+                                             .build();
+        assertNull(union.unionField());
+
+        union = ContainerUnion.builder()
+                              .addToIntegerList(1, 2)
+                              .clearIntegerList()
+                              .addToIntegerList(3)
+                              .build();
+        assertEquals(ContainerUnion.withIntegerList(ImmutableList.of(3)), union);
+    }
+
+    @Test
+    public void testMutableContainer() {
+        Containers._Builder builder = Containers.builder();
+        builder.mutableIntegerList().add(1);
+        builder.mutableStringSet().add("a");
+        builder.mutableStringMap().put("a", "b");
+
+        Containers containers = builder.build();
+        assertEquals(ImmutableList.of(1), containers.getIntegerList());
+        assertEquals(ImmutableSet.of("a"), containers.getStringSet());
+        assertEquals(ImmutableMap.of("a", "b"), containers.getStringMap());
+        assertFalse(containers.hasIntegerSet());
+
+        // A mutable container with no values still sets the field.
+        builder = Containers.builder();
+        builder.mutableLongList();
+        assertTrue(builder.build().hasLongList());
+
+        ContainerUnion._Builder union = ContainerUnion.builder();
+        union.mutableStringSet().add("a");
+        assertEquals(ContainerUnion.withStringSet(ImmutableSet.of("a")), union.build());
+
+        // Switches the union field.
+        union = ContainerUnion.builder().addToIntegerList(1);
+        union.mutableIntegerMap().put(1, 10);
+        assertEquals(ContainerUnion.withIntegerMap(ImmutableMap.of(1, 10)), union.build());
+    }
+
     @Test
     public void testMutator() {
         Imaginary imag = (Imaginary) Operand.builder()
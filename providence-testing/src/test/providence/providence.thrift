@@ -93,6 +93,13 @@ union UnionFields {
     10: CompactFields compactValue;
 }
 
+union ContainerUnion {
+    1: list<i32> integerList;
+    2: set<string> stringSet;
+    3: map<string,i32> stringMap;
+    4: map<i32,i32> integerMap;
+}
+
 exception ExceptionFields {
     1: bool booleanValue;
     2: byte byteValue,
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.thrift;
+
+import net.morimekta.providence.descriptor.PDescriptor;
+import net.morimekta.providence.serializer.ApplicationExceptionType;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+import net.morimekta.util.Binary;
+import net.morimekta.util.io.BinaryReader;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Type IDs and value encoding of the thrift compact protocol, shared by the
+ * {@link TCompactProtocolSerializer} and the {@link TTupleProtocolSerializer}
+ * (which encodes values the same way). The encoding is the same as in
+ * libthrift's <code>TCompactProtocol</code>:
+ * <ul>
+ *     <li>Integers are zigzag encoded varints, except for bytes.</li>
+ *     <li>Sizes, lengths and sequence numbers are plain varints.</li>
+ *     <li>Doubles are 8 byte little endian.</li>
+ *     <li>Strings and binaries are length prefixed.</li>
+ * </ul>
+ */
+final class CompactProtocol {
+    static final int PROTOCOL_ID  = 0x82;
+    static final int VERSION      = 1;
+    static final int VERSION_MASK = 0x1f;
+    static final int TYPE_SHIFT   = 5;
+
+    static final byte STOP          = 0x00;
+    static final byte BOOLEAN_TRUE  = 0x01;
+    static final byte BOOLEAN_FALSE = 0x02;
+    static final byte BYTE          = 0x03;
+    static final byte I16           = 0x04;
+    static final byte I32           = 0x05;
+    static final byte I64           = 0x06;
+    static final byte DOUBLE        = 0x07;
+    static final byte BINARY        = 0x08;
+    static final byte LIST          = 0x09;
+    static final byte SET           = 0x0A;
+    static final byte MAP           = 0x0B;
+    static final byte STRUCT        = 0x0C;
+
+    private CompactProtocol() {}
+
+    /**
+     * Get the compact type ID of the type. Booleans have the true type ID
+     * when not in a field header. Void values has no content, and are
+     * written as boolean fields, which is skipped by thrift readers not
+     * knowing about the field.
+     *
+     * @param descriptor The type descriptor.
+     * @return The compact type ID.
+     * @throws SerializerException If the type can not be serialized.
+     */
+    static byte typeOf(PDescriptor descriptor) throws SerializerException {
+        switch (descriptor.getType()) {
+            case VOID:
+            case BOOL:
+                return BOOLEAN_TRUE;
+            case BYTE:
+                return BYTE;
+            case I16:
+                return I16;
+            case I32:
+            case ENUM:
+                return I32;
+            case I64:
+                return I64;
+            case DOUBLE:
+                return DOUBLE;
+            case STRING:
+            case BINARY:
+                return BINARY;
+            case LIST:
+                return LIST;
+            case SET:
+                return SET;
+            case MAP:
+                return MAP;
+            case MESSAGE:
+                return STRUCT;
+            default:
+                throw new SerializerException("Unsupported protocol field type: " + descriptor.getType());
+        }
+    }
+
+    /**
+     * @param type The compact type ID.
+     * @return True if the type is a boolean.
+     */
+    static boolean isBool(int type) {
+        return type == BOOLEAN_TRUE || type == BOOLEAN_FALSE;
+    }
+
+    // --- WRITE ---
+
+    static void writeVarint(WriteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static void writeVarint(WriteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeZigzag(WriteBuffer out, int value) {
+        writeVarint(out, (value << 1) ^ (value >> 31));
+    }
+
+    static void writeZigzag(WriteBuffer out, long value) {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    static void writeDouble(WriteBuffer out, double value) {
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 0; i < 8; ++i) {
+            out.write((int) (bits >>> (i * 8)));
+        }
+    }
+
+    static void writeString(WriteBuffer out, CharSequence value) {
+        writeVarint(out, WriteBuffer.utf8Length(value));
+        out.writeUtf8(value);
+    }
+
+    static void writeBinary(WriteBuffer out, Binary value) throws IOException {
+        writeVarint(out, value.length());
+        out.writer().writeBinary(value);
+    }
+
+    /**
+     * Write a list or set header.
+     *
+     * @param out The buffer to write to.
+     * @param itemType The compact type ID of the items.
+     * @param size The number of items.
+     */
+    static void writeCollectionBegin(WriteBuffer out, byte itemType, int size) {
+        if (size <= 14) {
+            out.write((size << 4) | itemType);
+        } else {
+            out.write(0xf0 | itemType);
+            writeVarint(out, size);
+        }
+    }
+
+    /**
+     * Write a map header. Empty maps has no key and value types.
+     *
+     * @param out The buffer to write to.
+     * @param keyType The compact type ID of the keys.
+     * @param valueType The compact type ID of the values.
+     * @param size The number of entries.
+     */
+    static void writeMapBegin(WriteBuffer out, byte keyType, byte valueType, int size) {
+        if (size == 0) {
+            out.write(0);
+        } else {
+            writeVarint(out, size);
+            out.write((keyType << 4) | valueType);
+        }
+    }
+
+    /**
+     * Write the service call header, except the sequence number and method
+     * name.
+     *
+     * @param out The buffer to write to.
+     * @param typeKey The service call type key.
+     */
+    static void writeMessageBegin(WriteBuffer out, int typeKey) {
+        out.write(PROTOCOL_ID);
+        out.write(VERSION | (typeKey << TYPE_SHIFT));
+    }
+
+    // --- READ ---
+
+    /**
+     * Read the service call header, except the sequence number and method
+     * name. Call types up to 7 can be read, including oneway calls.
+     *
+     * @param in The reader to read from.
+     * @return The service call type key.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If not a compact protocol call header.
+     */
+    static int readMessageBegin(BinaryReader in) throws IOException, SerializerException {
+        int protocolId = in.expectByte() & 0xff;
+        if (protocolId != PROTOCOL_ID) {
+            throw new SerializerException("Expected protocol id %02x but got %02x", PROTOCOL_ID, protocolId)
+                    .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR);
+        }
+        int versionAndType = in.expectByte() & 0xff;
+        int version = versionAndType & VERSION_MASK;
+        if (version != VERSION) {
+            throw new SerializerException("Bad protocol version: %d", version)
+                    .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR);
+        }
+        return versionAndType >>> TYPE_SHIFT;
+    }
+
+    static int readVarint32(BinaryReader in) throws IOException, SerializerException {
+        int out = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.expectByte();
+            out |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return out;
+            }
+        }
+        throw new SerializerException("Varint too long for 32 bit value");
+    }
+
+    static long readVarint64(BinaryReader in) throws IOException, SerializerException {
+        long out = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.expectByte();
+            out |= (b & 0x7fL) << shift;
+            if ((b & 0x80) == 0) {
+                return out;
+            }
+        }
+        throw new SerializerException("Varint too long for 64 bit value");
+    }
+
+    static int readZigzag32(BinaryReader in) throws IOException, SerializerException {
+        int value = readVarint32(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readZigzag64(BinaryReader in) throws IOException, SerializerException {
+        long value = readVarint64(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static String readString(BinaryReader in) throws IOException, SerializerException {
+        return new String(in.expectBytes(readLength(in)), UTF_8);
+    }
+
+    static Binary readBinary(BinaryReader in) throws IOException, SerializerException {
+        return Binary.wrap(in.expectBytes(readLength(in)));
+    }
+
+    /**
+     * Read a length or size, which is a plain varint.
+     *
+     * @param in The reader to read from.
+     * @return The length.
+     * @throws IOException If unable to read.
+     * @throws SerializerException If the length is negative.
+     */
+    static int readLength(BinaryReader in) throws IOException, SerializerException {
+        int len = readVarint32(in);
+        if (len < 0) {
+            throw new SerializerException("Negative length: " + len);
+        }
+        return len;
+    }
+}
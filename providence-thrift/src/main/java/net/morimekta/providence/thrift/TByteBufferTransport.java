@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package net.morimekta.providence.thrift;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Thrift transport reading from and writing to a byte buffer, starting at
+ * the buffer's position. Works with heap, direct and memory mapped buffers.
+ * For heap buffers the backing array is exposed to the protocol, so strings
+ * and binaries can be read in place.
+ */
+class TByteBufferTransport extends TTransport {
+    private final ByteBuffer buffer;
+
+    TByteBufferTransport(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void open() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+        len = Math.min(len, buffer.remaining());
+        buffer.get(bytes, off, len);
+        return len;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws TTransportException {
+        if (buffer.remaining() < len) {
+            throw new TTransportException(TTransportException.END_OF_FILE,
+                                          "Not enough space in buffer: " + buffer.remaining() + " < " + len);
+        }
+        buffer.put(bytes, off, len);
+    }
+
+    @Override
+    public byte[] getBuffer() {
+        return buffer.hasArray() ? buffer.array() : null;
+    }
+
+    @Override
+    public int getBufferPosition() {
+        return buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0;
+    }
+
+    @Override
+    public int getBytesRemainingInBuffer() {
+        return buffer.hasArray() ? buffer.remaining() : -1;
+    }
+
+    @Override
+    public void consumeBuffer(int len) {
+        buffer.position(buffer.position() + len);
+    }
+}
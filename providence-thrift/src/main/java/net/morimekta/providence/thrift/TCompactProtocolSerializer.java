@@ -1,20 +1,554 @@
 package net.morimekta.providence.thrift;
 
-import org.apache.thrift.protocol.TCompactProtocol;
+import net.morimekta.providence.PEnumBuilder;
+import net.morimekta.providence.PEnumValue;
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.PType;
+import net.morimekta.providence.PUnion;
+import net.morimekta.providence.descriptor.PDescriptor;
+import net.morimekta.providence.descriptor.PEnumDescriptor;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PList;
+import net.morimekta.providence.descriptor.PMap;
+import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.descriptor.PServiceMethod;
+import net.morimekta.providence.descriptor.PSet;
+import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.serializer.ApplicationException;
+import net.morimekta.providence.serializer.ApplicationExceptionType;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+import net.morimekta.util.Binary;
+import net.morimekta.util.io.BinaryReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+import static net.morimekta.providence.thrift.CompactProtocol.BINARY;
+import static net.morimekta.providence.thrift.CompactProtocol.BOOLEAN_FALSE;
+import static net.morimekta.providence.thrift.CompactProtocol.BOOLEAN_TRUE;
+import static net.morimekta.providence.thrift.CompactProtocol.BYTE;
+import static net.morimekta.providence.thrift.CompactProtocol.DOUBLE;
+import static net.morimekta.providence.thrift.CompactProtocol.I16;
+import static net.morimekta.providence.thrift.CompactProtocol.I32;
+import static net.morimekta.providence.thrift.CompactProtocol.I64;
+import static net.morimekta.providence.thrift.CompactProtocol.LIST;
+import static net.morimekta.providence.thrift.CompactProtocol.MAP;
+import static net.morimekta.providence.thrift.CompactProtocol.SET;
+import static net.morimekta.providence.thrift.CompactProtocol.STOP;
+import static net.morimekta.providence.thrift.CompactProtocol.STRUCT;
+import static net.morimekta.providence.thrift.CompactProtocol.isBool;
+import static net.morimekta.providence.thrift.CompactProtocol.readBinary;
+import static net.morimekta.providence.thrift.CompactProtocol.readLength;
+import static net.morimekta.providence.thrift.CompactProtocol.readMessageBegin;
+import static net.morimekta.providence.thrift.CompactProtocol.readString;
+import static net.morimekta.providence.thrift.CompactProtocol.readVarint32;
+import static net.morimekta.providence.thrift.CompactProtocol.readZigzag32;
+import static net.morimekta.providence.thrift.CompactProtocol.readZigzag64;
+import static net.morimekta.providence.thrift.CompactProtocol.typeOf;
+import static net.morimekta.providence.thrift.CompactProtocol.writeBinary;
+import static net.morimekta.providence.thrift.CompactProtocol.writeCollectionBegin;
+import static net.morimekta.providence.thrift.CompactProtocol.writeDouble;
+import static net.morimekta.providence.thrift.CompactProtocol.writeMapBegin;
+import static net.morimekta.providence.thrift.CompactProtocol.writeMessageBegin;
+import static net.morimekta.providence.thrift.CompactProtocol.writeString;
+import static net.morimekta.providence.thrift.CompactProtocol.writeVarint;
+import static net.morimekta.providence.thrift.CompactProtocol.writeZigzag;
 
 /**
+ * Serializer for the thrift compact protocol. The protocol is written and
+ * read directly from the providence descriptors, and gives the same bytes
+ * as using libthrift's <code>TCompactProtocol</code>.
+ * <p>
+ * Unlike the other thrift protocol serializers, this extends
+ * {@link Serializer} directly, and does not use any libthrift protocol or
+ * transport classes.
+ *
  * @author Stein Eldar Johnsen
  * @since 24.10.15.
  */
-public class TCompactProtocolSerializer extends TProtocolSerializer {
+public class TCompactProtocolSerializer extends Serializer {
     public static final String MIME_TYPE = "application/vnd.apache.thrift.compact";
 
+    private final boolean readStrict;
+
     public TCompactProtocolSerializer() {
         this(true);
     }
 
     public TCompactProtocolSerializer(boolean readStrict) {
-        super(readStrict, new TCompactProtocol.Factory(),
-              true, MIME_TYPE);
+        this.readStrict = readStrict;
+    }
+
+    @Override
+    public boolean binaryProtocol() {
+        return true;
+    }
+
+    @Override
+    public String mimeType() {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(OutputStream output, Message message) throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer, message);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, Message message) throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer, message);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(OutputStream output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer, call);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer, call);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    Message deserialize(InputStream input, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
+        return readMessage(new BinaryReader(input), descriptor);
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(InputStream input, PService service)
+            throws SerializerException {
+        return readServiceCall(new BinaryReader(input), service);
+    }
+
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void writeServiceCall(WriteBuffer out, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        writeMessageBegin(out, call.getType().key);
+        writeVarint(out, call.getSequence());
+        writeString(out, call.getMethod());
+        writeMessage(out, call.getMessage());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> readServiceCall(BinaryReader in, PService service)
+            throws SerializerException {
+        String methodName = null;
+        int sequence = 0;
+        boolean hasSequence = false;
+        PServiceCallType type = null;
+        try {
+            int typeKey = readMessageBegin(in);
+            sequence = readVarint32(in);
+            hasSequence = true;
+            methodName = readString(in);
+
+            type = PServiceCallType.findByKey(typeKey);
+            PServiceMethod method = service.getMethod(methodName);
+            if (type == null) {
+                throw new SerializerException("Invalid call type " + typeKey)
+                        .setExceptionType(ApplicationExceptionType.INVALID_MESSAGE_TYPE)
+                        .setMethodName(methodName)
+                        .setSequenceNo(sequence);
+            } else if (type == PServiceCallType.EXCEPTION) {
+                ApplicationException ex = readMessage(in, ApplicationException.kDescriptor);
+                return (PServiceCall<Message, Field>) new PServiceCall<>(methodName, type, sequence, ex);
+            } else if (method == null) {
+                throw new SerializerException("No such method " + methodName + " on " + service.getQualifiedName(null))
+                        .setExceptionType(ApplicationExceptionType.UNKNOWN_METHOD)
+                        .setMethodName(methodName)
+                        .setCallType(type)
+                        .setSequenceNo(sequence);
+            }
+
+            try {
+                PStructDescriptor<Message, Field> descriptor = type.request ? method.getRequestType() : method.getResponseType();
+
+                Message message = readMessage(in, descriptor);
+
+                return new PServiceCall<>(methodName, type, sequence, message);
+            } catch (SerializerException se) {
+                throw new SerializerException(se, se.getMessage())
+                        .setMethodName(methodName)
+                        .setCallType(type)
+                        .setSequenceNo(sequence);
+            }
+        } catch (IOException e) {
+            SerializerException se = new SerializerException(e, e.getMessage())
+                    .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
+                    .setMethodName(methodName)
+                    .setCallType(type);
+            if (hasSequence) {
+                se.setSequenceNo(sequence);
+            }
+            throw se;
+        }
+    }
+
+    private void writeMessage(WriteBuffer out, PMessage<?, ?> message) throws IOException, SerializerException {
+        int lastFieldId = 0;
+        if (message instanceof PUnion) {
+            PField field = ((PUnion<?, ?>) message).unionField();
+            if (field != null) {
+                writeField(out, lastFieldId, field, message.get(field.getKey()));
+            }
+        } else {
+            for (PField field : message.descriptor().getFields()) {
+                if (message.has(field.getKey())) {
+                    lastFieldId = writeField(out, lastFieldId, field, message.get(field.getKey()));
+                }
+            }
+        }
+        out.write(STOP);
+    }
+
+    /**
+     * Write a field header and value. The field ID is written as a delta to
+     * the last written field ID if it fits in the header, and the value of
+     * boolean fields is part of the header.
+     *
+     * @param out The buffer to write to.
+     * @param lastFieldId The ID of the last field written in the message.
+     * @param field The field to write.
+     * @param value The field value.
+     * @return The ID of the written field.
+     */
+    private int writeField(WriteBuffer out, int lastFieldId, PField field, Object value)
+            throws IOException, SerializerException {
+        PDescriptor descriptor = field.getDescriptor();
+        byte type;
+        if (descriptor.getType() == PType.VOID) {
+            type = BOOLEAN_TRUE;
+        } else if (descriptor.getType() == PType.BOOL) {
+            type = (Boolean) value ? BOOLEAN_TRUE : BOOLEAN_FALSE;
+        } else {
+            type = typeOf(descriptor);
+        }
+
+        int id = field.getKey();
+        if (id > lastFieldId && id - lastFieldId <= 15) {
+            out.write((id - lastFieldId) << 4 | type);
+        } else {
+            out.write(type);
+            writeZigzag(out, (short) id);
+        }
+        if (!isBool(type)) {
+            writeValue(out, descriptor, value);
+        }
+        return id;
+    }
+
+    private void writeValue(WriteBuffer out, PDescriptor descriptor, Object value)
+            throws IOException, SerializerException {
+        switch (descriptor.getType()) {
+            case BOOL:
+                out.write((Boolean) value ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+                break;
+            case BYTE:
+                out.write((Byte) value);
+                break;
+            case I16:
+                writeZigzag(out, (int) (Short) value);
+                break;
+            case I32:
+                writeZigzag(out, (int) (Integer) value);
+                break;
+            case I64:
+                writeZigzag(out, (long) (Long) value);
+                break;
+            case DOUBLE:
+                writeDouble(out, (Double) value);
+                break;
+            case STRING:
+                writeString(out, (CharSequence) value);
+                break;
+            case BINARY:
+                writeBinary(out, (Binary) value);
+                break;
+            case ENUM:
+                writeZigzag(out, ((PEnumValue<?>) value).getValue());
+                break;
+            case MESSAGE:
+                writeMessage(out, (PMessage<?, ?>) value);
+                break;
+            case LIST:
+            case SET: {
+                PDescriptor itemType = descriptor.getType() == PType.LIST ?
+                                       ((PList<?>) descriptor).itemDescriptor() :
+                                       ((PSet<?>) descriptor).itemDescriptor();
+                Collection<?> collection = (Collection<?>) value;
+                writeCollectionBegin(out, typeOf(itemType), collection.size());
+                for (Object item : collection) {
+                    writeValue(out, itemType, item);
+                }
+                break;
+            }
+            case MAP: {
+                PMap<?, ?> mapType = (PMap<?, ?>) descriptor;
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeMapBegin(out, typeOf(mapType.keyDescriptor()), typeOf(mapType.itemDescriptor()), map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(out, mapType.keyDescriptor(), entry.getKey());
+                    writeValue(out, mapType.itemDescriptor(), entry.getValue());
+                }
+                break;
+            }
+            default:
+                throw new SerializerException("Unsupported protocol field type: " + descriptor.getType());
+        }
+    }
+
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    Message readMessage(BinaryReader in, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
+        PMessageBuilder<Message, Field> builder = descriptor.builder();
+
+        int lastFieldId = 0;
+        int header;
+        while ((header = in.expectByte() & 0xff) != STOP) {
+            int type = header & 0x0f;
+            int delta = header >>> 4;
+            int id = delta == 0 ? (short) readZigzag32(in) : lastFieldId + delta;
+            lastFieldId = id;
+
+            PField field = descriptor.getField(id);
+            if (field == null) {
+                if (readStrict) {
+                    throw new SerializerException("No such field " + id + " in " + descriptor.getQualifiedName(null));
+                }
+                skipFieldValue(in, type);
+                continue;
+            }
+
+            int expected = typeOf(field.getDescriptor());
+            if (expected != type && !(expected == BOOLEAN_TRUE && isBool(type))) {
+                if (readStrict) {
+                    throw new SerializerException("Incompatible serialized type " + type +
+                                                  " for field " + field.getName() +
+                                                  ", expected " + field.getDescriptor().getType());
+                }
+                skipFieldValue(in, type);
+                continue;
+            }
+
+            if (field.getType() == PType.VOID) {
+                builder.set(id, Boolean.FALSE);
+            } else if (isBool(type)) {
+                builder.set(id, type == BOOLEAN_TRUE);
+            } else {
+                builder.set(id, readValue(in, field.getDescriptor()));
+            }
+        }
+
+        if (readStrict) {
+            try {
+                builder.validate();
+            } catch (IllegalStateException e) {
+                throw new SerializerException(e, e.getMessage());
+            }
+        }
+
+        return builder.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readValue(BinaryReader in, PDescriptor descriptor) throws IOException, SerializerException {
+        switch (descriptor.getType()) {
+            case BOOL:
+                return in.expectByte() == BOOLEAN_TRUE;
+            case BYTE:
+                return in.expectByte();
+            case I16:
+                return (short) readZigzag32(in);
+            case I32:
+                return readZigzag32(in);
+            case I64:
+                return readZigzag64(in);
+            case DOUBLE:
+                return in.expectDouble();
+            case STRING:
+                return readString(in);
+            case BINARY:
+                return readBinary(in);
+            case ENUM: {
+                PEnumDescriptor<?> et = (PEnumDescriptor<?>) descriptor;
+                PEnumBuilder<?> eb = et.builder();
+                int value = readZigzag32(in);
+                eb.setByValue(value);
+                if (!eb.isValid() && readStrict) {
+                    throw new SerializerException("Invalid enum value " + value + " for " +
+                                                  et.getQualifiedName(null));
+                }
+                return eb.build();
+            }
+            case MESSAGE:
+                return readMessage(in, (PStructDescriptor<?, ?>) descriptor);
+            case LIST: {
+                PList<Object> listType = (PList<Object>) descriptor;
+                PDescriptor itemType = listType.itemDescriptor();
+                int header = in.expectByte() & 0xff;
+                int size = readCollectionSize(in, header);
+                checkItemType(header & 0x0f, itemType);
+
+                PList.Builder<Object> list = listType.builder();
+                for (int i = 0; i < size; ++i) {
+                    list.add(readValue(in, itemType));
+                }
+                return list.build();
+            }
+            case SET: {
+                PSet<Object> setType = (PSet<Object>) descriptor;
+                PDescriptor itemType = setType.itemDescriptor();
+                int header = in.expectByte() & 0xff;
+                int size = readCollectionSize(in, header);
+                checkItemType(header & 0x0f, itemType);
+
+                PSet.Builder<Object> set = setType.builder();
+                for (int i = 0; i < size; ++i) {
+                    set.add(readValue(in, itemType));
+                }
+                return set.build();
+            }
+            case MAP: {
+                PMap<Object, Object> mapType = (PMap<Object, Object>) descriptor;
+                PDescriptor keyType = mapType.keyDescriptor();
+                PDescriptor itemType = mapType.itemDescriptor();
+                int size = readLength(in);
+
+                PMap.Builder<Object, Object> map = mapType.builder();
+                if (size > 0) {
+                    int types = in.expectByte() & 0xff;
+                    checkItemType(types >>> 4, keyType);
+                    checkItemType(types & 0x0f, itemType);
+                    for (int i = 0; i < size; ++i) {
+                        Object key = readValue(in, keyType);
+                        map.put(key, readValue(in, itemType));
+                    }
+                }
+                return map.build();
+            }
+            default:
+                throw new SerializerException("Unsupported protocol field type: " + descriptor.getType());
+        }
+    }
+
+    private static int readCollectionSize(BinaryReader in, int header) throws IOException, SerializerException {
+        int size = header >>> 4;
+        if (size == 15) {
+            size = readLength(in);
+        }
+        return size;
+    }
+
+    private static void checkItemType(int type, PDescriptor descriptor) throws SerializerException {
+        int expected = typeOf(descriptor);
+        if (expected != type && !(expected == BOOLEAN_TRUE && isBool(type))) {
+            throw new SerializerException("Incompatible serialized item type " + type +
+                                          ", expected " + descriptor.getType());
+        }
+    }
+
+    /**
+     * Skip a field value. The value of boolean fields is in the field
+     * header, so there is nothing to skip.
+     *
+     * @param in The reader to skip from.
+     * @param type The compact type ID of the field.
+     */
+    private static void skipFieldValue(BinaryReader in, int type) throws IOException, SerializerException {
+        if (!isBool(type)) {
+            skipValue(in, type);
+        }
+    }
+
+    /**
+     * Skip a value not in a field header.
+     *
+     * @param in The reader to skip from.
+     * @param type The compact type ID of the value.
+     */
+    private static void skipValue(BinaryReader in, int type) throws IOException, SerializerException {
+        switch (type) {
+            case BOOLEAN_TRUE:
+            case BOOLEAN_FALSE:
+            case BYTE:
+                in.expectByte();
+                break;
+            case I16:
+            case I32:
+                readVarint32(in);
+                break;
+            case I64:
+                readZigzag64(in);
+                break;
+            case DOUBLE:
+                in.expectDouble();
+                break;
+            case BINARY:
+                in.expectBytes(readLength(in));
+                break;
+            case STRUCT: {
+                int header;
+                while ((header = in.expectByte() & 0xff) != STOP) {
+                    if ((header >>> 4) == 0) {
+                        readVarint32(in);
+                    }
+                    skipFieldValue(in, header & 0x0f);
+                }
+                break;
+            }
+            case LIST:
+            case SET: {
+                int header = in.expectByte() & 0xff;
+                int size = readCollectionSize(in, header);
+                for (int i = 0; i < size; ++i) {
+                    skipValue(in, header & 0x0f);
+                }
+                break;
+            }
+            case MAP: {
+                int size = readLength(in);
+                if (size > 0) {
+                    int types = in.expectByte() & 0xff;
+                    for (int i = 0; i < size; ++i) {
+                        skipValue(in, types >>> 4);
+                        skipValue(in, types & 0x0f);
+                    }
+                }
+                break;
+            }
+            default:
+                throw new SerializerException("Unknown compact protocol type: " + type);
+        }
     }
 }
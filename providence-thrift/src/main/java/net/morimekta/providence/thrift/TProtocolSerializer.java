@@ -96,24 +96,77 @@ class TProtocolSerializer extends Serializer {
     public <Message extends PMessage<Message, Field>, Field extends PField>
     int serialize(OutputStream output, Message message) throws IOException, SerializerException {
         CountingOutputStream wrapper = new CountingOutputStream(output);
-        TTransport transport = new TIOStreamTransport(wrapper);
+        write(new TIOStreamTransport(wrapper), message);
+        wrapper.flush();
+        return wrapper.getByteCount();
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, Message message) throws IOException, SerializerException {
+        int start = output.position();
+        write(new TByteBufferTransport(output), message);
+        return output.position() - start;
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(OutputStream output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        CountingOutputStream wrapper = new CountingOutputStream(output);
+        write(new TIOStreamTransport(wrapper), call);
+        wrapper.flush();
+        return wrapper.getByteCount();
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        int start = output.position();
+        write(new TByteBufferTransport(output), call);
+        return output.position() - start;
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField> Message
+    deserialize(InputStream input, PStructDescriptor<Message, Field> descriptor) throws IOException, SerializerException {
+        return read(new TIOStreamTransport(input), descriptor);
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField> Message
+    deserialize(ByteBuffer input, PStructDescriptor<Message, Field> descriptor) throws IOException, SerializerException {
+        return read(new TByteBufferTransport(input), descriptor);
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(InputStream input, PService service)
+            throws SerializerException {
+        return read(new TIOStreamTransport(input), service);
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> deserialize(ByteBuffer input, PService service)
+            throws SerializerException {
+        return read(new TByteBufferTransport(input), service);
+    }
+
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void write(TTransport transport, Message message) throws SerializerException {
         try {
             TProtocol protocol = protocolFactory.getProtocol(transport);
             writeMessage(message, protocol);
             transport.flush();
-            wrapper.flush();
-            return wrapper.getByteCount();
         } catch (TException e) {
             throw new SerializerException(e, e.getMessage());
         }
     }
 
-    @Override
-    public <Message extends PMessage<Message, Field>, Field extends PField>
-    int serialize(OutputStream output, PServiceCall<Message, Field> call)
-            throws IOException, SerializerException {
-        CountingOutputStream wrapper = new CountingOutputStream(output);
-        TTransport transport = new TIOStreamTransport(wrapper);
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void write(TTransport transport, PServiceCall<Message, Field> call) throws SerializerException {
         try {
             TProtocol protocol = protocolFactory.getProtocol(transport);
             TMessage tm = new TMessage(call.getMethod(), (byte) call.getType().key, call.getSequence());
@@ -123,18 +176,14 @@ class TProtocolSerializer extends Serializer {
             protocol.writeMessageEnd();
 
             transport.flush();
-            wrapper.flush();
-            return wrapper.getByteCount();
         } catch (TException e) {
             throw new SerializerException(e, e.getMessage());
         }
     }
 
-    @Override
-    public <Message extends PMessage<Message, Field>, Field extends PField> Message
-    deserialize(InputStream input, PStructDescriptor<Message, Field> descriptor) throws IOException, SerializerException {
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    Message read(TTransport transport, PStructDescriptor<Message, Field> descriptor) throws SerializerException {
         try {
-            TTransport transport = new TIOStreamTransport(input);
             TProtocol protocol = protocolFactory.getProtocol(transport);
 
             return readMessage(protocol, descriptor);
@@ -145,15 +194,13 @@ class TProtocolSerializer extends Serializer {
         }
     }
 
-    @Override
     @SuppressWarnings("unchecked")
-    public <Message extends PMessage<Message, Field>, Field extends PField>
-    PServiceCall<Message, Field> deserialize(InputStream input, PService service)
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    PServiceCall<Message, Field> read(TTransport transport, PService service)
             throws SerializerException {
         PServiceCallType type = null;
         TMessage tm = null;
         try {
-            TTransport transport = new TIOStreamTransport(input);
             TProtocol protocol = protocolFactory.getProtocol(transport);
 
             tm = protocol.readMessageBegin();
@@ -180,17 +227,23 @@ class TProtocolSerializer extends Serializer {
 
             return new PServiceCall<>(tm.name, type, tm.seqid, message);
         } catch (TTransportException e) {
-            throw new SerializerException(e, e.getMessage())
+            SerializerException se = new SerializerException(e, e.getMessage())
                     .setExceptionType(ApplicationExceptionType.forValue(e.getType()))
-                    .setCallType(type)
-                    .setSequenceNo(tm != null ? tm.seqid : 0)
-                    .setMethodName(tm != null ? tm.name : null);
+                    .setCallType(type);
+            if (tm != null) {
+                se.setSequenceNo(tm.seqid)
+                  .setMethodName(tm.name);
+            }
+            throw se;
         } catch (TException e) {
-            throw new SerializerException(e, e.getMessage())
+            SerializerException se = new SerializerException(e, e.getMessage())
                     .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
-                    .setCallType(type)
-                    .setSequenceNo(tm != null ? tm.seqid : 0)
-                    .setMethodName(tm != null ? tm.name : null);
+                    .setCallType(type);
+            if (tm != null) {
+                se.setSequenceNo(tm.seqid)
+                  .setMethodName(tm.name);
+            }
+            throw se;
         }
     }
 
@@ -302,7 +355,16 @@ class TProtocolSerializer extends Serializer {
             case TType.STRING:
                 if (type == PPrimitive.BINARY) {
                     ByteBuffer buffer = protocol.readBinary();
-                    return Binary.wrap(buffer.array());
+                    if (buffer.hasArray() &&
+                        buffer.arrayOffset() == 0 &&
+                        buffer.position() == 0 &&
+                        buffer.remaining() == buffer.array().length) {
+                        return Binary.wrap(buffer.array());
+                    }
+                    // The protocol may return a slice of the transport buffer.
+                    byte[] data = new byte[buffer.remaining()];
+                    buffer.get(data);
+                    return Binary.wrap(data);
                 }
                 return protocol.readString();
             case TType.STRUCT:
@@ -22,36 +22,46 @@ import net.morimekta.providence.serializer.ApplicationException;
 import net.morimekta.providence.serializer.ApplicationExceptionType;
 import net.morimekta.providence.serializer.Serializer;
 import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
 import net.morimekta.util.Binary;
-import net.morimekta.util.io.CountingOutputStream;
-
-import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TMessage;
-import org.apache.thrift.protocol.TProtocolFactory;
-import org.apache.thrift.protocol.TTupleProtocol;
-import org.apache.thrift.transport.TIOStreamTransport;
-import org.apache.thrift.transport.TTransport;
-import org.apache.thrift.transport.TTransportException;
+import net.morimekta.util.io.BinaryReader;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.BitSet;
-import java.util.List;
+import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
+
+import static net.morimekta.providence.thrift.CompactProtocol.BOOLEAN_FALSE;
+import static net.morimekta.providence.thrift.CompactProtocol.BOOLEAN_TRUE;
+import static net.morimekta.providence.thrift.CompactProtocol.readBinary;
+import static net.morimekta.providence.thrift.CompactProtocol.readMessageBegin;
+import static net.morimekta.providence.thrift.CompactProtocol.readString;
+import static net.morimekta.providence.thrift.CompactProtocol.readVarint32;
+import static net.morimekta.providence.thrift.CompactProtocol.readZigzag32;
+import static net.morimekta.providence.thrift.CompactProtocol.readZigzag64;
+import static net.morimekta.providence.thrift.CompactProtocol.writeBinary;
+import static net.morimekta.providence.thrift.CompactProtocol.writeDouble;
+import static net.morimekta.providence.thrift.CompactProtocol.writeMessageBegin;
+import static net.morimekta.providence.thrift.CompactProtocol.writeString;
+import static net.morimekta.providence.thrift.CompactProtocol.writeVarint;
+import static net.morimekta.providence.thrift.CompactProtocol.writeZigzag;
 
 /**
- * TProtocol serializer specialized for Tuple protocol, just because thrift
- * decided that this protocol should be written in a different way than other
- * protocols.
+ * Serializer for the thrift tuple protocol, just because thrift decided that
+ * this protocol should be written in a different way than other protocols.
+ * <p>
+ * Values are encoded as in the compact protocol, but the message fields are
+ * written without field headers, required fields first and then the
+ * other fields after a bitset of which of them are set. This is written and
+ * read directly from the providence descriptors, and gives the same bytes
+ * as the thrift generated tuple schemes.
  */
 public class TTupleProtocolSerializer extends Serializer {
     public static final String MIME_TYPE = "application/vnd.apache.thrift.tuple";
 
-    private final boolean          readStrict;
-    private final TProtocolFactory protocolFactory;
+    private final boolean readStrict;
 
     public TTupleProtocolSerializer() {
         this(true);
@@ -59,22 +69,23 @@ public class TTupleProtocolSerializer extends Serializer {
 
     public TTupleProtocolSerializer(boolean readStrict) {
         this.readStrict = readStrict;
-        this.protocolFactory = new TTupleProtocol.Factory();
     }
 
     @Override
     public <Message extends PMessage<Message, Field>, Field extends PField> int
     serialize(OutputStream output, Message message) throws IOException, SerializerException {
-        CountingOutputStream wrapper = new CountingOutputStream(output);
-        TTransport transport = new TIOStreamTransport(wrapper);
-        try {
-            TTupleProtocol protocol = (TTupleProtocol) protocolFactory.getProtocol(transport);
-            writeMessage(message, protocol);
-            transport.flush();
-            wrapper.flush();
-            return wrapper.getByteCount();
-        } catch (TException e) {
-            throw new SerializerException(e, e.getMessage());
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer, message);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField> int
+    serialize(ByteBuffer output, Message message) throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeMessage(buffer, message);
+            return buffer.writeTo(output);
         }
     }
 
@@ -82,37 +93,26 @@ public class TTupleProtocolSerializer extends Serializer {
     public <Message extends PMessage<Message, Field>, Field extends PField>
     int serialize(OutputStream output, PServiceCall<Message, Field> call)
             throws IOException, SerializerException {
-        CountingOutputStream wrapper = new CountingOutputStream(output);
-        TTransport transport = new TIOStreamTransport(wrapper);
-        try {
-            TTupleProtocol protocol = (TTupleProtocol) protocolFactory.getProtocol(transport);
-            TMessage tm = new TMessage(call.getMethod(), (byte) call.getType().key, call.getSequence());
-
-            protocol.writeMessageBegin(tm);
-            writeMessage(call.getMessage(), protocol);
-            protocol.writeMessageEnd();
-
-            transport.flush();
-            wrapper.flush();
-            return wrapper.getByteCount();
-        } catch (TException e) {
-            throw new SerializerException(e, e.getMessage());
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer, call);
+            return buffer.writeTo(output);
+        }
+    }
+
+    @Override
+    public <Message extends PMessage<Message, Field>, Field extends PField>
+    int serialize(ByteBuffer output, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        try (WriteBuffer buffer = WriteBuffer.acquire()) {
+            writeServiceCall(buffer, call);
+            return buffer.writeTo(output);
         }
     }
 
     @Override
     public <Message extends PMessage<Message, Field>, Field extends PField> Message
     deserialize(InputStream input, PStructDescriptor<Message, Field> descriptor) throws IOException, SerializerException {
-        try {
-            TTransport transport = new TIOStreamTransport(input);
-            TTupleProtocol protocol = (TTupleProtocol) protocolFactory.getProtocol(transport);
-
-            return readMessage(protocol, descriptor);
-        } catch (TTransportException e) {
-            throw new SerializerException(e, "Unable to serialize into transport protocol");
-        } catch (TException e) {
-            throw new SerializerException(e, "Transport exception in protocol");
-        }
+        return readMessage(new BinaryReader(input), descriptor);
     }
 
     @Override
@@ -120,46 +120,51 @@ public class TTupleProtocolSerializer extends Serializer {
     public <Message extends PMessage<Message, Field>, Field extends PField>
     PServiceCall<Message, Field> deserialize(InputStream input, PService service)
             throws SerializerException {
-        TMessage tm = null;
+        BinaryReader in = new BinaryReader(input);
+        String methodName = null;
+        int sequence = 0;
+        boolean hasSequence = false;
         PServiceCallType type = null;
         try {
-            TTransport transport = new TIOStreamTransport(input);
-            TTupleProtocol protocol = (TTupleProtocol) protocolFactory.getProtocol(transport);
+            int typeKey = readMessageBegin(in);
+            sequence = readVarint32(in);
+            hasSequence = true;
+            methodName = readString(in);
 
-            tm = protocol.readMessageBegin();
-
-            type = PServiceCallType.findByKey(tm.type);
+            type = PServiceCallType.findByKey(typeKey);
             if (type == null) {
-                throw new SerializerException("Unknown call type for id " + tm.type);
+                throw new SerializerException("Unknown call type for id " + typeKey)
+                        .setExceptionType(ApplicationExceptionType.INVALID_MESSAGE_TYPE)
+                        .setMethodName(methodName)
+                        .setSequenceNo(sequence);
             } else if (type == PServiceCallType.EXCEPTION) {
-                ApplicationException exception = readMessage(protocol, ApplicationException.kDescriptor);
-                return new PServiceCall(tm.name, type, tm.seqid, exception);
+                ApplicationException exception = readMessage(in, ApplicationException.kDescriptor);
+                return (PServiceCall<Message, Field>) new PServiceCall<>(methodName, type, sequence, exception);
             }
 
-            PServiceMethod method = service.getMethod(tm.name);
+            PServiceMethod method = service.getMethod(methodName);
             if (method == null) {
-                throw new SerializerException("No such method " + tm.name + " on " + service.getQualifiedName(null));
+                throw new SerializerException("No such method " + methodName + " on " + service.getQualifiedName(null))
+                        .setExceptionType(ApplicationExceptionType.UNKNOWN_METHOD)
+                        .setMethodName(methodName)
+                        .setCallType(type)
+                        .setSequenceNo(sequence);
             }
 
-            PStructDescriptor<Message,Field> descriptor = type.request ? method.getRequestType() : method.getResponseType();
-
-            Message message = readMessage(protocol, descriptor);
+            PStructDescriptor<Message, Field> descriptor = type.request ? method.getRequestType() : method.getResponseType();
 
-            protocol.readMessageEnd();
+            Message message = readMessage(in, descriptor);
 
-            return new PServiceCall<>(tm.name, type, tm.seqid, message);
-        } catch (TTransportException e) {
-            throw new SerializerException(e, "Unable to serialize into transport protocol")
-                    .setExceptionType(ApplicationExceptionType.forValue(e.getType()))
-                    .setCallType(type)
-                    .setMethodName(tm != null ? tm.name : "")
-                    .setSequenceNo(tm != null ? tm.seqid : 0);
-        } catch (TException e) {
-            throw new SerializerException(e, "Transport exception in protocol")
+            return new PServiceCall<>(methodName, type, sequence, message);
+        } catch (IOException e) {
+            SerializerException se = new SerializerException(e, "Unable to read service call")
                     .setExceptionType(ApplicationExceptionType.PROTOCOL_ERROR)
                     .setCallType(type)
-                    .setMethodName(tm != null ? tm.name : "")
-                    .setSequenceNo(tm != null ? tm.seqid : 0);
+                    .setMethodName(methodName);
+            if (hasSequence) {
+                se.setSequenceNo(sequence);
+            }
+            throw se;
         }
     }
 
@@ -173,45 +178,53 @@ public class TTupleProtocolSerializer extends Serializer {
         return MIME_TYPE;
     }
 
-    private void writeMessage(PMessage<?,?> message, TTupleProtocol protocol) throws TException, SerializerException {
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void writeServiceCall(WriteBuffer out, PServiceCall<Message, Field> call)
+            throws IOException, SerializerException {
+        writeMessageBegin(out, call.getType().key);
+        writeVarint(out, call.getSequence());
+        writeString(out, call.getMethod());
+        writeMessage(out, call.getMessage());
+    }
+
+    private void writeMessage(WriteBuffer out, PMessage<?,?> message) throws IOException, SerializerException {
         PStructDescriptor<?, ?> descriptor = message.descriptor();
         if (descriptor.getVariant() == PMessageVariant.UNION) {
             PField fld = ((PUnion<?,?>) message).unionField();
-            protocol.writeI16((short) fld.getKey());
-            writeTypedValue(message.get(fld.getKey()), fld.getDescriptor(), protocol);
+            if (fld == null) {
+                throw new SerializerException("Cannot write a union with no set value");
+            }
+            writeZigzag(out, (short) fld.getKey());
+            writeTypedValue(out, message.get(fld.getKey()), fld.getDescriptor());
         } else {
             PField[] fields = descriptor.getFields();
+
+            // Required fields first, as the generated tuple schemes.
+            for (PField fld : fields) {
+                if (fld.getRequirement() == PRequirement.REQUIRED) {
+                    writeTypedValue(out, message.get(fld.getKey()), fld.getDescriptor());
+                }
+            }
+
             int numOptionals = countOptionals(fields);
-            BitSet optionals = new BitSet();
             if (numOptionals > 0) {
+                // The bitset is written with the lowest bits in the last byte.
+                byte[] optionals = new byte[(numOptionals + 7) / 8];
                 int optionalPos = 0;
                 for (PField fld : fields) {
                     if (fld.getRequirement() != PRequirement.REQUIRED) {
                         if (message.has(fld.getKey())) {
-                            optionals.set(optionalPos);
+                            optionals[optionals.length - optionalPos / 8 - 1] |= 1 << (optionalPos % 8);
                         }
                         ++optionalPos;
                     }
                 }
-            }
-
-            boolean shouldWriteOptionals = true;
-            int optionalPos = 0;
+                out.write(optionals);
 
-            for (PField fld : fields) {
-                if (fld.getRequirement() == PRequirement.REQUIRED) {
-                    writeTypedValue(message.get(fld.getKey()), fld.getDescriptor(), protocol);
-                } else {
-                    // Write the optionals bitset at the position of the first
-                    // non-required field.
-                    if (shouldWriteOptionals) {
-                        protocol.writeBitSet(optionals, numOptionals);
-                        shouldWriteOptionals = false;
-                    }
-                    if (optionals.get(optionalPos)) {
-                        writeTypedValue(message.get(fld.getKey()), fld.getDescriptor(), protocol);
+                for (PField fld : fields) {
+                    if (fld.getRequirement() != PRequirement.REQUIRED && message.has(fld.getKey())) {
+                        writeTypedValue(out, message.get(fld.getKey()), fld.getDescriptor());
                     }
-                    ++optionalPos;
                 }
             }
         }
@@ -228,31 +241,36 @@ public class TTupleProtocolSerializer extends Serializer {
     }
 
     private <Message extends PMessage<Message, Field>, Field extends PField>
-    Message readMessage(TTupleProtocol protocol, PStructDescriptor<Message, Field> descriptor)
-            throws SerializerException, TException {
+    Message readMessage(BinaryReader in, PStructDescriptor<Message, Field> descriptor)
+            throws IOException, SerializerException {
         PMessageBuilder<Message, Field> builder = descriptor.builder();
 
         if (descriptor.getVariant() == PMessageVariant.UNION) {
-            int fieldId = protocol.readI16();
+            int fieldId = (short) readZigzag32(in);
             PField fld = descriptor.getField(fieldId);
-            builder.set(fld.getKey(), readTypedValue(fld.getDescriptor(), protocol));
+            if (fld == null) {
+                throw new SerializerException("No such field " + fieldId + " in " + descriptor.getQualifiedName(null));
+            }
+            builder.set(fld.getKey(), readTypedValue(in, fld.getDescriptor()));
         } else {
             PField[] fields = descriptor.getFields();
-            int numOptionals = countOptionals(fields);
-
-            BitSet optionals = null;
-            int optionalPos = 0;
             for (PField fld : fields) {
                 if (fld.getRequirement() == PRequirement.REQUIRED) {
-                    builder.set(fld.getKey(), readTypedValue(fld.getDescriptor(), protocol));
-                } else {
-                    if (optionals == null) {
-                        optionals = protocol.readBitSet(numOptionals);
-                    }
-                    if (optionals.get(optionalPos)) {
-                        builder.set(fld.getKey(), readTypedValue(fld.getDescriptor(), protocol));
+                    builder.set(fld.getKey(), readTypedValue(in, fld.getDescriptor()));
+                }
+            }
+
+            int numOptionals = countOptionals(fields);
+            if (numOptionals > 0) {
+                byte[] optionals = in.expectBytes((numOptionals + 7) / 8);
+                int optionalPos = 0;
+                for (PField fld : fields) {
+                    if (fld.getRequirement() != PRequirement.REQUIRED) {
+                        if ((optionals[optionals.length - optionalPos / 8 - 1] & (1 << (optionalPos % 8))) != 0) {
+                            builder.set(fld.getKey(), readTypedValue(in, fld.getDescriptor()));
+                        }
+                        ++optionalPos;
                     }
-                    ++optionalPos;
                 }
             }
         }
@@ -268,31 +286,31 @@ public class TTupleProtocolSerializer extends Serializer {
         return builder.build();
     }
 
-    private Object readTypedValue(PDescriptor type, TTupleProtocol protocol)
-            throws TException, SerializerException {
+    private Object readTypedValue(BinaryReader in, PDescriptor type)
+            throws IOException, SerializerException {
         switch (type.getType()) {
+            case VOID:
+                return Boolean.FALSE;
             case BOOL:
-                return protocol.readBool();
+                return in.expectByte() == BOOLEAN_TRUE;
             case BYTE:
-                return protocol.readByte();
+                return in.expectByte();
             case I16:
-                return protocol.readI16();
+                return (short) readZigzag32(in);
             case I32:
-                return protocol.readI32();
+                return readZigzag32(in);
             case I64:
-                return protocol.readI64();
+                return readZigzag64(in);
             case DOUBLE:
-                return protocol.readDouble();
-            case BINARY: {
-                ByteBuffer buffer = protocol.readBinary();
-                return Binary.wrap(buffer.array());
-            }
+                return in.expectDouble();
+            case BINARY:
+                return readBinary(in);
             case STRING:
-                return protocol.readString();
+                return readString(in);
             case ENUM: {
                 PEnumDescriptor<?> et = (PEnumDescriptor<?>) type;
                 PEnumBuilder<?> eb = et.builder();
-                final int value = protocol.readI32();
+                final int value = readZigzag32(in);
                 eb.setByValue(value);
                 if (readStrict && !eb.isValid()) {
                     throw new SerializerException("Invalid enum value " + value + " for " +
@@ -301,35 +319,35 @@ public class TTupleProtocolSerializer extends Serializer {
                 return eb.build();
             }
             case MESSAGE:
-                return readMessage(protocol, (PStructDescriptor<?, ?>) type);
+                return readMessage(in, (PStructDescriptor<?, ?>) type);
             case LIST: {
-                int lSize = protocol.readI32();
+                int lSize = readSize(in);
                 @SuppressWarnings("unchecked")
                 PList<Object> lDesc = (PList<Object>) type;
                 PDescriptor liDesc = lDesc.itemDescriptor();
 
                 PList.Builder<Object> list = lDesc.builder();
                 for (int i = 0; i < lSize; ++i) {
-                    list.add(readTypedValue(liDesc, protocol));
+                    list.add(readTypedValue(in, liDesc));
                 }
 
                 return list.build();
             }
             case SET: {
-                int sSize = protocol.readI32();
+                int sSize = readSize(in);
                 @SuppressWarnings("unchecked")
                 PSet<Object> sDesc = (PSet<Object>) type;
                 PDescriptor siDesc = sDesc.itemDescriptor();
 
                 PSet.Builder<Object> set = sDesc.builder();
                 for (int i = 0; i < sSize; ++i) {
-                    set.add(readTypedValue(siDesc, protocol));
+                    set.add(readTypedValue(in, siDesc));
                 }
 
                 return set.build();
             }
             case MAP: {
-                int mSize = protocol.readI32();
+                int mSize = readSize(in);
                 @SuppressWarnings("unchecked")
                 PMap<Object, Object> mDesc = (PMap<Object, Object>) type;
                 PDescriptor mkDesc = mDesc.keyDescriptor();
@@ -337,12 +355,11 @@ public class TTupleProtocolSerializer extends Serializer {
 
                 PMap.Builder<Object, Object> map = mDesc.builder();
                 for (int i = 0; i < mSize; ++i) {
-                    Object key = readTypedValue(mkDesc, protocol);
-                    Object val = readTypedValue(miDesc, protocol);
+                    Object key = readTypedValue(in, mkDesc);
+                    Object val = readTypedValue(in, miDesc);
                     map.put(key, val);
                 }
 
-                protocol.readMapEnd();
                 return map.build();
             }
             default:
@@ -350,68 +367,81 @@ public class TTupleProtocolSerializer extends Serializer {
         }
     }
 
-    private void writeTypedValue(Object item, PDescriptor type, TTupleProtocol protocol)
-            throws TException, SerializerException {
+    /**
+     * Read a container size. The tuple protocol writes sizes as i32 values,
+     * not as the plain varint used in compact protocol headers.
+     *
+     * @param in The reader to read from.
+     * @return The container size.
+     */
+    private static int readSize(BinaryReader in) throws IOException, SerializerException {
+        int size = readZigzag32(in);
+        if (size < 0) {
+            throw new SerializerException("Negative container size: " + size);
+        }
+        return size;
+    }
+
+    private void writeTypedValue(WriteBuffer out, Object item, PDescriptor type)
+            throws IOException, SerializerException {
         switch (type.getType()) {
+            case VOID:
+                break;
             case BOOL:
-                protocol.writeBool((Boolean) item);
+                out.write((Boolean) item ? BOOLEAN_TRUE : BOOLEAN_FALSE);
                 break;
             case BYTE:
-                protocol.writeByte((Byte) item);
+                out.write((Byte) item);
                 break;
             case I16:
-                protocol.writeI16((Short) item);
+                writeZigzag(out, (int) (Short) item);
                 break;
             case I32:
-                protocol.writeI32((Integer) item);
+                writeZigzag(out, (int) (Integer) item);
                 break;
             case I64:
-                protocol.writeI64((Long) item);
+                writeZigzag(out, (long) (Long) item);
                 break;
             case DOUBLE:
-                protocol.writeDouble((Double) item);
+                writeDouble(out, (Double) item);
                 break;
             case STRING:
-                protocol.writeString((String) item);
+                writeString(out, (CharSequence) item);
                 break;
             case BINARY:
-                protocol.writeBinary(((Binary) item).getByteBuffer());
+                writeBinary(out, (Binary) item);
                 break;
             case ENUM:
                 PEnumValue<?> value = (PEnumValue<?>) item;
-                protocol.writeI32(value.getValue());
+                writeZigzag(out, value.getValue());
                 break;
             case MESSAGE:
-                writeMessage((PMessage<?,?>) item, protocol);
+                writeMessage(out, (PMessage<?,?>) item);
                 break;
             case LIST:
-                PList<?> lType = (PList<?>) type;
-                List<?> list = (List<?>) item;
-                protocol.writeI32(list.size());
-                for (Object i : list) {
-                    writeTypedValue(i, lType.itemDescriptor(), protocol);
-                }
-                break;
-            case SET:
-                PSet<?> sType = (PSet<?>) type;
-                Set<?> set = (Set<?>) item;
-                protocol.writeI32(set.size());
-                for (Object i : set) {
-                    writeTypedValue(i, sType.itemDescriptor(), protocol);
+            case SET: {
+                PDescriptor itemType = type instanceof PList ?
+                                       ((PList<?>) type).itemDescriptor() :
+                                       ((PSet<?>) type).itemDescriptor();
+                Collection<?> collection = (Collection<?>) item;
+                writeZigzag(out, collection.size());
+                for (Object i : collection) {
+                    writeTypedValue(out, i, itemType);
                 }
                 break;
+            }
             case MAP:
                 PMap<?, ?> mType = (PMap<?, ?>) type;
                 Map<?, ?> map = (Map<?, ?>) item;
-                protocol.writeI32(map.size());
+                writeZigzag(out, map.size());
 
                 for (Map.Entry<?, ?> entry : map.entrySet()) {
-                    writeTypedValue(entry.getKey(), mType.keyDescriptor(), protocol);
-                    writeTypedValue(entry.getValue(), mType.itemDescriptor(), protocol);
+                    writeTypedValue(out, entry.getKey(), mType.keyDescriptor());
+                    writeTypedValue(out, entry.getValue(), mType.itemDescriptor());
                 }
-
-                protocol.writeMapEnd();
                 break;
+            default:
+                throw new SerializerException("Unsupported protocol field type: " + type.getType());
         }
     }
 }
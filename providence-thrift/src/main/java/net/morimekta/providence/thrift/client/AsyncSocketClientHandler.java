@@ -0,0 +1,591 @@
+package net.morimekta.providence.thrift.client;
+
+import net.morimekta.providence.PAsyncClientHandler;
+import net.morimekta.providence.PClientHandler;
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous client handler for thrift RPC using the TNonblockingServer, or
+ * similar that uses the TFramedTransport message wrapper. All connections are
+ * handled by a single selector thread, so any number of calls can be waiting
+ * for response without holding a thread each.
+ * <p>
+ * Calls are serialized on the calling thread, and written to the least busy
+ * connection. Each call is given a unique sequence ID on the wire, and the
+ * response is given the sequence ID of the original call. Note that responses
+ * are completed from the selector thread, so callbacks on the returned future
+ * that may block should use the async variants with an executor.
+ * <p>
+ * The handler can also be used as a synchronous client handler, in which case
+ * the calling thread waits for the response.
+ * <p>
+ * When using this client handler make sure to close it when no longer in use.
+ * Otherwise it will keep the selector thread and connections open.
+ */
+public class AsyncSocketClientHandler implements PAsyncClientHandler, PClientHandler, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSocketClientHandler.class);
+
+    private static final int MAX_FRAME_SIZE = 16384000;  // 16M.
+    private static final int SWEEP_INTERVAL = 100;
+
+    private final Serializer    serializer;
+    private final SocketAddress address;
+    private final int           connect_timeout;
+    private final int           read_timeout;
+    private final int           max_connections;
+
+    private final Queue<Pending>        outgoing;
+    private final Map<Integer, Pending> pending;
+    private final AtomicInteger         nextSequence;
+
+    private volatile boolean closed;
+    private Selector         selector;
+    private Thread           thread;
+
+    public AsyncSocketClientHandler(Serializer serializer, SocketAddress address) {
+        this(serializer, address, 10000, 10000, 1);
+    }
+
+    /**
+     * Create an async client handler.
+     *
+     * @param serializer The serializer to use.
+     * @param address The address of the server.
+     * @param connect_timeout Timeout in milliseconds for connecting.
+     * @param read_timeout Timeout in milliseconds from the call is made until the response is read.
+     * @param max_connections Max number of open connections.
+     */
+    public AsyncSocketClientHandler(Serializer serializer,
+                                    SocketAddress address,
+                                    int connect_timeout,
+                                    int read_timeout,
+                                    int max_connections) {
+        if (max_connections < 1) {
+            throw new IllegalArgumentException("Invalid max connections: " + max_connections);
+        }
+        this.serializer = serializer;
+        this.address = address;
+        this.connect_timeout = connect_timeout;
+        this.read_timeout = read_timeout;
+        this.max_connections = max_connections;
+
+        this.outgoing = new ConcurrentLinkedQueue<>();
+        this.pending = new ConcurrentHashMap<>();
+        this.nextSequence = new AtomicInteger(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread loop;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            loop = thread;
+            if (selector != null) {
+                selector.wakeup();
+            }
+        }
+        if (loop != null && loop != Thread.currentThread()) {
+            try {
+                loop.join(connect_timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for client handler to close");
+            }
+        }
+    }
+
+    @Override
+    public <Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField> PServiceCall<Response, ResponseField>
+    handleCall(PServiceCall<Request, RequestField> call, PService service)
+            throws IOException, SerializerException {
+        try {
+            return this.<Request, Response, RequestField, ResponseField>handleCallAsync(call, service).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof SerializerException) {
+                throw (SerializerException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField> CompletableFuture<PServiceCall<Response, ResponseField>>
+    handleCallAsync(PServiceCall<Request, RequestField> call, PService service) {
+        CompletableFuture<PServiceCall<Response, ResponseField>> future = new CompletableFuture<>();
+        try {
+            Selector sel = start();
+
+            int sequence = nextSequence.getAndIncrement();
+            ByteBuffer frame = frame(new PServiceCall<>(call.getMethod(), call.getType(), sequence, call.getMessage()));
+
+            Pending request = new Pending(service,
+                                          call.getSequence(),
+                                          sequence,
+                                          frame,
+                                          (CompletableFuture) future,
+                                          call.getType() == PServiceCallType.ONEWAY);
+            // Queue under the same lock as closing, so the selector loop
+            // either sees the call when draining the queues, or the call
+            // sees that the handler is closed.
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Client handler is closed");
+                }
+                if (!request.oneway) {
+                    pending.put(sequence, request);
+                }
+                outgoing.add(request);
+            }
+            sel.wakeup();
+        } catch (IOException | SerializerException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Start the selector thread if not already started.
+     *
+     * @return The selector.
+     * @throws IOException If closed, or unable to open selector.
+     */
+    private synchronized Selector start() throws IOException {
+        if (closed) {
+            throw new IOException("Client handler is closed");
+        }
+        if (selector == null) {
+            selector = Selector.open();
+            thread = new Thread(this::loop, "providence-async-client-" + address);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return selector;
+    }
+
+    /**
+     * Serialize the call to a buffer with the frame size prefix.
+     */
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    ByteBuffer frame(PServiceCall<Message, Field> call) throws IOException, SerializerException {
+        ByteBuffer frame;
+        int size = serializer.serializedSize(call);
+        if (size >= 0) {
+            frame = ByteBuffer.allocate(Integer.BYTES + size);
+            frame.putInt(size);
+            serializer.serialize(frame, call);
+        } else {
+            try (WriteBuffer buffer = WriteBuffer.acquire()) {
+                serializer.serialize(buffer, call);
+                frame = ByteBuffer.allocate(Integer.BYTES + buffer.size());
+                frame.putInt(buffer.size());
+                buffer.writeTo(frame);
+            }
+        }
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * The selector loop. Only this thread touches the connections.
+     */
+    private void loop() {
+        List<Connection> connections = new ArrayList<>();
+        long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL;
+        try {
+            while (!closed) {
+                Pending call;
+                while ((call = outgoing.poll()) != null) {
+                    send(connections, call);
+                }
+
+                selector.select(Math.max(1, nextSweep - System.currentTimeMillis()));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) {
+                            connection.finishConnect();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    } catch (IOException e) {
+                        connection.fail(e);
+                        connections.remove(connection);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    sweep(connections, now);
+                    nextSweep = now + SWEEP_INTERVAL;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Selector loop for {} failed: {}", address, e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                closed = true;
+            }
+            IOException e = new IOException("Client handler is closed");
+            for (Connection connection : connections) {
+                connection.fail(e);
+            }
+            Pending call;
+            while ((call = outgoing.poll()) != null) {
+                call.response.completeExceptionally(e);
+            }
+            for (Pending waiting : pending.values()) {
+                waiting.response.completeExceptionally(e);
+            }
+            pending.clear();
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Failed to close selector: {}", ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue the call on the least busy connection, or open a new connection
+     * if all are busy and not at max connections.
+     */
+    private void send(List<Connection> connections, Pending call) {
+        if (!call.oneway && !pending.containsKey(call.sequence)) {
+            // Already timed out.
+            return;
+        }
+
+        Connection best = null;
+        for (Connection connection : connections) {
+            if (best == null || connection.load() < best.load()) {
+                best = connection;
+            }
+        }
+        if (best == null || (best.load() > 0 && connections.size() < max_connections)) {
+            try {
+                best = new Connection();
+                connections.add(best);
+            } catch (IOException e) {
+                pending.remove(call.sequence);
+                call.response.completeExceptionally(e);
+                return;
+            }
+        }
+        best.queue(call);
+    }
+
+    /**
+     * Fail calls that have waited too long for response, and connections
+     * not connected within the connect timeout.
+     */
+    private void sweep(List<Connection> connections, long now) {
+        Iterator<Connection> iterator = connections.iterator();
+        while (iterator.hasNext()) {
+            Connection connection = iterator.next();
+            if (!connection.channel.isConnected() && connection.started < now - connect_timeout) {
+                connection.fail(new SocketTimeoutException("Timed out connecting to " + address));
+                iterator.remove();
+            }
+        }
+
+        Iterator<Pending> waiting = pending.values().iterator();
+        while (waiting.hasNext()) {
+            Pending call = waiting.next();
+            if (call.created < now - read_timeout) {
+                waiting.remove();
+                if (call.connection != null) {
+                    call.connection.inflight.remove(call.sequence);
+                }
+                call.response.completeExceptionally(
+                        new SocketTimeoutException("Timed out waiting for response after " + read_timeout + " ms"));
+            }
+        }
+    }
+
+    private static class Pending {
+        private final PService                                  service;
+        private final int                                       callSequence;
+        private final int                                       sequence;
+        private final ByteBuffer                                frame;
+        private final CompletableFuture<PServiceCall<?, ?>>     response;
+        private final boolean                                   oneway;
+        private final long                                      created;
+
+        private Connection connection;
+
+        private Pending(PService service,
+                        int callSequence,
+                        int sequence,
+                        ByteBuffer frame,
+                        CompletableFuture<PServiceCall<?, ?>> response,
+                        boolean oneway) {
+            this.service = service;
+            this.callSequence = callSequence;
+            this.sequence = sequence;
+            this.frame = frame;
+            this.response = response;
+            this.oneway = oneway;
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A single non-blocking framed connection to the server.
+     */
+    private class Connection {
+        private final SocketChannel   channel;
+        private final SelectionKey    key;
+        private final Queue<Pending>  writes;
+        private final Set<Integer>    inflight;
+        private final ByteBuffer      sizeBuffer;
+        private final long            started;
+
+        private ByteBuffer frameBuffer;
+
+        private Connection() throws IOException {
+            channel = SocketChannel.open();
+            try {
+                Socket socket = channel.socket();
+                socket.setSoLinger(false, 0);
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+
+                channel.configureBlocking(false);
+                if (channel.connect(address)) {
+                    key = channel.register(selector, SelectionKey.OP_READ, this);
+                } else {
+                    key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            writes = new ArrayDeque<>();
+            inflight = new HashSet<>();
+            sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+            started = System.currentTimeMillis();
+        }
+
+        private int load() {
+            return inflight.size() + writes.size();
+        }
+
+        private void queue(Pending call) {
+            call.connection = this;
+            writes.add(call);
+            if (!call.oneway) {
+                inflight.add(call.sequence);
+            }
+            if (channel.isConnected()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void finishConnect() throws IOException {
+            if (channel.finishConnect()) {
+                int ops = SelectionKey.OP_READ;
+                if (!writes.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                key.interestOps(ops);
+            }
+        }
+
+        private void write() throws IOException {
+            Pending call;
+            while ((call = writes.peek()) != null) {
+                channel.write(call.frame);
+                if (call.frame.hasRemaining()) {
+                    // Socket buffer is full, wait for next write.
+                    return;
+                }
+                writes.poll();
+                if (call.oneway) {
+                    call.response.complete(null);
+                }
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void read() throws IOException {
+            while (true) {
+                if (frameBuffer == null) {
+                    if (channel.read(sizeBuffer) < 0) {
+                        throw new IOException("Connection closed by server");
+                    }
+                    if (sizeBuffer.hasRemaining()) {
+                        return;
+                    }
+                    sizeBuffer.flip();
+                    int frameSize = sizeBuffer.getInt();
+                    sizeBuffer.clear();
+                    if (frameSize < 1 || frameSize > MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid frame size: " + frameSize);
+                    }
+                    frameBuffer = ByteBuffer.allocate(frameSize);
+                }
+
+                if (channel.read(frameBuffer) < 0) {
+                    throw new IOException("Connection closed by server");
+                }
+                if (frameBuffer.hasRemaining()) {
+                    return;
+                }
+                frameBuffer.flip();
+                ByteBuffer frame = frameBuffer;
+                frameBuffer = null;
+                dispatch(frame);
+            }
+        }
+
+        /**
+         * Complete the pending call the response frame belongs to. The
+         * frame is read with the service of any call waiting on this
+         * connection, and re-read once with the service of the call the
+         * response belongs to if that is another service.
+         */
+        @SuppressWarnings("unchecked")
+        private void dispatch(ByteBuffer frame) throws IOException {
+            PService service = null;
+            Iterator<Integer> iterator = inflight.iterator();
+            while (iterator.hasNext()) {
+                Pending call = pending.get(iterator.next());
+                if (call != null) {
+                    service = call.service;
+                    break;
+                }
+                iterator.remove();
+            }
+            if (service == null) {
+                LOGGER.debug("Dropped response without pending call from {}", address);
+                return;
+            }
+
+            Pending call;
+            PServiceCall response;
+            try {
+                response = serializer.deserialize(frame.duplicate(), service);
+                call = pending.remove(response.getSequence());
+                if (call == null) {
+                    LOGGER.debug("Dropped response to {} #{} without pending call",
+                                 response.getMethod(), response.getSequence());
+                    return;
+                }
+                if (call.service != service) {
+                    response = serializer.deserialize(frame.duplicate(), call.service);
+                }
+            } catch (SerializerException e) {
+                call = pending.remove(e.getSequenceNo());
+                if (call == null) {
+                    LOGGER.debug("Dropped invalid response: {}", e.getMessage());
+                    return;
+                }
+                inflight.remove(call.sequence);
+                if (call.service == service) {
+                    call.response.completeExceptionally(e);
+                    return;
+                }
+                // The response may only be valid for the service of the call.
+                try {
+                    response = serializer.deserialize(frame.duplicate(), call.service);
+                } catch (SerializerException ex) {
+                    call.response.completeExceptionally(ex);
+                    return;
+                }
+            }
+
+            inflight.remove(call.sequence);
+            call.response.complete(new PServiceCall(response.getMethod(),
+                                                    response.getType(),
+                                                    call.callSequence,
+                                                    response.getMessage()));
+        }
+
+        /**
+         * Close the connection, and fail all calls sent on it.
+         */
+        private void fail(IOException e) {
+            if (!closed) {
+                LOGGER.debug("Connection to {} failed: {}", address, e.getMessage());
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Failed to close connection to {}: {}", address, ex.getMessage());
+            }
+            for (Pending call : writes) {
+                pending.remove(call.sequence);
+                call.response.completeExceptionally(e);
+            }
+            writes.clear();
+            for (Integer sequence : inflight) {
+                Pending call = pending.remove(sequence);
+                if (call != null) {
+                    call.response.completeExceptionally(e);
+                }
+            }
+            inflight.clear();
+        }
+    }
+}
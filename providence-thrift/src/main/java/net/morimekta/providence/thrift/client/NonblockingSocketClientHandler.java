@@ -13,8 +13,6 @@ import net.morimekta.providence.thrift.io.FramedBufferOutputStream;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.SocketChannel;
@@ -31,18 +29,30 @@ public class NonblockingSocketClientHandler implements PClientHandler, Closeable
     private final SocketAddress address;
     private final int           connect_timeout;
     private final int           read_timeout;
+    private final int           max_frame_size;
 
-    private SocketChannel channel;
+    private SocketChannel            channel;
+    private FramedBufferInputSteram  in;
+    private FramedBufferOutputStream out;
 
     public NonblockingSocketClientHandler(Serializer serializer, SocketAddress address) {
         this(serializer, address, 10000, 10000);
     }
 
     public NonblockingSocketClientHandler(Serializer serializer, SocketAddress address, int connect_timeout, int read_timeout) {
+        this(serializer, address, connect_timeout, read_timeout, FramedBufferInputSteram.DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    public NonblockingSocketClientHandler(Serializer serializer,
+                                          SocketAddress address,
+                                          int connect_timeout,
+                                          int read_timeout,
+                                          int max_frame_size) {
         this.serializer = serializer;
         this.address = address;
         this.connect_timeout = connect_timeout;
         this.read_timeout = read_timeout;
+        this.max_frame_size = max_frame_size;
     }
 
     private SocketChannel connect() throws IOException {
@@ -57,6 +67,10 @@ public class NonblockingSocketClientHandler implements PClientHandler, Closeable
             // The channel is always in blocking mode.
             channel.configureBlocking(true);
             channel.socket().connect(address, connect_timeout);
+
+            // The framed streams are reused for all calls on the channel.
+            in = new FramedBufferInputSteram(channel, max_frame_size);
+            out = new FramedBufferOutputStream(channel, -1, max_frame_size);
         }
         return channel;
     }
@@ -65,9 +79,13 @@ public class NonblockingSocketClientHandler implements PClientHandler, Closeable
     public void close() throws IOException {
         if (channel != null) {
             try {
+                in.close();
+                out.close();
                 channel.close();
             } finally {
                 channel = null;
+                in = null;
+                out = null;
             }
         }
     }
@@ -81,13 +99,36 @@ public class NonblockingSocketClientHandler implements PClientHandler, Closeable
             throws IOException, SerializerException {
         SocketChannel channel = connect();
 
-        OutputStream out = new FramedBufferOutputStream(channel);
-        serializer.serialize(out, call);
-        out.flush();
+        int size = serializer.serializedSize(call);
+        if (size < 0) {
+            try {
+                serializer.serialize(out, call);
+            } catch (IOException | SerializerException | RuntimeException e) {
+                // Do not send the partial frame with the next call.
+                out.reset();
+                throw e;
+            }
+            out.flush();
+        } else {
+            FramedBufferOutputStream frame = new FramedBufferOutputStream(channel, size, max_frame_size);
+            try {
+                serializer.serialize(frame, call);
+                frame.flush();
+            } catch (IOException | SerializerException | RuntimeException e) {
+                // Part of the frame may already be sent, so the connection
+                // can not be used for more calls.
+                close();
+                throw e;
+            }
+        }
 
         if (call.getType() != PServiceCallType.ONEWAY) {
-            InputStream in = new FramedBufferInputSteram(channel);
-            return serializer.deserialize(in, service);
+            try {
+                return serializer.deserialize(in, service);
+            } finally {
+                // Drop anything left of the response frame.
+                in.nextFrame();
+            }
         }
 
         return null;
@@ -0,0 +1,636 @@
+package net.morimekta.providence.thrift.client;
+
+import net.morimekta.providence.PClientHandler;
+import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.providence.serializer.WriteBuffer;
+import net.morimekta.providence.thrift.io.FramedBufferOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client handler for thrift RPC using the TNonblockingServer, or similar that
+ * uses the TFramedTransport message wrapper, keeping a bounded pool of open
+ * connections to the server. The handler is thread safe, and is meant to be
+ * shared by all the clients calling the same server.
+ * <p>
+ * In the default mode each call borrows a connection for the whole call, and
+ * returns it to the pool when the response is read. Connections that have been
+ * idle for longer than the idle timeout are closed, and idle connections are
+ * checked to still be open before they are reused.
+ * <p>
+ * In multiplexed mode calls are not given a connection of their own, but are
+ * written to the least busy connection, and responses are matched to the
+ * calls by the sequence ID. The sequence ID from the call is used as is, unless
+ * another call with the same ID is already waiting on the same connection.
+ * Note that this requires the server to handle the sequence ID per call, which
+ * all thrift servers do.
+ * <p>
+ * When using this client handler make sure to close it when no longer in use.
+ * Otherwise it will keep the connections open until idle timeout.
+ */
+public class PooledSocketClientHandler implements PClientHandler, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledSocketClientHandler.class);
+
+    private static final int MAX_FRAME_SIZE = 16384000;  // 16M.
+
+    private final Serializer    serializer;
+    private final SocketAddress address;
+    private final int           connect_timeout;
+    private final int           read_timeout;
+    private final int           max_connections;
+    private final long          idle_timeout;
+    private final boolean       multiplexed;
+
+    private final ReentrantLock     lock;
+    private final Condition         available;
+    private final Deque<Connection> idle;
+    private final List<Connection>  connections;
+    private final AtomicInteger     nextSequence;
+
+    private int     opened;
+    private boolean closed;
+
+    public PooledSocketClientHandler(Serializer serializer, SocketAddress address) {
+        this(serializer, address, 10000, 10000, 8, 60000, false);
+    }
+
+    public PooledSocketClientHandler(Serializer serializer, SocketAddress address, int max_connections, boolean multiplexed) {
+        this(serializer, address, 10000, 10000, max_connections, 60000, multiplexed);
+    }
+
+    /**
+     * Create a pooled client handler.
+     *
+     * @param serializer The serializer to use.
+     * @param address The address of the server.
+     * @param connect_timeout Timeout in milliseconds for connecting, and for waiting for a free connection.
+     * @param read_timeout Timeout in milliseconds for reading the response.
+     * @param max_connections Max number of open connections.
+     * @param idle_timeout Time in milliseconds a connection can be unused before it is closed.
+     * @param multiplexed If calls should share connections.
+     */
+    public PooledSocketClientHandler(Serializer serializer,
+                                     SocketAddress address,
+                                     int connect_timeout,
+                                     int read_timeout,
+                                     int max_connections,
+                                     long idle_timeout,
+                                     boolean multiplexed) {
+        if (max_connections < 1) {
+            throw new IllegalArgumentException("Invalid max connections: " + max_connections);
+        }
+        this.serializer = serializer;
+        this.address = address;
+        this.connect_timeout = connect_timeout;
+        this.read_timeout = read_timeout;
+        this.max_connections = max_connections;
+        this.idle_timeout = idle_timeout;
+        this.multiplexed = multiplexed;
+
+        this.lock = new ReentrantLock();
+        this.available = lock.newCondition();
+        this.idle = new ArrayDeque<>();
+        this.connections = new ArrayList<>();
+        this.nextSequence = new AtomicInteger(Integer.MAX_VALUE / 2);
+    }
+
+    /**
+     * @return The number of currently open connections.
+     */
+    public int getOpenConnections() {
+        lock.lock();
+        try {
+            return opened;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        List<Connection> open;
+        lock.lock();
+        try {
+            closed = true;
+            open = new ArrayList<>(connections);
+            connections.clear();
+            idle.clear();
+            opened = 0;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Connection connection : open) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public <Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField> PServiceCall<Response, ResponseField>
+    handleCall(PServiceCall<Request, RequestField> call, PService service)
+            throws IOException, SerializerException {
+        if (multiplexed) {
+            return handleMultiplexed(call, service);
+        }
+
+        Connection connection = borrow();
+        boolean reusable = false;
+        try {
+            connection.write(call);
+            if (call.getType() == PServiceCallType.ONEWAY) {
+                reusable = true;
+                return null;
+            }
+
+            PServiceCall<Response, ResponseField> response =
+                    serializer.deserialize(ByteBuffer.wrap(connection.readFrame()), service);
+            if (response.getSequence() != call.getSequence()) {
+                throw new IOException("Response sequence " + response.getSequence() +
+                                      " does not match call " + call.getSequence());
+            }
+            reusable = true;
+            return response;
+        } finally {
+            release(connection, reusable);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Request extends PMessage<Request, RequestField>,
+            Response extends PMessage<Response, ResponseField>,
+            RequestField extends PField,
+            ResponseField extends PField> PServiceCall<Response, ResponseField>
+    handleMultiplexed(PServiceCall<Request, RequestField> call, PService service)
+            throws IOException, SerializerException {
+        Connection connection = acquire();
+        Pending pending = new Pending(service);
+        int sequence = connection.register(call.getSequence(), pending);
+        try {
+            if (sequence == call.getSequence()) {
+                connection.write(call);
+            } else {
+                connection.write(new PServiceCall<>(call.getMethod(), call.getType(), sequence, call.getMessage()));
+            }
+        } catch (IOException e) {
+            connection.unregister(sequence);
+            connection.close();
+            throw e;
+        }
+
+        if (call.getType() == PServiceCallType.ONEWAY) {
+            connection.unregister(sequence);
+            return null;
+        }
+
+        PServiceCall<Response, ResponseField> response;
+        try {
+            response = (PServiceCall<Response, ResponseField>) pending.response.get(read_timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            connection.unregister(sequence);
+            throw new SocketTimeoutException("Timed out waiting for response after " + read_timeout + " ms");
+        } catch (InterruptedException e) {
+            connection.unregister(sequence);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof SerializerException) {
+                throw (SerializerException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+
+        if (sequence != call.getSequence()) {
+            return new PServiceCall<>(response.getMethod(), response.getType(), call.getSequence(), response.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Borrow a connection for a single call. Reuses the most recently used
+     * idle connection, or opens a new if not at max connections. Otherwise
+     * waits for a connection to be released.
+     */
+    private Connection borrow() throws IOException {
+        long deadline = System.currentTimeMillis() + connect_timeout;
+        lock.lock();
+        try {
+            while (true) {
+                ensureOpen();
+                evictIdle();
+                while (!idle.isEmpty()) {
+                    Connection connection = idle.pollFirst();
+                    if (connection.isHealthy()) {
+                        return connection;
+                    }
+                    discard(connection);
+                }
+                if (opened < max_connections) {
+                    ++opened;
+                    break;
+                }
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new SocketTimeoutException("Timed out waiting for connection to " + address);
+                }
+                try {
+                    available.await(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for connection");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return open();
+    }
+
+    /**
+     * Return a borrowed connection to the pool.
+     *
+     * @param connection The connection to return.
+     * @param reusable If the connection can be reused.
+     */
+    private void release(Connection connection, boolean reusable) {
+        connection.lastUsed = System.currentTimeMillis();
+        lock.lock();
+        try {
+            if (reusable && !closed) {
+                idle.addFirst(connection);
+            } else {
+                discard(connection);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get a connection to send a multiplexed call on. This is the connection
+     * with the least calls in flight, or a new connection if all are busy and
+     * not at max connections. If all connections are still being opened,
+     * waits for one of them to be ready.
+     */
+    private Connection acquire() throws IOException {
+        long deadline = System.currentTimeMillis() + connect_timeout;
+        lock.lock();
+        try {
+            while (true) {
+                ensureOpen();
+                long now = System.currentTimeMillis();
+                Connection best = null;
+                Iterator<Connection> iterator = connections.iterator();
+                while (iterator.hasNext()) {
+                    Connection connection = iterator.next();
+                    if (!connection.channel.isOpen()) {
+                        iterator.remove();
+                        --opened;
+                    } else if (connection.pending.isEmpty() && connection.lastUsed < now - idle_timeout) {
+                        iterator.remove();
+                        --opened;
+                        connection.close();
+                    } else if (best == null || connection.pending.size() < best.pending.size()) {
+                        best = connection;
+                    }
+                }
+                if (best != null && (best.pending.isEmpty() || opened >= max_connections)) {
+                    best.lastUsed = now;
+                    return best;
+                }
+                if (opened < max_connections) {
+                    ++opened;
+                    break;
+                }
+                long wait = deadline - now;
+                if (wait <= 0) {
+                    throw new SocketTimeoutException("Timed out waiting for connection to " + address);
+                }
+                try {
+                    available.await(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for connection");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Connection connection = open();
+        connection.startReader();
+        return connection;
+    }
+
+    private Connection open() throws IOException {
+        Connection connection;
+        try {
+            connection = new Connection();
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                --opened;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                connection.close();
+                throw new IOException("Client handler is closed");
+            }
+            connections.add(connection);
+            // Multiplexed calls may be waiting for any connection to open.
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return connection;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Client handler is closed");
+        }
+    }
+
+    /**
+     * Close idle connections not used within the idle timeout. Must be
+     * called while holding the lock.
+     */
+    private void evictIdle() {
+        long limit = System.currentTimeMillis() - idle_timeout;
+        while (!idle.isEmpty() && idle.peekLast().lastUsed < limit) {
+            discard(idle.pollLast());
+        }
+    }
+
+    /**
+     * Close and forget a connection. Must be called while holding the lock.
+     */
+    private void discard(Connection connection) {
+        if (connections.remove(connection)) {
+            --opened;
+        }
+        connection.close();
+    }
+
+    private static class Pending {
+        private final PService                          service;
+        private final CompletableFuture<PServiceCall<?, ?>> response;
+
+        private Pending(PService service) {
+            this.service = service;
+            this.response = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * A single framed connection to the server.
+     */
+    private class Connection {
+        private final SocketChannel                channel;
+        private final DataInputStream              in;
+        private final ReentrantLock                writeLock;
+        private final Map<Integer, Pending>        pending;
+
+        private volatile long lastUsed;
+
+        private Connection() throws IOException {
+            channel = SocketChannel.open();
+            try {
+                Socket socket = channel.socket();
+                socket.setSoLinger(false, 0);
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                // The reader of multiplexed calls waits for any response, so
+                // the timeout is handled per call.
+                socket.setSoTimeout(multiplexed ? 0 : read_timeout);
+
+                // The channel is always in blocking mode.
+                channel.configureBlocking(true);
+                socket.connect(address, connect_timeout);
+
+                // Reading from the socket stream respects the socket read timeout.
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            writeLock = new ReentrantLock();
+            pending = new ConcurrentHashMap<>();
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private <Message extends PMessage<Message, Field>, Field extends PField>
+        void write(PServiceCall<Message, Field> call) throws IOException, SerializerException {
+            writeLock.lock();
+            try {
+                int size = serializer.serializedSize(call);
+                if (size >= 0) {
+                    FramedBufferOutputStream out = new FramedBufferOutputStream(channel, size);
+                    serializer.serialize(out, call);
+                    out.flush();
+                } else {
+                    try (WriteBuffer buffer = WriteBuffer.acquire()) {
+                        serializer.serialize(buffer, call);
+                        FramedBufferOutputStream out = new FramedBufferOutputStream(channel, buffer.size());
+                        buffer.writeTo(out);
+                        out.flush();
+                    }
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private byte[] readFrame() throws IOException {
+            int frameSize = in.readInt();
+            if (frameSize < 1 || frameSize > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame size: " + frameSize);
+            }
+            byte[] frame = new byte[frameSize];
+            in.readFully(frame);
+            return frame;
+        }
+
+        /**
+         * Check that an idle connection is still open, and has not been
+         * closed by the server.
+         */
+        private boolean isHealthy() {
+            if (!channel.isOpen() || !channel.isConnected()) {
+                return false;
+            }
+            try {
+                channel.configureBlocking(false);
+                try {
+                    // Nothing should be sent on an idle connection, so we
+                    // expect to read nothing. End of stream means closed.
+                    return channel.read(ByteBuffer.allocate(1)) == 0;
+                } finally {
+                    channel.configureBlocking(true);
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Register a multiplexed call waiting for response.
+         *
+         * @param sequence The sequence ID of the call.
+         * @param call The pending call.
+         * @return The sequence ID to use for the call.
+         */
+        private int register(int sequence, Pending call) {
+            while (pending.putIfAbsent(sequence, call) != null) {
+                sequence = nextSequence.getAndIncrement();
+            }
+            return sequence;
+        }
+
+        private void unregister(int sequence) {
+            pending.remove(sequence);
+            lastUsed = System.currentTimeMillis();
+        }
+
+        private void startReader() {
+            Thread reader = new Thread(this::readResponses, "providence-client-" + address);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * Read responses for multiplexed calls, and complete the pending
+         * call with the same sequence ID.
+         */
+        private void readResponses() {
+            Throwable failure = null;
+            try {
+                while (channel.isOpen()) {
+                    byte[] frame = readFrame();
+                    Iterator<Pending> waiting = pending.values().iterator();
+                    if (!waiting.hasNext()) {
+                        LOGGER.debug("Dropped response without pending call from {}", address);
+                        continue;
+                    }
+                    // The response is read with the service of any waiting call,
+                    // as calls on the same handler are usually to the same service.
+                    complete(frame, waiting.next().service);
+                }
+            } catch (IOException e) {
+                if (channel.isOpen()) {
+                    LOGGER.debug("Connection to {} failed: {}", address, e.getMessage());
+                }
+                failure = e;
+            } catch (RuntimeException | Error e) {
+                LOGGER.warn("Failed to handle response from {}", address, e);
+                failure = e;
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+            } finally {
+                close();
+                // No more responses will be read, so every waiting call
+                // must fail now, and not wait for the read timeout.
+                if (failure == null) {
+                    failure = new IOException("Connection to " + address + " closed");
+                }
+                for (Integer sequence : pending.keySet()) {
+                    Pending call = pending.remove(sequence);
+                    if (call != null) {
+                        call.response.completeExceptionally(failure);
+                    }
+                }
+            }
+        }
+
+        private void complete(byte[] frame, PService service) throws IOException {
+            Pending call;
+            try {
+                PServiceCall<?, ?> response = serializer.deserialize(ByteBuffer.wrap(frame), service);
+                call = pending.remove(response.getSequence());
+                if (call == null) {
+                    LOGGER.debug("Dropped response to {} #{} without pending call",
+                                 response.getMethod(), response.getSequence());
+                    return;
+                }
+                if (call.service != service) {
+                    try {
+                        response = serializer.deserialize(ByteBuffer.wrap(frame), call.service);
+                    } catch (SerializerException e) {
+                        call.response.completeExceptionally(e);
+                        return;
+                    }
+                }
+                call.response.complete(response);
+            } catch (SerializerException e) {
+                if (!e.hasSequenceNo()) {
+                    // Failed before the sequence was read, so there is no
+                    // telling which call the frame belonged to.
+                    LOGGER.debug("Dropped invalid response: {}", e.getMessage());
+                    return;
+                }
+                call = pending.remove(e.getSequenceNo());
+                if (call == null) {
+                    LOGGER.debug("Dropped invalid response: {}", e.getMessage());
+                } else if (call.service != service) {
+                    pending.put(e.getSequenceNo(), call);
+                    complete(frame, call.service);
+                } else {
+                    call.response.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close connection to {}: {}", address, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package net.morimekta.providence.thrift.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct byte buffers used for framing. Buffers are handed out in
+ * power of two size classes from 4 kB to 1 MB, and a limited number of
+ * buffers is kept for each size class. Buffers larger than the largest size
+ * class are allocated on the heap and not pooled, so a single large frame
+ * does not hold on to direct memory.
+ */
+public class DirectBufferPool {
+    private static final int MIN_SIZE_SHIFT   = 12;  // 4 kB
+    private static final int MAX_SIZE_SHIFT   = 20;  // 1 MB
+    private static final int DEFAULT_MAX_KEPT = 16;
+
+    private static final DirectBufferPool SHARED = new DirectBufferPool(DEFAULT_MAX_KEPT);
+
+    private final Queue<ByteBuffer>[] pools;
+    private final AtomicInteger[]     kept;
+    private final int                 maxKept;
+
+    /**
+     * Create a buffer pool.
+     *
+     * @param maxKept Max number of buffers kept for each size class.
+     */
+    @SuppressWarnings("unchecked")
+    public DirectBufferPool(int maxKept) {
+        this.maxKept = maxKept;
+        this.pools = new Queue[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+        this.kept = new AtomicInteger[pools.length];
+        for (int i = 0; i < pools.length; ++i) {
+            pools[i] = new ConcurrentLinkedQueue<>();
+            kept[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @return The pool shared by the framed streams.
+     */
+    public static DirectBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get a buffer with room for at least the given number of bytes. The
+     * buffer is cleared, and has the limit set to the requested size.
+     *
+     * @param size The number of bytes needed.
+     * @return The buffer.
+     */
+    public ByteBuffer acquire(int size) {
+        int index = sizeClass(size);
+        if (index < 0) {
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buffer = pools[index].poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (index + MIN_SIZE_SHIFT));
+        } else {
+            kept[index].decrementAndGet();
+            buffer.clear();
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back to the pool. The buffer must not be used after it
+     * has been released.
+     *
+     * @param buffer The buffer to release.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        int index = sizeClass(buffer.capacity());
+        if (index < 0 || buffer.capacity() != 1 << (index + MIN_SIZE_SHIFT)) {
+            return;
+        }
+        if (kept[index].incrementAndGet() > maxKept) {
+            kept[index].decrementAndGet();
+            return;
+        }
+        pools[index].offer(buffer);
+    }
+
+    /**
+     * @param size The number of bytes needed.
+     * @return The index of the smallest size class with room for the size,
+     *         or -1 if larger than the largest size class.
+     */
+    private static int sizeClass(int size) {
+        if (size > 1 << MAX_SIZE_SHIFT) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_SIZE_SHIFT) - MIN_SIZE_SHIFT;
+    }
+}
@@ -1,8 +1,6 @@
 package net.morimekta.providence.thrift.io;
 
 import org.apache.thrift.transport.TFramedTransport;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -14,31 +12,55 @@ import static java.lang.Math.min;
 /**
  * Wrap an input stream in a framed buffer reader similar to the thrift
  * TFramedTransport.
+ * <p>
+ * The frame buffer is sized to the frame, and drawn from the shared
+ * {@link DirectBufferPool}. The stream can be reused for reading any number
+ * of frames from the same channel, and the buffer is given back to the pool
+ * as soon as the frame has been read, or when the stream is closed. Closing
+ * the stream does not close the channel.
  */
 public class FramedBufferInputSteram extends InputStream {
-    private static Logger LOGGER = LoggerFactory.getLogger(FramedBufferInputSteram.class.getName());
-
-    private static final int MAX_BUFFER_SIZE = 16384000;  // 16M.
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384000;  // 16M.
 
     private final ByteBuffer          frameSizeBuffer;
     private final ReadableByteChannel in;
-    private final ByteBuffer          buffer;
+    private final int                 maxFrameSize;
+    private final DirectBufferPool    pool;
+
+    private ByteBuffer buffer;
 
     public FramedBufferInputSteram(ReadableByteChannel in) {
+        this(in, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Create a framed input stream.
+     *
+     * @param in The channel to read from.
+     * @param maxFrameSize The max size of frames to accept.
+     */
+    public FramedBufferInputSteram(ReadableByteChannel in, int maxFrameSize) {
+        if (maxFrameSize < 1) {
+            throw new IllegalArgumentException("Invalid max frame size: " + maxFrameSize);
+        }
         this.in = in;
+        this.maxFrameSize = maxFrameSize;
         this.frameSizeBuffer = ByteBuffer.allocate(Integer.BYTES);
-        this.buffer = ByteBuffer.allocateDirect(MAX_BUFFER_SIZE);
-        this.buffer.limit(0);
+        this.pool = DirectBufferPool.shared();
     }
 
     @Override
     public int read() throws IOException {
-        if (!buffer.hasRemaining()) {
+        if (!hasRemaining()) {
             if (readFrame() < 0) {
                 return -1;
             }
         }
-        return intValue(buffer.get());
+        int value = intValue(buffer.get());
+        if (!buffer.hasRemaining()) {
+            releaseFrame();
+        }
+        return value;
     }
 
     private static int intValue(byte b) {
@@ -59,50 +81,96 @@ public class FramedBufferInputSteram extends InputStream {
         if (off + len > data.length) {
             throw new IOException();
         }
+        if (len == 0) {
+            return 0;
+        }
 
-        int pos = 0;
-        while (pos < len) {
-            if (!buffer.hasRemaining()) {
-                if (readFrame() < 0) {
-                    return pos;
-                }
+        if (!hasRemaining()) {
+            if (readFrame() < 0) {
+                return -1;
             }
-            int remaining = buffer.remaining();
-            buffer.get(data, off + pos, min(len - pos, remaining));
-            pos += remaining;
         }
-
-        return pos;
+        // Only read from the current frame, so we don't block waiting for
+        // a frame that may not come.
+        int count = min(len, buffer.remaining());
+        buffer.get(data, off, count);
+        if (!buffer.hasRemaining()) {
+            releaseFrame();
+        }
+        return count;
     }
 
-    private int readFrame() throws IOException {
-        frameSizeBuffer.rewind();
-        frameSizeBuffer.limit(Integer.BYTES);
+    @Override
+    public int available() {
+        return buffer == null ? 0 : buffer.remaining();
+    }
 
-        in.read(frameSizeBuffer);
-        if (frameSizeBuffer.position() == 0) {
-            return -1;
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0 || !hasRemaining()) {
+            return 0;
         }
-        if (frameSizeBuffer.position() < Integer.BYTES) {
-            throw new IOException();
+        int count = (int) min(n, buffer.remaining());
+        buffer.position(buffer.position() + count);
+        if (!buffer.hasRemaining()) {
+            releaseFrame();
         }
+        return count;
+    }
 
-        int frameSize = TFramedTransport.decodeFrameSize(frameSizeBuffer.array());
-        if (frameSize < 1 || frameSize > MAX_BUFFER_SIZE) {
-            throw new IOException();
+    /**
+     * Skip the rest of the current frame, so the next read starts at the
+     * next frame.
+     */
+    public void nextFrame() {
+        releaseFrame();
+    }
+
+    /**
+     * Release the frame buffer. The channel is not closed.
+     */
+    @Override
+    public void close() {
+        releaseFrame();
+    }
+
+    private boolean hasRemaining() {
+        return buffer != null && buffer.hasRemaining();
+    }
+
+    private void releaseFrame() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
         }
+    }
 
-        buffer.rewind();
-        buffer.limit(frameSize);
+    private int readFrame() throws IOException {
+        releaseFrame();
 
-        while (in.read(buffer) > 0) {
-            if (buffer.position() == frameSize) {
-                break;
+        frameSizeBuffer.clear();
+        while (frameSizeBuffer.hasRemaining()) {
+            if (in.read(frameSizeBuffer) < 0) {
+                if (frameSizeBuffer.position() == 0) {
+                    return -1;
+                }
+                throw new IOException("Incomplete frame size: got " + frameSizeBuffer.position() + " of 4 bytes");
             }
-            LOGGER.debug("still not enough:  "+ buffer.position() + " of " + frameSize);
         }
-        if (buffer.position() < frameSize) {
-            throw new IOException();
+
+        int frameSize = TFramedTransport.decodeFrameSize(frameSizeBuffer.array());
+        if (frameSize < 1) {
+            throw new IOException("Invalid frame size: " + frameSize);
+        }
+        if (frameSize > maxFrameSize) {
+            throw new IOException("Frame size " + frameSize + " exceeds max " + maxFrameSize);
+        }
+
+        buffer = pool.acquire(frameSize);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new IOException("Incomplete frame: got " + buffer.position() + " of " + frameSize + " bytes");
+            }
         }
 
         buffer.flip();
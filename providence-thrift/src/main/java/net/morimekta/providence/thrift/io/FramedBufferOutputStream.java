@@ -5,63 +5,207 @@ import org.apache.thrift.transport.TFramedTransport;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 /**
  * Wrap an output stream in a framed buffer writer similar to the thrift
  * TFramedTransport.
+ * <p>
+ * If the frame size is known up front (see
+ * {@link net.morimekta.providence.serializer.Serializer#serializedSize(net.morimekta.providence.PServiceCall)}),
+ * the frame size is written before the content, and the content is
+ * written directly to the channel without buffering. Otherwise the content
+ * is buffered in a buffer from the shared {@link DirectBufferPool}, which
+ * grows as needed, and the frame is written on {@link #flush()}. The stream
+ * can then be reused for the next frame. Closing the stream gives the
+ * buffer back to the pool, but does not close the channel.
  */
 public class FramedBufferOutputStream extends OutputStream {
-    private static final int MAX_BUFFER_SIZE = 16384000;  // 16M.
+    private static final int INITIAL_BUFFER_SIZE = 4096;
 
     private final byte[]              frameSizeBuffer;
-    private final ByteBuffer          buffer;
     private final WritableByteChannel out;
+    private final int                 frameSize;
+    private final int                 maxFrameSize;
+    private final DirectBufferPool    pool;
+
+    private ByteBuffer buffer;
+    private int        written;
+    private boolean    headerWritten;
 
     public FramedBufferOutputStream(WritableByteChannel out) {
+        this(out, -1, FramedBufferInputSteram.DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Create a stream writing a single frame of known size.
+     *
+     * @param out The channel to write to.
+     * @param frameSize The exact number of bytes that will be written.
+     */
+    public FramedBufferOutputStream(WritableByteChannel out, int frameSize) {
+        this(out, frameSize, FramedBufferInputSteram.DEFAULT_MAX_FRAME_SIZE);
+        if (frameSize < 0) {
+            throw new IllegalArgumentException("Invalid frame size: " + frameSize);
+        }
+    }
+
+    /**
+     * Create a framed output stream.
+     *
+     * @param out The channel to write to.
+     * @param frameSize The exact number of bytes that will be written, or -1
+     *                  if not known.
+     * @param maxFrameSize The max size of frames to write.
+     */
+    public FramedBufferOutputStream(WritableByteChannel out, int frameSize, int maxFrameSize) {
+        if (frameSize > maxFrameSize) {
+            throw new IllegalArgumentException("Invalid frame size: " + frameSize);
+        }
         this.out = out;
+        this.frameSize = frameSize;
+        this.maxFrameSize = maxFrameSize;
         this.frameSizeBuffer = new byte[4];
-        this.buffer = ByteBuffer.allocateDirect(MAX_BUFFER_SIZE);
-        this.buffer.limit(MAX_BUFFER_SIZE);
+        this.pool = DirectBufferPool.shared();
+        if (frameSize >= 0) {
+            TFramedTransport.encodeFrameSize(frameSize, frameSizeBuffer);
+        }
     }
 
     @Override
     public void write(int val) throws IOException {
-        if (!buffer.hasRemaining()) {
-            flush();
+        if (frameSize >= 0) {
+            writeDirect(ByteBuffer.wrap(new byte[]{(byte) val}));
+            return;
         }
+        ensureRemaining(1);
         buffer.put((byte) val);
     }
 
     @Override
     public void write(byte[] bytes) throws IOException {
-        if (buffer.remaining() < bytes.length) {
-            flush();
-        }
-        buffer.put(bytes);
+        write(bytes, 0, bytes.length);
     }
 
     @Override
     public void write(byte[] var1, int off, int len) throws IOException {
-        if (buffer.remaining() < len) {
-            flush();
+        if (frameSize >= 0) {
+            writeDirect(ByteBuffer.wrap(var1, off, len));
+            return;
         }
-        buffer.put(var1, off, off);
+        ensureRemaining(len);
+        buffer.put(var1, off, len);
     }
 
+    /**
+     * Complete the frame. When the frame size is known, this fails if not
+     * all the content has been written.
+     *
+     * @throws IOException If unable to write the frame.
+     */
     @Override
     public void flush() throws IOException {
-        int frameSize = buffer.position();
-        if (frameSize > 0) {
-            TFramedTransport.encodeFrameSize(frameSize, frameSizeBuffer);
-            out.write(ByteBuffer.wrap(frameSizeBuffer));
+        if (frameSize >= 0) {
+            if (written != frameSize) {
+                throw new IOException("Frame size mismatch: wrote " + written + " of " + frameSize + " bytes");
+            }
+            if (!headerWritten) {
+                writeFully(ByteBuffer.wrap(frameSizeBuffer));
+                headerWritten = true;
+            }
+            return;
+        }
 
+        if (buffer != null && buffer.position() > 0) {
+            TFramedTransport.encodeFrameSize(buffer.position(), frameSizeBuffer);
             buffer.flip();
-            while (buffer.hasRemaining()) {
-                out.write(buffer);
+            writeFrame(ByteBuffer.wrap(frameSizeBuffer), buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Discard the content written since the last frame, e.g. if the
+     * serialization failed. Only buffered content can be discarded, so this
+     * fails if the frame size is known and content is already written.
+     *
+     * @throws IOException If content of the frame has already been written
+     *                     to the channel.
+     */
+    public void reset() throws IOException {
+        if (frameSize >= 0) {
+            if (written > 0) {
+                throw new IOException("Unable to reset, " + written + " bytes of frame already written");
             }
-            buffer.rewind();
-            buffer.limit(MAX_BUFFER_SIZE);
+            return;
+        }
+        if (buffer != null) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), maxFrameSize));
+        }
+    }
+
+    /**
+     * Give the buffer back to the pool. The channel is not closed.
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void ensureRemaining(int len) throws IOException {
+        if (buffer == null) {
+            buffer = pool.acquire(Math.min(Math.max(INITIAL_BUFFER_SIZE, len), maxFrameSize));
+            buffer.limit(Math.min(buffer.capacity(), maxFrameSize));
+        }
+        if (buffer.remaining() < len) {
+            int required = buffer.position() + len;
+            if (required > maxFrameSize) {
+                throw new IOException("Frame size " + required + " exceeds max " + maxFrameSize);
+            }
+            ByteBuffer grown = pool.acquire(Math.min(Math.max(required, buffer.capacity() * 2), maxFrameSize));
+            grown.limit(Math.min(grown.capacity(), maxFrameSize));
+            buffer.flip();
+            grown.put(buffer);
+            pool.release(buffer);
+            buffer = grown;
+        }
+    }
+
+    private void writeDirect(ByteBuffer content) throws IOException {
+        if (written + content.remaining() > frameSize) {
+            throw new IOException("Frame size exceeded: " + (written + content.remaining()) + " > " + frameSize);
+        }
+        written += content.remaining();
+        if (!headerWritten) {
+            headerWritten = true;
+            ByteBuffer header = ByteBuffer.wrap(frameSizeBuffer);
+            writeFrame(header, content);
+            return;
+        }
+        writeFully(content);
+    }
+
+    private void writeFrame(ByteBuffer header, ByteBuffer content) throws IOException {
+        if (out instanceof GatheringByteChannel) {
+            // Write the frame size and content in one operation.
+            ByteBuffer[] buffers = new ByteBuffer[]{header, content};
+            while (content.hasRemaining()) {
+                ((GatheringByteChannel) out).write(buffers);
+            }
+            return;
+        }
+        writeFully(header);
+        writeFully(content);
+    }
+
+    private void writeFully(ByteBuffer content) throws IOException {
+        while (content.hasRemaining()) {
+            out.write(content);
         }
     }
 }
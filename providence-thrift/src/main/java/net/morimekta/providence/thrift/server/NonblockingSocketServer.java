@@ -0,0 +1,497 @@
+package net.morimekta.providence.thrift.server;
+
+import net.morimekta.providence.PProcessor;
+import net.morimekta.providence.mio.IOMessageReader;
+import net.morimekta.providence.mio.IOMessageWriter;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.WriteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server for thrift RPC using the TFramedTransport message wrapper, compatible
+ * with the TNonblockingServer and TThreadedSelectorServer, but serving a
+ * providence processor directly.
+ * <p>
+ * Connections are accepted on a dedicated thread, and handed to a set of I/O
+ * threads, each running a selector for its connections. Each complete frame
+ * is processed on the worker pool, and the response frame is written back by
+ * the I/O thread. A connection can have up to max pending requests in
+ * process at the same time. When reached, the server stops reading from the
+ * connection until responses have been written.
+ * <p>
+ * Note that pipelined requests on the same connection may be responded to
+ * out of order, so clients that send more than one request at a time must
+ * match responses by the sequence ID.
+ */
+public class NonblockingSocketServer implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NonblockingSocketServer.class);
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384000;  // 16M.
+    public static final int DEFAULT_MAX_PENDING    = 32;
+
+    private final PProcessor        processor;
+    private final Serializer        serializer;
+    private final InetSocketAddress address;
+    private final ExecutorService   workers;
+    private final boolean           ownWorkers;
+    private final int               max_frame_size;
+    private final int               max_pending;
+    private final IOThread[]        ioThreads;
+
+    private ServerSocketChannel serverChannel;
+    private Thread              acceptThread;
+    private volatile boolean    stopping;
+    private volatile boolean    closed;
+
+    public NonblockingSocketServer(PProcessor processor, Serializer serializer, int port) {
+        this(processor, serializer, new InetSocketAddress(port), 2, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public NonblockingSocketServer(PProcessor processor,
+                                   Serializer serializer,
+                                   InetSocketAddress address,
+                                   int io_threads,
+                                   int worker_threads) {
+        this(processor,
+             serializer,
+             address,
+             io_threads,
+             Executors.newFixedThreadPool(worker_threads),
+             true,
+             DEFAULT_MAX_FRAME_SIZE,
+             DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Create a server using an external worker executor. The executor is not
+     * shut down when the server is stopped.
+     *
+     * @param processor The processor to handle requests.
+     * @param serializer The serializer to use.
+     * @param address The address to bind to.
+     * @param io_threads Number of selector threads.
+     * @param workers Executor for processing requests.
+     * @param max_frame_size Max size of request frames. Connections sending
+     *                       larger frames are closed.
+     * @param max_pending Max number of requests in process per connection.
+     */
+    public NonblockingSocketServer(PProcessor processor,
+                                   Serializer serializer,
+                                   InetSocketAddress address,
+                                   int io_threads,
+                                   ExecutorService workers,
+                                   int max_frame_size,
+                                   int max_pending) {
+        this(processor, serializer, address, io_threads, workers, false, max_frame_size, max_pending);
+    }
+
+    private NonblockingSocketServer(PProcessor processor,
+                                    Serializer serializer,
+                                    InetSocketAddress address,
+                                    int io_threads,
+                                    ExecutorService workers,
+                                    boolean ownWorkers,
+                                    int max_frame_size,
+                                    int max_pending) {
+        if (io_threads < 1) {
+            throw new IllegalArgumentException("Invalid number of I/O threads: " + io_threads);
+        }
+        if (max_frame_size < 1) {
+            throw new IllegalArgumentException("Invalid max frame size: " + max_frame_size);
+        }
+        if (max_pending < 1) {
+            throw new IllegalArgumentException("Invalid max pending requests: " + max_pending);
+        }
+        this.processor = processor;
+        this.serializer = serializer;
+        this.address = address;
+        this.workers = workers;
+        this.ownWorkers = ownWorkers;
+        this.max_frame_size = max_frame_size;
+        this.max_pending = max_pending;
+        this.ioThreads = new IOThread[io_threads];
+    }
+
+    /**
+     * Bind the server socket, and start accepting connections.
+     *
+     * @throws IOException If unable to bind the server socket.
+     */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.bind(address);
+
+        for (int i = 0; i < ioThreads.length; ++i) {
+            ioThreads[i] = new IOThread(i);
+            ioThreads[i].start();
+        }
+
+        acceptThread = new Thread(this::accept, "providence-server-accept-" + getPort());
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * @return The port the server is bound to.
+     */
+    public int getPort() {
+        if (serverChannel == null) {
+            return address.getPort();
+        }
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stop the server gracefully, waiting up to 10 seconds for requests in
+     * process to complete.
+     *
+     * @throws IOException If unable to stop the server.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            stop(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted stopping server", e);
+        }
+    }
+
+    /**
+     * Stop the server. No more connections are accepted, and no more
+     * requests are read. Requests in process are completed and responded to
+     * before the connections are closed, unless the timeout is reached.
+     *
+     * @param timeout The max time to wait.
+     * @param unit The time unit of the timeout.
+     * @return True if the server stopped gracefully.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (this) {
+            if (serverChannel == null || stopping) {
+                return true;
+            }
+            stopping = true;
+        }
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close server socket: {}", e.getMessage());
+        }
+        for (IOThread thread : ioThreads) {
+            thread.selector.wakeup();
+        }
+
+        boolean graceful = true;
+        for (IOThread thread : ioThreads) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            graceful &= !thread.isAlive();
+        }
+        if (!graceful) {
+            closed = true;
+            for (IOThread thread : ioThreads) {
+                thread.selector.wakeup();
+                thread.join();
+            }
+        }
+        if (ownWorkers) {
+            workers.shutdown();
+            graceful &= workers.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()),
+                                                 TimeUnit.MILLISECONDS);
+        }
+        return graceful;
+    }
+
+    private void accept() {
+        int next = 0;
+        while (!stopping) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                channel.socket().setKeepAlive(true);
+
+                ioThreads[next].accept(channel);
+                next = (next + 1) % ioThreads.length;
+            } catch (ClosedChannelException e) {
+                // Stopped.
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Failed to accept connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Process a single request frame, and queue the response on the
+     * connection. Called from the worker pool.
+     */
+    private void process(Connection connection, byte[] frame) {
+        try (WriteBuffer out = WriteBuffer.acquire()) {
+            processor.process(new IOMessageReader(new ByteArrayInputStream(frame), serializer),
+                              new IOMessageWriter(out, serializer));
+            if (out.size() > 0) {
+                ByteBuffer response = ByteBuffer.allocate(Integer.BYTES + out.size());
+                response.putInt(out.size());
+                out.writeTo(response);
+                response.flip();
+                connection.responses.add(response);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to process request from {}: {}", connection.remote, e.getMessage(), e);
+            connection.failed = true;
+        } finally {
+            connection.pending.decrementAndGet();
+            connection.ioThread.update(connection);
+        }
+    }
+
+    /**
+     * Thread running the selector for a set of connections.
+     */
+    private class IOThread extends Thread {
+        private final Selector              selector;
+        private final Queue<SocketChannel>  accepted;
+        private final Queue<Connection>     updated;
+        private final Set<Connection>       connections;
+
+        private IOThread(int index) throws IOException {
+            super("providence-server-io-" + index);
+            setDaemon(true);
+            selector = Selector.open();
+            accepted = new ConcurrentLinkedQueue<>();
+            updated = new ConcurrentLinkedQueue<>();
+            connections = new HashSet<>();
+        }
+
+        private void accept(SocketChannel channel) {
+            accepted.add(channel);
+            selector.wakeup();
+        }
+
+        private void update(Connection connection) {
+            updated.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    SocketChannel channel;
+                    while ((channel = accepted.poll()) != null) {
+                        register(channel);
+                    }
+                    Connection connection;
+                    while ((connection = updated.poll()) != null) {
+                        connection.updateInterest();
+                    }
+                    if (stopping) {
+                        new ArrayList<>(connections).forEach(Connection::updateInterest);
+                        if (connections.stream().allMatch(Connection::isIdle)) {
+                            break;
+                        }
+                    }
+
+                    selector.select(100);
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read();
+                            }
+                        } catch (IOException e) {
+                            LOGGER.debug("Connection from {} failed: {}", connection.remote, e.getMessage());
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Selector loop failed: {}", e.getMessage(), e);
+            } finally {
+                for (Connection connection : new HashSet<>(connections)) {
+                    connection.close();
+                }
+                SocketChannel channel;
+                while ((channel = accepted.poll()) != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        LOGGER.debug("Failed to close connection: {}", e.getMessage());
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to close selector: {}", e.getMessage());
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            if (stopping) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to close connection: {}", e.getMessage());
+                }
+                return;
+            }
+            try {
+                connections.add(new Connection(this, channel));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to register connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A single client connection. All state except the response queue and
+     * the pending count is only touched by the I/O thread.
+     */
+    private class Connection {
+        private final IOThread          ioThread;
+        private final SocketChannel     channel;
+        private final SelectionKey      key;
+        private final String            remote;
+        private final ByteBuffer        sizeBuffer;
+        private final Queue<ByteBuffer> responses;
+        private final AtomicInteger     pending;
+
+        private ByteBuffer       frameBuffer;
+        private volatile boolean failed;
+
+        private Connection(IOThread ioThread, SocketChannel channel) throws IOException {
+            this.ioThread = ioThread;
+            this.channel = channel;
+            this.remote = String.valueOf(channel.getRemoteAddress());
+            this.sizeBuffer = ByteBuffer.allocate(Integer.BYTES);
+            this.responses = new ConcurrentLinkedQueue<>();
+            this.pending = new AtomicInteger();
+            this.key = channel.register(ioThread.selector, SelectionKey.OP_READ, this);
+        }
+
+        private boolean isIdle() {
+            return !key.isValid() || (pending.get() == 0 && responses.isEmpty());
+        }
+
+        private void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            if (failed) {
+                close();
+                return;
+            }
+            int ops = 0;
+            if (!stopping && pending.get() < max_pending) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (!responses.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        private void read() throws IOException {
+            while (pending.get() < max_pending) {
+                if (frameBuffer == null) {
+                    if (channel.read(sizeBuffer) < 0) {
+                        close();
+                        return;
+                    }
+                    if (sizeBuffer.hasRemaining()) {
+                        return;
+                    }
+                    sizeBuffer.flip();
+                    int frameSize = sizeBuffer.getInt();
+                    sizeBuffer.clear();
+                    if (frameSize < 1 || frameSize > max_frame_size) {
+                        throw new IOException("Invalid frame size: " + frameSize);
+                    }
+                    frameBuffer = ByteBuffer.allocate(frameSize);
+                }
+
+                if (channel.read(frameBuffer) < 0) {
+                    close();
+                    return;
+                }
+                if (frameBuffer.hasRemaining()) {
+                    return;
+                }
+                byte[] frame = frameBuffer.array();
+                frameBuffer = null;
+
+                pending.incrementAndGet();
+                try {
+                    workers.execute(() -> process(this, frame));
+                } catch (RejectedExecutionException e) {
+                    pending.decrementAndGet();
+                    throw new IOException("Request rejected: " + e.getMessage(), e);
+                }
+            }
+            // Backpressure: Stop reading until responses are written.
+            updateInterest();
+        }
+
+        private void write() throws IOException {
+            ByteBuffer response;
+            while ((response = responses.peek()) != null) {
+                channel.write(response);
+                if (response.hasRemaining()) {
+                    return;
+                }
+                responses.poll();
+            }
+            updateInterest();
+        }
+
+        private void close() {
+            key.cancel();
+            ioThread.connections.remove(this);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close connection from {}: {}", remote, e.getMessage());
+            }
+        }
+    }
+}
@@ -2,12 +2,22 @@ package net.morimekta.providence.thrift;
 
 import net.morimekta.providence.PEnumValue;
 import net.morimekta.providence.PMessage;
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
 import net.morimekta.providence.PMessageVariant;
 import net.morimekta.providence.PUnion;
 import net.morimekta.providence.descriptor.PField;
+import net.morimekta.providence.descriptor.PStructDescriptor;
 import net.morimekta.providence.serializer.Serializer;
 import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.CompactFields;
 import net.morimekta.test.providence.Containers;
+import net.morimekta.test.providence.OptionalFields;
+import net.morimekta.test.providence.UnionFields;
+import net.morimekta.test.providence.Value;
+import net.morimekta.test.providence.srv.MyService;
+import net.morimekta.test.providence.srv.Request;
 import net.morimekta.util.Binary;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -20,6 +30,8 @@ import org.apache.thrift.TUnion;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TCompactProtocol;
 import org.apache.thrift.protocol.TJSONProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.protocol.TTupleProtocol;
@@ -240,6 +252,233 @@ public class TProtocolSerializerTest {
         testRecoding(new TJSONProtocol.Factory(), new TJsonProtocolSerializer());
     }
 
+    @Test
+    public void testTCompactProtocol_sameAsThrift() throws IOException, SerializerException {
+        Serializer serializer = new TCompactProtocolSerializer();
+        Serializer thrift = new TProtocolSerializer(true,
+                                                    new TCompactProtocol.Factory(),
+                                                    true,
+                                                    TCompactProtocolSerializer.MIME_TYPE);
+
+        for (Containers c : containers) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            thrift.serialize(expected, c);
+            serializer.serialize(actual, c);
+
+            assertEquals(Binary.wrap(expected.toByteArray()), Binary.wrap(actual.toByteArray()));
+        }
+
+        PMessageBuilder<?, ?> request = MyService.kDescriptor.getMethod("test")
+                                                             .getRequestType()
+                                                             .builder();
+        request.set(1, Request.builder().setText("test").build());
+        @SuppressWarnings("unchecked")
+        PServiceCall call = new PServiceCall("test", PServiceCallType.CALL, 44, request.build());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        thrift.serialize(expected, call);
+        serializer.serialize(actual, call);
+
+        assertEquals(Binary.wrap(expected.toByteArray()), Binary.wrap(actual.toByteArray()));
+
+        PServiceCall back = serializer.deserialize(new ByteArrayInputStream(actual.toByteArray()), MyService.kDescriptor);
+        assertEquals("test", back.getMethod());
+        assertEquals(PServiceCallType.CALL, back.getType());
+        assertEquals(44, back.getSequence());
+        assertEquals(call.getMessage(), back.getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTCompactProtocol_thriftStructs() throws IOException, SerializerException, TException {
+        TProtocolFactory factory = new TCompactProtocol.Factory();
+        Serializer serializer = new TCompactProtocolSerializer();
+
+        testThriftStructs(factory, serializer);
+        testThriftCalls(factory, serializer);
+
+        // Service call responses are unions in providence, but structs in
+        // thrift. In the compact protocol these are written the same way.
+        PServiceCall response = new PServiceCall(
+                "test", PServiceCallType.REPLY, 44,
+                responseType("test").builder()
+                                    .set(0, net.morimekta.test.providence.srv.Response.builder()
+                                                                                      .setText("response")
+                                                                                      .build())
+                                    .build());
+        assertSameAsThrift(factory,
+                           serializer,
+                           response,
+                           new TMessage("test", TMessageType.REPLY, 44),
+                           new net.morimekta.test.thrift.srv.MyService.test_result(),
+                           new net.morimekta.test.thrift.srv.MyService.test_result(
+                                   new net.morimekta.test.thrift.srv.Response("response"), null));
+    }
+
+    @Test
+    public void testTTupleProtocol_thriftStructs() throws IOException, SerializerException, TException {
+        TProtocolFactory factory = new TTupleProtocol.Factory();
+        Serializer serializer = new TTupleProtocolSerializer();
+
+        testThriftStructs(factory, serializer);
+        testThriftCalls(factory, serializer);
+    }
+
+    /**
+     * Test that the thrift generated structs read what the serializer writes,
+     * and write back exactly the same bytes, which is again read by the
+     * serializer. The containers are not compared byte by byte, as thrift
+     * uses hash sets and maps.
+     */
+    private void testThriftStructs(TProtocolFactory factory, Serializer serializer)
+            throws IOException, SerializerException, TException {
+        for (Containers c : containers) {
+            assertSameAsThrift(factory, serializer, c.getRequiredFields(),
+                               new net.morimekta.test.thrift.RequiredFields());
+            assertSameAsThrift(factory, serializer, c.getDefaultFields(),
+                               new net.morimekta.test.thrift.DefaultFields());
+            assertSameAsThrift(factory, serializer, c.getOptionalFields(),
+                               new net.morimekta.test.thrift.OptionalFields());
+            assertSameAsThrift(factory, serializer, c.getUnionFields(),
+                               new net.morimekta.test.thrift.UnionFields());
+            assertSameAsThrift(factory, serializer, c.getExceptionFields(),
+                               new net.morimekta.test.thrift.ExceptionFields());
+            assertSameAsThrift(factory, serializer, c.getDefaultValues(),
+                               new net.morimekta.test.thrift.DefaultValues());
+        }
+
+        assertSameAsThrift(factory, serializer, OptionalFields.builder().build(),
+                           new net.morimekta.test.thrift.OptionalFields());
+        assertSameAsThrift(factory, serializer, UnionFields.withStringValue("test"),
+                           new net.morimekta.test.thrift.UnionFields());
+        assertSameAsThrift(factory, serializer, UnionFields.withEnumValue(Value.SECOND),
+                           new net.morimekta.test.thrift.UnionFields());
+        assertSameAsThrift(factory, serializer, UnionFields.withCompactValue(new CompactFields("name", 42, null)),
+                           new net.morimekta.test.thrift.UnionFields());
+    }
+
+    /**
+     * Test that service call requests written by the serializer are read by
+     * the thrift generated argument structs, and that thrift writes the same
+     * bytes for them.
+     */
+    @SuppressWarnings("unchecked")
+    private void testThriftCalls(TProtocolFactory factory, Serializer serializer)
+            throws IOException, SerializerException, TException {
+        PServiceCall call = new PServiceCall(
+                "test", PServiceCallType.CALL, 44,
+                requestType("test").builder()
+                                   .set(1, Request.builder()
+                                                  .setText("test")
+                                                  .build())
+                                   .build());
+        assertSameAsThrift(factory,
+                           serializer,
+                           call,
+                           new TMessage("test", TMessageType.CALL, 44),
+                           new net.morimekta.test.thrift.srv.MyService.test_args(),
+                           new net.morimekta.test.thrift.srv.MyService.test_args(
+                                   new net.morimekta.test.thrift.srv.Request("test")));
+
+        PServiceCall oneway = new PServiceCall("ping", PServiceCallType.ONEWAY, 45,
+                                                 requestType("ping").builder().build());
+        assertSameAsThrift(factory,
+                           serializer,
+                           oneway,
+                           new TMessage("ping", TMessageType.ONEWAY, 45),
+                           new net.morimekta.test.thrift.srv.MyService.ping_args(),
+                           new net.morimekta.test.thrift.srv.MyService.ping_args());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <Message extends PMessage<Message, Field>, Field extends PField>
+    void assertSameAsThrift(TProtocolFactory factory, Serializer serializer, Message message, TBase thrift)
+            throws IOException, SerializerException, TException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        serializer.serialize(expected, message);
+
+        thrift.read(factory.getProtocol(new TIOStreamTransport(new ByteArrayInputStream(expected.toByteArray()))));
+        assertConsistent("", message, thrift);
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        thrift.write(factory.getProtocol(new TIOStreamTransport(actual)));
+        assertEquals(Binary.wrap(expected.toByteArray()), Binary.wrap(actual.toByteArray()));
+
+        Message back = serializer.deserialize(new ByteArrayInputStream(actual.toByteArray()), message.descriptor());
+        assertThat(back, messageEq(message));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertSameAsThrift(TProtocolFactory factory,
+                                    Serializer serializer,
+                                    PServiceCall call,
+                                    TMessage header,
+                                    TBase read,
+                                    TBase written) throws IOException, SerializerException, TException {
+        // Written by providence, read by thrift.
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        serializer.serialize(expected, call);
+
+        TProtocol in = factory.getProtocol(new TIOStreamTransport(new ByteArrayInputStream(expected.toByteArray())));
+        TMessage message = in.readMessageBegin();
+        assertEquals(header.name, message.name);
+        assertEquals(header.type, message.type);
+        assertEquals(header.seqid, message.seqid);
+        read.read(in);
+        in.readMessageEnd();
+        assertEquals(written, read);
+
+        // Written by thrift, read by providence.
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        TProtocol out = factory.getProtocol(new TIOStreamTransport(actual));
+        out.writeMessageBegin(header);
+        written.write(out);
+        out.writeMessageEnd();
+        assertEquals(Binary.wrap(expected.toByteArray()), Binary.wrap(actual.toByteArray()));
+
+        PServiceCall back = serializer.deserialize(new ByteArrayInputStream(actual.toByteArray()), MyService.kDescriptor);
+        assertEquals(call.getMethod(), back.getMethod());
+        assertEquals(call.getType(), back.getType());
+        assertEquals(call.getSequence(), back.getSequence());
+        assertEquals(call.getMessage(), back.getMessage());
+    }
+
+    private static PStructDescriptor<?, ?> requestType(String method) {
+        return MyService.kDescriptor.getMethod(method).getRequestType();
+    }
+
+    private static PStructDescriptor<?, ?> responseType(String method) {
+        return MyService.kDescriptor.getMethod(method).getResponseType();
+    }
+
+    @Test
+    public void testByteBuffer() throws IOException, SerializerException {
+        Serializer[] serializers = new Serializer[]{
+                new TBinaryProtocolSerializer(),
+                new TCompactProtocolSerializer(),
+                new TTupleProtocolSerializer(),
+                new TJsonProtocolSerializer()
+        };
+        for (Serializer serializer : serializers) {
+            for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(1 << 16),
+                                                      ByteBuffer.allocateDirect(1 << 16)}) {
+                int size = 0;
+                for (Containers c : containers) {
+                    size += serializer.serialize(buffer, c);
+                }
+                assertEquals(size, buffer.position());
+
+                buffer.flip();
+                for (Containers c : containers) {
+                    assertThat(serializer.deserialize(buffer, Containers.kDescriptor), messageEq(c));
+                }
+                assertEquals(0, buffer.remaining());
+            }
+        }
+    }
+
     @Test
     public void testTSimpleJsonProtocol() throws IOException, SerializerException, TException {
         // testRecoding(new TSimpleJSONProtocol.Factory(), new TSimpleJsonProtocolSerializer());
@@ -0,0 +1,302 @@
+package net.morimekta.providence.thrift.client;
+
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.descriptor.PService;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.srv.MyService;
+import net.morimekta.test.providence.srv.MyService2;
+import net.morimekta.test.providence.srv.Request;
+import net.morimekta.test.providence.srv.Response;
+import net.morimekta.test.thrift.srv.MyService.Iface;
+import net.morimekta.test.thrift.srv.MyService.Processor;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.server.TNonblockingServer;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TNonblockingServerTransport;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static net.morimekta.providence.thrift.util.TestUtil.findFreePort;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that the async client handler can have many concurrent calls from a
+ * single thread.
+ */
+public class AsyncSocketClientHandlerTest {
+    private static ExecutorService executor;
+    private static int             port;
+    private static Iface           impl;
+    private static TServer         server;
+
+    private AsyncSocketClientHandler client;
+
+    @BeforeClass
+    public static void setUpServer() throws Exception {
+        port = findFreePort();
+        impl = Mockito.mock(Iface.class);
+
+        TNonblockingServerTransport transport = new TNonblockingServerSocket(port);
+        server = new TNonblockingServer(
+                new TNonblockingServer.Args(transport)
+                        .protocolFactory(new TBinaryProtocol.Factory())
+                        .processor(new Processor<>(impl)));
+
+        executor = Executors.newSingleThreadExecutor();
+        executor.submit(server::serve);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        reset(impl);
+        when(impl.test(any(net.morimekta.test.thrift.srv.Request.class)))
+                .thenAnswer(i -> {
+                    net.morimekta.test.thrift.srv.Request request = i.getArgumentAt(0, net.morimekta.test.thrift.srv.Request.class);
+                    return new net.morimekta.test.thrift.srv.Response(request.getText());
+                });
+
+        Serializer serializer = new BinarySerializer();
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        client = new AsyncSocketClientHandler(serializer, address, 10000, 10000, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+    }
+
+    @AfterClass
+    public static void tearDownServer() {
+        try {
+            server.stop();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        List<CompletableFuture<PServiceCall>> responses = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            responses.add(call(i, "text " + i));
+        }
+
+        for (int i = 0; i < 500; ++i) {
+            PServiceCall response = responses.get(i).get();
+            assertEquals(PServiceCallType.REPLY, response.getType());
+            assertEquals(i, response.getSequence());
+
+            Response success = (Response) response.getMessage().get(0);
+            assertEquals("text " + i, success.getText());
+        }
+    }
+
+    @Test
+    public void testSynchronousCall() throws Exception {
+        PServiceCall response = client.handleCall(request(44, "text"), MyService.kDescriptor);
+
+        assertEquals(44, response.getSequence());
+        assertEquals("text", ((Response) response.getMessage().get(0)).getText());
+    }
+
+    @Test
+    public void testClosed() throws Exception {
+        call(1, "text").get();
+        client.close();
+
+        try {
+            call(2, "text").get();
+            fail("No exception on closed handler");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+            assertEquals("Client handler is closed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testCloseWhileCalling() throws Exception {
+        int threads = 8;
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Future<List<CompletableFuture<PServiceCall>>>> submitted = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; ++t) {
+                submitted.add(callers.submit(() -> {
+                    List<CompletableFuture<PServiceCall>> calls = new ArrayList<>();
+                    started.countDown();
+                    CompletableFuture<PServiceCall> call;
+                    do {
+                        call = call(calls.size(), "text");
+                        calls.add(call);
+                    } while (!call.isCompletedExceptionally());
+                    return calls;
+                }));
+            }
+
+            started.await();
+            Thread.sleep(10);
+            client.close();
+
+            // Every call must be completed, either with a response or as
+            // failed because the handler was closed.
+            for (Future<List<CompletableFuture<PServiceCall>>> future : submitted) {
+                for (CompletableFuture<PServiceCall> call : future.get(10, TimeUnit.SECONDS)) {
+                    try {
+                        call.get(10, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        assertThat(e.getCause(), instanceOf(IOException.class));
+                    } catch (TimeoutException e) {
+                        fail("Call not completed after close");
+                    }
+                }
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCannotConnect() throws Exception {
+        Serializer serializer = new BinarySerializer();
+        InetSocketAddress address = new InetSocketAddress("localhost", port - 10);
+        client.close();
+        client = new AsyncSocketClientHandler(serializer, address);
+        try {
+            call(44, "text").get();
+            fail("");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(ConnectException.class));
+        }
+
+        verifyZeroInteractions(impl);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTwoServicesOnOneConnection() throws Exception {
+        Serializer serializer = new BinarySerializer();
+        try (ServerSocket serverSocket = new ServerSocket(findFreePort())) {
+            // Answers the second call first, so the response is read with
+            // the service of the first call before the right one.
+            Thread serverThread = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+                    PServiceCall first = serializer.deserialize(new ByteArrayInputStream(readFrame(in)),
+                                                                MyService.kDescriptor);
+                    PServiceCall second = serializer.deserialize(new ByteArrayInputStream(readFrame(in)),
+                                                                 MyService2.kDescriptor);
+
+                    writeFrame(out, serializer, reply(MyService2.kDescriptor, second, "second"));
+                    writeFrame(out, serializer, reply(MyService.kDescriptor, first, "first"));
+                } catch (IOException | SerializerException e) {
+                    e.printStackTrace();
+                }
+            });
+            serverThread.setDaemon(true);
+            serverThread.start();
+
+            client.close();
+            client = new AsyncSocketClientHandler(serializer,
+                                                  new InetSocketAddress("localhost", serverSocket.getLocalPort()),
+                                                  10000, 10000, 1);
+
+            PMessageBuilder request = MyService2.kDescriptor.getMethod("testing").getRequestType().builder();
+            request.set(1, Request.builder()
+                                  .setText("second")
+                                  .build());
+
+            CompletableFuture<PServiceCall> first = call(1, "first");
+            CompletableFuture<PServiceCall> second = (CompletableFuture) client.handleCallAsync(
+                    new PServiceCall("testing", PServiceCallType.CALL, 2, request.build()), MyService2.kDescriptor);
+
+            PServiceCall secondResponse = second.get(10, TimeUnit.SECONDS);
+            assertEquals("testing", secondResponse.getMethod());
+            assertEquals(2, secondResponse.getSequence());
+            assertEquals("second", ((Response) secondResponse.getMessage().get(0)).getText());
+
+            PServiceCall firstResponse = first.get(10, TimeUnit.SECONDS);
+            assertEquals("test", firstResponse.getMethod());
+            assertEquals(1, firstResponse.getSequence());
+            assertEquals("first", ((Response) firstResponse.getMessage().get(0)).getText());
+        }
+    }
+
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        return frame;
+    }
+
+    private static void writeFrame(DataOutputStream out, Serializer serializer, PServiceCall call)
+            throws IOException, SerializerException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        serializer.serialize(baos, call);
+        out.writeInt(baos.size());
+        baos.writeTo(out);
+        out.flush();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PServiceCall reply(PService service, PServiceCall call, String text) {
+        PMessageBuilder response = service.getMethod(call.getMethod()).getResponseType().builder();
+        response.set(0, Response.builder()
+                                .setText(text)
+                                .build());
+        return new PServiceCall(call.getMethod(), PServiceCallType.REPLY, call.getSequence(), response.build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<PServiceCall> call(int sequence, String text) {
+        CompletableFuture future = client.handleCallAsync(request(sequence, text), MyService.kDescriptor);
+        return (CompletableFuture<PServiceCall>) future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private PServiceCall request(int sequence, String text) {
+        PMessageBuilder request = MyService.kDescriptor.getMethod("test").getRequestType().builder();
+        request.set(1, Request.builder()
+                              .setText(text)
+                              .build());
+
+        return new PServiceCall("test", PServiceCallType.CALL, sequence, request.build());
+    }
+}
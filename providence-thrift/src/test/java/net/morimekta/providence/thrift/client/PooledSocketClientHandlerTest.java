@@ -0,0 +1,320 @@
+package net.morimekta.providence.thrift.client;
+
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.serializer.Serializer;
+import net.morimekta.providence.serializer.SerializerException;
+import net.morimekta.test.providence.srv.MyService;
+import net.morimekta.test.providence.srv.Request;
+import net.morimekta.test.providence.srv.Response;
+import net.morimekta.test.thrift.srv.MyService.Iface;
+import net.morimekta.test.thrift.srv.MyService.Processor;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.server.TNonblockingServer;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TNonblockingServerTransport;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.morimekta.providence.thrift.util.TestUtil.findFreePort;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that the pooled client handler can handle concurrent calls, both
+ * with exclusive and multiplexed connections.
+ */
+public class PooledSocketClientHandlerTest {
+    private static ExecutorService executor;
+    private static int             port;
+    private static Iface           impl;
+    private static TServer         server;
+
+    private PooledSocketClientHandler client;
+
+    @BeforeClass
+    public static void setUpServer() throws Exception {
+        port = findFreePort();
+        impl = Mockito.mock(Iface.class);
+
+        TNonblockingServerTransport transport = new TNonblockingServerSocket(port);
+        server = new TNonblockingServer(
+                new TNonblockingServer.Args(transport)
+                        .protocolFactory(new TBinaryProtocol.Factory())
+                        .processor(new Processor<>(impl)));
+
+        executor = Executors.newSingleThreadExecutor();
+        executor.submit(server::serve);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        reset(impl);
+        when(impl.test(any(net.morimekta.test.thrift.srv.Request.class)))
+                .thenAnswer(i -> {
+                    net.morimekta.test.thrift.srv.Request request = i.getArgumentAt(0, net.morimekta.test.thrift.srv.Request.class);
+                    return new net.morimekta.test.thrift.srv.Response(request.getText());
+                });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @AfterClass
+    public static void tearDownServer() {
+        try {
+            server.stop();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Test
+    public void testPooled() throws Exception {
+        client = makeClient(false);
+        assertConcurrentCalls();
+        assertTrue(client.getOpenConnections() <= 4);
+    }
+
+    @Test
+    public void testMultiplexed() throws Exception {
+        client = makeClient(true);
+        assertConcurrentCalls();
+        assertTrue(client.getOpenConnections() <= 4);
+    }
+
+    @Test
+    public void testMultiplexed_sameSequence() throws Exception {
+        client = makeClient(true);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PServiceCall>> responses = new ArrayList<>();
+            for (int i = 0; i < 50; ++i) {
+                String text = "text " + i;
+                responses.add(callers.submit(() -> call(44, text)));
+            }
+            for (int i = 0; i < 50; ++i) {
+                PServiceCall response = responses.get(i).get();
+                assertEquals(44, response.getSequence());
+                assertEquals("text " + i, ((Response) response.getMessage().get(0)).getText());
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    public void testMultiplexed_maxConnections() throws Exception {
+        Serializer serializer = new BinarySerializer();
+        AtomicInteger accepted = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(findFreePort())) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (!serverSocket.isClosed()) {
+                        Socket socket = serverSocket.accept();
+                        accepted.incrementAndGet();
+                        Thread responder = new Thread(() -> respond(socket, serializer));
+                        responder.setDaemon(true);
+                        responder.start();
+                    }
+                } catch (IOException e) {
+                    // Server socket closed.
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            client = new PooledSocketClientHandler(serializer,
+                                                   new InetSocketAddress("localhost", serverSocket.getLocalPort()),
+                                                   2, true);
+            // All callers start at the same time, so most of them get to
+            // acquire a connection while the first ones are being opened.
+            assertConcurrentCalls();
+
+            assertTrue(client.getOpenConnections() <= 2);
+            assertTrue("Opened " + accepted.get() + " connections", accepted.get() <= 2);
+        }
+    }
+
+    @Test
+    public void testMultiplexed_corruptResponse() throws Exception {
+        Serializer serializer = new BinarySerializer();
+        // Strict message header of a reply that ends before the method name,
+        // so the sequence is never read.
+        byte[] corrupt = new byte[]{(byte) 0x80, 0x01, 0x00, 0x02};
+        try (ServerSocket serverSocket = new ServerSocket(findFreePort())) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    respond(serverSocket.accept(), serializer, corrupt);
+                } catch (IOException e) {
+                    // Server socket closed.
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            client = new PooledSocketClientHandler(serializer,
+                                                   new InetSocketAddress("localhost", serverSocket.getLocalPort()),
+                                                   1, true);
+
+            // The corrupt frame must not be taken as the response to the
+            // pending call with sequence 0.
+            PServiceCall response = call(0, "text");
+            assertEquals(PServiceCallType.REPLY, response.getType());
+            assertEquals(0, response.getSequence());
+            assertEquals("text", ((Response) response.getMessage().get(0)).getText());
+        }
+    }
+
+    @Test
+    public void testClosed() throws IOException, SerializerException {
+        client = makeClient(false);
+        call(1, "text");
+        assertEquals(1, client.getOpenConnections());
+
+        client.close();
+        assertEquals(0, client.getOpenConnections());
+        try {
+            call(2, "text");
+            fail("No exception on closed handler");
+        } catch (IOException e) {
+            assertEquals("Client handler is closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCannotConnect() throws IOException, TException, SerializerException {
+        Serializer serializer = new BinarySerializer();
+        InetSocketAddress address = new InetSocketAddress("localhost", port - 10);
+        client = new PooledSocketClientHandler(serializer, address);
+        try {
+            call(44, "text");
+            fail("");
+        } catch (ConnectException e) {
+            assertThat(e.getMessage(), startsWith("Connection refused"));
+        }
+
+        assertEquals(0, client.getOpenConnections());
+        verifyZeroInteractions(impl);
+    }
+
+    private PooledSocketClientHandler makeClient(boolean multiplexed) {
+        Serializer serializer = new BinarySerializer();
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        return new PooledSocketClientHandler(serializer, address, 4, multiplexed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private PServiceCall call(int sequence, String text) throws IOException, SerializerException {
+        PMessageBuilder request = MyService.kDescriptor.getMethod("test").getRequestType().builder();
+        request.set(1, Request.builder()
+                              .setText(text)
+                              .build());
+
+        return client.handleCall(new PServiceCall("test",
+                                                  PServiceCallType.CALL,
+                                                  sequence,
+                                                  request.build()),
+                                 MyService.kDescriptor);
+    }
+
+    private static void respond(Socket socket, Serializer serializer) {
+        respond(socket, serializer, null);
+    }
+
+    /**
+     * Reply to framed calls on the socket in the order they are read. If
+     * given, the corrupt frame is sent ahead of each reply.
+     */
+    @SuppressWarnings("unchecked")
+    private static void respond(Socket socket, Serializer serializer, byte[] corrupt) {
+        try (Socket ignore = socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            while (true) {
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                PServiceCall call = serializer.deserialize(new ByteArrayInputStream(frame), MyService.kDescriptor);
+                Request request = (Request) call.getMessage().get(1);
+
+                PMessageBuilder response = MyService.kDescriptor.getMethod("test").getResponseType().builder();
+                response.set(0, Response.builder()
+                                        .setText(request.getText())
+                                        .build());
+
+                if (corrupt != null) {
+                    out.writeInt(corrupt.length);
+                    out.write(corrupt);
+                }
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                serializer.serialize(baos, new PServiceCall("test",
+                                                            PServiceCallType.REPLY,
+                                                            call.getSequence(),
+                                                            response.build()));
+                out.writeInt(baos.size());
+                baos.writeTo(out);
+                out.flush();
+            }
+        } catch (IOException | SerializerException e) {
+            // Connection closed by the client.
+        }
+    }
+
+    private void assertConcurrentCalls() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<PServiceCall>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; ++i) {
+                int sequence = i;
+                responses.add(callers.submit(() -> call(sequence, "text " + sequence)));
+            }
+            for (int i = 0; i < 200; ++i) {
+                PServiceCall response = responses.get(i).get();
+                assertEquals(PServiceCallType.REPLY, response.getType());
+                assertEquals(i, response.getSequence());
+
+                Response success = (Response) response.getMessage().get(0);
+                assertEquals("text " + i, success.getText());
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+}
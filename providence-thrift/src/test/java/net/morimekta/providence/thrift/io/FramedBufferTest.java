@@ -12,6 +12,7 @@ import java.nio.channels.WritableByteChannel;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  * Testing the frame buffered input stream.
@@ -29,6 +30,52 @@ public class FramedBufferTest {
         assertEquals("this is a\n", new String(out, 0, 10, UTF_8));
     }
 
+    @Test
+    public void testRead_multipleFrames() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(data);
+        baos.write(new byte[]{0, 0, 0, 3, 'a', 'b', 'c'});
+        baos.write(data);
+
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(baos.toByteArray()));
+        FramedBufferInputSteram in = new FramedBufferInputSteram(channel);
+
+        byte[] out = new byte[14];
+        // Reads do not span frames.
+        assertEquals(10, in.read(out));
+        assertEquals("this is a\n", new String(out, 0, 10, UTF_8));
+        assertEquals('a', in.read());
+        in.nextFrame();
+        assertEquals(10, in.read(out));
+        assertEquals("this is a\n", new String(out, 0, 10, UTF_8));
+        assertEquals(-1, in.read(out));
+        in.close();
+    }
+
+    @Test
+    public void testRead_maxFrameSize() throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(data));
+        FramedBufferInputSteram in = new FramedBufferInputSteram(channel, 8);
+        try {
+            in.read();
+            fail("No exception on too large frame");
+        } catch (IOException e) {
+            assertEquals("Frame size 10 exceeds max 8", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRead_incompleteFrame() throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(data, 0, 8));
+        FramedBufferInputSteram in = new FramedBufferInputSteram(channel);
+        try {
+            in.read();
+            fail("No exception on incomplete frame");
+        } catch (IOException e) {
+            assertEquals("Incomplete frame: got 4 of 10 bytes", e.getMessage());
+        }
+    }
+
     @Test
     public void testWrite() throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -40,4 +87,96 @@ public class FramedBufferTest {
 
         assertArrayEquals(data, baos.toByteArray());
     }
+
+    @Test
+    public void testWrite_reused() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(baos);
+        FramedBufferOutputStream out = new FramedBufferOutputStream(channel);
+
+        // Larger than the initial buffer.
+        byte[] large = new byte[10000];
+        for (int i = 0; i < large.length; ++i) {
+            large[i] = (byte) i;
+        }
+        out.write(large, 0, 5000);
+        out.write(large, 5000, 5000);
+        out.flush();
+        out.write("this is a\n".getBytes(UTF_8));
+        out.flush();
+        out.close();
+
+        ReadableByteChannel input = Channels.newChannel(new ByteArrayInputStream(baos.toByteArray()));
+        FramedBufferInputSteram in = new FramedBufferInputSteram(input);
+        byte[] frame = new byte[10000];
+        int pos = 0;
+        while (pos < frame.length) {
+            pos += in.read(frame, pos, frame.length - pos);
+        }
+        assertArrayEquals(large, frame);
+
+        byte[] next = new byte[10];
+        assertEquals(10, in.read(next));
+        assertEquals("this is a\n", new String(next, UTF_8));
+    }
+
+    @Test
+    public void testWrite_reset() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(baos);
+        FramedBufferOutputStream out = new FramedBufferOutputStream(channel);
+
+        out.write("partial".getBytes(UTF_8));
+        out.reset();
+        out.write("this is a\n".getBytes(UTF_8));
+        out.flush();
+
+        assertArrayEquals(data, baos.toByteArray());
+
+        out = new FramedBufferOutputStream(channel, 10);
+        out.reset();
+        out.write("this".getBytes(UTF_8));
+        try {
+            out.reset();
+            fail("No exception on reset after write");
+        } catch (IOException e) {
+            assertEquals("Unable to reset, 4 bytes of frame already written", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWrite_maxFrameSize() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(baos);
+        FramedBufferOutputStream out = new FramedBufferOutputStream(channel, -1, 8);
+        try {
+            out.write("this is a\n".getBytes(UTF_8));
+            fail("No exception on too large frame");
+        } catch (IOException e) {
+            assertEquals("Frame size 10 exceeds max 8", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWrite_knownSize() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(baos);
+        FramedBufferOutputStream out = new FramedBufferOutputStream(channel, 10);
+
+        out.write("this is".getBytes(UTF_8));
+        out.write(' ');
+        out.write("a\n".getBytes(UTF_8));
+        out.flush();
+
+        assertArrayEquals(data, baos.toByteArray());
+
+        out = new FramedBufferOutputStream(channel, 10);
+        out.write("too short".getBytes(UTF_8));
+        try {
+            out.flush();
+            fail("No exception on incomplete frame");
+        } catch (IOException e) {
+            assertEquals("Frame size mismatch: wrote 9 of 10 bytes", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,232 @@
+package net.morimekta.providence.thrift.server;
+
+import net.morimekta.providence.PMessageBuilder;
+import net.morimekta.providence.PServiceCall;
+import net.morimekta.providence.PServiceCallType;
+import net.morimekta.providence.serializer.BinarySerializer;
+import net.morimekta.providence.thrift.client.NonblockingSocketClientHandler;
+import net.morimekta.test.providence.srv.Failure;
+import net.morimekta.test.providence.srv.MyService;
+import net.morimekta.test.providence.srv.Request;
+import net.morimekta.test.providence.srv.Response;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test that the server can serve both providence and thrift clients.
+ */
+public class NonblockingSocketServerTest {
+    private MyService.Iface         impl;
+    private NonblockingSocketServer server;
+    private InetSocketAddress       address;
+
+    @Before
+    public void setUp() throws Exception {
+        impl = Mockito.mock(MyService.Iface.class);
+        server = new NonblockingSocketServer(new MyService.Processor(impl),
+                                             new BinarySerializer(),
+                                             new InetSocketAddress("localhost", 0),
+                                             1,
+                                             4);
+        server.start();
+        address = new InetSocketAddress("localhost", server.getPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testProvidenceClient() throws Exception {
+        when(impl.test(any(Request.class))).thenReturn(Response.builder().setText("response").build());
+
+        try (NonblockingSocketClientHandler handler = new NonblockingSocketClientHandler(new BinarySerializer(), address)) {
+            MyService.Iface client = new MyService.Client(handler);
+
+            assertEquals("response", client.test(Request.builder().setText("request").build()).getText());
+            assertEquals("response", client.test(Request.builder().setText("again").build()).getText());
+        }
+
+        verify(impl).test(Request.builder().setText("request").build());
+        verify(impl).test(Request.builder().setText("again").build());
+    }
+
+    @Test
+    public void testProvidenceClient_exception() throws Exception {
+        when(impl.test(any(Request.class))).thenThrow(Failure.builder().setText("failure").build());
+
+        try (NonblockingSocketClientHandler handler = new NonblockingSocketClientHandler(new BinarySerializer(), address)) {
+            MyService.Iface client = new MyService.Client(handler);
+            try {
+                client.test(Request.builder().setText("request").build());
+                fail("No exception");
+            } catch (Failure e) {
+                assertEquals("failure", e.getText());
+            }
+        }
+    }
+
+    @Test
+    public void testThriftClient() throws Exception {
+        when(impl.test(any(Request.class))).thenReturn(Response.builder().setText("response").build());
+
+        TTransport transport = new TFramedTransport(new TSocket("localhost", server.getPort()));
+        transport.open();
+        try {
+            net.morimekta.test.thrift.srv.MyService.Client client =
+                    new net.morimekta.test.thrift.srv.MyService.Client(new TBinaryProtocol(transport));
+
+            client.ping();
+            assertEquals("response", client.test(new net.morimekta.test.thrift.srv.Request("request")).getText());
+        } finally {
+            transport.close();
+        }
+
+        verify(impl).ping();
+        verify(impl).test(Request.builder().setText("request").build());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        assertTrue(server.stop(1, TimeUnit.SECONDS));
+
+        try (NonblockingSocketClientHandler handler = new NonblockingSocketClientHandler(new BinarySerializer(), address)) {
+            new MyService.Client(handler).test(Request.builder().build());
+            fail("No exception");
+        } catch (ConnectException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testMaxFrameSize() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(1);
+        try (NonblockingSocketServer limited = new NonblockingSocketServer(new MyService.Processor(impl),
+                                                                           new BinarySerializer(),
+                                                                           new InetSocketAddress("localhost", 0),
+                                                                           1,
+                                                                           workers,
+                                                                           1024,
+                                                                           4)) {
+            limited.start();
+
+            try (Socket socket = new Socket("localhost", limited.getPort())) {
+                socket.setSoTimeout(1000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(1025);
+                out.flush();
+
+                // The connection is closed on the frame size alone.
+                try {
+                    assertEquals(-1, socket.getInputStream().read());
+                } catch (IOException e) {
+                    // Connection reset, also closed.
+                }
+            }
+        } finally {
+            workers.shutdown();
+        }
+
+        verify(impl, times(0)).test(any(Request.class));
+    }
+
+    @Test
+    public void testMaxPending() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(impl.test(any(Request.class))).thenAnswer(i -> {
+            release.await(1, TimeUnit.SECONDS);
+            return Response.builder().setText("response").build();
+        });
+
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try (NonblockingSocketServer limited = new NonblockingSocketServer(new MyService.Processor(impl),
+                                                                           new BinarySerializer(),
+                                                                           new InetSocketAddress("localhost", 0),
+                                                                           1,
+                                                                           workers,
+                                                                           NonblockingSocketServer.DEFAULT_MAX_FRAME_SIZE,
+                                                                           1)) {
+            limited.start();
+
+            try (Socket socket = new Socket("localhost", limited.getPort())) {
+                socket.setSoTimeout(2000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                writeFrame(out, request(1, "first"));
+                writeFrame(out, request(2, "second"));
+                out.flush();
+
+                // Only the first request is read while it is in process,
+                // even though both are available on the connection.
+                verify(impl, timeout(1000)).test(Request.builder().setText("first").build());
+                Thread.sleep(100L);
+                verify(impl, times(1)).test(any(Request.class));
+
+                release.countDown();
+
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                assertEquals(1, readFrame(in).getSequence());
+                assertEquals(2, readFrame(in).getSequence());
+            }
+        } finally {
+            workers.shutdown();
+        }
+
+        verify(impl).test(Request.builder().setText("second").build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PServiceCall request(int sequence, String text) {
+        PMessageBuilder request = MyService.kDescriptor.getMethod("test").getRequestType().builder();
+        request.set(1, Request.builder()
+                              .setText(text)
+                              .build());
+
+        return new PServiceCall("test", PServiceCallType.CALL, sequence, request.build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeFrame(DataOutputStream out, PServiceCall call) throws Exception {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        new BinarySerializer().serialize(frame, call);
+        out.writeInt(frame.size());
+        frame.writeTo(out);
+    }
+
+    private static PServiceCall readFrame(DataInputStream in) throws Exception {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        InputStream content = new ByteArrayInputStream(frame);
+        return new BinarySerializer().deserialize(content, MyService.kDescriptor);
+    }
+}
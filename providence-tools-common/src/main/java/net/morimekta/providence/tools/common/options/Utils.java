@@ -4,7 +4,9 @@ import net.morimekta.console.args.ArgumentException;
 import net.morimekta.providence.PMessage;
 import net.morimekta.providence.descriptor.PField;
 import net.morimekta.providence.descriptor.PStructDescriptor;
+import net.morimekta.providence.reflect.TypeLoader;
 import net.morimekta.providence.reflect.parser.ParseException;
+import net.morimekta.providence.reflect.util.DocumentBundle;
 import net.morimekta.providence.reflect.util.ReflectionUtils;
 import net.morimekta.providence.serializer.Serializer;
 import net.morimekta.providence.streams.MessageCollectors;
@@ -14,9 +16,15 @@ import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Properties;
 import java.util.stream.Collector;
@@ -44,6 +52,66 @@ public class Utils {
         }
     }
 
+    /**
+     * Load the thrift file and its includes. See
+     * {@link #loadDefinitions(TypeLoader, Collection, File)}.
+     *
+     * @param loader The type loader to load into.
+     * @param file   The thrift file to load.
+     * @param bundle The document bundle file, or null to parse the file.
+     * @throws IOException If unable to read or write the files.
+     * @throws ParseException If unable to parse the thrift files.
+     */
+    public static void loadDefinitions(TypeLoader loader, File file, File bundle) throws IOException, ParseException {
+        loadDefinitions(loader, Collections.singletonList(file), bundle);
+    }
+
+    /**
+     * Load the thrift files and their includes. If a document bundle file
+     * is given, the documents are loaded from the bundle without parsing
+     * the thrift files. If the bundle is missing, stale or does not contain
+     * all the files, the thrift files are parsed and the bundle is written
+     * again, so the next run can use it. Relative paths in the bundle are
+     * relative to the directory of the bundle file.
+     *
+     * @param loader The type loader to load into.
+     * @param files  The thrift files to load.
+     * @param bundle The document bundle file, or null to parse the files.
+     * @throws IOException If unable to read or write the files.
+     * @throws ParseException If unable to parse the thrift files.
+     */
+    public static void loadDefinitions(TypeLoader loader, Collection<File> files, File bundle)
+            throws IOException, ParseException {
+        if (bundle == null) {
+            for (File file : files) {
+                loader.load(file);
+            }
+            return;
+        }
+
+        File baseDir = bundle.getAbsoluteFile().getParentFile();
+        boolean bundled = false;
+        if (bundle.isFile()) {
+            DocumentBundle documents = null;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(bundle))) {
+                documents = DocumentBundle.read(in);
+            } catch (IOException e) {
+                // Not a valid bundle, so it is written again.
+            }
+            bundled = documents != null && loader.loadBundle(documents, baseDir);
+        }
+
+        int loaded = loader.loadedDocuments().size();
+        for (File file : files) {
+            loader.load(file);
+        }
+        if (!bundled || loader.loadedDocuments().size() > loaded) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(bundle))) {
+                loader.toBundle(baseDir).write(out);
+            }
+        }
+    }
+
     public static String getVersionString() throws IOException {
         Properties properties = new Properties();
         properties.load(Utils.class.getResourceAsStream("/build.properties"));
@@ -64,6 +64,8 @@ public class Compiler {
                     switch (options.help.generator) {
                         case java:
                             System.out.println(" - android : Add android parcelable interface to model classes.");
+                            System.out.println(" - primitive_collections : Store numeric lists and maps unboxed.");
+                            System.out.println(" - binary_serializer : Add generated binary serialization to model classes.");
                             break;
                         case tiny_java:
                             System.out.println(" - jackson : Add jackson 2 annotations to model classes.");
@@ -163,6 +163,12 @@ public class CompilerOptions {
                         case "android":
                             options.android = true;
                             break;
+                        case "primitive_collections":
+                            options.primitiveCollections = true;
+                            break;
+                        case "binary_serializer":
+                            options.binarySerializer = true;
+                            break;
                         default:
                             throw new ArgumentException("No such option for java generator: " + opt);
                     }
@@ -148,7 +148,9 @@ public class CompilerTest {
                      "java : Main java (1.8+) code generator.\n" +
                      "Available options\n" +
                      "\n" +
-                     " - android : Add android parcelable interface to model classes.\n",
+                     " - android : Add android parcelable interface to model classes.\n" +
+                     " - primitive_collections : Store numeric lists and maps unboxed.\n" +
+                     " - binary_serializer : Add generated binary serialization to model classes.\n",
                      outContent.toString());
         assertEquals("", errContent.toString());
         assertEquals(0, exitCode);
@@ -34,6 +34,7 @@ import net.morimekta.providence.reflect.parser.ThriftDocumentParser;
 import net.morimekta.providence.reflect.util.ReflectionUtils;
 import net.morimekta.providence.serializer.SerializerException;
 import net.morimekta.providence.tools.common.options.CommonOptions;
+import net.morimekta.providence.tools.common.options.Utils;
 import net.morimekta.providence.tools.config.cmd.Command;
 import net.morimekta.providence.tools.config.cmd.Help;
 import net.morimekta.providence.tools.config.cmd.Params;
@@ -61,6 +62,7 @@ public class ConfigOptions extends CommonOptions {
     private Map<String, String> params   = new TreeMap<>();
     private List<File>          roots    = new LinkedList<>();
     private Command             command  = null;
+    private File                bundle   = null;
 
     private SubCommandSet<Command> commandSet;
 
@@ -69,6 +71,7 @@ public class ConfigOptions extends CommonOptions {
         ArgumentParser parser = super.getArgumentParser(prog, description);
 
         parser.add(new Option("--include", "I", "dir", "Read config definitions from these directories.", dir().andApply(dir -> this.collectIncludes(dir, includes)), null, true, false, false));
+        parser.add(new Option("--bundle", "B", "file", "Precompiled document bundle, written if missing or stale.", this::setBundle));
         parser.add(new Option("--config", "C", "dir", "Config directory locations.", dir(roots::add), null, true, false, false));
         parser.add(new Property("--param", 'P', "key", "value", "Config parameter override.", params::put, false));
 
@@ -87,6 +90,10 @@ public class ConfigOptions extends CommonOptions {
         return commandSet;
     }
 
+    private void setBundle(String bundle) {
+        this.bundle = new File(bundle);
+    }
+
     private void setCommand(Command command) {
         this.command = command;
     }
@@ -112,14 +119,12 @@ public class ConfigOptions extends CommonOptions {
                                     .map(File::getParentFile)
                                     .collect(Collectors.toSet());
         TypeLoader loader = new TypeLoader(rootSet, new ThriftDocumentParser());
-        for (File file : includes.values()) {
-            try {
-                loader.load(file);
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            } catch (ParseException e) {
-                throw new RuntimeException(e);
-            }
+        try {
+            Utils.loadDefinitions(loader, includes.values(), bundle);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new RuntimeException(e);
         }
 
         command.execute(new ProvidenceConfig(loader.getRegistry(), params, roots));
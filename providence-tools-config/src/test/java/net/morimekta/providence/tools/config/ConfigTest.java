@@ -104,11 +104,12 @@ public class ConfigTest {
         assertEquals("", errContent.toString());
         assertEquals(
                 "Providence Config Tool - v" + version + "\n" +
-                "Usage: pvdcfg [-hVv] [-I dir] [-C dir] [-Pkey=value ...] [help | print | validate | params] [...]\n" + "\n" +
+                "Usage: pvdcfg [-hVv] [-I dir] [-B file] [-C dir] [-Pkey=value ...] [help | print | validate | params] [...]\n" + "\n" +
                 " --help (-h, -?)    : This help listing.\n" +
                 " --verbose (-V)     : Show verbose output and error messages.\n" +
                 " --version (-v)     : Show program version.\n" +
                 " --include (-I) dir : Read config definitions from these directories.\n" +
+                " --bundle (-B) file : Precompiled document bundle, written if missing or stale.\n" +
                 " --config (-C) dir  : Config directory locations.\n" +
                 " -Pkey=value        : Config parameter override.\n" +
                 " cmd                : Config action.\n" +
@@ -130,11 +131,12 @@ public class ConfigTest {
         assertEquals("", errContent.toString());
         assertEquals(
                 "Providence Config Tool - v" + version + "\n" +
-                "Usage: pvdcfg [-hVv] [-I dir] [-C dir] [-Pkey=value ...] [help | print | validate | params] [...]\n" + "\n" +
+                "Usage: pvdcfg [-hVv] [-I dir] [-B file] [-C dir] [-Pkey=value ...] [help | print | validate | params] [...]\n" + "\n" +
                 " --help (-h, -?)    : This help listing.\n" +
                 " --verbose (-V)     : Show verbose output and error messages.\n" +
                 " --version (-v)     : Show program version.\n" +
                 " --include (-I) dir : Read config definitions from these directories.\n" +
+                " --bundle (-B) file : Precompiled document bundle, written if missing or stale.\n" +
                 " --config (-C) dir  : Config directory locations.\n" +
                 " -Pkey=value        : Config parameter override.\n" +
                 " cmd                : Config action.\n" +
@@ -60,6 +60,7 @@ import static net.morimekta.providence.tools.common.options.Utils.collectInclude
 @SuppressWarnings("all")
 public class ConvertOptions extends CommonOptions {
     protected List<File> includes = new LinkedList<>();
+    protected File bundle = null;
     protected ConvertStream in = new ConvertStream(Format.json, null);
     protected ConvertStream out = new ConvertStream(Format.pretty, null);
     protected boolean strict = false;
@@ -70,6 +71,7 @@ public class ConvertOptions extends CommonOptions {
         ArgumentParser parser = super.getArgumentParser(prog, description);
 
         parser.add(new Option("--include", "I", "dir", "Include from directories.", dir(this::addInclude), "${PWD}", true, false, false));
+        parser.add(new Option("--bundle", "B", "file", "Precompiled document bundle, written if missing or stale.", this::setBundle));
         parser.add(new Option("--in", "i", "spec", "Input specification", new ConvertStreamParser().andApply(this::setIn)));
         parser.add(new Option("--out", "o", "spec", "Output specification", new ConvertStreamParser().andApply(this::setOut)));
         parser.add(new Flag("--strict", "S", "Read incoming messages strictly.", this::setStrict));
@@ -82,6 +84,10 @@ public class ConvertOptions extends CommonOptions {
         this.includes.add(include);
     }
 
+    private void setBundle(String bundle) {
+        this.bundle = new File(bundle);
+    }
+
     private void setIn(ConvertStream in) {
         this.in = in;
     }
@@ -128,7 +134,7 @@ public class ConvertOptions extends CommonOptions {
         TypeLoader loader = new TypeLoader(rootSet, new ThriftDocumentParser());
 
         try {
-            loader.load(includeMap.get(namespace));
+            Utils.loadDefinitions(loader, includeMap.get(namespace), bundle);
         } catch (IOException e) {
             throw new ArgumentException(e.getLocalizedMessage());
         }
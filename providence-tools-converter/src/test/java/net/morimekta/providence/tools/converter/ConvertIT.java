@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test the providence converter (pvd) command.
@@ -101,4 +102,36 @@ public class ConvertIT {
             System.err.println(convert.getError());
         }
     }
+
+    @Test
+    public void testStream_withBundle() throws IOException {
+        ByteArrayOutputStream tmp = new ByteArrayOutputStream();
+        try (InputStream in = getClass().getResourceAsStream("/binary.data")) {
+            IOUtils.copy(in, tmp);
+        }
+        byte[] data = tmp.toByteArray();
+
+        tmp = new ByteArrayOutputStream();
+        try (InputStream in = getClass().getResourceAsStream("/pretty.json")) {
+            IOUtils.copy(in, tmp);
+        }
+
+        // The first run parses the thrift file and writes the bundle, the
+        // second loads the definitions from the bundle.
+        File bundle = new File(temp.getRoot(), "cont.bundle");
+        for (int i = 0; i < 2; ++i) {
+            convert.setInput(new ByteArrayInputStream(data));
+            int exitCode = convert.run(
+                    "-I", temp.getRoot().getAbsolutePath(),
+                    "-B", bundle.getAbsolutePath(),
+                    "-i", "binary",
+                    "-o", "pretty_json",
+                    "cont.Containers");
+
+            assertEquals("", convert.getError());
+            assertEquals(tmp.toString(), convert.getOutput());
+            assertEquals(0, exitCode);
+            assertTrue(bundle.isFile());
+        }
+    }
 }
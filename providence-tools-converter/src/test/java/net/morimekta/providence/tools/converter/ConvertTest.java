@@ -111,6 +111,7 @@ public class ConvertTest {
                 " --help (-h, -?)    : This help listing.\n" +
                 " --verbose (-V)     : Show verbose output and error messages.\n" +
                 " --version (-v)     : Show program version.\n --include (-I) dir : Include from directories. (default: ${PWD})\n" +
+                " --bundle (-B) file : Precompiled document bundle, written if missing or stale.\n" +
                 " --in (-i) spec     : Input specification\n" +
                 " --out (-o) spec    : Output specification\n" +
                 " --strict (-S)      : Read incoming messages strictly.\n" +
@@ -91,6 +91,7 @@ public class RPCOptions extends CommonOptions {
     protected ConvertStream out = new ConvertStream(Format.pretty_json, null);
     protected boolean strict = false;
     protected List<File> includes = new LinkedList<>();
+    protected File bundle = null;
     protected String service = "";
     protected Format format = Format.binary;
     protected int connect_timeout = 10000;
@@ -103,6 +104,7 @@ public class RPCOptions extends CommonOptions {
         ArgumentParser parser = super.getArgumentParser(prog, description);
 
         parser.add(new Option("--include", "I", "dir", "Allow includes of files in directory", dir(this::addInclude), null, true, false, false));
+        parser.add(new Option("--bundle", "B", "file", "Precompiled document bundle, written if missing or stale.", this::setBundle));
         parser.add(new Option("--in", "i", "spec", "Input specification", new ConvertStreamParser().andApply(this::setIn), "json"));
         parser.add(new Option("--out", "o", "spec", "Output Specification", new ConvertStreamParser().andApply(this::setOut), "pretty_json"));
         parser.add(new Option("--service", "s", "srv", "Qualified identifier name from definitions to use for parsing source file.",
@@ -133,6 +135,10 @@ public class RPCOptions extends CommonOptions {
         this.includes.add(include);
     }
 
+    public void setBundle(String bundle) {
+        this.bundle = new File(bundle);
+    }
+
     public void setService(String service) {
         this.service = service;
     }
@@ -216,7 +222,7 @@ public class RPCOptions extends CommonOptions {
                                             Strings.join(", ", new TreeSet<Object>(includeMap.keySet())));
             }
 
-            loader.load(includeMap.get(namespace));
+            Utils.loadDefinitions(loader, includeMap.get(namespace), bundle);
         } catch (IOException e) {
             throw new ArgumentException(e.getLocalizedMessage());
         }
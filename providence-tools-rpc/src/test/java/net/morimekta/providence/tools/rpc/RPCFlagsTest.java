@@ -119,6 +119,7 @@ public class RPCFlagsTest {
                 " --verbose (-V)            : Show verbose output and error messages.\n" +
                 " --version (-v)            : Show program version.\n" +
                 " --include (-I) dir        : Allow includes of files in directory\n" +
+                " --bundle (-B) file        : Precompiled document bundle, written if missing or stale.\n" +
                 " --in (-i) spec            : Input specification (default: json)\n" +
                 " --out (-o) spec           : Output Specification (default: pretty_json)\n" +
                 " --service (-s) srv        : Qualified identifier name from definitions to use for parsing source\n" +